@@ -15,24 +15,28 @@
 
 package org.guvnor.asset.management.backend.command;
 
+import java.io.IOException;
 import java.net.URI;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 import javax.enterprise.inject.spi.BeanManager;
 
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffFormatter;
 import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.util.io.NullOutputStream;
@@ -40,22 +44,28 @@ import org.guvnor.asset.management.backend.AssetManagementRuntimeException;
 import org.guvnor.asset.management.backend.model.CommitInfo;
 import org.guvnor.asset.management.backend.utils.CDIUtils;
 import org.guvnor.asset.management.backend.utils.NamedLiteral;
+import org.guvnor.common.services.backend.cache.BoundedLRUMap;
+import org.guvnor.common.services.backend.util.SystemProperties;
 import org.kie.api.executor.CommandContext;
 import org.kie.api.executor.ExecutionResults;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.uberfire.io.IOService;
-import org.uberfire.java.nio.base.version.VersionAttributeView;
-import org.uberfire.java.nio.base.version.VersionRecord;
 import org.uberfire.java.nio.file.Path;
 import org.uberfire.java.nio.fs.jgit.JGitFileSystem;
-import org.uberfire.java.nio.fs.jgit.util.JGitUtil;
 
 public class ListCommitsCommand extends AbstractCommand {
 	
 	private static final Logger logger = LoggerFactory.getLogger(ListCommitsCommand.class);
 	// remove dot files from sorted commits per file
 	private static final String DEFAULT_FILER_REGEX = ".*\\/\\..*";
+	private static final Pattern DEFAULT_FILTER = Pattern.compile(DEFAULT_FILER_REGEX);
+
+    public static final String CACHE_SIZE_PROPERTY_NAME = "org.guvnor.asset.management.commits.cache.size";
+    private static final int DEFAULT_CACHE_SIZE = 10000;
+
+    // files changed per commit, shared by all executions as commands are created per request
+    private static final Map<String, List<String>> filesInCommits = BoundedLRUMap.newSynchronizedMap(getMaxCachedCommits());
 
     private static final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
 
@@ -73,8 +83,6 @@ public class ListCommitsCommand extends AbstractCommand {
                 startCommitDate = dateFormat.parse(fromDate);
             }
 
-            Set<String> existingCommits = new LinkedHashSet<String>();
-
             BeanManager beanManager = CDIUtils.lookUpBeanManager(commandContext);
             logger.debug("BeanManager " + beanManager);
 
@@ -83,48 +91,9 @@ public class ListCommitsCommand extends AbstractCommand {
             logger.debug("IoService " + ioService);
 
             Path branchPath = ioService.get(URI.create("git://" + branchName + "@" + gitRepo));
-
-            if (compareToBranchName != null) {
-                Path compareToBranchPath = ioService.get(URI.create("git://" + compareToBranchName + "@" + gitRepo));
-                VersionAttributeView compareView = ioService.getFileAttributeView( compareToBranchPath, VersionAttributeView.class );
-                List<VersionRecord> compareLogs = compareView.readAttributes().history().records();
-
-                for (VersionRecord ccommit : compareLogs) {
-                    if (startCommitDate != null && startCommitDate.after(ccommit.date())) {
-                        break;
-                    }
-                    existingCommits.add(ccommit.id());
-                }
-            }
-
-            VersionAttributeView vinit = ioService.getFileAttributeView( branchPath, VersionAttributeView.class );
-            List<VersionRecord> logs = vinit.readAttributes().history().records();
-
-            List<CommitInfo> commits = new ArrayList<CommitInfo>();
             JGitFileSystem fs = (JGitFileSystem)ioService.getFileSystem(branchPath.toUri());
-            Collections.reverse(logs);
-
-            for (VersionRecord commit : logs) {
-
-                // check if there are already commits in compare to branch
-                if (existingCommits.contains(commit.id())) {
-                    continue;
-                }
-                String shortMessage = commit.comment();
-                Date commitDate = commit.date();
-
-                if (startCommitDate != null && startCommitDate.after(commitDate)) {
-                    break;
-                }
-
-                List<String> files = getFilesInCommit(fs.gitRepo().getRepository(), JGitUtil.resolveObjectId(fs.gitRepo(), commit.id()));
-                CommitInfo commitInfo = new CommitInfo(commit.id(), shortMessage, commit.author(), commitDate, files);
-                commits.add(commitInfo);
-                logger.debug("Found commit {}", commitInfo);
-
-            }
-
 
+            List<CommitInfo> commits = listCommits(fs.gitRepo().getRepository(), branchName, compareToBranchName, startCommitDate);
 
             String commitsString = dumpToStringCommit(commits);
             Map<String, List<String>> commitsPerFileMap = sortByFileName(commits);
@@ -172,7 +141,7 @@ public class ListCommitsCommand extends AbstractCommand {
                 continue;
             }
             for (String file : files) {
-                if (!file.matches(DEFAULT_FILER_REGEX)) {
+                if (!DEFAULT_FILTER.matcher(file).matches()) {
                     List<String> commitsPerFile = sorted.get(file);
                     if (commitsPerFile == null) {
                         commitsPerFile = new ArrayList<String>();
@@ -188,19 +157,88 @@ public class ListCommitsCommand extends AbstractCommand {
     }
 
 
-    protected List<String> getFilesInCommit(Repository repository, ObjectId commitId) {
-        List<String> list = new ArrayList<String>();
+    /**
+     * Lists the commits reachable from the branch but not from the compare-to branch (if any), newest first, stopping
+     * at the first commit authored before the start date (if any).
+     */
+    protected List<CommitInfo> listCommits(Repository repository, String branchName, String compareToBranchName, Date startCommitDate) throws IOException {
+        List<CommitInfo> commits = new ArrayList<CommitInfo>();
 
-        RevWalk rw = new RevWalk(repository);
+        ObjectId branchId = repository.resolve(Constants.R_HEADS + branchName);
+        if (branchId == null) {
+            throw new AssetManagementRuntimeException("Branch " + branchName + " does not exist");
+        }
 
+        // one reader is shared by the walk and by the diffs of every commit visited
+        ObjectReader reader = repository.newObjectReader();
+        RevWalk rw = new RevWalk(reader);
+        DiffFormatter df = newDiffFormatter(repository);
         try {
-            RevCommit commit = rw.parseCommit(commitId);
-            if (commit == null) {
-                return list;
+            rw.sort(RevSort.COMMIT_TIME_DESC);
+            rw.markStart(rw.parseCommit(branchId));
+            if (compareToBranchName != null) {
+                // commits already in the compare to branch (from the merge base back) are never visited
+                ObjectId compareToId = repository.resolve(Constants.R_HEADS + compareToBranchName);
+                if (compareToId != null) {
+                    rw.markUninteresting(rw.parseCommit(compareToId));
+                }
+            }
+
+            for (RevCommit commit : rw) {
+                Date commitDate = commit.getAuthorIdent().getWhen();
+                if (startCommitDate != null && startCommitDate.after(commitDate)) {
+                    break;
+                }
+
+                List<String> files = getFilesInCommit(rw, reader, df, commit);
+                CommitInfo commitInfo = new CommitInfo(commit.getName(), commit.getFullMessage(), commit.getAuthorIdent().getName(), commitDate, files);
+                commits.add(commitInfo);
+                logger.debug("Found commit {}", commitInfo);
             }
+        } finally {
+            df.release();
+            rw.release();
+            reader.release();
+        }
+        return commits;
+    }
+
+    private DiffFormatter newDiffFormatter(Repository repository) {
+        DiffFormatter df = new DiffFormatter(NullOutputStream.INSTANCE);
+        df.setRepository(repository);
+        df.setDiffComparator(RawTextComparator.DEFAULT);
+        df.setDetectRenames(true);
+        return df;
+    }
+
+    protected List<String> getFilesInCommit(Repository repository, ObjectId commitId) {
+        ObjectReader reader = repository.newObjectReader();
+        RevWalk rw = new RevWalk(reader);
+        DiffFormatter df = newDiffFormatter(repository);
+        try {
+            return getFilesInCommit(rw, reader, df, rw.parseCommit(commitId));
+        } catch (Throwable t) {
+            logger.error("Unable to determine files in commit due to {} in repository {}", t, repository);
+            return new ArrayList<String>();
+        } finally {
+            df.release();
+            rw.release();
+            reader.release();
+        }
+    }
+
+    // commits are immutable so the files they change are cached by commit id
+    private List<String> getFilesInCommit(RevWalk rw, ObjectReader reader, DiffFormatter df, RevCommit commit) {
+        String commitId = commit.getName();
+        List<String> cached = filesInCommits.get(commitId);
+        if (cached != null) {
+            return new ArrayList<String>(cached);
+        }
 
+        List<String> list = new ArrayList<String>();
+        try {
             if (commit.getParentCount() == 0) {
-                TreeWalk tw = new TreeWalk(repository);
+                TreeWalk tw = new TreeWalk(reader);
                 tw.reset();
                 tw.setRecursive(true);
                 tw.addTree(commit.getTree());
@@ -209,18 +247,13 @@ public class ListCommitsCommand extends AbstractCommand {
                 }
                 tw.release();
             } else {
-                RevCommit parent = rw.parseCommit(commit.getParent(0).getId());
-                DiffFormatter df = new DiffFormatter(NullOutputStream.INSTANCE);
-                df.setRepository(repository);
-                df.setDiffComparator(RawTextComparator.DEFAULT);
-                df.setDetectRenames(true);
+                RevCommit parent = commit.getParent(0);
+                rw.parseHeaders(parent);
                 List<DiffEntry> diffs = df.scan(parent.getTree(), commit.getTree());
                 for (DiffEntry diff : diffs) {
 
                     if (diff.getChangeType().equals(DiffEntry.ChangeType.DELETE)) {
                         list.add(diff.getOldPath());
-                    } else if (diff.getChangeType().equals(DiffEntry.ChangeType.RENAME)) {
-                        list.add(diff.getNewPath());
                     } else {
                         list.add(diff.getNewPath());
                     }
@@ -228,10 +261,15 @@ public class ListCommitsCommand extends AbstractCommand {
                 }
             }
         } catch (Throwable t) {
-            logger.error("Unable to determine files in commit due to {} in repository {}", t, repository);
-        } finally {
-            rw.dispose();
+            logger.error("Unable to determine files in commit due to {} in commit {}", t, commitId);
+            return list;
         }
+
+        filesInCommits.put(commitId, Collections.unmodifiableList(new ArrayList<String>(list)));
         return list;
     }
+
+    static int getMaxCachedCommits() {
+        return SystemProperties.getInt(CACHE_SIZE_PROPERTY_NAME, DEFAULT_CACHE_SIZE, 1);
+    }
 }
@@ -17,9 +17,12 @@ package org.guvnor.asset.management.backend.command;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.enterprise.inject.spi.BeanManager;
 import javax.enterprise.util.TypeLiteral;
@@ -30,6 +33,7 @@ import org.guvnor.asset.management.backend.utils.CDIUtils;
 import org.guvnor.asset.management.backend.utils.DataUtils;
 import org.guvnor.asset.management.backend.utils.NamedLiteral;
 import org.guvnor.asset.management.social.RepositoryChangeEvent;
+import org.guvnor.common.services.backend.util.CommentedOptionFactory;
 import org.guvnor.common.services.project.model.POM;
 import org.guvnor.common.services.project.model.Project;
 import org.guvnor.common.services.project.service.POMService;
@@ -42,6 +46,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.uberfire.backend.server.util.Paths;
 import org.uberfire.io.IOService;
+import org.uberfire.java.nio.file.FileSystem;
 import org.uberfire.java.nio.file.Path;
 
 public class UpdateProjectVersionCommand extends AbstractCommand {
@@ -81,28 +86,11 @@ public class UpdateProjectVersionCommand extends AbstractCommand {
 
                 Set<Project> projects = projectService.getProjects(repo, branchToUpdate);
 
+                CommentedOptionFactory optionsFactory = CDIUtils.createBean(CommentedOptionFactory.class, beanManager);
+                POM parentPom = updateVersions(ioService, pomService, optionsFactory, repo, branchToUpdate, projects, version, updatedProject, executionResults);
 
-                for (Project project : projects) {
-
-                    POM pom = pomService.load(project.getPomXMLPath());
-                    pom.getGav().setVersion(version);
-                    pomService.save(project.getPomXMLPath(), pom, null, "Update project version during release");
-                    executionResults.setData("GAV", pom.getGav().toString());
-
-                    boolean isKieProject = KIE_PROJECT_CLASS.equals(project.getClass().getName());
-                    updatedProject.add(new ProjectInfo(repo.getAlias(), branchToUpdate, project.getProjectName(), isKieProject));
-                }
-                // update parent pom if exists
-                String branchRoot = repo.getBranchRoot(branchToUpdate).toURI();
-
-                Path parentPomPath = ioService.get(URI.create(branchRoot + "pom.xml"));
-                if (ioService.exists(parentPomPath)) {
-                    org.uberfire.backend.vfs.Path convertedPomPath = Paths.convert(parentPomPath);
-                    POM pom = pomService.load(convertedPomPath);
-                    pom.getGav().setVersion(version);
-                    pomService.save(convertedPomPath, pom, null, "Update parent pom version during release");
-
-                    final List<String> modules = pom.getModules();
+                if (parentPom != null) {
+                    final List<String> modules = parentPom.getModules();
 
                     Collections.sort(updatedProject, new Comparator<ProjectInfo>() {
                         @Override
@@ -131,6 +119,58 @@ public class UpdateProjectVersionCommand extends AbstractCommand {
 	}
 
 
+    // loads every pom up front so that nothing is written unless all of them can be updated, then writes them all as a
+    // single commit, raising a single batch of resource changes. Returns the parent pom, or null if there is none
+    POM updateVersions(IOService ioService, POMService pomService, CommentedOptionFactory optionsFactory, Repository repo,
+                       String branchToUpdate, Collection<Project> projects, String version,
+                       List<ProjectInfo> updatedProject, ExecutionResults executionResults) {
+        String branchRoot = repo.getBranchRoot(branchToUpdate).toURI();
+        Path parentPomPath = ioService.get(URI.create(branchRoot + "pom.xml"));
+        org.uberfire.backend.vfs.Path convertedPomPath = null;
+        POM parentPom = null;
+        if (ioService.exists(parentPomPath)) {
+            convertedPomPath = Paths.convert(parentPomPath);
+            parentPom = pomService.load(convertedPomPath);
+            parentPom.getGav().setVersion(version);
+        }
+
+        Map<Project, POM> poms = loadPoms(pomService, projects);
+
+        ioService.startBatch(new FileSystem[]{parentPomPath.getFileSystem()},
+                             optionsFactory.makeCommentedOption("Update project version during release"));
+        try {
+            if (parentPom != null) {
+                pomService.save(convertedPomPath, parentPom, null, "Update parent pom version during release");
+            }
+            for (Map.Entry<Project, POM> entry : poms.entrySet()) {
+                Project project = entry.getKey();
+                POM pom = entry.getValue();
+                pom.getGav().setVersion(version);
+                pomService.save(project.getPomXMLPath(), pom, null, "Update project version during release");
+                executionResults.setData("GAV", pom.getGav().toString());
+
+                boolean isKieProject = KIE_PROJECT_CLASS.equals(project.getClass().getName());
+                updatedProject.add(new ProjectInfo(repo.getAlias(), branchToUpdate, project.getProjectName(), isKieProject));
+            }
+        } finally {
+            ioService.endBatch();
+        }
+        return parentPom;
+    }
+
+    // loads the poms in the order of the projects; POMService caches the parsed models, so no separate pool is used
+    private Map<Project, POM> loadPoms(POMService pomService, Collection<Project> projects) {
+        Map<Project, POM> poms = new LinkedHashMap<Project, POM>();
+        for (Project project : projects) {
+            try {
+                poms.put(project, pomService.load(project.getPomXMLPath()));
+            } catch (RuntimeException e) {
+                throw new AssetManagementRuntimeException("Unable to load pom of project " + project.getProjectName(), e);
+            }
+        }
+        return poms;
+    }
+
     private RepositoryChangeEvent getSocialEvent(String processName,
             String repository,
             String branch,
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.asset.management.backend.command;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeResult;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+import org.guvnor.asset.management.backend.model.CommitInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class ListCommitsCommandTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ListCommitsCommand command = new ListCommitsCommand();
+
+    private Git git;
+    private long base;
+
+    private RevCommit c1, c2, r1, m1, f1, merge, m2;
+
+    /**
+     * master:  c1 - c2 - m1 - merge - m2
+     * feature:       c2 - f1 /
+     * release:       c2 - r1
+     */
+    @Before
+    public void setup() throws Exception {
+        git = Git.init().setDirectory(folder.getRoot()).call();
+        // authored in the past so that the merge commit, dated now, is the newest but one
+        base = System.currentTimeMillis() - 10 * DAY;
+
+        c1 = commit("c1", base, "a.txt", "b.txt");
+        c2 = commit("c2", base + DAY, "a.txt");
+
+        git.branchCreate().setName("release").call();
+        git.checkout().setName("release").call();
+        r1 = commit("r1", base + 2 * DAY, "release.txt");
+
+        git.checkout().setName("master").call();
+        git.branchCreate().setName("feature").call();
+        m1 = commit("m1", base + 3 * DAY, "b.txt");
+
+        git.checkout().setName("feature").call();
+        f1 = commit("f1", base + 4 * DAY, "feature/c.txt", "feature/d.txt");
+
+        git.checkout().setName("master").call();
+        MergeResult result = git.merge().include(git.getRepository().getRef("feature")).call();
+        assertEquals(MergeResult.MergeStatus.MERGED, result.getMergeStatus());
+        RevWalk rw = new RevWalk(git.getRepository());
+        try {
+            merge = rw.parseCommit(result.getNewHead());
+        } finally {
+            rw.release();
+        }
+
+        m2 = commit("m2", System.currentTimeMillis() + DAY, "a.txt", "feature/c.txt");
+    }
+
+    @After
+    public void tearDown() {
+        git.getRepository().close();
+    }
+
+    @Test
+    public void testMergeCommitsComparedToBranch() throws Exception {
+        List<CommitInfo> commits = command.listCommits(git.getRepository(), "master", "release", null);
+
+        assertEquals(Arrays.asList(m2.getName(), merge.getName(), f1.getName(), m1.getName()), ids(commits));
+        // a merge commit lists the files changed relative to its first parent
+        assertEquals(2, merge.getParentCount());
+        assertEquals(new HashSet<String>(Arrays.asList("feature/c.txt", "feature/d.txt")), new HashSet<String>(commits.get(1).getFiles()));
+        assertEquals(new HashSet<String>(Arrays.asList("a.txt", "feature/c.txt")), new HashSet<String>(commits.get(0).getFiles()));
+        assertEquals("m2", commits.get(0).getMessage());
+        assertEquals("author", commits.get(0).getAuthor());
+        assertEquals(m2.getAuthorIdent().getWhen(), commits.get(0).getCommitDate());
+    }
+
+    @Test
+    public void testWithoutCompareToBranch() throws Exception {
+        List<CommitInfo> commits = command.listCommits(git.getRepository(), "master", null, null);
+
+        assertEquals(Arrays.asList(m2.getName(), merge.getName(), f1.getName(), m1.getName(), c2.getName(), c1.getName()), ids(commits));
+        // the root commit lists every file in its tree
+        assertEquals(new HashSet<String>(Arrays.asList("a.txt", "b.txt")), new HashSet<String>(commits.get(5).getFiles()));
+        assertEquals(Arrays.asList("a.txt"), commits.get(4).getFiles());
+    }
+
+    @Test
+    public void testFromDateCutoff() throws Exception {
+        Date fromDate = new Date(base + 3 * DAY + DAY / 2);
+        List<CommitInfo> commits = command.listCommits(git.getRepository(), "master", "release", fromDate);
+
+        assertEquals(Arrays.asList(m2.getName(), merge.getName(), f1.getName()), ids(commits));
+    }
+
+    @Test
+    public void testCompareToBranchContainingAllCommits() throws Exception {
+        assertTrue(command.listCommits(git.getRepository(), "feature", "master", null).isEmpty());
+        assertEquals(Arrays.asList(r1.getName()), ids(command.listCommits(git.getRepository(), "release", "master", null)));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testUnknownBranch() throws Exception {
+        command.listCommits(git.getRepository(), "unknown", null, null);
+    }
+
+    @Test
+    public void testParityWithLogBasedListing() throws Exception {
+        Date[] fromDates = {null, new Date(base + DAY / 2), new Date(base + 3 * DAY + DAY / 2)};
+        String[][] branches = {{"master", null}, {"master", "release"}, {"release", "master"}, {"feature", "release"}, {"feature", "master"}};
+
+        for (Date fromDate : fromDates) {
+            for (String[] branch : branches) {
+                List<CommitInfo> expected = listCommitsUsingLog(branch[0], branch[1], fromDate);
+                List<CommitInfo> actual = command.listCommits(git.getRepository(), branch[0], branch[1], fromDate);
+
+                String scenario = branch[0] + " compared to " + branch[1] + " from " + fromDate;
+                assertEquals(scenario, ids(expected), ids(actual));
+                for (int i = 0; i < expected.size(); i++) {
+                    assertEquals(scenario, expected.get(i).getMessage(), actual.get(i).getMessage());
+                    assertEquals(scenario, expected.get(i).getAuthor(), actual.get(i).getAuthor());
+                    assertEquals(scenario, expected.get(i).getCommitDate(), actual.get(i).getCommitDate());
+                    assertEquals(scenario, expected.get(i).getFiles(), actual.get(i).getFiles());
+                }
+            }
+        }
+    }
+
+    // the listing as it was before the single RevWalk: log the compare to branch to collect the commits to exclude,
+    // then log the branch skipping them and diff each commit using its own walk
+    private List<CommitInfo> listCommitsUsingLog(String branchName, String compareToBranchName, Date startCommitDate) throws Exception {
+        Repository repository = git.getRepository();
+        Set<String> existing = new HashSet<String>();
+        if (compareToBranchName != null) {
+            for (RevCommit commit : git.log().add(repository.resolve(Constants.R_HEADS + compareToBranchName)).call()) {
+                if (startCommitDate != null && startCommitDate.after(commit.getAuthorIdent().getWhen())) {
+                    break;
+                }
+                existing.add(commit.getName());
+            }
+        }
+
+        List<CommitInfo> commits = new ArrayList<CommitInfo>();
+        for (RevCommit commit : git.log().add(repository.resolve(Constants.R_HEADS + branchName)).call()) {
+            if (existing.contains(commit.getName())) {
+                continue;
+            }
+            if (startCommitDate != null && startCommitDate.after(commit.getAuthorIdent().getWhen())) {
+                break;
+            }
+            commits.add(new CommitInfo(commit.getName(), commit.getFullMessage(), commit.getAuthorIdent().getName(), commit.getAuthorIdent().getWhen(), getFilesInCommit(repository, commit)));
+        }
+        return commits;
+    }
+
+    private List<String> getFilesInCommit(Repository repository, RevCommit commit) throws Exception {
+        List<String> list = new ArrayList<String>();
+        RevWalk rw = new RevWalk(repository);
+        try {
+            commit = rw.parseCommit(commit);
+            if (commit.getParentCount() == 0) {
+                TreeWalk tw = new TreeWalk(repository);
+                tw.reset();
+                tw.setRecursive(true);
+                tw.addTree(commit.getTree());
+                while (tw.next()) {
+                    list.add(tw.getPathString());
+                }
+                tw.release();
+            } else {
+                RevCommit parent = rw.parseCommit(commit.getParent(0).getId());
+                DiffFormatter df = new DiffFormatter(DisabledOutputStream.INSTANCE);
+                df.setRepository(repository);
+                df.setDiffComparator(RawTextComparator.DEFAULT);
+                df.setDetectRenames(true);
+                for (DiffEntry diff : df.scan(parent.getTree(), commit.getTree())) {
+                    if (diff.getChangeType().equals(DiffEntry.ChangeType.DELETE)) {
+                        list.add(diff.getOldPath());
+                    } else {
+                        list.add(diff.getNewPath());
+                    }
+                }
+                df.release();
+            }
+        } finally {
+            rw.release();
+        }
+        return list;
+    }
+
+    private RevCommit commit(String message, long when, String... fileNames) throws Exception {
+        for (String fileName : fileNames) {
+            File file = new File(folder.getRoot(), fileName);
+            file.getParentFile().mkdirs();
+            FileWriter writer = new FileWriter(file);
+            try {
+                writer.write(message + " " + fileName);
+            } finally {
+                writer.close();
+            }
+            git.add().addFilepattern(fileName).call();
+        }
+        PersonIdent ident = new PersonIdent("author", "author@example.com", new Date(when), TimeZone.getTimeZone("UTC"));
+        return git.commit().setMessage(message).setAuthor(ident).setCommitter(ident).call();
+    }
+
+    private List<String> ids(List<CommitInfo> commits) {
+        List<String> ids = new ArrayList<String>();
+        for (CommitInfo commit : commits) {
+            ids.add(commit.getCommitId());
+        }
+        return ids;
+    }
+}
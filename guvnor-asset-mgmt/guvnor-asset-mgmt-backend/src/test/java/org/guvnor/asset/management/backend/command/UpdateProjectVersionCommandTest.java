@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.asset.management.backend.command;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.guvnor.asset.management.backend.AssetManagementRuntimeException;
+import org.guvnor.asset.management.backend.model.ProjectInfo;
+import org.guvnor.common.services.backend.util.CommentedOptionFactory;
+import org.guvnor.common.services.project.model.GAV;
+import org.guvnor.common.services.project.model.POM;
+import org.guvnor.common.services.project.model.Project;
+import org.guvnor.common.services.project.service.POMService;
+import org.guvnor.common.services.shared.metadata.model.Metadata;
+import org.guvnor.structure.repositories.Repository;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.api.executor.ExecutionResults;
+import org.mockito.InOrder;
+import org.uberfire.backend.vfs.Path;
+import org.uberfire.io.IOService;
+import org.uberfire.java.nio.base.options.CommentedOption;
+import org.uberfire.java.nio.file.FileSystem;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class UpdateProjectVersionCommandTest {
+
+    private final UpdateProjectVersionCommand command = new UpdateProjectVersionCommand();
+
+    private IOService ioService;
+    private POMService pomService;
+    private CommentedOptionFactory optionsFactory;
+    private CommentedOption option;
+    private FileSystem fileSystem;
+    private Repository repository;
+
+    private POM parentPom;
+    private Project module1, module2;
+    private POM pom1, pom2;
+
+    @Before
+    public void setup() {
+        ioService = mock(IOService.class);
+        pomService = mock(POMService.class);
+        optionsFactory = mock(CommentedOptionFactory.class);
+        option = mock(CommentedOption.class);
+        when(optionsFactory.makeCommentedOption(anyString())).thenReturn(option);
+
+        Path branchRoot = mock(Path.class);
+        when(branchRoot.toURI()).thenReturn("default://master@repository/");
+        repository = mock(Repository.class);
+        when(repository.getAlias()).thenReturn("repository");
+        when(repository.getBranchRoot("master")).thenReturn(branchRoot);
+
+        fileSystem = mock(FileSystem.class);
+        org.uberfire.java.nio.file.Path parentPomPath = mock(org.uberfire.java.nio.file.Path.class);
+        org.uberfire.java.nio.file.Path parentPomFileName = mock(org.uberfire.java.nio.file.Path.class);
+        when(parentPomFileName.toString()).thenReturn("pom.xml");
+        when(parentPomPath.getFileName()).thenReturn(parentPomFileName);
+        when(parentPomPath.toUri()).thenReturn(URI.create("default://master@repository/pom.xml"));
+        when(parentPomPath.getFileSystem()).thenReturn(fileSystem);
+        when(ioService.get(URI.create("default://master@repository/pom.xml"))).thenReturn(parentPomPath);
+        when(ioService.exists(parentPomPath)).thenReturn(true);
+
+        // the parent pom is the only pom loaded through a path other than a module's
+        parentPom = pom("parent");
+        when(pomService.load(any(Path.class))).thenReturn(parentPom);
+        pom1 = pom("module1");
+        module1 = project("module1", pom1);
+        pom2 = pom("module2");
+        module2 = project("module2", pom2);
+    }
+
+    @Test
+    public void testParentAndModulesAreUpdatedInOneBatch() throws Exception {
+        List<ProjectInfo> updated = new ArrayList<ProjectInfo>();
+
+        POM result = command.updateVersions(ioService, pomService, optionsFactory, repository, "master",
+                                            Arrays.asList(module1, module2), "2.0", updated, new ExecutionResults());
+
+        assertSame(parentPom, result);
+        assertEquals("2.0", parentPom.getGav().getVersion());
+        assertEquals("2.0", pom1.getGav().getVersion());
+        assertEquals("2.0", pom2.getGav().getVersion());
+        assertEquals(2, updated.size());
+        assertEquals("module1", updated.get(0).getName());
+        assertEquals("module2", updated.get(1).getName());
+
+        // every pom is saved within a single batch, and so a single commit
+        Path pomXMLPath1 = module1.getPomXMLPath();
+        Path pomXMLPath2 = module2.getPomXMLPath();
+        InOrder inOrder = inOrder(ioService, pomService);
+        inOrder.verify(ioService).startBatch(new FileSystem[]{fileSystem}, option);
+        inOrder.verify(pomService).save(any(Path.class), eq(parentPom), (Metadata) isNull(), anyString());
+        inOrder.verify(pomService).save(eq(pomXMLPath1), eq(pom1), (Metadata) isNull(), anyString());
+        inOrder.verify(pomService).save(eq(pomXMLPath2), eq(pom2), (Metadata) isNull(), anyString());
+        inOrder.verify(ioService).endBatch();
+        verify(ioService, times(1)).endBatch();
+    }
+
+    @Test
+    public void testNothingIsWrittenWhenAPomCannotBeLoaded() throws Exception {
+        Path pomXMLPath2 = module2.getPomXMLPath();
+        when(pomService.load(pomXMLPath2)).thenThrow(new RuntimeException("Unable to parse pom.xml"));
+
+        try {
+            command.updateVersions(ioService, pomService, optionsFactory, repository, "master",
+                                   Arrays.asList(module1, module2), "2.0", new ArrayList<ProjectInfo>(), new ExecutionResults());
+            fail("Expected the update to fail");
+        } catch (AssetManagementRuntimeException e) {
+            assertTrue(e.getMessage().contains("module2"));
+        }
+
+        verify(ioService, never()).startBatch(any(FileSystem[].class), any(CommentedOption.class));
+        verify(ioService, never()).endBatch();
+        verify(pomService, never()).save(any(Path.class), any(POM.class), any(Metadata.class), anyString());
+    }
+
+    private POM pom(String artifactId) {
+        return new POM(artifactId, "description", new GAV("org.guvnor", artifactId, "1.0"));
+    }
+
+    private Project project(String name, POM pom) {
+        Path pomXMLPath = mock(Path.class);
+        when(pomService.load(pomXMLPath)).thenReturn(pom);
+        Project project = mock(Project.class);
+        when(project.getProjectName()).thenReturn(name);
+        when(project.getPomXMLPath()).thenReturn(pomXMLPath);
+        return project;
+    }
+}
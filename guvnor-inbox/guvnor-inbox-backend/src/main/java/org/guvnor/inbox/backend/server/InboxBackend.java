@@ -29,6 +29,18 @@ public interface InboxBackend {
 
     List<InboxEntry> loadIncoming( String userName );
 
+    /**
+     * Loads a user's recently edited items without filtering them by the current user's permissions, for delivering
+     * messages on behalf of the system.
+     */
+    List<InboxEntry> loadUnsecuredRecentEdited( String userName );
+
+    /**
+     * Loads a user's incoming items without filtering them by the current user's permissions, for delivering
+     * messages on behalf of the system.
+     */
+    List<InboxEntry> loadUnsecuredIncoming( String userName );
+
     List<InboxEntry> readEntries( String userName,
                                   String boxName );
 
@@ -36,4 +48,9 @@ public interface InboxBackend {
                         String note,
                         String userFrom,
                         String userName );
+
+    /**
+     * Removes every item from a user's incoming inbox.
+     */
+    void clearIncoming( String userName );
 }
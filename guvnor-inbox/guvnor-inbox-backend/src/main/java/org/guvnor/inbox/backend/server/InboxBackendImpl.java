@@ -16,7 +16,13 @@
 package org.guvnor.inbox.backend.server;
 
 import com.thoughtworks.xstream.XStream;
+import org.guvnor.common.services.backend.cache.BoundedLRUMap;
+import org.guvnor.common.services.backend.util.Digests;
+import org.guvnor.common.services.backend.util.SystemProperties;
 import org.guvnor.inbox.backend.server.security.InboxEntrySecurity;
+import org.guvnor.structure.backend.repositories.git.GitCommits;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.uberfire.backend.server.UserServicesBackendImpl;
 import org.uberfire.io.IOService;
 import org.uberfire.java.nio.file.FileSystem;
@@ -24,47 +30,117 @@ import org.uberfire.java.nio.file.Path;
 import org.uberfire.workbench.events.ResourceOpenedEvent;
 import org.uberfire.workbench.events.ResourceUpdatedEvent;
 
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Observes;
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.uberfire.commons.validation.PortablePreconditions.checkNotNull;
 
+/**
+ * Inboxes are held in memory, in a bounded LRU of boxes, and written behind to the system repository. Changes made
+ * within the flush interval are written together in a single batch, rather than one commit per event. The inbox
+ * files remain the compacted snapshot of each box and are only read when a box is not in memory.
+ * <p/>
+ * Other nodes write the same files, so before a box is written its file is read again and, if another node has
+ * changed it, the box is rebuilt from the file with this node's unwritten changes replayed on top. A box is read
+ * again in the same way whenever it is used after the system repository's HEAD has moved since it was loaded.
+ */
 @ApplicationScoped
 public class InboxBackendImpl implements InboxBackend {
 
     static final int MAX_RECENT_EDITED = 200;
 
+    public static final String CACHE_SIZE_PROPERTY_NAME = "org.guvnor.inbox.cache.size";
+    public static final String FLUSH_INTERVAL_PROPERTY_NAME = "org.guvnor.inbox.flush.interval";
+
+    private static final int DEFAULT_CACHE_SIZE = 1000;
+    private static final long DEFAULT_FLUSH_INTERVAL = 2000;
+
     private static final String RECENT_EDITED_ID = "recentEdited";
     private static final String RECENT_VIEWED_ID = "recentViewed";
     private static final String INCOMING_ID = "incoming";
     private static final String INBOX = "inbox";
 
+    private static final Logger logger = LoggerFactory.getLogger( InboxBackendImpl.class );
+
+    //XStream is thread-safe once configured
+    private static final XStream xStream = createXStream();
+
     private IOService ioService;
     private FileSystem bootstrapFS;
     private UserServicesBackendImpl userServicesBackend;
     private MailboxService mailboxService;
     private InboxEntrySecurity inboxEntrySecurity;
+    private MailboxProcessOutgoingExecutorManagerFactory executorManagerFactory;
+
+    //Boxes keyed by user and box name, guarded by itself. Boxes with unwritten changes are never evicted.
+    private final Map<String, Box> boxes = new BoundedLRUMap<String, Box>( getMaxBoxes() ) {
+        @Override
+        protected boolean canEvict( final Map.Entry<String, Box> eldest ) {
+            return !eldest.getValue().dirty;
+        }
+    };
+
+    private long flushInterval = getFlushInterval();
+    private boolean flushScheduled;
 
     //Proxyable
     public InboxBackendImpl() {
     }
 
+    public InboxBackendImpl( final IOService ioService,
+                             final FileSystem bootstrapFS,
+                             final UserServicesBackendImpl userServicesBackend,
+                             final MailboxService mailboxService,
+                             final InboxEntrySecurity inboxEntrySecurity ) {
+        this( ioService,
+              bootstrapFS,
+              userServicesBackend,
+              mailboxService,
+              inboxEntrySecurity,
+              null );
+    }
+
     @Inject
     public InboxBackendImpl( @Named( "configIO" ) final IOService ioService,
                              @Named( "systemFS" ) final FileSystem bootstrapFS,
                              final UserServicesBackendImpl userServicesBackend,
                              final MailboxService mailboxService,
-                             final InboxEntrySecurity inboxEntrySecurity ) {
+                             final InboxEntrySecurity inboxEntrySecurity,
+                             final MailboxProcessOutgoingExecutorManagerFactory executorManagerFactory ) {
         this.ioService = ioService;
         this.bootstrapFS = bootstrapFS;
         this.userServicesBackend = userServicesBackend;
         this.mailboxService = mailboxService;
         this.inboxEntrySecurity = inboxEntrySecurity;
+        this.executorManagerFactory = executorManagerFactory;
+    }
+
+    static int getMaxBoxes() {
+        return SystemProperties.getInt( CACHE_SIZE_PROPERTY_NAME,
+                                        DEFAULT_CACHE_SIZE,
+                                        1 );
+    }
+
+    static long getFlushInterval() {
+        return SystemProperties.getLong( FLUSH_INTERVAL_PROPERTY_NAME,
+                                         DEFAULT_FLUSH_INTERVAL,
+                                         0 );
+    }
+
+    /**
+     * @param flushInterval Milliseconds changes are held before being written, or zero to write them immediately.
+     * Changes are always written immediately when there is no executor to schedule the write.
+     */
+    void setFlushInterval( final long flushInterval ) {
+        this.flushInterval = flushInterval;
     }
 
     @Override
@@ -77,27 +153,95 @@ public class InboxBackendImpl implements InboxBackend {
         return readEntries( userName, INCOMING_ID );
     }
 
+    @Override
+    public List<InboxEntry> loadUnsecuredRecentEdited( final String userName ) {
+        return readUnsecuredEntries( userName,
+                                     RECENT_EDITED_ID );
+    }
+
+    @Override
+    public List<InboxEntry> loadUnsecuredIncoming( final String userName ) {
+        return readUnsecuredEntries( userName,
+                                     INCOMING_ID );
+    }
+
     @Override
     public List<InboxEntry> readEntries( String userName,
                                          String boxName ) {
-        final Path path = userServicesBackend.buildPath( userName, INBOX, boxName );
+        final List<InboxEntry> inboxEntries = readUnsecuredEntries( userName,
+                                                                    boxName );
+        if ( inboxEntries.isEmpty() ) {
+            return inboxEntries;
+        }
+        return inboxEntrySecurity.secure( inboxEntries );
+    }
 
-        if ( ioService.exists( path ) ) {
-            final String xml = ioService.readAllString( path );
-            if ( !( xml == null || xml.equals( "" ) ) ) {
-                final List<InboxEntry> inboxEntries = getInboxEntries( xml );
+    private List<InboxEntry> readUnsecuredEntries( final String userName,
+                                                   final String boxName ) {
+        synchronized ( boxes ) {
+            return getBox( userName,
+                           boxName ).getEntries();
+        }
+    }
 
-                return inboxEntrySecurity.secure( inboxEntries );
-            } else {
-                return new ArrayList<InboxEntry>();
+    //Called whilst holding the boxes lock
+    private Box getBox( final String userName,
+                        final String boxName ) {
+        final String key = userName + "/" + boxName;
+        final String headCommitId = getHeadCommitId( userServicesBackend.buildPath( userName, INBOX, boxName ) );
+        Box box = boxes.get( key );
+        if ( box == null ) {
+            box = new Box( userName,
+                           boxName );
+            box.load( readXml( userName,
+                               boxName ) );
+            boxes.put( key,
+                       box );
+        } else if ( headCommitId == null || !headCommitId.equals( box.loadedHeadCommitId ) ) {
+            //Other nodes write the file without this node being notified
+            final String current = readXml( userName,
+                                            boxName );
+            if ( !box.isLoadedFrom( current ) ) {
+                box.rebase( current );
             }
         }
+        box.loadedHeadCommitId = headCommitId;
+        return box;
+    }
 
-        return new ArrayList<InboxEntry>();
+    //Returns the id of the system repository's HEAD commit, or null if it cannot be determined
+    protected String getHeadCommitId( final Path path ) {
+        if ( path == null ) {
+            return null;
+        }
+        return GitCommits.getHeadCommitId( path );
+    }
+
+    //Returns the content of a box's file, or null if there is none
+    private String readXml( final String userName,
+                            final String boxName ) {
+        final Path path = userServicesBackend.buildPath( userName, INBOX, boxName );
+
+        if ( ioService.exists( path ) ) {
+            return ioService.readAllString( path );
+        }
+
+        return null;
+    }
+
+    private List<InboxEntry> parseEntries( final String xml ) {
+        if ( xml == null || xml.equals( "" ) ) {
+            return new ArrayList<InboxEntry>();
+        }
+        return getInboxEntries( xml );
     }
 
     List<InboxEntry> getInboxEntries( String xml ) {
-        return ( List<InboxEntry> ) getXStream().fromXML( xml );
+        return ( List<InboxEntry> ) xStream.fromXML( xml );
+    }
+
+    String toXml( final List<InboxEntry> entries ) {
+        return xStream.toXML( entries );
     }
 
     @Override
@@ -112,28 +256,33 @@ public class InboxBackendImpl implements InboxBackend {
                     userName );
     }
 
+    @Override
+    public void clearIncoming( final String userName ) {
+        synchronized ( boxes ) {
+            final Box incoming = getBox( userName,
+                                         INCOMING_ID );
+            boolean removed = false;
+            for ( InboxEntry entry : incoming.getEntries() ) {
+                removed |= incoming.remove( entry.getItemPath() );
+            }
+            if ( removed ) {
+                changed( incoming );
+            }
+        }
+        flushIfImmediate();
+    }
+
     public void recordOpeningEvent( @Observes final ResourceOpenedEvent event ) {
         checkNotNull( "event", event );
         final org.uberfire.backend.vfs.Path resourcePath = event.getPath();
-        try {
-            ioService.startBatch( bootstrapFS.getRootDirectories().iterator().next().getFileSystem() );
-            recordOpeningEvent( resourcePath.toURI(), resourcePath.getFileName().toString(),
-                                event.getSessionInfo().getIdentity().getIdentifier() );
-        } finally {
-            ioService.endBatch();
-        }
+        recordOpeningEvent( resourcePath.toURI(), resourcePath.getFileName().toString(),
+                            event.getSessionInfo().getIdentity().getIdentifier() );
     }
 
     public void recordUserEditEvent( @Observes final ResourceUpdatedEvent event ) {
         checkNotNull( "event", event );
-
-        try {
-            ioService.startBatch( bootstrapFS.getRootDirectories().iterator().next().getFileSystem() );
-            recordUserEditEvent( event.getPath().toURI(), event.getPath().getFileName(),
-                                 event.getSessionInfo().getIdentity().getIdentifier() );
-        } finally {
-            ioService.endBatch();
-        }
+        recordUserEditEvent( event.getPath().toURI(), event.getPath().getFileName(),
+                             event.getSessionInfo().getIdentity().getIdentifier() );
     }
 
     /**
@@ -144,9 +293,14 @@ public class InboxBackendImpl implements InboxBackend {
                                      final String itemName,
                                      final String userName ) {
         addToRecentOpened( itemPath, itemName, userName );
-        List<InboxEntry> unreadIncoming = removeAnyExisting( itemPath,
-                                                             loadIncoming( userName ) );
-        writeEntries( userName, INCOMING_ID, unreadIncoming );
+        synchronized ( boxes ) {
+            final Box unreadIncoming = getBox( userName,
+                                               INCOMING_ID );
+            if ( unreadIncoming.remove( itemPath ) ) {
+                changed( unreadIncoming );
+            }
+        }
+        flushIfImmediate();
     }
 
     /**
@@ -157,10 +311,10 @@ public class InboxBackendImpl implements InboxBackend {
                                       final String itemName,
                                       final String userName ) {
         addToRecentEdited( itemPath, itemName, userName );
+        mailboxService.recordEdit( itemPath, userName );
 
         //deliver messages to users inboxes (ie., the edited item is the itme that the current logged in user has edited in the past, or commented on)
-        addToIncoming( itemPath, itemName, userName, MailboxService.MAIL_MAN );
-        mailboxService.processOutgoing();
+        mailboxService.send( new InboxEntry( itemPath, itemName, userName ) );
     }
 
     /**
@@ -194,51 +348,244 @@ public class InboxBackendImpl implements InboxBackend {
                              String userName ) {
         assert boxName.equals( RECENT_EDITED_ID ) || boxName.equals( RECENT_VIEWED_ID ) || boxName
                 .equals( INCOMING_ID );
-        List<InboxEntry> entries = removeAnyExisting( itemPath,
-                                                      readEntries( userName, boxName ) );
-
-        if ( entries.size() >= MAX_RECENT_EDITED ) {
-            entries.remove( 0 );
-            entries.add( new InboxEntry( itemPath,
-                                         note,
-                                         userFrom ) );
-        } else {
-            entries.add( new InboxEntry( itemPath,
-                                         note,
-                                         userFrom ) );
-        }
-
-        writeEntries( userName, boxName, entries );
-    }
-
-    private List<InboxEntry> removeAnyExisting( final String itemPath,
-                                                final List<InboxEntry> inboxEntries ) {
-        Iterator<InboxEntry> it = inboxEntries.iterator();
-        while ( it.hasNext() ) {
-            InboxEntry e = it.next();
-            if ( e.getItemPath().equals( itemPath ) ) {
-                it.remove();
-                return inboxEntries;
-            }
+        synchronized ( boxes ) {
+            final Box box = getBox( userName,
+                                    boxName );
+            box.add( new InboxEntry( itemPath,
+                                     note,
+                                     userFrom ) );
+            changed( box );
         }
-        return inboxEntries;
+        flushIfImmediate();
     }
 
-    private void writeEntries( final String userName,
-                               final String boxName,
-                               final List<InboxEntry> entries ) {
-        final Path path = userServicesBackend.buildPath( userName, INBOX, boxName );
+    //Called whilst holding the boxes lock
+    private void changed( final Box box ) {
+        box.dirty = true;
+        if ( !isFlushDelayed() || flushScheduled ) {
+            return;
+        }
+        flushScheduled = true;
+        try {
+            executorManagerFactory.getExecutorManager().execute( new AsyncMailboxProcessOutgoing() {
+                @Override
+                public void execute( final InboxBackend inboxBackend ) {
+                    try {
+                        Thread.sleep( flushInterval );
+                    } catch ( InterruptedException e ) {
+                        Thread.currentThread().interrupt();
+                    }
+                    flush();
+                }
+
+                @Override
+                public String getDescription() {
+                    return "Inbox flush";
+                }
+            } );
+        } catch ( RuntimeException e ) {
+            //Changes are then written by the event that made them
+            logger.error( "Unable to schedule inbox flush: " + e.getMessage(),
+                          e );
+            flushScheduled = false;
+        }
+    }
 
-        String entry = getXStream().toXML( entries );
+    private boolean isFlushDelayed() {
+        return flushInterval > 0 && executorManagerFactory != null;
+    }
 
-        ioService.write( path, entry );
+    private void flushIfImmediate() {
+        final boolean scheduled;
+        synchronized ( boxes ) {
+            scheduled = flushScheduled;
+        }
+        if ( !scheduled ) {
+            flush();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
     }
 
-    private XStream getXStream() {
+    /**
+     * Writes all boxes with unwritten changes to the system repository in a single batch.
+     */
+    public void flush() {
+        final List<Box> dirty = new ArrayList<Box>();
+        synchronized ( boxes ) {
+            flushScheduled = false;
+            for ( Box box : boxes.values() ) {
+                if ( box.dirty ) {
+                    dirty.add( box );
+                }
+            }
+        }
+        if ( dirty.isEmpty() ) {
+            return;
+        }
+
+        try {
+            ioService.startBatch( bootstrapFS.getRootDirectories().iterator().next().getFileSystem() );
+            for ( Box box : dirty ) {
+                List<Change> written = null;
+                try {
+                    final String current = readXml( box.userName,
+                                                    box.boxName );
+                    final String xml;
+                    synchronized ( boxes ) {
+                        if ( !box.isLoadedFrom( current ) ) {
+                            box.rebase( current );
+                        }
+                        written = box.takeChanges();
+                        xml = toXml( box.getEntries() );
+                        box.loaded( xml );
+                    }
+                    ioService.write( userServicesBackend.buildPath( box.userName, INBOX, box.boxName ),
+                                     xml );
+                } catch ( Exception e ) {
+                    logger.error( "Unable to write inbox '" + box.boxName + "' of user '" + box.userName + "'.",
+                                  e );
+                    synchronized ( boxes ) {
+                        if ( written != null ) {
+                            box.restoreChanges( written );
+                        }
+                        changed( box );
+                    }
+                }
+            }
+        } finally {
+            ioService.endBatch();
+        }
+    }
+
+    private static XStream createXStream() {
         XStream xs = new XStream();
         xs.alias( "inbox-entries", List.class );
         xs.alias( "entry", InboxEntry.class );
         return xs;
     }
 
+    private static String digest( final String xml ) {
+        if ( xml == null ) {
+            return null;
+        }
+        return Digests.sha1( xml );
+    }
+
+    //Boxes are guarded by the boxes lock
+    private class Box {
+
+        private final String userName;
+        private final String boxName;
+        //Entries keyed by item path, oldest first
+        private LinkedHashMap<String, InboxEntry> entries = new LinkedHashMap<String, InboxEntry>();
+        //Changes not yet written, in the order they were made
+        private List<Change> changes = new ArrayList<Change>();
+        //Digest of the file content the entries were last loaded from or written as
+        private String loadedDigest;
+        //HEAD of the system repository when the file was last checked for changes
+        private String loadedHeadCommitId;
+        private boolean dirty;
+
+        private Box( final String userName,
+                     final String boxName ) {
+            this.userName = userName;
+            this.boxName = boxName;
+        }
+
+        private void load( final String xml ) {
+            entries = new LinkedHashMap<String, InboxEntry>();
+            for ( InboxEntry entry : parseEntries( xml ) ) {
+                put( entry );
+            }
+            loaded( xml );
+        }
+
+        private void loaded( final String xml ) {
+            loadedDigest = digest( xml );
+        }
+
+        private boolean isLoadedFrom( final String xml ) {
+            final String currentDigest = digest( xml );
+            return currentDigest == null ? loadedDigest == null : currentDigest.equals( loadedDigest );
+        }
+
+        //Rebuilds the entries from a file changed by another node and replays the unwritten changes
+        private void rebase( final String xml ) {
+            load( xml );
+            for ( Change change : changes ) {
+                change.apply( this );
+            }
+        }
+
+        private void add( final InboxEntry entry ) {
+            put( entry );
+            changes.add( new Change( entry.getItemPath(),
+                                     entry ) );
+        }
+
+        private boolean remove( final String itemPath ) {
+            if ( entries.remove( itemPath ) == null ) {
+                return false;
+            }
+            changes.add( new Change( itemPath,
+                                     null ) );
+            return true;
+        }
+
+        //Re-adding an item moves it to the end
+        private void put( final InboxEntry entry ) {
+            entries.remove( entry.getItemPath() );
+            entries.put( entry.getItemPath(),
+                         entry );
+            if ( entries.size() > MAX_RECENT_EDITED ) {
+                final Iterator<String> itr = entries.keySet().iterator();
+                itr.next();
+                itr.remove();
+            }
+        }
+
+        private List<Change> takeChanges() {
+            final List<Change> taken = changes;
+            changes = new ArrayList<Change>();
+            dirty = false;
+            return taken;
+        }
+
+        //Changes that failed to be written precede any made since
+        private void restoreChanges( final List<Change> failed ) {
+            failed.addAll( changes );
+            changes = failed;
+            loadedDigest = null;
+        }
+
+        private List<InboxEntry> getEntries() {
+            return new ArrayList<InboxEntry>( entries.values() );
+        }
+    }
+
+    private static class Change {
+
+        private final String itemPath;
+        //Null if the item was removed
+        private final InboxEntry entry;
+
+        private Change( final String itemPath,
+                        final InboxEntry entry ) {
+            this.itemPath = itemPath;
+            this.entry = entry;
+        }
+
+        private void apply( final Box box ) {
+            if ( entry == null ) {
+                box.entries.remove( itemPath );
+            } else {
+                box.put( entry );
+            }
+        }
+    }
+
 }
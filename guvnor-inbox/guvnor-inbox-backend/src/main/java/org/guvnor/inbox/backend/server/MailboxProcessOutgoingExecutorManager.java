@@ -21,6 +21,8 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.ejb.AccessTimeout;
 import javax.ejb.Asynchronous;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
 import javax.ejb.TransactionAttribute;
@@ -35,6 +37,8 @@ import static javax.ejb.TransactionAttributeType.*;
 @Startup
 @TransactionAttribute(NOT_SUPPORTED)
 @AccessTimeout(value = 1, unit = TimeUnit.MINUTES)
+//A pending inbox flush waits out its interval and must not hold up mailbox delivery
+@Lock(LockType.READ)
 public class MailboxProcessOutgoingExecutorManager {
 
     @Inject
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.inbox.backend.server;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.naming.InitialContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@ApplicationScoped
+public class MailboxProcessOutgoingExecutorManagerFactoryImpl implements MailboxProcessOutgoingExecutorManagerFactory {
+
+    private static final Logger LOG = LoggerFactory.getLogger( MailboxProcessOutgoingExecutorManagerFactoryImpl.class );
+
+    private final boolean USE_EXECUTOR_SAFE_MODE = Boolean.parseBoolean( System.getProperty( "org.uberfire.async.executor.safemode", "false" ) );
+
+    @Inject
+    private InboxBackend inboxBackend;
+
+    private MailboxProcessOutgoingExecutorManager executorManager = null;
+
+    @Override
+    public synchronized MailboxProcessOutgoingExecutorManager getExecutorManager() {
+        if ( executorManager == null ) {
+            MailboxProcessOutgoingExecutorManager _executorManager = null;
+
+            //Unless overridden, delegate instantiation of the ExecutorService to the container
+            if ( !USE_EXECUTOR_SAFE_MODE ) {
+                try {
+                    _executorManager = InitialContext.doLookup( "java:module/MailboxProcessOutgoingExecutorManager" );
+                } catch ( final Exception e ) {
+                    LOG.warn( "Unable to instantiate EJB Asynchronous Bean. Falling back to Executors' CachedThreadPool.",
+                              e );
+                }
+            } else {
+                LOG.info( "Use of Executors' CachedThreadPool has been requested; overriding container provisioning." );
+            }
+
+            if ( _executorManager == null ) {
+                executorManager = new MailboxProcessOutgoingExecutorManager();
+                executorManager.setInboxBackend( inboxBackend );
+            } else {
+                executorManager = _executorManager;
+            }
+        }
+
+        return executorManager;
+    }
+
+}
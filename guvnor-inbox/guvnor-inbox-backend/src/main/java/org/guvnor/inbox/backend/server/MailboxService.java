@@ -16,14 +16,18 @@
 package org.guvnor.inbox.backend.server;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.guvnor.structure.config.SystemRepositoryChangedEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.uberfire.io.IOService;
@@ -33,6 +37,11 @@ import org.uberfire.java.nio.file.Path;
 /**
  * This service the "delivery" of messages to users inboxes for events.
  * Ideally only one instance of this running at a time (at least on a node) to avoid doubling up.
+ * <p/>
+ * The users that have edited an item are found through a reverse index, from item path to users, rather than by
+ * reading every user's recently edited inbox. The index is built on first use and maintained as users edit items;
+ * it may name users that no longer have the item in their recently edited inbox, so candidates are checked before a
+ * message is delivered to them. Messages are queued and delivered asynchronously, in batches.
  */
 @ApplicationScoped
 public class MailboxService {
@@ -43,18 +52,43 @@ public class MailboxService {
     private InboxBackend inboxBackend;
     private IOService ioService;
     private FileSystem bootstrapFS;
+    private MailboxProcessOutgoingExecutorManagerFactory executorManagerFactory;
+
+    //Users that have edited each item, keyed by item path. Guarded by the pending lock and null until built.
+    private Map<String, Set<String>> editorsByItem;
+    //Edits recorded whilst the index is being built, guarded by the pending lock and null otherwise
+    private List<String[]> editsWhilstBuilding;
+    //Incremented whenever the index is discarded, guarded by the pending lock
+    private long indexGeneration;
+    //Held whilst the index is built, without holding the pending lock, so it is only built once
+    private final Object indexBuildLock = new Object();
+
+    //Messages waiting to be delivered, guarded by itself
+    private final List<InboxEntry> pending = new ArrayList<InboxEntry>();
+    private boolean deliveryScheduled;
 
     //Proxyable
     public MailboxService(){
     }
 
+    public MailboxService( final InboxBackend inboxBackend,
+                           final IOService ioService,
+                           final FileSystem bootstrapFS ) {
+        this( inboxBackend,
+              ioService,
+              bootstrapFS,
+              null );
+    }
+
     @Inject
     public MailboxService( final InboxBackend inboxBackend,
                            @Named("configIO") final IOService ioService,
-                           @Named("systemFS") final FileSystem bootstrapFS ) {
+                           @Named("systemFS") final FileSystem bootstrapFS,
+                           final MailboxProcessOutgoingExecutorManagerFactory executorManagerFactory ) {
         this.inboxBackend = inboxBackend;
         this.ioService = ioService;
         this.bootstrapFS = bootstrapFS;
+        this.executorManagerFactory = executorManagerFactory;
     }
 
     @PostConstruct
@@ -69,36 +103,208 @@ public class MailboxService {
     }
 
     /**
-     * Call this to note that there has been a change - will then publish to any interested parties.
-     * @param item
-     */
-    /**
-     * Process any waiting messages
+     * Process any messages left waiting by earlier versions, which queued every message in the mailman's inbox. They
+     * are delivered once and the mailman's inbox emptied, as messages are now delivered as they are sent.
      */
     void processOutgoing() {
-        final List<InboxEntry> es = inboxBackend.loadIncoming( MAIL_MAN );
+        final List<InboxEntry> es = inboxBackend.loadUnsecuredIncoming( MAIL_MAN );
         log.debug( "Outgoing messages size " + es.size() );
-        //wipe out inbox for mailman here...
+        if ( es.isEmpty() ) {
+            return;
+        }
+        deliver( es );
+        inboxBackend.clearIncoming( MAIL_MAN );
+    }
 
-        String[] userList = listUsers();
-        log.debug( "userServices:" + userList.length );
-        for ( String toUser : userList ) {
-            log.debug( "userServices:" + toUser );
-            log.debug( "Processing any inbound messages for " + toUser );
-            if ( toUser.equals( MAIL_MAN ) ) {
+    /**
+     * Notes that a user has edited an item, so that they are sent messages about subsequent edits by others.
+     * @param itemPath The edited item
+     * @param userName The user
+     */
+    public void recordEdit( final String itemPath,
+                            final String userName ) {
+        synchronized ( pending ) {
+            if ( editorsByItem != null ) {
+                addEditor( editorsByItem,
+                           itemPath,
+                           userName );
+            } else if ( editsWhilstBuilding != null ) {
+                editsWhilstBuilding.add( new String[]{ itemPath, userName } );
+            }
+        }
+    }
+
+    /**
+     * Discards the index of editors, as other nodes may have changed the users' recently edited items. It is rebuilt
+     * when next needed.
+     */
+    public void onSystemRepositoryChanged( @Observes final SystemRepositoryChangedEvent event ) {
+        synchronized ( pending ) {
+            editorsByItem = null;
+            indexGeneration++;
+        }
+    }
+
+    /**
+     * Queues a message for delivery to the users that have edited the message's item.
+     * @param message The message
+     */
+    public void send( final InboxEntry message ) {
+        synchronized ( pending ) {
+            pending.add( message );
+            if ( deliveryScheduled ) {
                 return;
             }
+            deliveryScheduled = executorManagerFactory != null;
+        }
+        if ( executorManagerFactory == null ) {
+            deliverPending();
+            return;
+        }
+
+        try {
+            executorManagerFactory.getExecutorManager().execute( new AsyncMailboxProcessOutgoing() {
+                @Override
+                public void execute( final InboxBackend inboxBackend ) {
+                    deliverPending();
+                }
+
+                @Override
+                public String getDescription() {
+                    return "Mailbox delivery";
+                }
+            } );
+        } catch ( RuntimeException e ) {
+            log.error( "Unable to schedule mailbox delivery: " + e.getMessage(),
+                       e );
+            deliverPending();
+        }
+    }
+
+    private void deliverPending() {
+        final List<InboxEntry> messages;
+        synchronized ( pending ) {
+            deliveryScheduled = false;
+            messages = new ArrayList<InboxEntry>( pending );
+            pending.clear();
+        }
+        if ( !messages.isEmpty() ) {
+            deliver( messages );
+        }
+    }
+
+    private void deliver( final List<InboxEntry> messages ) {
+        //Candidate recipients of each message, taken from the index
+        final Map<String, List<InboxEntry>> messagesByUser = new HashMap<String, List<InboxEntry>>();
+        final Map<String, Set<String>> index = getEditorsByItem();
+        synchronized ( pending ) {
+            for ( InboxEntry e : messages ) {
+                final Set<String> editors = index.get( e.getItemPath() );
+                if ( editors == null ) {
+                    continue;
+                }
+                for ( String toUser : editors ) {
+                    //the user who edited the item wont receive a message in inbox.
+                    if ( e.getFrom().equals( toUser ) ) {
+                        continue;
+                    }
+                    List<InboxEntry> userMessages = messagesByUser.get( toUser );
+                    if ( userMessages == null ) {
+                        userMessages = new ArrayList<InboxEntry>();
+                        messagesByUser.put( toUser,
+                                            userMessages );
+                    }
+                    userMessages.add( e );
+                }
+            }
+        }
 
-            final Set<String> recentEdited = makeSetOf( inboxBackend.loadRecentEdited( toUser ) );
-            for ( InboxEntry e : es ) {
-                //the user who edited the item wont receive a message in inbox.
-                if ( !e.getFrom().equals( toUser ) && recentEdited.contains( e.getItemPath() ) ) {
+        for ( Map.Entry<String, List<InboxEntry>> entry : messagesByUser.entrySet() ) {
+            final String toUser = entry.getKey();
+            log.debug( "Processing any inbound messages for " + toUser );
+            //Delivery happens on behalf of the system, so the recipient's items are not filtered by the current user
+            final Set<String> recentEdited = makeSetOf( inboxBackend.loadUnsecuredRecentEdited( toUser ) );
+            for ( InboxEntry e : entry.getValue() ) {
+                if ( recentEdited.contains( e.getItemPath() ) ) {
                     inboxBackend.addToIncoming( e.getItemPath(), e.getNote(), e.getFrom(), toUser );
+                } else {
+                    removeEditor( index,
+                                  e.getItemPath(),
+                                  toUser );
                 }
             }
         }
     }
 
+    //Returns the index, building it if need be. The returned Map is guarded by the pending lock.
+    private Map<String, Set<String>> getEditorsByItem() {
+        synchronized ( indexBuildLock ) {
+            final long generation;
+            synchronized ( pending ) {
+                if ( editorsByItem != null ) {
+                    return editorsByItem;
+                }
+                generation = indexGeneration;
+                editsWhilstBuilding = new ArrayList<String[]>();
+            }
+
+            //Reading every user's recently edited items does not block edits being recorded or messages being queued
+            final Map<String, Set<String>> index = new HashMap<String, Set<String>>();
+            try {
+                final String[] userList = listUsers();
+                log.debug( "userServices:" + userList.length );
+                for ( String user : userList ) {
+                    if ( user.equals( MAIL_MAN ) ) {
+                        continue;
+                    }
+                    for ( InboxEntry e : inboxBackend.loadUnsecuredRecentEdited( user ) ) {
+                        addEditor( index,
+                                   e.getItemPath(),
+                                   user );
+                    }
+                }
+            } finally {
+                synchronized ( pending ) {
+                    for ( String[] edit : editsWhilstBuilding ) {
+                        addEditor( index,
+                                   edit[ 0 ],
+                                   edit[ 1 ] );
+                    }
+                    editsWhilstBuilding = null;
+                    //An index discarded whilst being built is used for this delivery only
+                    if ( generation == indexGeneration ) {
+                        editorsByItem = index;
+                    }
+                }
+            }
+            return index;
+        }
+    }
+
+    //Called whilst holding the pending lock, or before the index is published
+    private void addEditor( final Map<String, Set<String>> index,
+                            final String itemPath,
+                            final String userName ) {
+        Set<String> editors = index.get( itemPath );
+        if ( editors == null ) {
+            editors = new HashSet<String>();
+            index.put( itemPath,
+                       editors );
+        }
+        editors.add( userName );
+    }
+
+    private void removeEditor( final Map<String, Set<String>> index,
+                               final String itemPath,
+                               final String userName ) {
+        synchronized ( pending ) {
+            final Set<String> editors = index.get( itemPath );
+            if ( editors != null && editors.remove( userName ) && editors.isEmpty() ) {
+                index.remove( itemPath );
+            }
+        }
+    }
+
     private Set<String> makeSetOf( List<InboxEntry> inboxEntries ) {
         final Set<String> entries = new HashSet<String>();
         for ( InboxEntry e : inboxEntries ) {
@@ -15,13 +15,26 @@
  */
 package org.guvnor.inbox.backend.server.security;
 
+import org.guvnor.common.services.backend.cache.BoundedLRUMap;
+import org.guvnor.common.services.backend.util.SystemProperties;
+import org.guvnor.common.services.project.events.DeleteProjectEvent;
+import org.guvnor.common.services.project.events.NewProjectEvent;
+import org.guvnor.common.services.project.events.RenameProjectEvent;
 import org.guvnor.common.services.project.model.Project;
 import org.guvnor.common.services.project.service.ProjectService;
 import org.guvnor.inbox.backend.server.InboxEntry;
 import org.guvnor.structure.backend.repositories.ConfiguredRepositories;
+import org.guvnor.structure.config.SystemRepositoryChangedEvent;
+import org.guvnor.structure.organizationalunit.NewOrganizationalUnitEvent;
 import org.guvnor.structure.organizationalunit.OrganizationalUnit;
 import org.guvnor.structure.organizationalunit.OrganizationalUnitService;
+import org.guvnor.structure.organizationalunit.RemoveOrganizationalUnitEvent;
+import org.guvnor.structure.organizationalunit.RepoAddedToOrganizationalUnitEvent;
+import org.guvnor.structure.organizationalunit.RepoRemovedFromOrganizationalUnitEvent;
+import org.guvnor.structure.organizationalunit.UpdatedOrganizationalUnitEvent;
+import org.guvnor.structure.repositories.NewRepositoryEvent;
 import org.guvnor.structure.repositories.Repository;
+import org.guvnor.structure.repositories.RepositoryRemovedEvent;
 import org.jboss.errai.security.shared.api.identity.User;
 import org.uberfire.java.nio.file.FileSystem;
 import org.uberfire.java.nio.file.Path;
@@ -29,12 +42,28 @@ import org.uberfire.java.nio.file.Paths;
 import org.uberfire.security.authz.AuthorizationManager;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
 import javax.inject.Inject;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Filters inbox entries down to those whose repository and project the current identity may access.
+ * <p/>
+ * The repositories an identity may access, and its authorization of each project, are held in a snapshot per
+ * identity. The repository and project of each item path are cached too. Both are cleared by organizational unit,
+ * repository, project and system configuration change events and expire after a time to live, as changes to the
+ * security groups of repositories and projects are not signalled by events.
+ */
 @ApplicationScoped
 public class InboxEntrySecurity {
 
+    public static final String SIZE_PROPERTY_NAME = "org.guvnor.inbox.security.cache.size";
+    public static final String TTL_PROPERTY_NAME = "org.guvnor.inbox.security.cache.ttl";
+
+    private static final int DEFAULT_SIZE = 1000;
+    private static final long DEFAULT_TTL = 30000;
+
     private User identity;
 
     private AuthorizationManager authorizationManager;
@@ -45,6 +74,16 @@ public class InboxEntrySecurity {
 
     private ConfiguredRepositories configuredRepositories;
 
+    private final int maxEntries = getMaxEntries();
+
+    private final long ttl = getTtl();
+
+    //Authorization snapshots keyed by identity
+    private final Map<String, Authorizations> authorizations = BoundedLRUMap.newSynchronizedMap( maxEntries );
+
+    //Repository and project of item paths, keyed by item path
+    private final Map<String, Resolution> resolutions = BoundedLRUMap.newSynchronizedMap( maxEntries * 10 );
+
     public InboxEntrySecurity() {
     }
 
@@ -61,36 +100,52 @@ public class InboxEntrySecurity {
         this.configuredRepositories = configuredRepositories;
     }
 
+    static int getMaxEntries() {
+        return SystemProperties.getInt( SIZE_PROPERTY_NAME,
+                                        DEFAULT_SIZE,
+                                        1 );
+    }
+
+    static long getTtl() {
+        return SystemProperties.getLong( TTL_PROPERTY_NAME,
+                                         DEFAULT_TTL,
+                                         0 );
+    }
 
     public List<InboxEntry> secure( List<InboxEntry> inboxEntries ) {
         List<InboxEntry> secureInboxEntries = new ArrayList<InboxEntry>();
-        final Set<Repository> authorizedRepositories = getAuthorizedRepositories();
+        final Authorizations authorizations = getAuthorizations();
         for ( InboxEntry inboxEntry : inboxEntries ) {
-            if ( canAccess( inboxEntry, authorizedRepositories ) ) {
+            if ( canAccess( inboxEntry, authorizations ) ) {
                 secureInboxEntries.add( inboxEntry );
             }
         }
         return secureInboxEntries;
     }
 
-    private boolean canAccess( InboxEntry inboxEntry, Set<Repository> authorizedRepositories ) {
+    private boolean canAccess( InboxEntry inboxEntry, Authorizations authorizations ) {
 
-        final Repository inboxEntryRepository = getInboxEntryRepository( inboxEntry );
+        final Resolution resolution = getResolution( inboxEntry );
 
-        if ( thereIsNoRepositoryAssociated( inboxEntryRepository ) ) {
+        if ( thereIsNoRepositoryAssociated( resolution.repository ) ) {
             return true;
-        } else if ( canAccessRepository( authorizedRepositories, inboxEntryRepository ) ) {
-            return canAccessProject( inboxEntry );
+        } else if ( canAccessRepository( authorizations.repositories, resolution.repository ) ) {
+            return canAccessProject( resolution.project, authorizations );
         }
         return false;
     }
 
-    private boolean canAccessProject( InboxEntry inboxEntry ) {
-        Project project = getInboxEntryProject( inboxEntry );
+    private boolean canAccessProject( Project project, Authorizations authorizations ) {
         if ( thereIsNoProject( project ) ) {
             return true;
         } else {
-            return authorizationManager.authorize( project, identity );
+            Boolean authorized = authorizations.projects.get( project );
+            if ( authorized == null ) {
+                authorized = authorizationManager.authorize( project, identity );
+                authorizations.projects.put( project,
+                                             authorized );
+            }
+            return authorized;
         }
     }
 
@@ -103,6 +158,20 @@ public class InboxEntrySecurity {
         return authorizedRepositories.contains( inboxEntryRepository );
     }
 
+    private Resolution getResolution( final InboxEntry inboxEntry ) {
+        final String key = inboxEntry.getItemPath();
+        Resolution resolution = resolutions.get( key );
+        if ( resolution == null || resolution.isExpired() ) {
+            final Repository repository = getInboxEntryRepository( inboxEntry );
+            //The project is only needed, and so only resolved, for entries within a repository
+            resolution = new Resolution( repository,
+                                         repository == null ? null : getInboxEntryProject( inboxEntry ) );
+            resolutions.put( key,
+                             resolution );
+        }
+        return resolution;
+    }
+
     Project getInboxEntryProject( final InboxEntry inboxEntry ) {
         final Path path = Paths.get( inboxEntry.getItemPath() );
         final org.uberfire.backend.vfs.Path vfsPath = org.uberfire.backend.server.util.Paths.convert( path );
@@ -119,6 +188,17 @@ public class InboxEntrySecurity {
         return configuredRepositories.getRepositoryByRepositoryFileSystem( fileSystem );
     }
 
+    private Authorizations getAuthorizations() {
+        final String key = identity.getIdentifier();
+        Authorizations snapshot = authorizations.get( key );
+        if ( snapshot == null || snapshot.isExpired() ) {
+            snapshot = new Authorizations( getAuthorizedRepositories() );
+            authorizations.put( key,
+                                snapshot );
+        }
+        return snapshot;
+    }
+
     private Set<Repository> getAuthorizedRepositories() {
         final Set<Repository> authorizedRepos = new HashSet<Repository>();
         for ( OrganizationalUnit ou : getAuthorizedOrganizationUnits() ) {
@@ -145,4 +225,90 @@ public class InboxEntrySecurity {
         return authorizedOrganizationalUnits;
     }
 
+    public void invalidateAuthorizations() {
+        authorizations.clear();
+    }
+
+    public void invalidateCache() {
+        authorizations.clear();
+        resolutions.clear();
+    }
+
+    public void onNewOrganizationalUnit( @Observes final NewOrganizationalUnitEvent event ) {
+        invalidateAuthorizations();
+    }
+
+    public void onRemoveOrganizationalUnit( @Observes final RemoveOrganizationalUnitEvent event ) {
+        invalidateAuthorizations();
+    }
+
+    public void onUpdatedOrganizationalUnit( @Observes final UpdatedOrganizationalUnitEvent event ) {
+        invalidateAuthorizations();
+    }
+
+    public void onRepoAddedToOrganizationalUnit( @Observes final RepoAddedToOrganizationalUnitEvent event ) {
+        invalidateAuthorizations();
+    }
+
+    public void onRepoRemovedFromOrganizationalUnit( @Observes final RepoRemovedFromOrganizationalUnitEvent event ) {
+        invalidateAuthorizations();
+    }
+
+    public void onNewRepository( @Observes final NewRepositoryEvent event ) {
+        invalidateCache();
+    }
+
+    public void onRepositoryRemoved( @Observes final RepositoryRemovedEvent event ) {
+        invalidateCache();
+    }
+
+    public void onNewProject( @Observes final NewProjectEvent event ) {
+        invalidateCache();
+    }
+
+    public void onDeleteProject( @Observes final DeleteProjectEvent event ) {
+        invalidateCache();
+    }
+
+    public void onRenameProject( @Observes final RenameProjectEvent event ) {
+        invalidateCache();
+    }
+
+    public void onSystemRepositoryChanged( @Observes final SystemRepositoryChangedEvent event ) {
+        invalidateCache();
+    }
+
+    private class Authorizations {
+
+        private final long created = System.currentTimeMillis();
+        private final Set<Repository> repositories;
+        //Authorization of the projects checked so far
+        private final Map<Project, Boolean> projects = new ConcurrentHashMap<Project, Boolean>();
+
+        private Authorizations( final Set<Repository> repositories ) {
+            this.repositories = repositories;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() - created > ttl;
+        }
+    }
+
+    private class Resolution {
+
+        private final long created = System.currentTimeMillis();
+        private final Repository repository;
+        private final Project project;
+
+        private Resolution( final Repository repository,
+                            final Project project ) {
+            this.repository = repository;
+            this.project = project;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() - created > ttl;
+        }
+    }
+
 }
@@ -34,6 +34,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 public class InboxBackendImplTest {
@@ -86,6 +87,7 @@ public class InboxBackendImplTest {
     @Test
     public void testCheckBatch() {
         inboxBackend = new InboxBackendImpl( ioService, systemFS, userServicesBackend, mailboxService, securitySpy );
+        inboxBackend.setFlushInterval( 0 );
 
         inboxBackend.recordOpeningEvent( new ResourceOpenedEvent( resourcePath, sessionInfo ) );
 
@@ -101,6 +103,131 @@ public class InboxBackendImplTest {
 
     }
 
+    @Test
+    public void testChangesAreWrittenInOneBatch() {
+        final MailboxProcessOutgoingExecutorManager executorManager = mock( MailboxProcessOutgoingExecutorManager.class );
+        final MailboxProcessOutgoingExecutorManagerFactory executorManagerFactory = mock( MailboxProcessOutgoingExecutorManagerFactory.class );
+        when( executorManagerFactory.getExecutorManager() ).thenReturn( executorManager );
+
+        inboxBackend = new InboxBackendImpl( ioService, systemFS, userServicesBackend, mailboxService, securitySpy, executorManagerFactory );
+        inboxBackend.setFlushInterval( 60000 );
+
+        inboxBackend.recordOpeningEvent( new ResourceOpenedEvent( resourcePath, sessionInfo ) );
+        inboxBackend.recordUserEditEvent( new ResourceUpdatedEvent( resourcePath, "message", sessionInfo ) );
+
+        verify( ioService, never() ).startBatch( any( FileSystem.class ) );
+
+        //Reads are served from memory before the changes are written
+        assertEquals( 1,
+                      inboxBackend.readEntries( "user1", "recentViewed" ).size() );
+        assertEquals( 1,
+                      inboxBackend.loadRecentEdited( "user1" ).size() );
+
+        inboxBackend.shutdown();
+
+        verify( ioService, times( 1 ) ).startBatch( mockedFSId );
+        verify( ioService, times( 1 ) ).endBatch();
+        //recentViewed and recentEdited of user1; messages are sent to the MailboxService rather than the mailman's inbox
+        verify( ioService, times( 2 ) ).write( any( org.uberfire.java.nio.file.Path.class ), anyString() );
+        //A single flush is scheduled for all of the changes
+        verify( executorManager, times( 1 ) ).execute( any( AsyncMailboxProcessOutgoing.class ) );
+    }
+
+    @Test
+    public void testChangesByOtherNodesAreKeptWhenWriting() {
+        final org.uberfire.java.nio.file.Path path = mock( org.uberfire.java.nio.file.Path.class );
+        when( userServicesBackend.buildPath( "user1", "inbox", "recentViewed" ) ).thenReturn( path );
+
+        inboxBackend = new InboxBackendImpl( ioService, systemFS, userServicesBackend, mailboxService, securitySpy );
+        inboxBackend.setFlushInterval( 0 );
+        final String otherNodeXml = inboxBackend.toXml( Arrays.asList( new InboxEntry( "other-file.txt", "other-file.txt", "user1" ) ) );
+
+        inboxBackend.readEntries( "user1", "recentViewed" );
+
+        //Another node writes the box after it has been loaded
+        when( ioService.exists( path ) ).thenReturn( true );
+        when( ioService.readAllString( path ) ).thenReturn( otherNodeXml );
+
+        inboxBackend.recordOpeningEvent( new ResourceOpenedEvent( resourcePath, sessionInfo ) );
+
+        final List<InboxEntry> entries = inboxBackend.readEntries( "user1", "recentViewed" );
+        assertEquals( 2,
+                      entries.size() );
+        assertEquals( "other-file.txt",
+                      entries.get( 0 ).getItemPath() );
+        assertEquals( resourcePath.toURI(),
+                      entries.get( 1 ).getItemPath() );
+        verify( ioService ).write( path,
+                                   inboxBackend.toXml( entries ) );
+    }
+
+    @Test
+    public void testBoxesAreReloadedWhenAnotherNodeChangesTheFile() {
+        final org.uberfire.java.nio.file.Path path = mock( org.uberfire.java.nio.file.Path.class );
+        when( userServicesBackend.buildPath( "user1", "inbox", "incoming" ) ).thenReturn( path );
+        final String[] headCommitId = { "commit1" };
+
+        inboxBackend = new InboxBackendImpl( ioService, systemFS, userServicesBackend, mailboxService, securitySpy ) {
+            @Override
+            protected String getHeadCommitId( final org.uberfire.java.nio.file.Path path ) {
+                return headCommitId[ 0 ];
+            }
+        };
+        assertTrue( inboxBackend.loadIncoming( "user1" ).isEmpty() );
+
+        //Another node delivers a message to the box
+        when( ioService.exists( path ) ).thenReturn( true );
+        when( ioService.readAllString( path ) ).thenReturn( inboxBackend.toXml( Arrays.asList( new InboxEntry( "other-file.txt", "other-file.txt", "user2" ) ) ) );
+
+        //Served from memory whilst the system repository's HEAD is unchanged
+        assertTrue( inboxBackend.loadIncoming( "user1" ).isEmpty() );
+        verify( ioService, times( 1 ) ).exists( path );
+
+        headCommitId[ 0 ] = "commit2";
+
+        final List<InboxEntry> entries = inboxBackend.loadIncoming( "user1" );
+        assertEquals( 1,
+                      entries.size() );
+        assertEquals( "other-file.txt",
+                      entries.get( 0 ).getItemPath() );
+
+        //The file is not read again until HEAD moves once more
+        inboxBackend.loadIncoming( "user1" );
+        verify( ioService, times( 1 ) ).readAllString( path );
+    }
+
+    @Test
+    public void testUnwrittenChangesAreKeptWhenAnotherNodeChangesTheFile() {
+        final org.uberfire.java.nio.file.Path path = mock( org.uberfire.java.nio.file.Path.class );
+        when( userServicesBackend.buildPath( "user1", "inbox", "recentViewed" ) ).thenReturn( path );
+        final String[] headCommitId = { "commit1" };
+        final MailboxProcessOutgoingExecutorManagerFactory executorManagerFactory = mock( MailboxProcessOutgoingExecutorManagerFactory.class );
+        when( executorManagerFactory.getExecutorManager() ).thenReturn( mock( MailboxProcessOutgoingExecutorManager.class ) );
+
+        inboxBackend = new InboxBackendImpl( ioService, systemFS, userServicesBackend, mailboxService, securitySpy, executorManagerFactory ) {
+            @Override
+            protected String getHeadCommitId( final org.uberfire.java.nio.file.Path path ) {
+                return headCommitId[ 0 ];
+            }
+        };
+        inboxBackend.setFlushInterval( 60000 );
+
+        //Held in memory, not yet written
+        inboxBackend.recordOpeningEvent( new ResourceOpenedEvent( resourcePath, sessionInfo ) );
+
+        when( ioService.exists( path ) ).thenReturn( true );
+        when( ioService.readAllString( path ) ).thenReturn( inboxBackend.toXml( Arrays.asList( new InboxEntry( "other-file.txt", "other-file.txt", "user1" ) ) ) );
+        headCommitId[ 0 ] = "commit2";
+
+        final List<InboxEntry> entries = inboxBackend.readEntries( "user1", "recentViewed" );
+        assertEquals( 2,
+                      entries.size() );
+        assertEquals( "other-file.txt",
+                      entries.get( 0 ).getItemPath() );
+        assertEquals( resourcePath.toURI(),
+                      entries.get( 1 ).getItemPath() );
+    }
+
     @Test
     public void readShouldSecureItems() {
         org.uberfire.java.nio.file.Path path = mock( org.uberfire.java.nio.file.Path.class );
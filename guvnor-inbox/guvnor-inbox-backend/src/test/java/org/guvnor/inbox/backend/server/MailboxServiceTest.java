@@ -17,8 +17,12 @@
 package org.guvnor.inbox.backend.server;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
+import org.guvnor.structure.config.SystemRepositoryChangedEvent;
 import org.jboss.errai.security.shared.api.identity.User;
 import org.junit.Test;
 import org.uberfire.backend.vfs.Path;
@@ -68,4 +72,93 @@ public class MailboxServiceTest {
 
         verify( ioService, times( 1 ) ).endBatch();
     }
+
+    @Test
+    public void testMessagesLeftInTheMailmansInboxAreDeliveredOnce() {
+        final FileSystem systemFS = mock( FileSystem.class );
+        final org.uberfire.java.nio.file.Path root = mock( org.uberfire.java.nio.file.Path.class );
+        when( root.toUri() ).thenReturn( URI.create( "git://user2-uf-user@system" ) );
+        when( systemFS.getRootDirectories() ).thenReturn( Arrays.asList( root ) );
+
+        final InboxBackend inboxBackend = mock( InboxBackend.class );
+        when( inboxBackend.loadUnsecuredIncoming( MailboxService.MAIL_MAN ) ).thenReturn( Arrays.asList( new InboxEntry( "file1", "note", "user1" ) ) );
+        when( inboxBackend.loadUnsecuredRecentEdited( "user2" ) ).thenReturn( Arrays.asList( new InboxEntry( "file1", "note", "user2" ) ) );
+
+        final MailboxService mailboxService = new MailboxService( inboxBackend, mock( IOService.class ), systemFS );
+        mailboxService.processOutgoing();
+
+        verify( inboxBackend ).addToIncoming( "file1", "note", "user1", "user2" );
+        verify( inboxBackend ).clearIncoming( MailboxService.MAIL_MAN );
+
+        //Nothing is delivered, or written, when the mailman's inbox is empty
+        when( inboxBackend.loadUnsecuredIncoming( MailboxService.MAIL_MAN ) ).thenReturn( Collections.<InboxEntry>emptyList() );
+        mailboxService.processOutgoing();
+        verify( inboxBackend, times( 1 ) ).clearIncoming( MailboxService.MAIL_MAN );
+    }
+
+    @Test
+    public void testMessagesAreOnlyDeliveredToEditors() {
+        final FileSystem systemFS = mock( FileSystem.class );
+        final List<org.uberfire.java.nio.file.Path> roots = new ArrayList<org.uberfire.java.nio.file.Path>();
+        for ( String user : new String[]{ MailboxService.MAIL_MAN, "user1", "user2", "user3" } ) {
+            final org.uberfire.java.nio.file.Path root = mock( org.uberfire.java.nio.file.Path.class );
+            when( root.toUri() ).thenReturn( URI.create( "git://" + user + "-uf-user@system" ) );
+            roots.add( root );
+        }
+        when( systemFS.getRootDirectories() ).thenReturn( roots );
+
+        final InboxBackend inboxBackend = mock( InboxBackend.class );
+        when( inboxBackend.loadUnsecuredRecentEdited( anyString() ) ).thenReturn( Collections.<InboxEntry>emptyList() );
+        when( inboxBackend.loadUnsecuredRecentEdited( "user2" ) ).thenReturn( Arrays.asList( new InboxEntry( "file1", "note", "user2" ) ) );
+
+        final MailboxService mailboxService = new MailboxService( inboxBackend, mock( IOService.class ), systemFS );
+
+        mailboxService.send( new InboxEntry( "file1", "note", "user1" ) );
+        mailboxService.send( new InboxEntry( "file2", "note", "user1" ) );
+
+        //The mailman does not stop delivery to the users that follow it
+        verify( inboxBackend ).addToIncoming( "file1", "note", "user1", "user2" );
+        verify( inboxBackend, times( 1 ) ).addToIncoming( anyString(), anyString(), anyString(), anyString() );
+        //Recently edited inboxes are read once to build the index and then only for recipients
+        verify( inboxBackend, times( 1 ) ).loadUnsecuredRecentEdited( "user3" );
+        verify( inboxBackend, times( 2 ) ).loadUnsecuredRecentEdited( "user2" );
+
+        //Edits are added to the index
+        mailboxService.recordEdit( "file2", "user3" );
+        when( inboxBackend.loadUnsecuredRecentEdited( "user3" ) ).thenReturn( Arrays.asList( new InboxEntry( "file2", "note", "user3" ) ) );
+        mailboxService.send( new InboxEntry( "file2", "note", "user1" ) );
+        verify( inboxBackend ).addToIncoming( "file2", "note", "user1", "user3" );
+
+        //Delivery is on behalf of the system, so never filtered by the current user's permissions
+        verify( inboxBackend, never() ).loadRecentEdited( anyString() );
+    }
+
+    @Test
+    public void testIndexIsRebuiltAfterSystemRepositoryChanges() {
+        final FileSystem systemFS = mock( FileSystem.class );
+        final List<org.uberfire.java.nio.file.Path> roots = new ArrayList<org.uberfire.java.nio.file.Path>();
+        for ( String user : new String[]{ "user1", "user2" } ) {
+            final org.uberfire.java.nio.file.Path root = mock( org.uberfire.java.nio.file.Path.class );
+            when( root.toUri() ).thenReturn( URI.create( "git://" + user + "-uf-user@system" ) );
+            roots.add( root );
+        }
+        when( systemFS.getRootDirectories() ).thenReturn( roots );
+
+        final InboxBackend inboxBackend = mock( InboxBackend.class );
+        when( inboxBackend.loadUnsecuredRecentEdited( anyString() ) ).thenReturn( Collections.<InboxEntry>emptyList() );
+
+        final MailboxService mailboxService = new MailboxService( inboxBackend, mock( IOService.class ), systemFS );
+
+        mailboxService.send( new InboxEntry( "file1", "note", "user1" ) );
+        verify( inboxBackend, never() ).addToIncoming( anyString(), anyString(), anyString(), anyString() );
+
+        //Another node records that user2 edited the item
+        when( inboxBackend.loadUnsecuredRecentEdited( "user2" ) ).thenReturn( Arrays.asList( new InboxEntry( "file1", "note", "user2" ) ) );
+        mailboxService.send( new InboxEntry( "file1", "note", "user1" ) );
+        verify( inboxBackend, never() ).addToIncoming( anyString(), anyString(), anyString(), anyString() );
+
+        mailboxService.onSystemRepositoryChanged( new SystemRepositoryChangedEvent() );
+        mailboxService.send( new InboxEntry( "file1", "note", "user1" ) );
+        verify( inboxBackend ).addToIncoming( "file1", "note", "user1", "user2" );
+    }
 }
@@ -14,12 +14,14 @@
 */
 package org.guvnor.inbox.backend.server.security;
 
+import org.guvnor.common.services.project.events.DeleteProjectEvent;
 import org.guvnor.common.services.project.model.Project;
 import org.guvnor.common.services.project.service.ProjectService;
 import org.guvnor.inbox.backend.server.InboxEntry;
 import org.guvnor.structure.backend.repositories.ConfiguredRepositories;
 import org.guvnor.structure.organizationalunit.OrganizationalUnit;
 import org.guvnor.structure.organizationalunit.OrganizationalUnitService;
+import org.guvnor.structure.organizationalunit.UpdatedOrganizationalUnitEvent;
 import org.guvnor.structure.repositories.Repository;
 import org.jboss.errai.security.shared.api.identity.User;
 import org.junit.Before;
@@ -34,6 +36,8 @@ import java.util.List;
 
 import static junit.framework.TestCase.assertEquals;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith( MockitoJUnitRunner.class )
@@ -189,4 +193,47 @@ public class InboxEntrySecurityTest {
         assertEquals( 3, inbox.secure( entries ).size() );
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAuthorizationsAndResolutionsAreCached() throws Exception {
+        final int[] resolutions = new int[ 1 ];
+        InboxEntrySecurity inbox = new InboxEntrySecurity( user, authorizationManager, organizationalUnitService,
+                                                           projectService,
+                                                           configuredRepositories ) {
+            @Override
+            Repository getInboxEntryRepository( InboxEntry inboxEntry ) {
+                resolutions[ 0 ]++;
+                return repo1;
+            }
+
+            @Override
+            Project getInboxEntryProject( InboxEntry inboxEntry ) {
+                return project1;
+            }
+        };
+        List<InboxEntry> entries = new ArrayList<InboxEntry>();
+        entries.add( new InboxEntry( "path1", "note1", "user1" ) );
+        entries.add( new InboxEntry( "path2", "note2", "user2" ) );
+
+        assertEquals( 2, inbox.secure( entries ).size() );
+        assertEquals( 2, inbox.secure( entries ).size() );
+
+        assertEquals( 2, resolutions[ 0 ] );
+        verify( organizationalUnitService, times( 1 ) ).getOrganizationalUnits();
+        verify( authorizationManager, times( 1 ) ).authorize( project1, user );
+
+        //Organizational unit changes invalidate the authorizations but not the resolutions
+        inbox.onUpdatedOrganizationalUnit( mock( UpdatedOrganizationalUnitEvent.class ) );
+        assertEquals( 2, inbox.secure( entries ).size() );
+
+        assertEquals( 2, resolutions[ 0 ] );
+        verify( organizationalUnitService, times( 2 ) ).getOrganizationalUnits();
+
+        //Project changes invalidate both
+        inbox.onDeleteProject( mock( DeleteProjectEvent.class ) );
+        assertEquals( 2, inbox.secure( entries ).size() );
+
+        assertEquals( 4, resolutions[ 0 ] );
+        verify( organizationalUnitService, times( 3 ) ).getOrganizationalUnits();
+    }
+}
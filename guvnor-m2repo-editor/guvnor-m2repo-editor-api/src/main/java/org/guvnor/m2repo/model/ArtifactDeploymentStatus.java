@@ -0,0 +1,35 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.m2repo.model;
+
+import org.jboss.errai.common.client.api.annotations.Portable;
+
+/**
+ * Status of an asynchronous deployment to GuvnorM2Repository
+ */
+@Portable
+public enum ArtifactDeploymentStatus {
+
+    UNKNOWN,
+    QUEUED,
+    DEPLOYING,
+    DEPLOYED,
+    //Replaced by a newer deployment of the same GAV before it started
+    SUPERSEDED,
+    FAILED
+
+}
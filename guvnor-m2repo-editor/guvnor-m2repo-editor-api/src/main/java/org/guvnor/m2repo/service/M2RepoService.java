@@ -17,6 +17,7 @@
 package org.guvnor.m2repo.service;
 
 import org.guvnor.common.services.project.model.GAV;
+import org.guvnor.m2repo.model.ArtifactDeploymentStatus;
 import org.guvnor.m2repo.model.JarListPageRequest;
 import org.guvnor.m2repo.model.JarListPageRow;
 import org.jboss.errai.bus.server.annotations.Remote;
@@ -52,4 +53,11 @@ public interface M2RepoService {
      * @return A String representing the repository's URL relative to the container's root
      */
     String getRepositoryURL( String context );
+
+    /**
+     * Get the status of the most recent asynchronous deployment of a GAV
+     * @param gav The GAV of the deployed artifact
+     * @return The status of the deployment, or UNKNOWN if no deployment of the GAV is known
+     */
+    ArtifactDeploymentStatus getDeploymentStatus( GAV gav );
 }
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.m2repo.backend.server;
+
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.guvnor.common.services.backend.cache.BoundedLRUMap;
+import org.guvnor.common.services.project.model.GAV;
+import org.guvnor.m2repo.model.ArtifactDeploymentStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.uberfire.commons.async.DescriptiveRunnable;
+
+/**
+ * Deploys JARs to GuvnorM2Repository on the threads provided by ArtifactDeploymentExecutorManager.
+ * <p/>
+ * Uploads are staged on the caller's thread, so the caller may close its InputStream as soon as
+ * {@link #deploy(InputStream, GAV, boolean)} returns. A deployment of a GAV that is still waiting in the
+ * queue is superseded by a newer deployment of the same GAV: the original's Future completes with SUPERSEDED and
+ * only the newer JAR is deployed.
+ */
+@ApplicationScoped
+public class ArtifactDeploymentService {
+
+    private static final Logger log = LoggerFactory.getLogger( ArtifactDeploymentService.class );
+
+    private static final int STATUS_HISTORY_SIZE = 1000;
+
+    @Inject
+    private GuvnorM2Repository repository;
+
+    @Inject
+    private ArtifactDeploymentExecutorManagerFactory executorManagerFactory;
+
+    //Deployments that have been queued but not started, guarded by itself
+    private final Map<GAV, QueuedDeployment> queuedDeployments = new HashMap<GAV, QueuedDeployment>();
+
+    //Status of the most recent deployments, guarded by itself
+    private final Map<GAV, ArtifactDeploymentStatus> statuses = new BoundedLRUMap<GAV, ArtifactDeploymentStatus>( STATUS_HISTORY_SIZE );
+
+    public ArtifactDeploymentService() {
+        //CDI proxy
+    }
+
+    //Constructor for tests
+    ArtifactDeploymentService( final GuvnorM2Repository repository,
+                               final ArtifactDeploymentExecutorManagerFactory executorManagerFactory ) {
+        this.repository = repository;
+        this.executorManagerFactory = executorManagerFactory;
+    }
+
+    /**
+     * Queues the deployment of a JAR.
+     * @param jarStream InputStream holding JAR. It is fully read before this method returns.
+     * @param gav GAV representing the JAR
+     * @param includeAdditionalRepositories true to also deploy to the repository configured by Distribution Management
+     * @return Future completed once the JAR has been deployed, or with SUPERSEDED should a newer deployment of the
+     * GAV replace it before it starts
+     */
+    public Future<ArtifactDeploymentStatus> deploy( final InputStream jarStream,
+                                                    final GAV gav,
+                                                    final boolean includeAdditionalRepositories ) {
+        final StagedArtifact stagedArtifact = repository.stageArtifact( jarStream,
+                                                                        gav );
+
+        final QueuedDeployment deployment;
+        final Future<ArtifactDeploymentStatus> future;
+        synchronized ( queuedDeployments ) {
+            final QueuedDeployment queued = queuedDeployments.get( gav );
+            if ( queued != null ) {
+                log.debug( "Coalescing deployment of '" + gav + "' with queued deployment." );
+                return queued.supersede( stagedArtifact,
+                                         includeAdditionalRepositories );
+            }
+
+            deployment = new QueuedDeployment( stagedArtifact,
+                                               includeAdditionalRepositories );
+            future = deployment.future;
+            queuedDeployments.put( gav,
+                                   deployment );
+            setStatus( gav,
+                       ArtifactDeploymentStatus.QUEUED );
+        }
+
+        //The container may run the deployment on this thread, so the queue must not be locked whilst submitting it
+        executorManagerFactory.getExecutorManager().execute( deployment );
+        return future;
+    }
+
+    /**
+     * @param gav GAV of a deployment
+     * @return Status of the most recent deployment of the GAV, or UNKNOWN if none is known.
+     */
+    public ArtifactDeploymentStatus getStatus( final GAV gav ) {
+        synchronized ( statuses ) {
+            final ArtifactDeploymentStatus status = statuses.get( gav );
+            return status == null ? ArtifactDeploymentStatus.UNKNOWN : status;
+        }
+    }
+
+    private void setStatus( final GAV gav,
+                            final ArtifactDeploymentStatus status ) {
+        synchronized ( statuses ) {
+            //Re-insert so the most recent deployments are the last to be evicted
+            statuses.remove( gav );
+            statuses.put( gav,
+                          status );
+        }
+    }
+
+    private class QueuedDeployment implements DescriptiveRunnable,
+                                              Callable<ArtifactDeploymentStatus> {
+
+        private final GAV gav;
+        private StagedArtifact stagedArtifact;
+        private boolean includeAdditionalRepositories;
+        private DeploymentFuture future = new DeploymentFuture( this );
+
+        private QueuedDeployment( final StagedArtifact stagedArtifact,
+                                  final boolean includeAdditionalRepositories ) {
+            this.gav = stagedArtifact.getGav();
+            this.stagedArtifact = stagedArtifact;
+            this.includeAdditionalRepositories = includeAdditionalRepositories;
+        }
+
+        //Called whilst holding the queuedDeployments lock
+        private Future<ArtifactDeploymentStatus> supersede( final StagedArtifact stagedArtifact,
+                                                            final boolean includeAdditionalRepositories ) {
+            this.stagedArtifact.dispose();
+            this.stagedArtifact = stagedArtifact;
+            this.includeAdditionalRepositories = this.includeAdditionalRepositories || includeAdditionalRepositories;
+            this.future.supersede();
+            this.future = new DeploymentFuture( this );
+            return this.future;
+        }
+
+        @Override
+        public void run() {
+            //Once removed from the queue the deployment can no longer be superseded
+            final DeploymentFuture deployment;
+            synchronized ( queuedDeployments ) {
+                queuedDeployments.remove( gav );
+                deployment = future;
+            }
+            deployment.run();
+        }
+
+        @Override
+        public String getDescription() {
+            return "Deployment of '" + gav + "'";
+        }
+
+        @Override
+        public ArtifactDeploymentStatus call() {
+            final StagedArtifact artifact;
+            final boolean includeAdditional;
+            synchronized ( queuedDeployments ) {
+                artifact = stagedArtifact;
+                includeAdditional = includeAdditionalRepositories;
+            }
+
+            setStatus( gav,
+                       ArtifactDeploymentStatus.DEPLOYING );
+            try {
+                repository.deployArtifact( artifact,
+                                           includeAdditional );
+                setStatus( gav,
+                           ArtifactDeploymentStatus.DEPLOYED );
+                return ArtifactDeploymentStatus.DEPLOYED;
+
+            } catch ( RuntimeException e ) {
+                log.error( "Unable to deploy '" + gav + "': " + e.getMessage(),
+                           e );
+                setStatus( gav,
+                           ArtifactDeploymentStatus.FAILED );
+                return ArtifactDeploymentStatus.FAILED;
+            }
+        }
+    }
+
+    private static class DeploymentFuture extends FutureTask<ArtifactDeploymentStatus> {
+
+        private DeploymentFuture( final Callable<ArtifactDeploymentStatus> deployment ) {
+            super( deployment );
+        }
+
+        private void supersede() {
+            set( ArtifactDeploymentStatus.SUPERSEDED );
+        }
+    }
+
+}
@@ -0,0 +1,539 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.m2repo.backend.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOCase;
+import org.apache.commons.io.filefilter.DirectoryFileFilter;
+import org.apache.commons.io.filefilter.SuffixFileFilter;
+import org.drools.compiler.kproject.xml.MinimalPomParser;
+import org.drools.compiler.kproject.xml.PomModel;
+import org.guvnor.common.services.backend.cache.BoundedLRUMap;
+import org.guvnor.common.services.project.model.GAV;
+import org.guvnor.m2repo.model.JarListPageRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent catalog of the JAR, KJAR and POM files held in Guvnor's M2 Repository.
+ * <p/>
+ * Each entry records the path, GAV, size and last modified time of a file so the list of artifacts
+ * can be served without walking the repository or parsing POMs. The catalog is kept on disk as an
+ * append-only journal that is replayed on start-up, reconciled against the file system and compacted.
+ * Sorted views of the entries are built lazily and reused until the next modification. Filters match anywhere
+ * within a file name, with wildcards, so they cannot be answered from a sorted view: the first lookup of a filter
+ * scans the sorted view and its matches are then reused, for the most recent filters, to serve further pages.
+ */
+public class ArtifactIndex {
+
+    private static final Logger log = LoggerFactory.getLogger( ArtifactIndex.class );
+
+    static final String INDEX_FILE_NAME = ".artifact-index";
+
+    static final List<String> INDEXED_FILE_FORMATS = Collections.unmodifiableList( Arrays.asList( "jar",
+                                                                                                  "kjar",
+                                                                                                  "pom" ) );
+
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+    private static final String ADDED = "+";
+    private static final String REMOVED = "-";
+    private static final String SEPARATOR = "\t";
+    private static final String UNDETERMINED = "<undetermined>";
+
+    //Compact the journal once it holds this many more records than there are entries
+    private static final int COMPACTION_THRESHOLD = 1000;
+
+    //Number of filtered views kept between modifications
+    private static final int FILTERED_VIEW_CACHE_SIZE = 32;
+
+    private final File repositoryRoot;
+    private final File indexFile;
+    private final Map<String, ArtifactIndexEntry> entries = new ConcurrentHashMap<String, ArtifactIndexEntry>();
+
+    private volatile Map<String, List<ArtifactIndexEntry>> sortedViews = new ConcurrentHashMap<String, List<ArtifactIndexEntry>>();
+    private volatile Map<String, List<ArtifactIndexEntry>> filteredViews = newFilteredViews();
+    private int journalSize = 0;
+
+    public ArtifactIndex( final File repositoryRoot ) {
+        this.repositoryRoot = repositoryRoot.getAbsoluteFile();
+        this.indexFile = new File( this.repositoryRoot,
+                                   INDEX_FILE_NAME );
+    }
+
+    /**
+     * Loads the persisted index and brings it in line with the content of the repository. Files
+     * whose size and last modified time are unchanged are not re-read.
+     */
+    public synchronized void reconcile() {
+        entries.clear();
+        load();
+
+        final Set<String> existing = new HashSet<String>();
+        if ( repositoryRoot.exists() ) {
+            final Collection<File> files = FileUtils.listFiles( repositoryRoot,
+                                                                new SuffixFileFilter( getSuffixes(),
+                                                                                      IOCase.INSENSITIVE ),
+                                                                DirectoryFileFilter.DIRECTORY );
+            for ( File file : files ) {
+                final String path = toPath( file );
+                existing.add( path );
+                final ArtifactIndexEntry entry = entries.get( path );
+                if ( entry == null || !entry.isUpToDate( file.length(),
+                                                         file.lastModified() ) ) {
+                    entries.put( path,
+                                 newEntry( path,
+                                           file ) );
+                }
+            }
+        }
+        entries.keySet().retainAll( existing );
+
+        compact();
+        invalidateViews();
+        log.info( "Artifact index of '" + repositoryRoot + "' holds " + entries.size() + " file(s)." );
+    }
+
+    /**
+     * Adds or refreshes a single file in the index. Files that are not JAR, KJAR or POM files are ignored.
+     * @param file file within the repository
+     */
+    public synchronized void update( final File file ) {
+        if ( !isIndexed( file.getName() ) ) {
+            return;
+        }
+        final String path = toPath( file );
+        if ( !file.isFile() ) {
+            remove( path );
+            return;
+        }
+        final ArtifactIndexEntry entry = entries.get( path );
+        if ( entry == null || !entry.isUpToDate( file.length(),
+                                                 file.lastModified() ) ) {
+            put( newEntry( path,
+                           file ) );
+        }
+    }
+
+    /**
+     * Synchronises the index with the content of a single directory, e.g. the version directory of a deployed GAV.
+     * @param directory directory within the repository
+     */
+    public synchronized void updateDirectory( final File directory ) {
+        final String prefix = toPath( directory ) + "/";
+        final Set<String> existing = new HashSet<String>();
+        final File[] files = directory.listFiles();
+        if ( files != null ) {
+            for ( File file : files ) {
+                if ( file.isFile() && isIndexed( file.getName() ) ) {
+                    existing.add( toPath( file ) );
+                    update( file );
+                }
+            }
+        }
+        for ( String path : new ArrayList<String>( entries.keySet() ) ) {
+            if ( path.startsWith( prefix ) && path.indexOf( '/', prefix.length() ) < 0 && !existing.contains( path ) ) {
+                remove( path );
+            }
+        }
+    }
+
+    synchronized void put( final ArtifactIndexEntry entry ) {
+        entries.put( entry.getPath(),
+                     entry );
+        append( ADDED + SEPARATOR + toRecord( entry ) );
+        invalidateViews();
+    }
+
+    synchronized void remove( final String path ) {
+        if ( entries.remove( path ) != null ) {
+            append( REMOVED + SEPARATOR + path );
+            invalidateViews();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Finds a page of entries, sorted by the given column.
+     * @param filters filter applied to file names, with the same wildcard semantics as {@link GuvnorM2Repository#listFiles(String, List)}.
+     * @param fileFormats file formats to include, ie., [ "jar", "kjar" ]. Null for all indexed formats.
+     * @param dataSourceName one of the {@link JarListPageRequest} column names. Null sorts by path.
+     * @param isAscending sort order
+     * @param startRowIndex index of the first matching entry to return
+     * @param pageSize maximum number of entries to return. Null for all.
+     * @return the requested page
+     */
+    public Page find( final String filters,
+                      final List<String> fileFormats,
+                      final String dataSourceName,
+                      final boolean isAscending,
+                      final int startRowIndex,
+                      final Integer pageSize ) {
+        //Without filters every entry matches, so the page can be read directly from the sorted view
+        final List<ArtifactIndexEntry> view;
+        if ( filters == null && ( fileFormats == null || fileFormats.containsAll( INDEXED_FILE_FORMATS ) ) ) {
+            view = getSortedView( dataSourceName );
+        } else {
+            view = getFilteredView( dataSourceName,
+                                    filters,
+                                    fileFormats );
+        }
+
+        final List<ArtifactIndexEntry> pageEntries = new ArrayList<ArtifactIndexEntry>();
+        final int endRowIndex = ( pageSize == null ? Integer.MAX_VALUE : startRowIndex + pageSize );
+        final int size = view.size();
+        for ( int i = startRowIndex; i < Math.min( size,
+                                                   endRowIndex ); i++ ) {
+            pageEntries.add( view.get( isAscending ? i : size - 1 - i ) );
+        }
+        return new Page( pageEntries,
+                         size );
+    }
+
+    private List<ArtifactIndexEntry> getFilteredView( final String dataSourceName,
+                                                      final String filters,
+                                                      final List<String> fileFormats ) {
+        final String key = ( dataSourceName == null ? JarListPageRequest.COLUMN_PATH : dataSourceName ) + SEPARATOR
+                + filters + SEPARATOR + fileFormats;
+        final Map<String, List<ArtifactIndexEntry>> views = filteredViews;
+        List<ArtifactIndexEntry> view = views.get( key );
+        if ( view == null ) {
+            final List<String> wildcards = getWildcards( filters,
+                                                         fileFormats );
+            final List<ArtifactIndexEntry> matching = new ArrayList<ArtifactIndexEntry>();
+            for ( ArtifactIndexEntry entry : getSortedView( dataSourceName ) ) {
+                if ( matches( entry.getName(),
+                              wildcards ) ) {
+                    matching.add( entry );
+                }
+            }
+            view = Collections.unmodifiableList( matching );
+            views.put( key,
+                       view );
+        }
+        return view;
+    }
+
+    private List<ArtifactIndexEntry> getSortedView( final String dataSourceName ) {
+        final String key = ( dataSourceName == null ? JarListPageRequest.COLUMN_PATH : dataSourceName );
+        final Map<String, List<ArtifactIndexEntry>> views = sortedViews;
+        List<ArtifactIndexEntry> view = views.get( key );
+        if ( view == null ) {
+            final List<ArtifactIndexEntry> sorted = new ArrayList<ArtifactIndexEntry>( entries.values() );
+            Collections.sort( sorted,
+                              getComparator( key ) );
+            view = Collections.unmodifiableList( sorted );
+            views.put( key,
+                       view );
+        }
+        return view;
+    }
+
+    private void invalidateViews() {
+        sortedViews = new ConcurrentHashMap<String, List<ArtifactIndexEntry>>();
+        filteredViews = newFilteredViews();
+    }
+
+    private static Map<String, List<ArtifactIndexEntry>> newFilteredViews() {
+        return BoundedLRUMap.newSynchronizedMap( FILTERED_VIEW_CACHE_SIZE );
+    }
+
+    private Comparator<ArtifactIndexEntry> getComparator( final String dataSourceName ) {
+        if ( dataSourceName.equals( JarListPageRequest.COLUMN_NAME ) ) {
+            return new Comparator<ArtifactIndexEntry>() {
+                @Override
+                public int compare( final ArtifactIndexEntry o1,
+                                    final ArtifactIndexEntry o2 ) {
+                    final int result = o1.getName().compareTo( o2.getName() );
+                    return result != 0 ? result : o1.getPath().compareTo( o2.getPath() );
+                }
+            };
+
+        } else if ( dataSourceName.equals( JarListPageRequest.COLUMN_GAV ) ) {
+            return new Comparator<ArtifactIndexEntry>() {
+                @Override
+                public int compare( final ArtifactIndexEntry o1,
+                                    final ArtifactIndexEntry o2 ) {
+                    final int result = o1.getGavString().compareToIgnoreCase( o2.getGavString() );
+                    return result != 0 ? result : o1.getPath().compareTo( o2.getPath() );
+                }
+            };
+
+        } else if ( dataSourceName.equals( JarListPageRequest.COLUMN_LAST_MODIFIED ) ) {
+            return new Comparator<ArtifactIndexEntry>() {
+                @Override
+                public int compare( final ArtifactIndexEntry o1,
+                                    final ArtifactIndexEntry o2 ) {
+                    final int result = Long.valueOf( o1.getLastModified() ).compareTo( o2.getLastModified() );
+                    return result != 0 ? result : o1.getPath().compareTo( o2.getPath() );
+                }
+            };
+        }
+
+        return new Comparator<ArtifactIndexEntry>() {
+            @Override
+            public int compare( final ArtifactIndexEntry o1,
+                                final ArtifactIndexEntry o2 ) {
+                return o1.getPath().compareTo( o2.getPath() );
+            }
+        };
+    }
+
+    private List<String> getWildcards( final String filters,
+                                       final List<String> fileFormats ) {
+        final String wildcardPrefix = ( filters == null ? "" : "*" + filters );
+        final List<String> wildcards = new ArrayList<String>();
+        for ( String fileFormat : ( fileFormats == null ? INDEXED_FILE_FORMATS : fileFormats ) ) {
+            wildcards.add( wildcardPrefix + "*." + fileFormat );
+        }
+        return wildcards;
+    }
+
+    private boolean matches( final String name,
+                             final List<String> wildcards ) {
+        for ( String wildcard : wildcards ) {
+            if ( FilenameUtils.wildcardMatch( name,
+                                              wildcard,
+                                              IOCase.INSENSITIVE ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isIndexed( final String fileName ) {
+        final String lowerCaseName = fileName.toLowerCase();
+        for ( String suffix : getSuffixes() ) {
+            if ( lowerCaseName.endsWith( suffix ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String[] getSuffixes() {
+        final String[] suffixes = new String[ INDEXED_FILE_FORMATS.size() ];
+        for ( int i = 0; i < suffixes.length; i++ ) {
+            suffixes[ i ] = "." + INDEXED_FILE_FORMATS.get( i );
+        }
+        return suffixes;
+    }
+
+    private String toPath( final File file ) {
+        final String path = repositoryRoot.toPath().normalize().relativize( file.getAbsoluteFile().toPath().normalize() ).toString();
+        return path.replace( File.separatorChar,
+                             '/' );
+    }
+
+    private ArtifactIndexEntry newEntry( final String path,
+                                         final File file ) {
+        return new ArtifactIndexEntry( path,
+                                       readGAV( path,
+                                                file ),
+                                       file.length(),
+                                       file.lastModified() );
+    }
+
+    private GAV readGAV( final String path,
+                         final File file ) {
+        try {
+            final String pom = GuvnorM2Repository.getPomText( file );
+            final PomModel model = MinimalPomParser.parse( path,
+                                                           new ByteArrayInputStream( pom.getBytes( UTF8 ) ) );
+            return new GAV( model.getReleaseId().getGroupId(),
+                            model.getReleaseId().getArtifactId(),
+                            model.getReleaseId().getVersion() );
+
+        } catch ( RuntimeException rte ) {
+            //RuntimeException is thrown by MinimalPomParser for any Exception..
+            return new GAV( UNDETERMINED,
+                            UNDETERMINED,
+                            UNDETERMINED );
+        }
+    }
+
+    private void load() {
+        if ( !indexFile.exists() ) {
+            return;
+        }
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader( new InputStreamReader( new FileInputStream( indexFile ),
+                                                                UTF8 ) );
+            String line;
+            while ( ( line = reader.readLine() ) != null ) {
+                final String[] fields = line.split( SEPARATOR,
+                                                    -1 );
+                if ( fields.length == 2 && REMOVED.equals( fields[ 0 ] ) ) {
+                    entries.remove( fields[ 1 ] );
+                } else if ( fields.length == 7 && ADDED.equals( fields[ 0 ] ) ) {
+                    try {
+                        entries.put( fields[ 1 ],
+                                     new ArtifactIndexEntry( fields[ 1 ],
+                                                             new GAV( fields[ 2 ],
+                                                                      fields[ 3 ],
+                                                                      fields[ 4 ] ),
+                                                             Long.parseLong( fields[ 5 ] ),
+                                                             Long.parseLong( fields[ 6 ] ) ) );
+                    } catch ( NumberFormatException nfe ) {
+                        log.warn( "Ignoring corrupt artifact index record: " + line );
+                    }
+                }
+            }
+        } catch ( IOException e ) {
+            //The index is rebuilt from the file system by reconcile()
+            log.warn( "Unable to read artifact index '" + indexFile + "': " + e.getMessage() );
+        } finally {
+            if ( reader != null ) {
+                try {
+                    reader.close();
+                } catch ( IOException e ) {
+                    //Swallow
+                }
+            }
+        }
+    }
+
+    private void append( final String record ) {
+        if ( journalSize > entries.size() + COMPACTION_THRESHOLD ) {
+            compact();
+            return;
+        }
+        Writer writer = null;
+        try {
+            writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( indexFile,
+                                                                                       true ),
+                                                                 UTF8 ) );
+            writer.write( record );
+            writer.write( '\n' );
+            journalSize++;
+        } catch ( IOException e ) {
+            log.warn( "Unable to update artifact index '" + indexFile + "': " + e.getMessage() );
+        } finally {
+            if ( writer != null ) {
+                try {
+                    writer.close();
+                } catch ( IOException e ) {
+                    //Swallow
+                }
+            }
+        }
+    }
+
+    private void compact() {
+        if ( !repositoryRoot.exists() ) {
+            return;
+        }
+        final File tmpFile = new File( repositoryRoot,
+                                       INDEX_FILE_NAME + ".tmp" );
+        Writer writer = null;
+        try {
+            writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( tmpFile ),
+                                                                 UTF8 ) );
+            for ( ArtifactIndexEntry entry : entries.values() ) {
+                writer.write( ADDED + SEPARATOR + toRecord( entry ) );
+                writer.write( '\n' );
+            }
+            writer.close();
+            writer = null;
+            try {
+                Files.move( tmpFile.toPath(),
+                            indexFile.toPath(),
+                            StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE );
+            } catch ( AtomicMoveNotSupportedException e ) {
+                Files.move( tmpFile.toPath(),
+                            indexFile.toPath(),
+                            StandardCopyOption.REPLACE_EXISTING );
+            }
+            journalSize = entries.size();
+        } catch ( IOException e ) {
+            log.warn( "Unable to write artifact index '" + indexFile + "': " + e.getMessage() );
+        } finally {
+            if ( writer != null ) {
+                try {
+                    writer.close();
+                } catch ( IOException e ) {
+                    //Swallow
+                }
+            }
+        }
+    }
+
+    private String toRecord( final ArtifactIndexEntry entry ) {
+        final GAV gav = entry.getGav();
+        return entry.getPath() + SEPARATOR
+                + gav.getGroupId() + SEPARATOR
+                + gav.getArtifactId() + SEPARATOR
+                + gav.getVersion() + SEPARATOR
+                + entry.getSize() + SEPARATOR
+                + entry.getLastModified();
+    }
+
+    /**
+     * A page of index entries together with the total number of entries matching the query.
+     */
+    public static class Page {
+
+        private final List<ArtifactIndexEntry> entries;
+        private final int totalSize;
+
+        Page( final List<ArtifactIndexEntry> entries,
+              final int totalSize ) {
+            this.entries = entries;
+            this.totalSize = totalSize;
+        }
+
+        public List<ArtifactIndexEntry> getEntries() {
+            return entries;
+        }
+
+        public int getTotalSize() {
+            return totalSize;
+        }
+
+    }
+
+}
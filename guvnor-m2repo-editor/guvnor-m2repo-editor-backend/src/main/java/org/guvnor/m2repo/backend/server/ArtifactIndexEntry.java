@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.m2repo.backend.server;
+
+import org.guvnor.common.services.project.model.GAV;
+
+/**
+ * An immutable entry of the {@link ArtifactIndex}; i.e. a file in Guvnor's M2 Repository.
+ */
+public class ArtifactIndexEntry {
+
+    private final String path;
+    private final String name;
+    private final GAV gav;
+    private final long size;
+    private final long lastModified;
+
+    public ArtifactIndexEntry( final String path,
+                               final GAV gav,
+                               final long size,
+                               final long lastModified ) {
+        this.path = path;
+        this.name = path.substring( path.lastIndexOf( '/' ) + 1 );
+        this.gav = gav;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * @return Path of the file relative to the repository root, using "/" as separator.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return A copy of the GAV, so callers can not alter the indexed value.
+     */
+    public GAV getGav() {
+        return new GAV( gav.getGroupId(),
+                        gav.getArtifactId(),
+                        gav.getVersion() );
+    }
+
+    String getGavString() {
+        return gav.toString();
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    boolean isUpToDate( final long size,
+                        final long lastModified ) {
+        return this.size == size && this.lastModified == lastModified;
+    }
+
+}
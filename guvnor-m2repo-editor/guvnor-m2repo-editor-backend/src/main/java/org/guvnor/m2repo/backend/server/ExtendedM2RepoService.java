@@ -17,8 +17,10 @@
 package org.guvnor.m2repo.backend.server;
 
 import java.io.InputStream;
+import java.util.concurrent.Future;
 
 import org.guvnor.common.services.project.model.GAV;
+import org.guvnor.m2repo.model.ArtifactDeploymentStatus;
 import org.guvnor.m2repo.service.M2RepoService;
 
 public interface ExtendedM2RepoService extends M2RepoService {
@@ -33,6 +35,16 @@ public interface ExtendedM2RepoService extends M2RepoService {
     void deployJar( InputStream is,
                     GAV gav );
 
+    /**
+     * Queue deployment of a JAR to all repositories. The JAR is read before this method returns,
+     * whilst deployment happens in the background; its progress is reported by {@link #getDeploymentStatus(GAV)}.
+     * @param is InputStream holding JAR
+     * @param gav GAV representing the JAR
+     * @return Future completed when the deployment has finished
+     */
+    Future<ArtifactDeploymentStatus> deployJarAsync( InputStream is,
+                                                     GAV gav );
+
     /**
      * Convenience method for unit tests - to avoid deploying to additional (possibly external) repositories
      * @param is InputStream holding JAR
@@ -16,6 +16,8 @@
 
 package org.guvnor.m2repo.backend.server;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -24,6 +26,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.net.MalformedURLException;
@@ -31,8 +34,13 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
@@ -40,12 +48,15 @@ import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Event;
+import javax.inject.Inject;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOCase;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.filefilter.DirectoryFileFilter;
 import org.apache.commons.io.filefilter.WildcardFileFilter;
+import org.apache.commons.io.input.TeeInputStream;
 import org.apache.maven.model.DeploymentRepository;
 import org.apache.maven.model.DistributionManagement;
 import org.apache.maven.model.Model;
@@ -54,7 +65,6 @@ import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.ProjectBuildingException;
 import org.apache.maven.settings.Server;
 import org.apache.maven.settings.Settings;
-import org.codehaus.plexus.util.IOUtil;
 import org.drools.core.io.impl.ReaderInputStream;
 import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.artifact.DefaultArtifact;
@@ -69,12 +79,15 @@ import org.eclipse.aether.resolution.ArtifactRequest;
 import org.eclipse.aether.resolution.ArtifactResolutionException;
 import org.eclipse.aether.resolution.ArtifactResult;
 import org.eclipse.aether.util.artifact.SubArtifact;
+import org.guvnor.common.services.backend.util.SystemProperties;
+import org.guvnor.common.services.project.events.ArtifactDeployedEvent;
 import org.guvnor.common.services.project.model.GAV;
 import org.kie.scanner.Aether;
 import org.kie.scanner.embedder.MavenEmbedder;
 import org.kie.scanner.embedder.MavenEmbedderException;
 import org.kie.scanner.embedder.MavenProjectLoader;
 import org.kie.scanner.embedder.MavenSettings;
+import org.uberfire.commons.async.DescriptiveRunnable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -88,11 +101,26 @@ public class GuvnorM2Repository {
     public static final String M2_REPO_ROOT = "repositories" + File.separatorChar + "kie";
     public static String M2_REPO_DIR;
 
-    private static final int BUFFER_SIZE = 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    //Size of the pool used for deployments when the container does not provide ArtifactDeploymentExecutorManager
+    static final String DEPLOYMENT_THREADS = "org.guvnor.m2repo.deployment.threads";
+    private static final int DEFAULT_DEPLOYMENT_THREADS = 4;
+
+    private ArtifactIndex artifactIndex;
+
+    @Inject
+    private Event<ArtifactDeployedEvent> artifactDeployedEvent;
+
+    @Inject
+    private ArtifactDeploymentExecutorManagerFactory executorManagerFactory;
 
     @PostConstruct
     public void init() {
         setM2Repos();
+        artifactIndex = new ArtifactIndex( new File( M2_REPO_DIR ) );
+        artifactIndex.reconcile();
     }
 
     private void setM2Repos() {
@@ -123,6 +151,13 @@ public class GuvnorM2Repository {
         }
     }
 
+    /**
+     * @return the index of files held in the repository.
+     */
+    public ArtifactIndex getArtifactIndex() {
+        return artifactIndex;
+    }
+
     public String getRepositoryURL() {
         File file = new File( getM2RepositoryRootDir() );
         return "file://" + file.getAbsolutePath();
@@ -131,77 +166,231 @@ public class GuvnorM2Repository {
     public void deployArtifact( final InputStream jarStream,
                                 final GAV gav,
                                 final boolean includeAdditionalRepositories ) {
-        //Write JAR to temporary file for deployment
-        File jarFile = new File( System.getProperty( "java.io.tmpdir" ),
-                                 toFileName( gav,
-                                             "jar" ) );
-
-        try {
-
-            try {
-                if ( !jarFile.exists() ) {
-                    jarFile.getParentFile().mkdirs();
-                    jarFile.createNewFile();
-                }
-                FileOutputStream fos = new FileOutputStream( jarFile );
+        deployArtifact( stageArtifact( jarStream,
+                                       gav ),
+                        includeAdditionalRepositories );
+    }
 
-                final byte[] buf = new byte[ BUFFER_SIZE ];
-                int byteRead = 0;
-                while ( ( byteRead = jarStream.read( buf ) ) != -1 ) {
-                    fos.write( buf, 0, byteRead );
-                }
-                fos.flush();
-                fos.close();
-            } catch ( IOException e ) {
-                throw new RuntimeException( e );
-            }
+    /**
+     * Copies the JAR to a temporary file and adds pom.xml and pom.properties if they are missing. The
+     * InputStream is fully consumed when this method returns, so the deployment itself can be deferred.
+     * @param jarStream InputStream holding JAR
+     * @param gav GAV representing the JAR
+     * @return the staged JAR, to be passed to {@link #deployArtifact(StagedArtifact, boolean)}
+     */
+    StagedArtifact stageArtifact( final InputStream jarStream,
+                                  final GAV gav ) {
+        final long startTime = System.currentTimeMillis();
+        File jarFile = null;
+        File appendedJarFile = null;
+        boolean staged = false;
 
-            //Write pom.xml to JAR if it doesn't already exist
-            String pomXML = loadPomFromJar( new File( jarFile.getPath() ) );
+        try {
+            //Write JAR to temporary file for deployment, inspecting its entries as the upload is read
+            jarFile = createTempFile( gav,
+                                      "jar" );
+            final JarContent jarContent = copyAndInspectJar( jarStream,
+                                                             jarFile );
+
+            //Write pom.xml and pom.properties to JAR if they don't already exist, in a single rewrite
+            String pomXML = jarContent.pomXML;
+            final Map<String, String> missingEntries = new LinkedHashMap<String, String>();
             if ( pomXML == null ) {
                 pomXML = generatePOM( gav );
-                jarFile = appendPOMToJar( pomXML,
-                                          jarFile.getPath(),
-                                          gav );
+                missingEntries.put( getPomXmlPath( gav ),
+                                    pomXML );
+            }
+            if ( !jarContent.hasPomProperties ) {
+                missingEntries.put( getPomPropertiesPath( gav ),
+                                    generatePomProperties( gav ) );
             }
 
-            //Write pom.properties to JAR if it doesn't already exist
-            String pomProperties = loadGAVFromJarInternal( new File( jarFile.getPath() ) );
-            if ( pomProperties == null ) {
-                pomProperties = generatePomProperties( gav );
-                jarFile = appendPomPropertiesToJar( pomProperties,
-                                                    jarFile.getPath(),
-                                                    gav );
+            File deploymentJarFile = jarFile;
+            if ( !missingEntries.isEmpty() ) {
+                appendedJarFile = createTempFile( gav,
+                                                  "jar" );
+                appendToJar( jarFile,
+                             appendedJarFile,
+                             missingEntries );
+                deploymentJarFile = appendedJarFile;
+            }
+
+            final StagedArtifact stagedArtifact = new StagedArtifact( gav,
+                                                                      pomXML,
+                                                                      deploymentJarFile,
+                                                                      jarFile.length() );
+            stagedArtifact.addTemporaryFile( jarFile );
+            stagedArtifact.addTemporaryFile( appendedJarFile );
+
+            final long elapsed = Math.max( 1,
+                                           System.currentTimeMillis() - startTime );
+            log.debug( "Staged '" + gav + "' (" + jarFile.length() + " bytes) in " + elapsed + " ms ("
+                               + ( jarFile.length() * 1000 / elapsed ) + " bytes/sec)." );
+            staged = true;
+            return stagedArtifact;
+
+        } catch ( IOException e ) {
+            throw new RuntimeException( e );
+        } finally {
+            //Whatever the failure, no partial JAR is left behind
+            if ( !staged ) {
+                deleteTempFile( jarFile );
+                deleteTempFile( appendedJarFile );
             }
+        }
+    }
 
-            deployArtifact( gav,
-                            pomXML,
-                            jarFile,
+    /**
+     * Deploys a staged JAR, removing its temporary files once done.
+     * @param stagedArtifact JAR staged by {@link #stageArtifact(InputStream, GAV)}
+     * @param includeAdditionalRepositories true to deploy to the repository configured by Distribution Management
+     */
+    void deployArtifact( final StagedArtifact stagedArtifact,
+                         final boolean includeAdditionalRepositories ) {
+        final long startTime = System.currentTimeMillis();
+        try {
+            deployArtifact( stagedArtifact.getGav(),
+                            stagedArtifact.getPomXML(),
+                            stagedArtifact.getJarFile(),
                             includeAdditionalRepositories );
 
+            final long elapsed = Math.max( 1,
+                                           System.currentTimeMillis() - startTime );
+            log.info( "Deployed '" + stagedArtifact.getGav() + "' (" + stagedArtifact.getSize() + " bytes) in " + elapsed + " ms ("
+                              + ( stagedArtifact.getSize() * 1000 / elapsed ) + " bytes/sec)." );
+
         } finally {
+            stagedArtifact.dispose();
+        }
+    }
+
+    /**
+     * Copies the JAR to the given file while reading the entries as they arrive, so the JAR
+     * does not need to be opened again to find its pom.xml and pom.properties.
+     */
+    private JarContent copyAndInspectJar( final InputStream jarStream,
+                                          final File jarFile ) throws IOException {
+        final JarContent jarContent = new JarContent();
+        final byte[] buffer = new byte[ BUFFER_SIZE ];
+        boolean inspected = false;
+
+        final OutputStream os = new BufferedOutputStream( new FileOutputStream( jarFile ),
+                                                          BUFFER_SIZE );
+        try {
+            final InputStream tee = new TeeInputStream( new BufferedInputStream( jarStream,
+                                                                                 BUFFER_SIZE ),
+                                                        os );
             try {
-                jarFile.delete();
-            } catch ( Exception e ) {
-                log.warn( "Unable to remove temporary file '" + jarFile.getAbsolutePath() + "'" );
+                final ZipInputStream zis = new ZipInputStream( tee );
+                ZipEntry entry;
+                while ( ( entry = zis.getNextEntry() ) != null ) {
+                    final String entryName = entry.getName();
+                    if ( !entryName.startsWith( "META-INF/maven" ) ) {
+                        continue;
+                    }
+                    if ( jarContent.pomXML == null && entryName.endsWith( "pom.xml" ) ) {
+                        jarContent.pomXML = new String( IOUtils.toByteArray( zis ),
+                                                        UTF8 );
+                    } else if ( entryName.endsWith( "pom.properties" ) ) {
+                        jarContent.hasPomProperties = true;
+                    }
+                }
+                inspected = true;
+            } catch ( ZipException e ) {
+                //Entries that can't be read as a stream are inspected from the copied file below
+                log.debug( "Unable to inspect JAR while copying: " + e.getMessage() );
+            }
+
+            //Copy whatever remains after the last entry, i.e. the central directory
+            while ( tee.read( buffer ) != -1 ) {
+                //Bytes are written to the file by the TeeInputStream
             }
+        } finally {
+            os.close();
+        }
+
+        if ( !inspected ) {
+            jarContent.pomXML = loadPomFromJar( jarFile );
+            jarContent.hasPomProperties = loadGAVFromJarInternal( jarFile ) != null;
+        }
+        return jarContent;
+    }
+
+    private void appendToJar( final File sourceJarFile,
+                              final File targetJarFile,
+                              final Map<String, String> entries ) throws IOException {
+        final byte[] buffer = new byte[ BUFFER_SIZE ];
+        final ZipFile zip = new ZipFile( sourceJarFile );
+        try {
+            final ZipOutputStream append = new ZipOutputStream( new BufferedOutputStream( new FileOutputStream( targetJarFile ),
+                                                                                          BUFFER_SIZE ) );
+            try {
+                // first, copy contents from existing jar
+                final Enumeration<? extends ZipEntry> zipEntries = zip.entries();
+                while ( zipEntries.hasMoreElements() ) {
+                    final ZipEntry e = zipEntries.nextElement();
+                    final ZipEntry copy = new ZipEntry( e );
+                    if ( copy.getMethod() == ZipEntry.DEFLATED ) {
+                        //Entries are re-compressed, so the original compressed size does not apply
+                        copy.setCompressedSize( -1 );
+                    }
+                    append.putNextEntry( copy );
+                    if ( !e.isDirectory() ) {
+                        final InputStream is = zip.getInputStream( e );
+                        try {
+                            IOUtils.copyLarge( is,
+                                               append,
+                                               buffer );
+                        } finally {
+                            is.close();
+                        }
+                    }
+                    append.closeEntry();
+                }
+
+                // append missing entries
+                for ( Map.Entry<String, String> entry : entries.entrySet() ) {
+                    append.putNextEntry( new ZipEntry( entry.getKey() ) );
+                    append.write( entry.getValue().getBytes( UTF8 ) );
+                    append.closeEntry();
+                }
+            } finally {
+                append.close();
+            }
+        } finally {
+            zip.close();
+        }
+    }
+
+    //Package-private so tests can track the temporary files created
+    File createTempFile( final GAV gav,
+                         final String suffix ) throws IOException {
+        //File.createTempFile guarantees a unique name, so concurrent deployments of the same GAV do not collide
+        return File.createTempFile( gav.getGroupId() + "-" + gav.getArtifactId() + "-" + gav.getVersion() + "-",
+                                    "." + suffix );
+    }
+
+    private void deleteTempFile( final File file ) {
+        if ( file == null ) {
+            return;
+        }
+        try {
+            file.delete();
+        } catch ( Exception e ) {
+            log.warn( "Unable to remove temporary file '" + file.getAbsolutePath() + "'" );
         }
     }
 
     public void deployPom( final InputStream pomStream,
                            final GAV gav ) {
         //Write POM to temporary file for deployment
-        File pomFile = new File( System.getProperty( "java.io.tmpdir" ),
-                                 toFileName( gav,
-                                             "pom" ) );
+        File pomFile = null;
 
         try {
 
             try {
-                if ( !pomFile.exists() ) {
-                    pomFile.getParentFile().mkdirs();
-                    pomFile.createNewFile();
-                }
+                pomFile = createTempFile( gav,
+                                          "pom" );
                 FileOutputStream fos = new FileOutputStream( pomFile );
 
                 final byte[] buf = new byte[ BUFFER_SIZE ];
@@ -219,28 +408,20 @@ public class GuvnorM2Repository {
                        pomFile );
 
         } finally {
-            try {
-                pomFile.delete();
-            } catch ( Exception e ) {
-                log.warn( "Unable to remove temporary file '" + pomFile.getAbsolutePath() + "'" );
-            }
+            deleteTempFile( pomFile );
         }
     }
 
     public void deployParentPom( final GAV gav ) {
         //Write pom.xml to temporary file for deployment
-        final File pomXMLFile = new File( System.getProperty( "java.io.tmpdir" ),
-                                          toFileName( gav,
-                                                      "pom.xml" ) );
+        File pomXMLFile = null;
 
         try {
 
             String pomXML = generateParentPOM( gav );
             try {
-                if ( !pomXMLFile.exists() ) {
-                    pomXMLFile.getParentFile().mkdirs();
-                    pomXMLFile.createNewFile();
-                }
+                pomXMLFile = createTempFile( gav,
+                                             "pom.xml" );
 
                 FileOutputStream fos = new FileOutputStream( pomXMLFile );
                 IOUtils.write( pomXML,
@@ -284,12 +465,10 @@ public class GuvnorM2Repository {
                 throw new RuntimeException( e );
             }
 
+            updateArtifactIndex( gav );
+
         } finally {
-            try {
-                pomXMLFile.delete();
-            } catch ( Exception e ) {
-                log.warn( "Unable to remove temporary file '" + pomXMLFile.getAbsolutePath() + "'" );
-            }
+            deleteTempFile( pomXMLFile );
         }
     }
 
@@ -298,17 +477,15 @@ public class GuvnorM2Repository {
                                  final File jarFile,
                                  final boolean includeAdditionalRepositories ) {
         //Write pom.xml to temporary file for deployment
-        final File pomXMLFile = new File( System.getProperty( "java.io.tmpdir" ),
-                                          toFileName( gav,
-                                                      "pom.xml" ) );
+        File pomXMLFile = null;
+        FutureTask<Void> remoteDeployment = null;
+        boolean deployed = false;
 
         try {
 
             try {
-                if ( !pomXMLFile.exists() ) {
-                    pomXMLFile.getParentFile().mkdirs();
-                    pomXMLFile.createNewFile();
-                }
+                pomXMLFile = createTempFile( gav,
+                                             "pom.xml" );
 
                 FileOutputStream fos = new FileOutputStream( pomXMLFile );
                 IOUtils.write( pomXML,
@@ -346,6 +523,27 @@ public class GuvnorM2Repository {
                 throw new RuntimeException( e );
             }
 
+            //Deploy into remote repository defined in <distributionManagement> once installed locally, in parallel with the
+            //deployment into Workbench's repository. Only deploy to additional repositories if required. This flag is
+            //principally for Unit Tests
+            if ( includeAdditionalRepositories ) {
+                final RemoteRepository remoteRepository = getDistributionRepository( pomXML,
+                                                                                     pomXMLArtifact.isSnapshot() );
+
+                //If the user has configured a distribution management module in the pom then we will attempt to deploy there.
+                //If credentials are required those credentials must be provisioned in the user's settings.xml file
+                if ( remoteRepository != null ) {
+                    final DeployRequest remoteRequest = new DeployRequest();
+                    remoteRequest
+                            .addArtifact( jarArtifact )
+                            .addArtifact( pomXMLArtifact )
+                            .setRepository( remoteRepository );
+
+                    remoteDeployment = startRemoteDeployment( gav,
+                                                              remoteRequest );
+                }
+            }
+
             //Deploy into Workbench's default remote repository
             try {
                 final DeployRequest deployRequest = new DeployRequest();
@@ -361,57 +559,113 @@ public class GuvnorM2Repository {
                 throw new RuntimeException( e );
             }
 
-            //Only deploy to additional repositories if required. This flag is principally for Unit Tests
-            if ( !includeAdditionalRepositories ) {
-                return;
+            updateArtifactIndex( gav );
+            deployed = true;
+
+            if ( remoteDeployment != null ) {
+                final FutureTask<Void> deployment = remoteDeployment;
+                remoteDeployment = null;
+                awaitRemoteDeployment( deployment );
             }
 
-            //Deploy into remote repository defined in <distributionManagement>
-            try {
-                MavenEmbedder embedder = MavenProjectLoader.newMavenEmbedder( false );
-                DistributionManagement distributionManagement = getDistributionManagement( pomXML, embedder );
+        } finally {
+            //A remote deployment that has started still reads the temporary files if the deployment into Workbench's
+            //repository failed; one that has not is abandoned
+            if ( remoteDeployment != null && !remoteDeployment.cancel( false ) ) {
+                try {
+                    awaitRemoteDeployment( remoteDeployment );
+                } catch ( RuntimeException e ) {
+                    log.warn( "Deployment of '" + gav + "' to the Distribution Management repository failed: " + e.getMessage() );
+                }
+            }
+            deleteTempFile( pomXMLFile );
+            //Results of resolving the GAV cached before it was deployed are stale
+            if ( deployed && artifactDeployedEvent != null ) {
+                artifactDeployedEvent.fire( new ArtifactDeployedEvent( gav ) );
+            }
+        }
+    }
 
-                if ( distributionManagement != null ) {
+    private FutureTask<Void> startRemoteDeployment( final GAV gav,
+                                                    final DeployRequest remoteRequest ) {
+        final FutureTask<Void> remoteDeployment = new FutureTask<Void>( new Callable<Void>() {
+            @Override
+            public Void call() throws DeploymentException {
+                final Aether aether = Aether.getAether();
+                aether.getSystem().deploy( aether.getSession(),
+                                           remoteRequest );
+                return null;
+            }
+        } );
+        if ( executorManagerFactory != null ) {
+            executorManagerFactory.getExecutorManager().execute( new DescriptiveRunnable() {
+                @Override
+                public void run() {
+                    remoteDeployment.run();
+                }
+
+                @Override
+                public String getDescription() {
+                    return "Distribution Management deployment of '" + gav + "'";
+                }
+            } );
+        }
+        return remoteDeployment;
+    }
 
-                    final boolean isSnapshot = pomXMLArtifact.isSnapshot();
-                    DeploymentRepository remoteRepository = null;
-                    if ( isSnapshot ) {
-                        remoteRepository = distributionManagement.getSnapshotRepository();
+    private void awaitRemoteDeployment( final FutureTask<Void> remoteDeployment ) {
+        //Deployments share their pool with remote deployments, so one that has not started is run by the waiting thread
+        //rather than waiting for a worker that may never become free. Running a started deployment does nothing.
+        remoteDeployment.run();
+        try {
+            remoteDeployment.get();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( e );
+        } catch ( ExecutionException e ) {
+            throw new RuntimeException( e.getCause() );
+        }
+    }
 
-                        //Maven documentation states use of the regular repository if the SNAPSHOT repository is undefined
-                        //See https://maven.apache.org/pom.html#Repository and https://bugzilla.redhat.com/show_bug.cgi?id=1129573
-                        if ( remoteRepository == null ) {
-                            remoteRepository = distributionManagement.getRepository();
-                        }
-                    } else {
-                        remoteRepository = distributionManagement.getRepository();
-                    }
+    static int getDeploymentThreads() {
+        return SystemProperties.getInt( DEPLOYMENT_THREADS,
+                                        DEFAULT_DEPLOYMENT_THREADS,
+                                        1 );
+    }
 
-                    //If the user has configured a distribution management module in the pom then we will attempt to deploy there.
-                    //If credentials are required those credentials must be provisioned in the user's settings.xml file
-                    if ( remoteRepository != null ) {
-                        DeployRequest remoteRequest = new DeployRequest();
-                        remoteRequest
-                                .addArtifact( jarArtifact )
-                                .addArtifact( pomXMLArtifact )
-                                .setRepository( getRemoteRepoFromDeployment( remoteRepository, embedder ) );
-
-                        Aether.getAether().getSystem().deploy( Aether.getAether().getSession(),
-                                                               remoteRequest );
-                    }
+    /**
+     * Resolves the repository defined by a POM's Distribution Management. The outcome depends on the POM's parents and
+     * on the server credentials in the Maven settings, none of which the POM's content identifies, so it is resolved
+     * afresh for every deployment.
+     * @return The repository to deploy to, or null if none is defined.
+     */
+    private RemoteRepository getDistributionRepository( final String pomXML,
+                                                        final boolean isSnapshot ) {
+        RemoteRepository remoteRepository = null;
+        final MavenEmbedder embedder = MavenProjectLoader.newMavenEmbedder( false );
+        final DistributionManagement distributionManagement = getDistributionManagement( pomXML,
+                                                                                         embedder );
+        if ( distributionManagement != null ) {
+            DeploymentRepository deploymentRepository = null;
+            if ( isSnapshot ) {
+                deploymentRepository = distributionManagement.getSnapshotRepository();
+
+                //Maven documentation states use of the regular repository if the SNAPSHOT repository is undefined
+                //See https://maven.apache.org/pom.html#Repository and https://bugzilla.redhat.com/show_bug.cgi?id=1129573
+                if ( deploymentRepository == null ) {
+                    deploymentRepository = distributionManagement.getRepository();
                 }
-
-            } catch ( DeploymentException e ) {
-                throw new RuntimeException( e );
+            } else {
+                deploymentRepository = distributionManagement.getRepository();
             }
 
-        } finally {
-            try {
-                pomXMLFile.delete();
-            } catch ( Exception e ) {
-                log.warn( "Unable to remove temporary file '" + pomXMLFile.getAbsolutePath() + "'" );
+            if ( deploymentRepository != null ) {
+                remoteRepository = getRemoteRepoFromDeployment( deploymentRepository,
+                                                                embedder );
             }
         }
+
+        return remoteRepository;
     }
 
     private void deployPom( final GAV gav,
@@ -448,6 +702,18 @@ public class GuvnorM2Repository {
         } catch ( DeploymentException e ) {
             throw new RuntimeException( e );
         }
+
+        updateArtifactIndex( gav );
+    }
+
+    private void updateArtifactIndex( final GAV gav ) {
+        //Deployment writes the artifacts (and their SNAPSHOT time-stamped variants) into the GAV's version folder
+        final File versionDir = new File( M2_REPO_DIR,
+                                          gav.getGroupId().replace( '.',
+                                                                    File.separatorChar ) + File.separator
+                                                  + gav.getArtifactId() + File.separator
+                                                  + gav.getVersion() );
+        artifactIndex.updateDirectory( versionDir );
     }
 
     private DistributionManagement getDistributionManagement( final String pomXML,
@@ -582,8 +848,12 @@ public class GuvnorM2Repository {
     }
 
     public static String getPomText( final String path ) {
-        final File file = new File( M2_REPO_DIR,
-                                    path );
+        return getPomText( new File( M2_REPO_DIR,
+                                     path ) );
+    }
+
+    static String getPomText( final File file ) {
+        final String path = file.getName();
         if ( isJar( path ) || isKJar( path ) ) {
             return loadPomFromJar( file );
 
@@ -785,95 +1055,6 @@ public class GuvnorM2Repository {
         throw new FileNotFoundException( "Could not find '" + prefix + "/*/" + suffix + "' in the jar." );
     }
 
-    private File appendPOMToJar( final String pom,
-                                 final String jarPath,
-                                 final GAV gav ) {
-        File originalJarFile = new File( jarPath );
-        File appendedJarFile = new File( jarPath + ".tmp" );
-
-        try {
-            ZipFile war = new ZipFile( originalJarFile );
-
-            ZipOutputStream append = new ZipOutputStream( new FileOutputStream( appendedJarFile ) );
-
-            // first, copy contents from existing war
-            Enumeration<? extends ZipEntry> entries = war.entries();
-            while ( entries.hasMoreElements() ) {
-                ZipEntry e = entries.nextElement();
-                append.putNextEntry( e );
-                if ( !e.isDirectory() ) {
-                    IOUtil.copy( war.getInputStream( e ),
-                                 append );
-                }
-                append.closeEntry();
-            }
-
-            // append pom.xml
-            ZipEntry e = new ZipEntry( getPomXmlPath( gav ) );
-            append.putNextEntry( e );
-            append.write( pom.getBytes() );
-            append.closeEntry();
-
-            // close
-            war.close();
-            append.close();
-        } catch ( ZipException e ) {
-            log.error( e.getMessage() );
-        } catch ( IOException e ) {
-            log.error( e.getMessage() );
-        }
-
-        return appendedJarFile;
-    }
-
-    private File appendPomPropertiesToJar( final String pomProperties,
-                                           final String jarPath,
-                                           final GAV gav ) {
-        File originalJarFile = new File( jarPath );
-        File appendedJarFile = new File( jarPath + ".tmp" );
-
-        try {
-            ZipFile war = new ZipFile( originalJarFile );
-
-            ZipOutputStream append = new ZipOutputStream( new FileOutputStream( appendedJarFile ) );
-
-            // first, copy contents from existing war
-            Enumeration<? extends ZipEntry> entries = war.entries();
-            while ( entries.hasMoreElements() ) {
-                ZipEntry e = entries.nextElement();
-                append.putNextEntry( e );
-                if ( !e.isDirectory() ) {
-                    IOUtil.copy( war.getInputStream( e ),
-                                 append );
-                }
-                append.closeEntry();
-            }
-
-            // append pom.properties
-            ZipEntry e = new ZipEntry( getPomPropertiesPath( gav ) );
-            append.putNextEntry( e );
-            append.write( pomProperties.getBytes() );
-            append.closeEntry();
-
-            // close
-            war.close();
-            append.close();
-        } catch ( ZipException e ) {
-            log.error( e.getMessage() );
-        } catch ( IOException e ) {
-            log.error( e.getMessage() );
-        }
-
-        //originalJarFile.delete();
-        //appendedJarFile.renameTo(originalJarFile);
-        return appendedJarFile;
-    }
-
-    protected String toFileName( final GAV gav,
-                                 final String fileName ) {
-        return gav.getGroupId() + "-" + gav.getArtifactId() + "-" + gav.getVersion() + "-" + Math.random() + "." + fileName;
-    }
-
     public String generatePOM( final GAV gav ) {
         Model model = new Model();
         model.setGroupId( gav.getGroupId() );
@@ -964,4 +1145,15 @@ public class GuvnorM2Repository {
 
         return artifactFile;
     }
+
+    /**
+     * The Maven descriptors found in a JAR.
+     */
+    private static class JarContent {
+
+        private String pomXML;
+        private boolean hasPomProperties;
+
+    }
+
 }
@@ -16,23 +16,16 @@
 
 package org.guvnor.m2repo.backend.server;
 
-import java.io.ByteArrayInputStream;
-import java.io.File;
-import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Future;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
-import org.drools.compiler.kproject.xml.MinimalPomParser;
-import org.drools.compiler.kproject.xml.PomModel;
 import org.guvnor.common.services.project.model.GAV;
+import org.guvnor.m2repo.model.ArtifactDeploymentStatus;
 import org.guvnor.m2repo.model.JarListPageRequest;
 import org.guvnor.m2repo.model.JarListPageRow;
 import org.guvnor.m2repo.service.M2RepoService;
@@ -49,6 +42,9 @@ public class M2RepoServiceImpl implements M2RepoService,
     @Inject
     private GuvnorM2Repository repository;
 
+    @Inject
+    private ArtifactDeploymentService deploymentService;
+
     @Override
     public void deployJar( final InputStream is,
                            final GAV gav ) {
@@ -57,6 +53,19 @@ public class M2RepoServiceImpl implements M2RepoService,
                                    true );
     }
 
+    @Override
+    public Future<ArtifactDeploymentStatus> deployJarAsync( final InputStream is,
+                                                            final GAV gav ) {
+        return deploymentService.deploy( is,
+                                         gav,
+                                         true );
+    }
+
+    @Override
+    public ArtifactDeploymentStatus getDeploymentStatus( final GAV gav ) {
+        return deploymentService.getStatus( gav );
+    }
+
     @Override
     public void deployJarInternal( final InputStream is,
                                    final GAV gav ) {
@@ -85,91 +94,29 @@ public class M2RepoServiceImpl implements M2RepoService,
 
     @Override
     public PageResponse<JarListPageRow> listArtifacts( final JarListPageRequest pageRequest ) {
-        //Get unsorted files matching filter
-        final String filters = pageRequest.getFilters();
-        final List<String> fileFormats = pageRequest.getFileFormats();
-        final String dataSourceName = pageRequest.getDataSourceName();
-        final boolean isAscending = pageRequest.isAscending();
-        final Collection<File> files = repository.listFiles( filters, fileFormats );
-
-        //Convert files to JarListPageRow
-        final List<JarListPageRow> jarPageRowList = new ArrayList<JarListPageRow>();
-        for ( File file : files ) {
-            JarListPageRow jarListPageRow = new JarListPageRow();
-            jarListPageRow.setName( file.getName() );
-            jarListPageRow.setPath( getJarPath( file.getPath(),
-                                                File.separator ) );
-            jarListPageRow.setGav( getGAV( jarListPageRow.getPath() ) );
-            jarListPageRow.setLastModified( new Date( file.lastModified() ) );
-            jarPageRowList.add( jarListPageRow );
-        }
-
-        //Sort JarListPageRow entries, if required
-        if ( dataSourceName != null ) {
-            final int order = ( isAscending ? 1 : -1 );
-            if ( dataSourceName.equals( JarListPageRequest.COLUMN_NAME ) ) {
-                Collections.sort( jarPageRowList,
-                                  new Comparator<JarListPageRow>() {
-                                      @Override
-                                      public int compare( final JarListPageRow o1,
-                                                          final JarListPageRow o2 ) {
-                                          return o1.getName().compareTo( o2.getName() ) * order;
-                                      }
-                                  } );
-
-            } else if ( dataSourceName.equals( JarListPageRequest.COLUMN_PATH ) ) {
-                Collections.sort( jarPageRowList,
-                                  new Comparator<JarListPageRow>() {
-                                      @Override
-                                      public int compare( final JarListPageRow o1,
-                                                          final JarListPageRow o2 ) {
-                                          return o1.getPath().compareTo( o2.getPath() ) * order;
-                                      }
-                                  } );
-
-            } else if ( dataSourceName.equals( JarListPageRequest.COLUMN_GAV ) ) {
-                Collections.sort( jarPageRowList,
-                                  new Comparator<JarListPageRow>() {
-                                      @Override
-                                      public int compare( final JarListPageRow o1,
-                                                          final JarListPageRow o2 ) {
-                                          final GAV gav1 = o1.getGav();
-                                          final GAV gav2 = o2.getGav();
-                                          return gav1.toString().compareToIgnoreCase( gav2.toString() ) * order;
-                                      }
-                                  } );
-
-            } else if ( dataSourceName.equals( JarListPageRequest.COLUMN_LAST_MODIFIED ) ) {
-                Collections.sort( jarPageRowList,
-                                  new Comparator<JarListPageRow>() {
-                                      @Override
-                                      public int compare( final JarListPageRow o1,
-                                                          final JarListPageRow o2 ) {
-                                          final Long ft1 = o1.getLastModified().getTime();
-                                          final Long ft2 = o2.getLastModified().getTime();
-                                          return ft1.compareTo( ft2 ) * order;
-                                      }
-                                  } );
-            }
-        }
-
-        //Copy request "page" of entries to response
-        final Integer pageSize = pageRequest.getPageSize();
-        final int startRowIndex = pageRequest.getStartRowIndex();
-        final int endRowIndex = Math.min( jarPageRowList.size(), ( pageSize == null ? jarPageRowList.size() : startRowIndex + pageSize ) );
+        //Get sorted page of files matching filter from the index
+        final ArtifactIndex.Page page = repository.getArtifactIndex().find( pageRequest.getFilters(),
+                                                                             pageRequest.getFileFormats(),
+                                                                             pageRequest.getDataSourceName(),
+                                                                             pageRequest.isAscending(),
+                                                                             pageRequest.getStartRowIndex(),
+                                                                             pageRequest.getPageSize() );
+
+        //Convert index entries to JarListPageRow
         final List<JarListPageRow> responsePageRowList = new ArrayList<JarListPageRow>();
-        if ( startRowIndex < jarPageRowList.size() ) {
-            int i = startRowIndex;
-            while ( i < endRowIndex && i < jarPageRowList.size() ) {
-                responsePageRowList.add( jarPageRowList.get( i ) );
-                i++;
-            }
+        for ( ArtifactIndexEntry entry : page.getEntries() ) {
+            final JarListPageRow jarListPageRow = new JarListPageRow();
+            jarListPageRow.setName( entry.getName() );
+            jarListPageRow.setPath( entry.getPath() );
+            jarListPageRow.setGav( entry.getGav() );
+            jarListPageRow.setLastModified( new Date( entry.getLastModified() ) );
+            responsePageRowList.add( jarListPageRow );
         }
 
         final PageResponse<JarListPageRow> response = new PageResponse<JarListPageRow>();
         response.setPageRowList( responsePageRowList );
         response.setStartRowIndex( pageRequest.getStartRowIndex() );
-        response.setTotalRowSize( files.size() );
+        response.setTotalRowSize( page.getTotalSize() );
         response.setTotalRowSizeExact( true );
 
         return response;
@@ -187,35 +134,6 @@ public class M2RepoServiceImpl implements M2RepoService,
         return jarPath;
     }
 
-    GAV getGAV( final String path ) {
-        GAV gav = null;
-        InputStream is = null;
-        try {
-            final String pom = getPomText( path );
-            is = new ByteArrayInputStream( pom.getBytes( Charset.forName( "UTF-8" ) ) );
-            final PomModel model = MinimalPomParser.parse( path,
-                                                           is );
-            gav = new GAV( model.getReleaseId().getGroupId(),
-                           model.getReleaseId().getArtifactId(),
-                           model.getReleaseId().getVersion() );
-
-        } catch ( RuntimeException rte ) {
-            //RuntimeException is thrown by MinimalPomParser for any Exception..
-            gav = new GAV( "<undetermined>",
-                           "<undetermined>",
-                           "<undetermined>" );
-        } finally {
-            if ( is != null ) {
-                try {
-                    is.close();
-                } catch ( IOException ioe ) {
-                    //Swallow
-                }
-            }
-        }
-        return gav;
-    }
-
     /**
      * @param baseURL the base URL where Guvnor M2 repo is hosted in web container. return a Guvnor M2 repo
      * URL point to local file system if baseURL is not available.
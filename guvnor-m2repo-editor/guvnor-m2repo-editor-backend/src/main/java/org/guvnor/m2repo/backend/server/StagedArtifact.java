@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.m2repo.backend.server;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.guvnor.common.services.project.model.GAV;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A JAR that has been copied to a temporary file, completed with its pom.xml and pom.properties,
+ * and is ready to be deployed. The temporary files are removed by {@link #dispose()}.
+ */
+class StagedArtifact {
+
+    private static final Logger log = LoggerFactory.getLogger( StagedArtifact.class );
+
+    private final GAV gav;
+    private final String pomXML;
+    private final File jarFile;
+    private final long size;
+    private final List<File> temporaryFiles = new ArrayList<File>();
+
+    StagedArtifact( final GAV gav,
+                    final String pomXML,
+                    final File jarFile,
+                    final long size ) {
+        this.gav = gav;
+        this.pomXML = pomXML;
+        this.jarFile = jarFile;
+        this.size = size;
+    }
+
+    GAV getGav() {
+        return gav;
+    }
+
+    String getPomXML() {
+        return pomXML;
+    }
+
+    File getJarFile() {
+        return jarFile;
+    }
+
+    /**
+     * @return Size of the JAR as uploaded.
+     */
+    long getSize() {
+        return size;
+    }
+
+    void addTemporaryFile( final File file ) {
+        if ( file != null ) {
+            temporaryFiles.add( file );
+        }
+    }
+
+    void dispose() {
+        for ( File file : temporaryFiles ) {
+            try {
+                file.delete();
+            } catch ( Exception e ) {
+                log.warn( "Unable to remove temporary file '" + file.getAbsolutePath() + "'" );
+            }
+        }
+        temporaryFiles.clear();
+    }
+
+}
@@ -24,6 +24,7 @@ import java.net.URLDecoder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.regex.Pattern;
 import java.util.zip.GZIPOutputStream;
 import javax.inject.Inject;
 import javax.servlet.ServletContext;
@@ -39,6 +40,16 @@ public class HttpGetHelper {
     private static final int DEFAULT_BUFFER_SIZE = 10240;
     private static final long DEFAULT_EXPIRE_TIME = 604800000L; //1 week.
     private static final String MULTIPART_BOUNDARY = "MULTIPART_BYTERANGES";
+    private static final Pattern RANGE_PATTERN = Pattern.compile( "^bytes=\\d*-\\d*(,\\d*-\\d*)*$" );
+
+    //Requests asking for more ranges than this are served the full file, to stop trivial denial of service
+    private static final int MAX_RANGES = 32;
+
+    //Request attributes used by containers supporting sendfile (e.g. Tomcat with NIO/APR connectors)
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
 
     @Inject
     private M2RepoService m2RepoService;
@@ -113,6 +124,44 @@ public class HttpGetHelper {
         Range full = new Range( 0, length - 1, length );
         List<Range> ranges = new ArrayList<Range>();
 
+        // Validate and process Range and If-Range headers.
+        String range = request.getHeader( "Range" );
+        if ( range != null ) {
+            if ( !RANGE_PATTERN.matcher( range ).matches() ) {
+                response.setHeader( "Content-Range", "bytes */" + length ); // Required in 416.
+                response.sendError( HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE );
+                return;
+            }
+
+            // If-Range holds either an ETag or a date; the ranges only apply if the file is unchanged.
+            String ifRange = request.getHeader( "If-Range" );
+            if ( ifRange != null && !ifRange.equals( eTag ) ) {
+                try {
+                    long ifRangeTime = request.getDateHeader( "If-Range" );
+                    if ( ifRangeTime == -1 || ifRangeTime + 1000 <= lastModified ) {
+                        ranges.add( full );
+                    }
+                } catch ( IllegalArgumentException ignore ) {
+                    ranges.add( full );
+                }
+            }
+
+            if ( ranges.isEmpty() ) {
+                final List<Range> requested = parseRanges( range,
+                                                           length );
+                if ( requested == null ) {
+                    response.setHeader( "Content-Range", "bytes */" + length ); // Required in 416.
+                    response.sendError( HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE );
+                    return;
+                }
+                if ( requested.size() > MAX_RANGES ) {
+                    ranges.add( full );
+                } else {
+                    ranges.addAll( requested );
+                }
+            }
+        }
+
         String contentType = context.getMimeType( fileName );
         boolean acceptsGzip = false;
         String disposition = "inline";
@@ -172,6 +221,13 @@ public class HttpGetHelper {
                 } else {
                     response.setHeader( "Content-Length",
                                         String.valueOf( r.length ) );
+                    if ( sendFile( request,
+                                   file,
+                                   r ) ) {
+                        // The container writes the body once the request completes
+                        output = null;
+                        return;
+                    }
                 }
 
                 copyRange( input,
@@ -187,6 +243,13 @@ public class HttpGetHelper {
                 response.setHeader( "Content-Length",
                                     String.valueOf( r.length ) );
                 response.setStatus( HttpServletResponse.SC_PARTIAL_CONTENT ); // 206.
+                if ( sendFile( request,
+                               file,
+                               r ) ) {
+                    // The container writes the body once the request completes
+                    output = null;
+                    return;
+                }
 
                 copyRange( input,
                            output,
@@ -203,6 +266,7 @@ public class HttpGetHelper {
                     sos.println( "--" + MULTIPART_BOUNDARY );
                     sos.println( "Content-Type: " + contentType );
                     sos.println( "Content-Range: bytes " + r.start + "-" + r.end + "/" + r.total );
+                    sos.println();
 
                     copyRange( input,
                                output,
@@ -243,35 +307,109 @@ public class HttpGetHelper {
                 || Arrays.binarySearch( matchValues, "*" ) > -1;
     }
 
+    /**
+     * Parses the byte ranges of a Range header, e.g. "bytes=0-99,200-,-50".
+     * Ranges that are reversed or lie beyond the end of the file are ignored, as long as another range is satisfiable.
+     * @param range Range header, already validated against the expected syntax.
+     * @param length length of the file
+     * @return the satisfiable ranges, or null if there are none or a position is too large to be parsed.
+     */
+    static List<Range> parseRanges( final String range,
+                                    final long length ) {
+        final List<Range> ranges = new ArrayList<Range>();
+        for ( String part : range.substring( 6 ).split( "," ) ) {
+            // Assuming a file with length of 100, the following examples return bytes at:
+            // 50-80 (50 to 80), 40- (40 to length=100), -20 (length-20=80 to length=100).
+            long start;
+            long end;
+            try {
+                start = sublong( part,
+                                 0,
+                                 part.indexOf( "-" ) );
+                end = sublong( part,
+                               part.indexOf( "-" ) + 1,
+                               part.length() );
+            } catch ( NumberFormatException e ) {
+                return null;
+            }
+
+            if ( start == -1 ) {
+                if ( end == -1 ) {
+                    continue;
+                }
+                start = Math.max( 0,
+                                  length - end );
+                end = length - 1;
+            } else if ( end == -1 || end > length - 1 ) {
+                end = length - 1;
+            }
+
+            if ( start > end ) {
+                // Reversed, e.g. 5-2, or beyond the end of the file
+                continue;
+            }
+
+            ranges.add( new Range( start,
+                                   end,
+                                   length ) );
+        }
+        return ranges.isEmpty() ? null : ranges;
+    }
+
+    private static long sublong( final String value,
+                                 final int beginIndex,
+                                 final int endIndex ) {
+        final String substring = value.substring( beginIndex,
+                                                  endIndex );
+        return ( substring.length() > 0 ) ? Long.parseLong( substring ) : -1;
+    }
+
+    /**
+     * Delegates writing of the range to the container, when it supports sendfile.
+     * @return true if the container will write the response body.
+     */
+    private static boolean sendFile( final HttpServletRequest request,
+                                     final File file,
+                                     final Range r ) throws IOException {
+        if ( !Boolean.TRUE.equals( request.getAttribute( SENDFILE_SUPPORT ) ) ) {
+            return false;
+        }
+        request.setAttribute( SENDFILE_FILENAME,
+                              file.getCanonicalPath() );
+        request.setAttribute( SENDFILE_START,
+                              r.start );
+        request.setAttribute( SENDFILE_END,
+                              r.end + 1 );
+        return true;
+    }
+
     private static void copyRange( final RandomAccessFile input,
                                    final OutputStream output,
                                    final long start,
                                    final long length ) throws IOException {
-        byte[] buffer = new byte[ DEFAULT_BUFFER_SIZE ];
-        int read;
-
-        if ( input.length() == length ) {
-            // Write full range.
-            while ( ( read = input.read( buffer ) ) > 0 ) {
-                output.write( buffer, 0, read );
-            }
-        } else {
-            // Write partial range.
-            input.seek( start );
-            long toRead = length;
-
-            while ( ( read = input.read( buffer ) ) > 0 ) {
-                if ( ( toRead -= read ) > 0 ) {
-                    output.write( buffer, 0, read );
-                } else {
-                    output.write( buffer, 0, (int) toRead + read );
-                    break;
-                }
+        // The container's sendfile support, where available, is used in preference as it avoids this copy.
+        // FileChannel.transferTo is not used: the servlet OutputStream is not a channel, so the JDK would copy through
+        // its own buffer and then again through the Channels.newChannel wrapper, which is no better than this loop.
+        final byte[] buffer = new byte[ DEFAULT_BUFFER_SIZE ];
+        long toWrite = length;
+
+        input.seek( start );
+        while ( toWrite > 0 ) {
+            final int read = input.read( buffer,
+                                         0,
+                                         (int) Math.min( buffer.length,
+                                                         toWrite ) );
+            if ( read == -1 ) {
+                break;
             }
+            output.write( buffer,
+                          0,
+                          read );
+            toWrite -= read;
         }
     }
 
-    protected class Range {
+    protected static class Range {
 
         long start;
         long end;
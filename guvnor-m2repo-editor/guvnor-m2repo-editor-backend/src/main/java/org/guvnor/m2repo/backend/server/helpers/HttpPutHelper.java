@@ -88,6 +88,10 @@ public class HttpPutHelper {
             //Copy input
             IOUtil.copy( inputStream,
                          outputStream );
+            outputStream.close();
+            outputStream = null;
+
+            m2RepoService.getArtifactIndex().update( file );
 
             response.setStatus( status );
 
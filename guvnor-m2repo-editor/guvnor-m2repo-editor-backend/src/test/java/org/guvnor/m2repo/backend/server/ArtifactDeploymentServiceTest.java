@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.m2repo.backend.server;
+
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.guvnor.common.services.project.model.GAV;
+import org.guvnor.m2repo.model.ArtifactDeploymentStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class ArtifactDeploymentServiceTest {
+
+    private final GAV gav = new GAV( "org.guvnor",
+                                     "test",
+                                     "1.0" );
+
+    private GuvnorM2Repository repository;
+    private ExecutorService executorService;
+    private ArtifactDeploymentService service;
+
+    private CountDownLatch latch = new CountDownLatch( 1 );
+
+    @Before
+    public void setup() {
+        repository = mock( GuvnorM2Repository.class );
+        executorService = Executors.newSingleThreadExecutor();
+
+        final ArtifactDeploymentExecutorManager executorManager = new ArtifactDeploymentExecutorManager();
+        executorManager.setExecutorService( executorService );
+        final ArtifactDeploymentExecutorManagerFactory executorManagerFactory = mock( ArtifactDeploymentExecutorManagerFactory.class );
+        when( executorManagerFactory.getExecutorManager() ).thenReturn( executorManager );
+
+        service = new ArtifactDeploymentService( repository,
+                                                 executorManagerFactory );
+
+        //Keep the single worker busy until the test releases it
+        executorService.submit( new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    latch.await();
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        } );
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testDuplicateDeploymentsAreCoalesced() throws Exception {
+        final StagedArtifact first = mock( StagedArtifact.class );
+        final StagedArtifact second = mock( StagedArtifact.class );
+        when( first.getGav() ).thenReturn( gav );
+        when( second.getGav() ).thenReturn( gav );
+        when( repository.stageArtifact( any( InputStream.class ),
+                                        eq( gav ) ) ).thenReturn( first,
+                                                                  second );
+
+        final Future<ArtifactDeploymentStatus> future1 = service.deploy( mock( InputStream.class ),
+                                                                         gav,
+                                                                         false );
+        final Future<ArtifactDeploymentStatus> future2 = service.deploy( mock( InputStream.class ),
+                                                                         gav,
+                                                                         false );
+        assertNotSame( future1,
+                       future2 );
+        assertEquals( ArtifactDeploymentStatus.SUPERSEDED,
+                      future1.get() );
+        assertEquals( ArtifactDeploymentStatus.QUEUED,
+                      service.getStatus( gav ) );
+
+        latch.countDown();
+
+        assertEquals( ArtifactDeploymentStatus.DEPLOYED,
+                      future2.get() );
+        assertEquals( ArtifactDeploymentStatus.DEPLOYED,
+                      service.getStatus( gav ) );
+        verify( first ).dispose();
+        verify( repository,
+                never() ).deployArtifact( first,
+                                          false );
+        verify( repository,
+                times( 1 ) ).deployArtifact( second,
+                                             false );
+    }
+
+    @Test
+    public void testFailedDeployment() throws Exception {
+        final StagedArtifact artifact = mock( StagedArtifact.class );
+        when( artifact.getGav() ).thenReturn( gav );
+        when( repository.stageArtifact( any( InputStream.class ),
+                                        eq( gav ) ) ).thenReturn( artifact );
+        doThrow( new RuntimeException( "failed" ) ).when( repository ).deployArtifact( artifact,
+                                                                                         true );
+
+        final Future<ArtifactDeploymentStatus> future = service.deploy( mock( InputStream.class ),
+                                                                        gav,
+                                                                        true );
+        latch.countDown();
+
+        assertEquals( ArtifactDeploymentStatus.FAILED,
+                      future.get() );
+        assertEquals( ArtifactDeploymentStatus.FAILED,
+                      service.getStatus( gav ) );
+    }
+
+    @Test
+    public void testUnknownStatus() {
+        assertEquals( ArtifactDeploymentStatus.UNKNOWN,
+                      service.getStatus( new GAV( "org.guvnor",
+                                                  "unknown",
+                                                  "1.0" ) ) );
+    }
+
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.m2repo.backend.server;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.guvnor.common.services.project.model.GAV;
+import org.guvnor.m2repo.model.JarListPageRequest;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class ArtifactIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File root;
+    private ArtifactIndex index;
+
+    @Before
+    public void setup() throws Exception {
+        root = folder.newFolder( "repository" );
+        index = new ArtifactIndex( root );
+        index.put( new ArtifactIndexEntry( "org/a/1.0/a-1.0.jar",
+                                           new GAV( "org",
+                                                    "a",
+                                                    "1.0" ),
+                                           10,
+                                           300 ) );
+        index.put( new ArtifactIndexEntry( "org/a/1.0/a-1.0.pom",
+                                           new GAV( "org",
+                                                    "a",
+                                                    "1.0" ),
+                                           5,
+                                           200 ) );
+        index.put( new ArtifactIndexEntry( "org/b/2.0/b-2.0.jar",
+                                           new GAV( "org",
+                                                    "b",
+                                                    "2.0" ),
+                                           20,
+                                           100 ) );
+    }
+
+    @Test
+    public void testFindSortedPage() {
+        final ArtifactIndex.Page page = index.find( null,
+                                                    null,
+                                                    JarListPageRequest.COLUMN_LAST_MODIFIED,
+                                                    true,
+                                                    1,
+                                                    1 );
+        assertEquals( 3,
+                      page.getTotalSize() );
+        assertEquals( 1,
+                      page.getEntries().size() );
+        assertEquals( "a-1.0.pom",
+                      page.getEntries().get( 0 ).getName() );
+    }
+
+    @Test
+    public void testFindDescending() {
+        final ArtifactIndex.Page page = index.find( null,
+                                                    null,
+                                                    JarListPageRequest.COLUMN_NAME,
+                                                    false,
+                                                    0,
+                                                    null );
+        assertEquals( "b-2.0.jar",
+                      page.getEntries().get( 0 ).getName() );
+        assertEquals( "a-1.0.jar",
+                      page.getEntries().get( 2 ).getName() );
+    }
+
+    @Test
+    public void testFindWithFilterAndFileFormats() {
+        final List<String> jars = Arrays.asList( "jar" );
+        final ArtifactIndex.Page page = index.find( "a-1",
+                                                    jars,
+                                                    null,
+                                                    true,
+                                                    0,
+                                                    null );
+        assertEquals( 1,
+                      page.getTotalSize() );
+        assertEquals( "org/a/1.0/a-1.0.jar",
+                      page.getEntries().get( 0 ).getPath() );
+    }
+
+    @Test
+    public void testFilteredPagesAreConsistentAcrossModifications() {
+        final ArtifactIndex.Page first = index.find( "org",
+                                                     null,
+                                                     JarListPageRequest.COLUMN_NAME,
+                                                     false,
+                                                     0,
+                                                     1 );
+        assertEquals( 0,
+                      first.getTotalSize() );
+
+        //Filters apply to file names only; a-1.0.jar and a-1.0.pom match "a-"
+        final ArtifactIndex.Page page = index.find( "a-",
+                                                    null,
+                                                    JarListPageRequest.COLUMN_NAME,
+                                                    false,
+                                                    1,
+                                                    1 );
+        assertEquals( 2,
+                      page.getTotalSize() );
+        assertEquals( "a-1.0.jar",
+                      page.getEntries().get( 0 ).getName() );
+
+        //Modifications are reflected in the matches of a filter already looked up
+        index.put( new ArtifactIndexEntry( "org/a/2.0/a-2.0.jar",
+                                           new GAV( "org",
+                                                    "a",
+                                                    "2.0" ),
+                                           10,
+                                           400 ) );
+        final ArtifactIndex.Page updated = index.find( "a-",
+                                                       null,
+                                                       JarListPageRequest.COLUMN_NAME,
+                                                       false,
+                                                       0,
+                                                       1 );
+        assertEquals( 3,
+                      updated.getTotalSize() );
+        assertEquals( "a-2.0.jar",
+                      updated.getEntries().get( 0 ).getName() );
+    }
+
+    @Test
+    public void testRemove() {
+        index.remove( "org/a/1.0/a-1.0.jar" );
+        assertEquals( 2,
+                      index.find( null,
+                                  null,
+                                  null,
+                                  true,
+                                  0,
+                                  null ).getTotalSize() );
+    }
+
+    @Test
+    public void testReconcileDropsFilesNoLongerInRepository() {
+        //None of the indexed entries exist on disk
+        final ArtifactIndex reloaded = new ArtifactIndex( root );
+        reloaded.reconcile();
+        assertEquals( 0,
+                      reloaded.size() );
+    }
+
+    @Test
+    public void testUpdateDirectoryRemovesDeletedFiles() {
+        index.updateDirectory( new File( root,
+                                         "org" + File.separator + "a" + File.separator + "1.0" ) );
+        assertEquals( 1,
+                      index.size() );
+        assertEquals( "org/b/2.0/b-2.0.jar",
+                      index.find( null,
+                                  null,
+                                  null,
+                                  true,
+                                  0,
+                                  null ).getEntries().get( 0 ).getPath() );
+    }
+
+}
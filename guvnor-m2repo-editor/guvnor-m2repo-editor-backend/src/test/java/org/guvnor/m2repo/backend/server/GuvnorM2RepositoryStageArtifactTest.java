@@ -0,0 +1,207 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.m2repo.backend.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.guvnor.common.services.project.model.GAV;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GuvnorM2RepositoryStageArtifactTest {
+
+    private static final String POM_XML = "<project><modelVersion>4.0.0</modelVersion></project>";
+
+    private final GAV gav = new GAV( "org.guvnor",
+                                     "staged",
+                                     "1.0" );
+
+    //Temporary files created by the repository whilst staging
+    private final List<File> temporaryFiles = new ArrayList<File>();
+
+    private final GuvnorM2Repository repository = new GuvnorM2Repository() {
+        @Override
+        File createTempFile( final GAV gav,
+                             final String suffix ) throws IOException {
+            final File file = super.createTempFile( gav,
+                                                    suffix );
+            temporaryFiles.add( file );
+            return file;
+        }
+    };
+
+    @After
+    public void tearDown() {
+        for ( File file : temporaryFiles ) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testJarWithPomIsStagedAsUploaded() throws Exception {
+        final byte[] jar = jar( true );
+
+        final StagedArtifact staged = repository.stageArtifact( new ByteArrayInputStream( jar ),
+                                                                gav );
+
+        //The pom.xml is read as the upload is copied, and the JAR is not rewritten
+        assertEquals( POM_XML,
+                      staged.getPomXML() );
+        assertEquals( 1,
+                      temporaryFiles.size() );
+        assertArrayEquals( jar,
+                           FileUtils.readFileToByteArray( staged.getJarFile() ) );
+        assertEquals( jar.length,
+                      staged.getSize() );
+
+        staged.dispose();
+        assertNoTemporaryFilesRemain();
+    }
+
+    @Test
+    public void testJarWithoutPomIsCompleted() throws Exception {
+        final byte[] jar = jar( false );
+
+        final StagedArtifact staged = repository.stageArtifact( new ByteArrayInputStream( jar ),
+                                                                gav );
+
+        assertEquals( repository.generatePOM( gav ),
+                      staged.getPomXML() );
+        assertEquals( 2,
+                      temporaryFiles.size() );
+        assertEquals( jar.length,
+                      staged.getSize() );
+        final ZipFile zip = new ZipFile( staged.getJarFile() );
+        try {
+            assertNotNull( zip.getEntry( repository.getPomXmlPath( gav ) ) );
+            assertNotNull( zip.getEntry( repository.getPomPropertiesPath( gav ) ) );
+            assertNotNull( zip.getEntry( "org/guvnor/Data.class" ) );
+        } finally {
+            zip.close();
+        }
+
+        staged.dispose();
+        assertNoTemporaryFilesRemain();
+    }
+
+    @Test
+    public void testFailingStreamLeavesNothingBehind() throws Exception {
+        final byte[] jar = jar( true );
+        final InputStream failing = new FilterInputStream( new ByteArrayInputStream( jar ) ) {
+            private int read = 0;
+
+            @Override
+            public int read( final byte[] b,
+                             final int off,
+                             final int len ) throws IOException {
+                if ( read > jar.length / 2 ) {
+                    throw new IOException( "Connection reset" );
+                }
+                final int count = super.read( b,
+                                              off,
+                                              len );
+                read += Math.max( 0,
+                                  count );
+                return count;
+            }
+        };
+
+        try {
+            repository.stageArtifact( failing,
+                                      gav );
+            fail( "Expected the staging to fail" );
+        } catch ( RuntimeException e ) {
+            //Expected
+        }
+        assertEquals( 1,
+                      temporaryFiles.size() );
+        assertNoTemporaryFilesRemain();
+    }
+
+    @Test
+    public void testTruncatedJarLeavesNothingBehind() throws Exception {
+        final byte[] jar = jar( true );
+
+        try {
+            repository.stageArtifact( new ByteArrayInputStream( Arrays.copyOf( jar,
+                                                                               jar.length * 3 / 5 ) ),
+                                      gav );
+            fail( "Expected the staging to fail" );
+        } catch ( RuntimeException e ) {
+            //Expected
+        }
+        assertFalse( temporaryFiles.isEmpty() );
+        assertNoTemporaryFilesRemain();
+    }
+
+    @Test
+    public void testStreamThatIsNotAJarLeavesNothingBehind() throws Exception {
+        try {
+            repository.stageArtifact( new ByteArrayInputStream( "not a jar".getBytes( "UTF-8" ) ),
+                                      gav );
+            fail( "Expected the staging to fail" );
+        } catch ( RuntimeException e ) {
+            //Expected
+        }
+        assertFalse( temporaryFiles.isEmpty() );
+        assertNoTemporaryFilesRemain();
+    }
+
+    private void assertNoTemporaryFilesRemain() {
+        for ( File file : temporaryFiles ) {
+            assertFalse( file.getAbsolutePath(),
+                         file.exists() );
+        }
+    }
+
+    //A JAR whose class, held after its Maven metadata, is large enough to be split across many reads
+    private byte[] jar( final boolean withPom ) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ZipOutputStream zos = new ZipOutputStream( bytes );
+        if ( withPom ) {
+            zos.putNextEntry( new ZipEntry( repository.getPomXmlPath( gav ) ) );
+            zos.write( POM_XML.getBytes( "UTF-8" ) );
+            zos.closeEntry();
+            zos.putNextEntry( new ZipEntry( repository.getPomPropertiesPath( gav ) ) );
+            zos.write( GuvnorM2Repository.generatePomProperties( gav ).getBytes( "UTF-8" ) );
+            zos.closeEntry();
+        }
+        final byte[] data = new byte[ 512 * 1024 ];
+        new Random( 42 ).nextBytes( data );
+        zos.putNextEntry( new ZipEntry( "org/guvnor/Data.class" ) );
+        zos.write( data );
+        zos.closeEntry();
+        zos.close();
+        return bytes.toByteArray();
+    }
+
+}
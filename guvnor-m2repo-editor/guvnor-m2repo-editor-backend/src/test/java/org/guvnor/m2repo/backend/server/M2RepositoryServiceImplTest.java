@@ -21,7 +21,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.List;
@@ -39,8 +38,9 @@ import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
-import org.mockito.Matchers;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,6 +57,9 @@ public class M2RepositoryServiceImplTest {
     private static GAV gavBackend2;
     private static GAV gavArquillian;
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     private GuvnorM2Repository repo;
     private M2RepoServiceImpl service;
     private HttpPostHelper helper;
@@ -322,16 +325,20 @@ public class M2RepositoryServiceImplTest {
      */
     @Test
     public void testListArtifacts() throws Exception {
-        List<File> artifacts = new ArrayList<File>();
+        //The index journals to its own folder rather than to the repository used by the other tests
+        ArtifactIndex artifacts = new ArtifactIndex( tempFolder.newFolder( "m2" ) );
         final int TOTAL = 5;
         final int PAGE_START = 1;
         final int PAGE_SIZE = 2;
         for ( int i = 0; i < TOTAL; i++ ) {
-            artifacts.add( new File( GuvnorM2Repository.M2_REPO_DIR, "path/x" + i ) );
+            artifacts.put( new ArtifactIndexEntry( "path/x" + i,
+                                                   gavBackend,
+                                                   0,
+                                                   0 ) );
         }
         // Create a mock repository to make the test independent on any project deployment
         GuvnorM2Repository mockRepo = Mockito.mock( GuvnorM2Repository.class );
-        Mockito.when( mockRepo.listFiles( Mockito.anyString(), Matchers.<List<String>>any() ) )
+        Mockito.when( mockRepo.getArtifactIndex() )
                 .thenReturn( artifacts );
 
         // Create a shell M2RepoService with injected mock M2Repository
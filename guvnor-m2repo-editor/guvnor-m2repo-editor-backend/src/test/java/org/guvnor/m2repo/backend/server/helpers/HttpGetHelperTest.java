@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.m2repo.backend.server.helpers;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HttpGetHelperTest {
+
+    @Test
+    public void testSingleRange() {
+        final List<HttpGetHelper.Range> ranges = HttpGetHelper.parseRanges( "bytes=10-19",
+                                                                            100 );
+        assertEquals( 1,
+                      ranges.size() );
+        assertRange( ranges.get( 0 ),
+                     10,
+                     19 );
+        assertEquals( 10,
+                      ranges.get( 0 ).length );
+    }
+
+    @Test
+    public void testOpenAndSuffixRanges() {
+        final List<HttpGetHelper.Range> ranges = HttpGetHelper.parseRanges( "bytes=90-,-5",
+                                                                            100 );
+        assertEquals( 2,
+                      ranges.size() );
+        assertRange( ranges.get( 0 ),
+                     90,
+                     99 );
+        assertRange( ranges.get( 1 ),
+                     95,
+                     99 );
+    }
+
+    @Test
+    public void testEndBeyondLengthIsTruncated() {
+        final List<HttpGetHelper.Range> ranges = HttpGetHelper.parseRanges( "bytes=50-500",
+                                                                            100 );
+        assertRange( ranges.get( 0 ),
+                     50,
+                     99 );
+    }
+
+    @Test
+    public void testUnsatisfiableRange() {
+        assertNull( HttpGetHelper.parseRanges( "bytes=200-300",
+                                               100 ) );
+        assertNull( HttpGetHelper.parseRanges( "bytes=-",
+                                               100 ) );
+    }
+
+    @Test
+    public void testUnsatisfiableRangesAreIgnoredAmongstValidOnes() {
+        final List<HttpGetHelper.Range> ranges = HttpGetHelper.parseRanges( "bytes=5-2,10-19,200-300",
+                                                                            100 );
+        assertEquals( 1,
+                      ranges.size() );
+        assertRange( ranges.get( 0 ),
+                     10,
+                     19 );
+
+        assertNull( HttpGetHelper.parseRanges( "bytes=5-2",
+                                               100 ) );
+    }
+
+    @Test
+    public void testPositionTooLargeIsUnsatisfiable() {
+        assertNull( HttpGetHelper.parseRanges( "bytes=0-99999999999999999999",
+                                               100 ) );
+        assertNull( HttpGetHelper.parseRanges( "bytes=10-19,-99999999999999999999",
+                                               100 ) );
+    }
+
+    private void assertRange( final HttpGetHelper.Range range,
+                              final long start,
+                              final long end ) {
+        assertEquals( start,
+                      range.start );
+        assertEquals( end,
+                      range.end );
+        assertEquals( 100,
+                      range.total );
+    }
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.project.events;
+
+import org.guvnor.common.services.project.model.GAV;
+import org.jboss.errai.common.client.api.annotations.Portable;
+
+/**
+ * An event representing deployment of an Artifact by this node
+ */
+@Portable
+public class ArtifactDeployedEvent {
+
+    private GAV gav;
+
+    public ArtifactDeployedEvent() {
+    }
+
+    public ArtifactDeployedEvent( GAV gav ) {
+        this.gav = gav;
+    }
+
+    public GAV getGav() {
+        return gav;
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.guvnor.common.services.project.service;
 
+import java.util.List;
 import java.util.Set;
 
 import org.guvnor.common.services.project.model.POM;
@@ -37,6 +38,21 @@ public interface ProjectServiceCore<T> {
     Set<Project> getProjects( final Repository repository,
                               final String branch );
 
+    /**
+     * Gets a page of the projects in a particular repository, ordered by name. Only the projects on the page are loaded
+     * @param repository
+     * @param branch the branch where we are looking for the projects
+     * @param prefix only projects whose names start with the prefix are returned; null for all projects
+     * @param offset number of projects to skip
+     * @param limit maximum number of projects to return; -1 for all projects
+     * @return
+     */
+    List<Project> getProjects( final Repository repository,
+                               final String branch,
+                               final String prefix,
+                               final int offset,
+                               final int limit );
+
     /**
      * Creates a new project to the given path.
      * @param repository
@@ -17,6 +17,8 @@
 package org.guvnor.common.services.project.backend.server;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -148,6 +150,59 @@ public abstract class AbstractProjectService<T extends Project>
         return authorizedProjects;
     }
 
+    @Override
+    public List<Project> getProjects( final Repository repository,
+                                      final String branch,
+                                      final String prefix,
+                                      final int offset,
+                                      final int limit ) {
+        final List<Project> authorizedProjects = new ArrayList<Project>();
+        if ( repository == null ) {
+            return authorizedProjects;
+        }
+        //Projects are named after their folders, so the folders are filtered and ordered before any Project is resolved
+        final List<org.uberfire.java.nio.file.Path> projectFolders = new ArrayList<org.uberfire.java.nio.file.Path>();
+        final Path repositoryRoot = repository.getBranchRoot( branch );
+        final DirectoryStream<org.uberfire.java.nio.file.Path> nioRepositoryPaths = ioService.newDirectoryStream( Paths.convert( repositoryRoot ) );
+        try {
+            for ( org.uberfire.java.nio.file.Path nioRepositoryPath : nioRepositoryPaths ) {
+                final String folderName = nioRepositoryPath.getFileName() == null ? "" : nioRepositoryPath.getFileName().toString();
+                if ( ( prefix == null || folderName.startsWith( prefix ) ) && Files.isDirectory( nioRepositoryPath ) ) {
+                    projectFolders.add( nioRepositoryPath );
+                }
+            }
+        } finally {
+            nioRepositoryPaths.close();
+        }
+        Collections.sort( projectFolders,
+                          new Comparator<org.uberfire.java.nio.file.Path>() {
+                              @Override
+                              public int compare( final org.uberfire.java.nio.file.Path folder1,
+                                                  final org.uberfire.java.nio.file.Path folder2 ) {
+                                  return String.valueOf( folder1.getFileName() ).compareTo( String.valueOf( folder2.getFileName() ) );
+                              }
+                          } );
+
+        //Folders are resolved in order until the page is full; only the Projects on the page have their pom.xml loaded
+        int skipped = 0;
+        for ( org.uberfire.java.nio.file.Path projectFolder : projectFolders ) {
+            if ( limit >= 0 && authorizedProjects.size() >= limit ) {
+                break;
+            }
+            final Project project = resourceResolver.resolveProject( Paths.convert( projectFolder ) );
+            if ( project == null || !authorizationManager.authorize( project, sessionInfo.getIdentity() ) ) {
+                continue;
+            }
+            if ( skipped < offset ) {
+                skipped++;
+                continue;
+            }
+            project.setPom( pomService.load( project.getPomXMLPath() ) );
+            authorizedProjects.add( project );
+        }
+        return authorizedProjects;
+    }
+
     @Override
     public Package newPackage( final Package parentPackage,
                                final String packageName ) {
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.project.backend.server;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.enterprise.context.ApplicationScoped;
+
+import org.apache.maven.model.Model;
+import org.guvnor.common.services.backend.cache.BoundedLRUMap;
+import org.guvnor.common.services.backend.util.Digests;
+import org.guvnor.common.services.backend.util.SystemProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded cache of parsed pom.xml files, keyed by the file's URI and validated by the git blob id of its content.
+ * <p/>
+ * Cached Models are shared and must be treated as immutable: callers convert them to a POM or clone them before
+ * making changes. Hit, miss and eviction counts are available for monitoring, and are logged every
+ * {@value #STATISTICS_INTERVAL} lookups.
+ */
+@ApplicationScoped
+public class POMModelCache {
+
+    public static final String SIZE_PROPERTY_NAME = "org.guvnor.project.pom.cache.size";
+
+    private static final int DEFAULT_SIZE = 1000;
+
+    //Number of lookups between logging the cache's statistics
+    private static final long STATISTICS_INTERVAL = 10000;
+
+    private static final Logger logger = LoggerFactory.getLogger( POMModelCache.class );
+
+    private final BoundedLRUMap<String, CachedModel> lru;
+    private final Map<String, CachedModel> models;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong lookups = new AtomicLong();
+
+    public POMModelCache() {
+        this( getMaxEntries() );
+    }
+
+    public POMModelCache( final int maxEntries ) {
+        this.lru = new BoundedLRUMap<String, CachedModel>( maxEntries );
+        this.models = Collections.synchronizedMap( lru );
+    }
+
+    static int getMaxEntries() {
+        return SystemProperties.getInt( SIZE_PROPERTY_NAME,
+                                        DEFAULT_SIZE,
+                                        1 );
+    }
+
+    /**
+     * Returns the Model parsed from a pom.xml, if the content it was parsed from is unchanged.
+     * @param uri The pom.xml's URI
+     * @param content The pom.xml's current content
+     * @return The cached Model or null if there is none or the content has changed
+     */
+    public Model getModel( final String uri,
+                           final String content ) {
+        if ( lookups.incrementAndGet() % STATISTICS_INTERVAL == 0 ) {
+            logStatistics();
+        }
+        final CachedModel cached = models.get( uri );
+        if ( cached == null || !cached.blobId.equals( Digests.blobId( content ) ) ) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return cached.model;
+    }
+
+    private void logStatistics() {
+        if ( logger.isInfoEnabled() ) {
+            logger.info( "POM model cache: " + size() + " entries, " + getHits() + " hits, " + getMisses() + " misses, "
+                                 + getEvictions() + " evictions." );
+        }
+    }
+
+    public void setModel( final String uri,
+                          final String content,
+                          final Model model ) {
+        models.put( uri,
+                    new CachedModel( Digests.blobId( content ),
+                                     model ) );
+    }
+
+    public void invalidateCache( final String uri ) {
+        models.remove( uri );
+    }
+
+    public void invalidateCache() {
+        models.clear();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return lru.getEvictions();
+    }
+
+    public int size() {
+        return models.size();
+    }
+
+    private static class CachedModel {
+
+        private final String blobId;
+        private final Model model;
+
+        private CachedModel( final String blobId,
+                             final Model model ) {
+            this.blobId = blobId;
+            this.model = model;
+        }
+    }
+
+}
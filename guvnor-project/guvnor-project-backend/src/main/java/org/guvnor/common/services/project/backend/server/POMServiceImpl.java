@@ -20,6 +20,7 @@ import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.apache.maven.model.Model;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import org.guvnor.common.services.backend.exceptions.ExceptionUtilities;
 import org.guvnor.common.services.backend.util.CommentedOptionFactory;
@@ -46,6 +47,7 @@ public class POMServiceImpl
     private POMContentHandler pomContentHandler;
     private M2RepoService m2RepoService;
     private MetadataService metadataService;
+    private POMModelCache pomModelCache;
 
     @Inject
     private CommentedOptionFactory optionsFactory;
@@ -54,15 +56,28 @@ public class POMServiceImpl
         // For Weld
     }
 
+    public POMServiceImpl( final IOService ioService,
+                           final POMContentHandler pomContentHandler,
+                           final M2RepoService m2RepoService,
+                           final MetadataService metadataService ) {
+        this( ioService,
+              pomContentHandler,
+              m2RepoService,
+              metadataService,
+              new POMModelCache() );
+    }
+
     @Inject
     public POMServiceImpl( final @Named("ioStrategy") IOService ioService,
                            final POMContentHandler pomContentHandler,
                            final M2RepoService m2RepoService,
-                           final MetadataService metadataService ) {
+                           final MetadataService metadataService,
+                           final POMModelCache pomModelCache ) {
         this.ioService = ioService;
         this.pomContentHandler = pomContentHandler;
         this.m2RepoService = m2RepoService;
         this.metadataService = metadataService;
+        this.pomModelCache = pomModelCache;
     }
 
     @Override
@@ -102,16 +117,28 @@ public class POMServiceImpl
     @Override
     public POM load( final Path path ) {
         try {
-            return pomContentHandler.toModel( loadPomXMLString( path ) );
+            //The POM is built afresh from the cached Model so callers are free to change it
+            return pomContentHandler.toModel( loadPomXMLModel( path ) );
 
         } catch ( Exception e ) {
             throw ExceptionUtilities.handleException( e );
         }
     }
 
-    private String loadPomXMLString( final Path path ) {
+    private Model loadPomXMLModel( final Path path ) throws IOException, XmlPullParserException {
         final org.uberfire.java.nio.file.Path nioPath = Paths.convert( path );
-        return ioService.readAllString( nioPath );
+        final String content = ioService.readAllString( nioPath );
+        final String uri = path.toURI();
+
+        Model model = pomModelCache.getModel( uri,
+                                              content );
+        if ( model == null ) {
+            model = pomContentHandler.parse( content );
+            pomModelCache.setModel( uri,
+                                    content,
+                                    model );
+        }
+        return model;
     }
 
     @Override
@@ -191,7 +218,7 @@ public class POMServiceImpl
         } else {
             ioService.write( Paths.convert( path ),
                              pomContentHandler.toString( content,
-                                                         loadPomXMLString( path ) ),
+                                                         loadPomXMLModel( path ) ),
                              metadataService.setUpAttributes( path,
                                                               metadata ) );
         }
@@ -203,7 +230,7 @@ public class POMServiceImpl
                        final POM content ) throws IOException, XmlPullParserException {
         ioService.write( Paths.convert( path ),
                          pomContentHandler.toString( content,
-                                                     loadPomXMLString( path ) ) );
+                                                     loadPomXMLModel( path ) ) );
     }
 
 }
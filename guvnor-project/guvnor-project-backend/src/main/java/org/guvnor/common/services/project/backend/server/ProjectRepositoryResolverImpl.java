@@ -20,21 +20,34 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.settings.Server;
 import org.apache.maven.settings.Settings;
+import org.eclipse.aether.ConfigurationProperties;
 import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.artifact.DefaultArtifact;
 import org.eclipse.aether.repository.ArtifactRepository;
@@ -45,7 +58,11 @@ import org.eclipse.aether.repository.RepositoryPolicy;
 import org.eclipse.aether.resolution.ArtifactRequest;
 import org.eclipse.aether.resolution.ArtifactResolutionException;
 import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.transfer.ArtifactNotFoundException;
+import org.guvnor.common.services.backend.cache.BoundedLRUMap;
+import org.guvnor.common.services.backend.util.SystemProperties;
 import org.guvnor.common.services.project.backend.server.utils.POMContentHandler;
+import org.guvnor.common.services.project.events.ArtifactDeployedEvent;
 import org.guvnor.common.services.project.model.GAV;
 import org.guvnor.common.services.project.model.MavenRepositoryMetadata;
 import org.guvnor.common.services.project.model.MavenRepositorySource;
@@ -61,6 +78,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.uberfire.backend.server.util.Paths;
 import org.uberfire.backend.vfs.Path;
+import org.uberfire.commons.async.DescriptiveThreadFactory;
 import org.uberfire.io.IOService;
 import org.uberfire.java.nio.file.NoSuchFileException;
 
@@ -73,9 +91,38 @@ public class ProjectRepositoryResolverImpl
 
     private static final Logger log = LoggerFactory.getLogger( ProjectRepositoryResolverImpl.class );
 
+    public static final String RESOLUTION_THREADS_PROPERTY_NAME = "org.guvnor.project.gav.check.threads";
+    public static final String RESOLUTION_TIMEOUT_PROPERTY_NAME = "org.guvnor.project.gav.check.timeout";
+    public static final String RESOLUTION_CACHE_TTL_PROPERTY_NAME = "org.guvnor.project.gav.check.cache.ttl";
+    public static final String RESOLUTION_CACHE_SIZE_PROPERTY_NAME = "org.guvnor.project.gav.check.cache.size";
+    public static final String RESOLUTION_FAIL_CLOSED_PROPERTY_NAME = "org.guvnor.project.gav.check.failClosed";
+
+    private static final int DEFAULT_RESOLUTION_THREADS = 5;
+    private static final int DEFAULT_RESOLUTION_TIMEOUT = 10000;
+    private static final int DEFAULT_RESOLUTION_CACHE_TTL = 30000;
+    private static final int DEFAULT_RESOLUTION_CACHE_SIZE = 1000;
+
     //Package protected for tests
     boolean isCheckConflictingGAVDisabled = false;
 
+    //Package protected for tests
+    long resolutionTimeout = SystemProperties.getInt( RESOLUTION_TIMEOUT_PROPERTY_NAME,
+                                                      DEFAULT_RESOLUTION_TIMEOUT,
+                                                      1 );
+    long resolutionTTL = SystemProperties.getInt( RESOLUTION_CACHE_TTL_PROPERTY_NAME,
+                                                  DEFAULT_RESOLUTION_CACHE_TTL,
+                                                  0 );
+    //Whether Repositories that could not be checked are treated as containing the GAV, rather than not containing it
+    boolean isResolutionFailClosed = SystemProperties.getBoolean( RESOLUTION_FAIL_CLOSED_PROPERTY_NAME,
+                                                                  false );
+
+    //Results of resolving a GAV against a RemoteRepository, keyed by GAV and Repository URL
+    private final Map<String, CachedResolution> resolutions = new BoundedLRUMap<String, CachedResolution>( SystemProperties.getInt( RESOLUTION_CACHE_SIZE_PROPERTY_NAME,
+                                                                                                                                  DEFAULT_RESOLUTION_CACHE_SIZE,
+                                                                                                                                  1 ) );
+
+    private ExecutorService executorService;
+
     private IOService ioService;
     private POMContentHandler pomContentHandler = new POMContentHandler();
 
@@ -284,62 +331,308 @@ public class ProjectRepositoryResolverImpl
 
     private Set<MavenRepositoryMetadata> getRepositoriesResolvingArtifact( final GAV gav,
                                                                            final MavenProject mavenProject ) {
-        final String artifactName = gav.toString();
-        final Artifact artifact = new DefaultArtifact( artifactName );
+        //Only the POM is resolved; its presence is sufficient to know a Repository contains the GAV
+        final Artifact artifact = new DefaultArtifact( gav.getGroupId(),
+                                                       gav.getArtifactId(),
+                                                       "pom",
+                                                       gav.getVersion() );
         final Aether aether = new Aether( mavenProject );
 
         final Set<MavenRepositoryMetadata> repositoriesResolvingArtifact = new HashSet<MavenRepositoryMetadata>();
         final Map<MavenRepositorySource, Collection<ArtifactRepository>> repositories = getRemoteRepositories( aether.getSession().getLocalRepository(),
                                                                                                                mavenProject );
 
+        final List<Resolution> resolutions = new ArrayList<Resolution>();
+        for ( Map.Entry<MavenRepositorySource, Collection<ArtifactRepository>> e : repositories.entrySet() ) {
+            for ( ArtifactRepository repository : e.getValue() ) {
+                final MavenRepositoryMetadata metadata = makeRepositoryMetaData( repository,
+                                                                                 e.getKey() );
+                if ( metadata == null ) {
+                    continue;
+                }
+                final Boolean cached = getCachedResolution( gav,
+                                                            repository );
+                if ( cached != null ) {
+                    if ( cached ) {
+                        repositoriesResolvingArtifact.add( metadata );
+                    }
+                    continue;
+                }
+                resolutions.add( new Resolution( metadata ) {
+                    @Override
+                    Boolean resolve() throws Exception {
+                        return isResolvable( aether,
+                                             artifact,
+                                             gav,
+                                             repository );
+                    }
+                } );
+            }
+        }
+
+        if ( resolutions.isEmpty() ) {
+            return repositoriesResolvingArtifact;
+        }
+
+        //Repositories are checked in parallel, each for at most the timeout once it has started. Repositories that time
+        //out or fail are treated as not containing the GAV, unless the check has been configured to fail closed.
+        final ExecutorService executorService = getExecutorService();
+        final Map<Resolution, Future<Boolean>> futures = new LinkedHashMap<Resolution, Future<Boolean>>();
+        for ( Resolution resolution : resolutions ) {
+            futures.put( resolution,
+                         executorService.submit( resolution ) );
+        }
+        //Resolutions may ignore interruption and hold on to their threads, so queued resolutions are only waited for
+        //as long as checking the Repositories one after another could take
+        final long deadline = System.currentTimeMillis() + resolutionTimeout * resolutions.size();
         try {
-            for ( Map.Entry<MavenRepositorySource, Collection<ArtifactRepository>> e : repositories.entrySet() ) {
-                for ( ArtifactRepository repository : e.getValue() ) {
-                    final ArtifactRequest artifactRequest = new ArtifactRequest();
-                    artifactRequest.setArtifact( artifact );
-                    java.nio.file.Path tempLocalRepositoryBasePath = null;
-                    try {
-                        ArtifactResult result = null;
-                        if ( repository instanceof LocalRepository ) {
-                            result = aether.getSystem().resolveArtifact( aether.getSession(),
-                                                                         artifactRequest );
-
-                        } else if ( repository instanceof RemoteRepository ) {
-                            // Maven always tries to resolve against LocalRepository first, which is not much use when we want to check
-                            // if the Artifact is available on a RemoteRepository. Therefore substitute the default RepositorySystemSession
-                            // with one that provides a LocalRepositoryManager that always uses an empty transient LocalRepository to ensure
-                            // Maven does not resolve Artifacts locally.
-                            artifactRequest.addRepository( (RemoteRepository) repository );
-                            tempLocalRepositoryBasePath = getRepositoryPath( gav );
-                            result = aether.getSystem().resolveArtifact( new MavenRepositorySystemSessionWrapper( tempLocalRepositoryBasePath.toString(),
-                                                                                                                  aether.getSession() ),
-                                                                         artifactRequest );
-                        }
-
-                        if ( result != null && result.isResolved() ) {
-                            final MavenRepositoryMetadata artifactRepositoryMetaData = makeRepositoryMetaData( result.getRepository(),
-                                                                                                               e.getKey() );
-                            if ( artifactRepositoryMetaData != null ) {
-                                repositoriesResolvingArtifact.add( artifactRepositoryMetaData );
-                            }
-                        }
-
-                    } catch ( ArtifactResolutionException are ) {
-                        //Ignore - this means the Artifact could not be resolved against the given RemoteRepository
-                    } finally {
-                        tearDownMavenRepository( tempLocalRepositoryBasePath );
+            while ( !futures.isEmpty() ) {
+                final Map.Entry<Resolution, Future<Boolean>> e = futures.entrySet().iterator().next();
+                final Resolution resolution = e.getKey();
+                final Future<Boolean> future = e.getValue();
+                final long now = System.currentTimeMillis();
+                final long started = resolution.started;
+                final long timeout = started == 0 ? Math.min( resolutionTimeout,
+                                                              deadline - now ) : started + resolutionTimeout - now;
+                try {
+                    final Boolean resolved = future.get( Math.max( 0,
+                                                                   timeout ),
+                                                         TimeUnit.MILLISECONDS );
+                    futures.remove( resolution );
+                    if ( resolved == null ) {
+                        addUndeterminedResolution( repositoriesResolvingArtifact,
+                                                   gav,
+                                                   resolution );
+                    } else if ( resolved ) {
+                        repositoriesResolvingArtifact.add( resolution.metadata );
                     }
+
+                } catch ( TimeoutException te ) {
+                    //Still queued resolutions are waited for again, unless the deadline has passed
+                    if ( resolution.started != 0 || System.currentTimeMillis() >= deadline ) {
+                        future.cancel( true );
+                        futures.remove( resolution );
+                        log.warn( "Timed out resolving '" + gav.toString() + "' against Repository '" + resolution.metadata.getUrl() + "' after " + resolutionTimeout + "ms." );
+                        addUndeterminedResolution( repositoriesResolvingArtifact,
+                                                   gav,
+                                                   resolution );
+                    }
+
+                } catch ( ExecutionException ee ) {
+                    futures.remove( resolution );
+                    log.warn( "Error resolving '" + gav.toString() + "' against Repository '" + resolution.metadata.getUrl() + "'. ",
+                              ee.getCause() );
+                    addUndeterminedResolution( repositoriesResolvingArtifact,
+                                               gav,
+                                               resolution );
                 }
             }
 
-        } catch ( IOException ioe ) {
-            log.error( "Error resolving '" + gav.toString() + "' against Repositories. Returning empty Collection. ",
-                       ioe );
+        } catch ( InterruptedException ie ) {
+            Thread.currentThread().interrupt();
+            for ( Future<Boolean> future : futures.values() ) {
+                future.cancel( true );
+            }
+            log.error( "Interrupted resolving '" + gav.toString() + "' against Repositories. Returning partial Collection. ",
+                       ie );
         }
 
         return repositoriesResolvingArtifact;
     }
 
+    //Results that could not be determined are never cached, so the Repository is checked again next time
+    private void addUndeterminedResolution( final Set<MavenRepositoryMetadata> repositoriesResolvingArtifact,
+                                            final GAV gav,
+                                            final Resolution resolution ) {
+        if ( isResolutionFailClosed ) {
+            log.warn( "Unable to determine whether '" + gav.toString() + "' is in Repository '" + resolution.metadata.getUrl() + "'. Assuming it is." );
+            repositoriesResolvingArtifact.add( resolution.metadata );
+        } else {
+            log.warn( "Unable to determine whether '" + gav.toString() + "' is in Repository '" + resolution.metadata.getUrl() + "'. Assuming it is not." );
+        }
+    }
+
+    /**
+     * Drops the cached results of resolving a GAV, as this node has just deployed it. Results cached by other nodes
+     * expire with their time to live.
+     */
+    public void onArtifactDeployed( @Observes final ArtifactDeployedEvent event ) {
+        final String prefix = event.getGav().toString() + "|";
+        synchronized ( resolutions ) {
+            final Iterator<String> itr = resolutions.keySet().iterator();
+            while ( itr.hasNext() ) {
+                if ( itr.next().startsWith( prefix ) ) {
+                    itr.remove();
+                }
+            }
+        }
+    }
+
+    //Returns true if the Repository contains the Artifact, false if it does not and null if that could not be determined
+    private Boolean isResolvable( final Aether aether,
+                                  final Artifact artifact,
+                                  final GAV gav,
+                                  final ArtifactRepository repository ) throws IOException {
+        final ArtifactRequest artifactRequest = new ArtifactRequest();
+        artifactRequest.setArtifact( artifact );
+        java.nio.file.Path tempLocalRepositoryBasePath = null;
+        try {
+            ArtifactResult result = null;
+            if ( repository instanceof LocalRepository ) {
+                result = aether.getSystem().resolveArtifact( aether.getSession(),
+                                                             artifactRequest );
+
+            } else if ( repository instanceof RemoteRepository ) {
+                // Maven always tries to resolve against LocalRepository first, which is not much use when we want to check
+                // if the Artifact is available on a RemoteRepository. Therefore substitute the default RepositorySystemSession
+                // with one that provides a LocalRepositoryManager that always uses an empty transient LocalRepository to ensure
+                // Maven does not resolve Artifacts locally.
+                artifactRequest.addRepository( (RemoteRepository) repository );
+                tempLocalRepositoryBasePath = getRepositoryPath( gav );
+                result = aether.getSystem().resolveArtifact( new MavenRepositorySystemSessionWrapper( tempLocalRepositoryBasePath.toString(),
+                                                                                                      aether.getSession() ) {
+                                                                 //Bound the connection so the resolution ends even though it ignores interruption
+                                                                 private final Map<String, Object> configProperties = getTimeoutConfigProperties( super.getConfigProperties() );
+
+                                                                 @Override
+                                                                 public Map<String, Object> getConfigProperties() {
+                                                                     return configProperties;
+                                                                 }
+                                                             },
+                                                             artifactRequest );
+            }
+
+            final boolean resolved = result != null && result.isResolved();
+            setCachedResolution( gav,
+                                 repository,
+                                 resolved );
+            return resolved;
+
+        } catch ( ArtifactResolutionException are ) {
+            //Only the Artifact not being found means the Repository does not contain it; transfer errors are not cached
+            if ( !isNotFound( are ) ) {
+                log.warn( "Unable to resolve '" + gav.toString() + "': " + are.getMessage() );
+                return null;
+            }
+            setCachedResolution( gav,
+                                 repository,
+                                 false );
+            return false;
+
+        } finally {
+            tearDownMavenRepository( tempLocalRepositoryBasePath );
+        }
+    }
+
+    private boolean isNotFound( final ArtifactResolutionException are ) {
+        for ( ArtifactResult result : are.getResults() ) {
+            for ( Exception e : result.getExceptions() ) {
+                if ( !( e instanceof ArtifactNotFoundException ) ) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private Map<String, Object> getTimeoutConfigProperties( final Map<String, Object> configProperties ) {
+        final Map<String, Object> timeoutConfigProperties = new HashMap<String, Object>( configProperties );
+        timeoutConfigProperties.put( ConfigurationProperties.CONNECT_TIMEOUT,
+                                     (int) resolutionTimeout );
+        timeoutConfigProperties.put( ConfigurationProperties.REQUEST_TIMEOUT,
+                                     (int) resolutionTimeout );
+        return Collections.unmodifiableMap( timeoutConfigProperties );
+    }
+
+    //The Local Repository is not cached; it is cheap to check and changes whenever a Project is installed
+    private Boolean getCachedResolution( final GAV gav,
+                                         final ArtifactRepository repository ) {
+        if ( !( repository instanceof RemoteRepository ) ) {
+            return null;
+        }
+        final String key = getResolutionKey( gav,
+                                             (RemoteRepository) repository );
+        synchronized ( resolutions ) {
+            final CachedResolution resolution = resolutions.get( key );
+            if ( resolution == null ) {
+                return null;
+            }
+            if ( resolution.expires < System.currentTimeMillis() ) {
+                resolutions.remove( key );
+                return null;
+            }
+            return resolution.resolved;
+        }
+    }
+
+    private void setCachedResolution( final GAV gav,
+                                      final ArtifactRepository repository,
+                                      final boolean resolved ) {
+        if ( !( repository instanceof RemoteRepository ) || resolutionTTL <= 0 ) {
+            return;
+        }
+        synchronized ( resolutions ) {
+            resolutions.put( getResolutionKey( gav,
+                                               (RemoteRepository) repository ),
+                             new CachedResolution( resolved,
+                                                   System.currentTimeMillis() + resolutionTTL ) );
+        }
+    }
+
+    private String getResolutionKey( final GAV gav,
+                                     final RemoteRepository repository ) {
+        return gav.toString() + "|" + repository.getUrl();
+    }
+
+    private synchronized ExecutorService getExecutorService() {
+        if ( executorService == null ) {
+            executorService = Executors.newFixedThreadPool( SystemProperties.getInt( RESOLUTION_THREADS_PROPERTY_NAME,
+                                                                                     DEFAULT_RESOLUTION_THREADS,
+                                                                                     1 ),
+                                                            new DescriptiveThreadFactory() );
+        }
+        return executorService;
+    }
+
+    @PreDestroy
+    public synchronized void destroy() {
+        if ( executorService != null ) {
+            executorService.shutdownNow();
+            executorService = null;
+        }
+    }
+
+    //Resolution of the GAV against a single Repository, recording when it started so its timeout runs from then
+    private static abstract class Resolution implements Callable<Boolean> {
+
+        private final MavenRepositoryMetadata metadata;
+        private volatile long started;
+
+        private Resolution( final MavenRepositoryMetadata metadata ) {
+            this.metadata = metadata;
+        }
+
+        @Override
+        public Boolean call() throws Exception {
+            started = System.currentTimeMillis();
+            return resolve();
+        }
+
+        abstract Boolean resolve() throws Exception;
+    }
+
+    private static class CachedResolution {
+
+        private final boolean resolved;
+        private final long expires;
+
+        private CachedResolution( final boolean resolved,
+                                  final long expires ) {
+            this.resolved = resolved;
+            this.expires = expires;
+        }
+    }
+
     private Map<MavenRepositorySource, Collection<ArtifactRepository>> getRemoteRepositories( final LocalRepository localRepository ) {
         final Map<MavenRepositorySource, Collection<ArtifactRepository>> repositories = new HashMap<MavenRepositorySource, Collection<ArtifactRepository>>();
 
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.project.backend.server;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+
+import org.guvnor.common.services.backend.cache.URIKeyedLRUCache;
+import org.guvnor.common.services.backend.util.SystemProperties;
+import org.guvnor.common.services.project.events.DeleteProjectEvent;
+import org.guvnor.common.services.project.events.NewProjectEvent;
+import org.guvnor.common.services.project.events.RenameProjectEvent;
+import org.guvnor.common.services.project.model.Package;
+import org.guvnor.common.services.project.model.Project;
+import org.uberfire.backend.vfs.Path;
+import org.uberfire.workbench.events.ResourceAddedEvent;
+import org.uberfire.workbench.events.ResourceBatchChangesEvent;
+import org.uberfire.workbench.events.ResourceChange;
+import org.uberfire.workbench.events.ResourceChangeType;
+import org.uberfire.workbench.events.ResourceCopied;
+import org.uberfire.workbench.events.ResourceCopiedEvent;
+import org.uberfire.workbench.events.ResourceDeletedEvent;
+import org.uberfire.workbench.events.ResourceRenamed;
+import org.uberfire.workbench.events.ResourceRenamedEvent;
+
+import static org.guvnor.common.services.project.backend.server.ProjectResourcePaths.*;
+
+/**
+ * Bounded cache of the Project root and Package that resources resolve to, keyed by the resource's URI.
+ * <p/>
+ * Only resources that resolve to a Project are cached. Entries are invalidated by resource and Project events:
+ * adding a pom.xml invalidates everything beneath it (as the resources may now belong to a nested Project) and
+ * deleting or renaming a resource invalidates it and everything beneath it.
+ */
+@ApplicationScoped
+public class ProjectResolutionCache {
+
+    public static final String SIZE_PROPERTY_NAME = "org.guvnor.project.resolution.cache.size";
+
+    private static final int DEFAULT_SIZE = 10000;
+
+    private final URIKeyedLRUCache<org.uberfire.java.nio.file.Path> projectRoots;
+    private final URIKeyedLRUCache<Package> packages;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ProjectResolutionCache() {
+        this( getMaxEntries() );
+    }
+
+    public ProjectResolutionCache( final int maxEntries ) {
+        this.projectRoots = new URIKeyedLRUCache<org.uberfire.java.nio.file.Path>( maxEntries );
+        this.packages = new URIKeyedLRUCache<Package>( maxEntries );
+    }
+
+    static int getMaxEntries() {
+        return SystemProperties.getInt( SIZE_PROPERTY_NAME,
+                                        DEFAULT_SIZE,
+                                        1 );
+    }
+
+    public org.uberfire.java.nio.file.Path getProjectRoot( final Path resource ) {
+        return count( projectRoots.get( resource.toURI() ) );
+    }
+
+    public void setProjectRoot( final Path resource,
+                                final org.uberfire.java.nio.file.Path projectRoot ) {
+        projectRoots.put( resource.toURI(),
+                          projectRoot );
+    }
+
+    public Package getPackage( final Path resource ) {
+        return count( packages.get( resource.toURI() ) );
+    }
+
+    public void setPackage( final Path resource,
+                            final Package pkg ) {
+        packages.put( resource.toURI(),
+                      pkg );
+    }
+
+    private <V> V count( final V value ) {
+        if ( value == null ) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return value;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        return projectRoots.size() + packages.size();
+    }
+
+    public void invalidateCache() {
+        projectRoots.clear();
+        packages.clear();
+    }
+
+    /**
+     * Invalidates the entry for a resource and, should it be a folder, the entries of all resources within it.
+     * @param resource The resource
+     */
+    public void invalidateCache( final Path resource ) {
+        if ( resource == null ) {
+            return;
+        }
+        invalidate( resource.toURI() );
+    }
+
+    private void invalidate( final String uri ) {
+        projectRoots.removeTree( uri );
+        packages.removeTree( uri );
+    }
+
+    //Adding a resource may create a Project (or, in the case of pom.xml, a nested Project) whereas deleting it
+    //removes the resources beneath it from their Project. Either way its entry and those beneath it are stale.
+    private void resourceChanged( final Path resource ) {
+        if ( resource == null ) {
+            return;
+        }
+        if ( POM_PATH.equals( resource.getFileName() ) ) {
+            invalidate( getParentURI( resource ) );
+        } else {
+            invalidate( resource.toURI() );
+        }
+    }
+
+    private String getParentURI( final Path resource ) {
+        final String uri = resource.toURI();
+        final int index = uri.lastIndexOf( '/' );
+        return index > 0 ? uri.substring( 0,
+                                          index ) : uri;
+    }
+
+    public void onResourceAdded( @Observes final ResourceAddedEvent event ) {
+        resourceChanged( event.getPath() );
+    }
+
+    public void onResourceDeleted( @Observes final ResourceDeletedEvent event ) {
+        resourceChanged( event.getPath() );
+    }
+
+    public void onResourceRenamed( @Observes final ResourceRenamedEvent event ) {
+        resourceChanged( event.getPath() );
+        resourceChanged( event.getDestinationPath() );
+    }
+
+    public void onResourceCopied( @Observes final ResourceCopiedEvent event ) {
+        resourceChanged( event.getDestinationPath() );
+    }
+
+    public void onBatchResourceChanges( @Observes final ResourceBatchChangesEvent event ) {
+        if ( event.getBatch() == null ) {
+            return;
+        }
+        for ( Map.Entry<Path, Collection<ResourceChange>> entry : event.getBatch().entrySet() ) {
+            for ( ResourceChange change : entry.getValue() ) {
+                final ResourceChangeType type = change.getType();
+                if ( type == ResourceChangeType.ADD || type == ResourceChangeType.DELETE ) {
+                    resourceChanged( entry.getKey() );
+                } else if ( type == ResourceChangeType.RENAME ) {
+                    resourceChanged( entry.getKey() );
+                    if ( change instanceof ResourceRenamed ) {
+                        resourceChanged( ( (ResourceRenamed) change ).getDestinationPath() );
+                    }
+                } else if ( type == ResourceChangeType.COPY ) {
+                    if ( change instanceof ResourceCopied ) {
+                        resourceChanged( ( (ResourceCopied) change ).getDestinationPath() );
+                    }
+                }
+            }
+        }
+    }
+
+    public void onNewProject( @Observes final NewProjectEvent event ) {
+        invalidateProject( event.getProject() );
+    }
+
+    public void onDeleteProject( @Observes final DeleteProjectEvent event ) {
+        invalidateProject( event.getProject() );
+    }
+
+    public void onRenameProject( @Observes final RenameProjectEvent event ) {
+        invalidateProject( event.getOldProject() );
+        invalidateProject( event.getNewProject() );
+    }
+
+    private void invalidateProject( final Project project ) {
+        if ( project != null ) {
+            invalidateCache( project.getRootPath() );
+        }
+    }
+
+}
@@ -15,10 +15,10 @@
  */
 package org.guvnor.common.services.project.backend.server;
 
-import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import javax.inject.Inject;
 
 import org.guvnor.common.services.backend.exceptions.ExceptionUtilities;
 import org.guvnor.common.services.backend.file.LinkedDirectoryFilter;
@@ -53,6 +53,7 @@ public abstract class ResourceResolver<T extends Project>
     protected ConfigurationService configurationService;
     protected CommentedOptionFactory commentedOptionFactory;
     protected BackwardCompatibleUtil backward;
+    protected ProjectResolutionCache resolutionCache = new ProjectResolutionCache();
 
     public ResourceResolver() {
     }
@@ -69,6 +70,15 @@ public abstract class ResourceResolver<T extends Project>
         this.backward = backward;
     }
 
+    @Inject
+    public void setResolutionCache( final ProjectResolutionCache resolutionCache ) {
+        this.resolutionCache = resolutionCache;
+    }
+
+    public ProjectResolutionCache getResolutionCache() {
+        return resolutionCache;
+    }
+
     public Package newPackage( final Package parentPackage,
                                final String packageName,
                                final boolean startBatch ) {
@@ -372,23 +382,28 @@ public abstract class ResourceResolver<T extends Project>
 
             //Check if path equals pom.xml
             final Project project = resolveProject( resource );
-
-            //It's possible that the Incremental Build attempts to act on a Project file before the project has been fully created.
-            //This should be a short-term issue that will be resolved when saving a project batches pom.xml, kmodule.xml and project.imports
-            //etc into a single git-batch. At present they are saved individually leading to multiple Incremental Build requests.
-            if ( project == null ) {
-                return false;
-            }
-
-            final org.uberfire.java.nio.file.Path path = Paths.convert( resource ).normalize();
-            final org.uberfire.java.nio.file.Path pomFilePath = Paths.convert( project.getPomXMLPath() );
-            return path.startsWith( pomFilePath );
+            return isPom( project,
+                          resource );
 
         } catch ( Exception e ) {
             throw ExceptionUtilities.handleException( e );
         }
     }
 
+    private boolean isPom( final Project project,
+                           final Path resource ) {
+        //It's possible that the Incremental Build attempts to act on a Project file before the project has been fully created.
+        //This should be a short-term issue that will be resolved when saving a project batches pom.xml, kmodule.xml and project.imports
+        //etc into a single git-batch. At present they are saved individually leading to multiple Incremental Build requests.
+        if ( project == null ) {
+            return false;
+        }
+
+        final org.uberfire.java.nio.file.Path path = Paths.convert( resource ).normalize();
+        final org.uberfire.java.nio.file.Path pomFilePath = Paths.convert( project.getPomXMLPath() );
+        return path.startsWith( pomFilePath );
+    }
+
     @Override
     public org.guvnor.common.services.project.model.Package resolvePackage( final Path resource ) {
         try {
@@ -397,6 +412,11 @@ public abstract class ResourceResolver<T extends Project>
                 return null;
             }
 
+            final Package cachedPackage = resolutionCache.getPackage( resource );
+            if ( cachedPackage != null ) {
+                return cachedPackage;
+            }
+
             //If Path is not within a Project we cannot resolve a package
             final Project project = resolveProject( resource );
             if ( project == null ) {
@@ -404,18 +424,67 @@ public abstract class ResourceResolver<T extends Project>
             }
 
             //pom.xml is not inside a package
-            if ( isPom( resource ) ) {
+            if ( isPom( project,
+                        resource ) ) {
                 return null;
             }
 
-            return makePackage( project,
-                                resource );
+            final Package pkg = makePackage( project,
+                                             resource );
+            if ( pkg != null ) {
+                resolutionCache.setPackage( resource,
+                                            pkg );
+            }
+            return pkg;
 
         } catch ( Exception e ) {
             throw ExceptionUtilities.handleException( e );
         }
     }
 
+    /**
+     * Resolves the root folder of the Project containing a resource, using the cache where possible.
+     * @param resource The resource
+     * @return The Project root folder, or null if the resource is not within a Project.
+     */
+    protected org.uberfire.java.nio.file.Path resolveProjectRoot( final Path resource ) {
+        final org.uberfire.java.nio.file.Path cachedProjectRoot = resolutionCache.getProjectRoot( resource );
+        if ( cachedProjectRoot != null ) {
+            return cachedProjectRoot;
+        }
+        final org.uberfire.java.nio.file.Path projectRoot = findProjectRoot( Paths.convert( resource ).normalize() );
+        if ( projectRoot != null ) {
+            resolutionCache.setProjectRoot( resource,
+                                            projectRoot );
+        }
+        return projectRoot;
+    }
+
+    //A project root is the folder containing the pom.xml file. This will be the parent of the "src" folder
+    protected org.uberfire.java.nio.file.Path findProjectRoot( final org.uberfire.java.nio.file.Path resource ) {
+        org.uberfire.java.nio.file.Path path = resource;
+        if ( Files.isRegularFile( path ) ) {
+            path = path.getParent();
+        }
+        if ( hasPom( path ) ) {
+            return path;
+        }
+        while ( path.getNameCount() > 0 && !path.getFileName().toString().equals( SOURCE_FILENAME ) ) {
+            path = path.getParent();
+        }
+        if ( path.getNameCount() == 0 ) {
+            return null;
+        }
+        path = path.getParent();
+        if ( path == null || path.getNameCount() == 0 ) {
+            return null;
+        }
+        if ( !hasPom( path ) ) {
+            return null;
+        }
+        return path;
+    }
+
     protected boolean hasPom( final org.uberfire.java.nio.file.Path path ) {
         final org.uberfire.java.nio.file.Path pomPath = path.resolve( POM_PATH );
         return Files.exists( pomPath );
@@ -445,15 +514,8 @@ public abstract class ResourceResolver<T extends Project>
     }
 
     protected ConfigGroup findProjectConfig( final Path projectRoot ) {
-        final Collection<ConfigGroup> groups = configurationService.getConfiguration( ConfigType.PROJECT );
-        if ( groups != null ) {
-            for ( ConfigGroup groupConfig : groups ) {
-                if ( groupConfig.getName().equals( projectRoot.toURI() ) ) {
-                    return groupConfig;
-                }
-            }
-        }
-        return null;
+        return configurationService.getConfiguration( ConfigType.PROJECT,
+                                                      projectRoot.toURI() );
     }
 
     protected Package makePackage( final Project project,
@@ -41,12 +41,12 @@ public class POMContentHandler {
 
     public String toString( final POM pomModel )
             throws IOException {
-        return toString( pomModel,
-                         new Model() );
+        return merge( pomModel,
+                      new Model() );
     }
 
-    private String toString( final POM pom,
-                             final Model model ) throws IOException {
+    private String merge( final POM pom,
+                          final Model model ) throws IOException {
         model.setName(pom.getName());
         model.setDescription(pom.getDescription());
         model.setArtifactId(pom.getGav().getArtifactId());
@@ -113,8 +113,25 @@ public class POMContentHandler {
     public String toString( final POM gavModel,
                             final String originalPomAsText ) throws IOException, XmlPullParserException {
 
-        return toString( gavModel,
-                         new MavenXpp3Reader().read( new StringReader( originalPomAsText ) ) );
+        return merge( gavModel,
+                      parse( originalPomAsText ) );
+    }
+
+    /**
+     * @param gavModel The model that is saved
+     * @param originalModel The original pom.xml, already parsed. It is not modified.
+     * @return pom.xml for saving, The original pom.xml with the fields edited in gavModel replaced.
+     * @throws IOException
+     */
+    public String toString( final POM gavModel,
+                            final Model originalModel ) throws IOException {
+
+        return merge( gavModel,
+                      originalModel.clone() );
+    }
+
+    public Model parse( final String pomAsString ) throws IOException, XmlPullParserException {
+        return new MavenXpp3Reader().read( new StringReader( pomAsString ) );
     }
 
     private Repository fromClientModelToPom( final org.guvnor.common.services.project.model.Repository from ) {
@@ -127,8 +144,14 @@ public class POMContentHandler {
     }
 
     public POM toModel( final String pomAsString ) throws IOException, XmlPullParserException {
-        Model model = new MavenXpp3Reader().read(new StringReader(pomAsString));
+        return toModel( parse( pomAsString ) );
+    }
 
+    /**
+     * @param model The parsed pom.xml. It is not modified, so the returned POM is independent of it.
+     * @return The POM
+     */
+    public POM toModel( final Model model ) {
         POM pomModel = new POM(
                 model.getName(),
                 model.getDescription(),
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.project.backend.server;
+
+import org.apache.maven.model.Model;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class POMModelCacheTest {
+
+    private static final String URI = "default://master@repo/project/pom.xml";
+
+    private POMModelCache cache;
+
+    @Before
+    public void setup() {
+        cache = new POMModelCache( 100 );
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        final Model model = new Model();
+        assertNull( cache.getModel( URI,
+                                    "<project/>" ) );
+        cache.setModel( URI,
+                        "<project/>",
+                        model );
+        assertSame( model,
+                    cache.getModel( URI,
+                                    "<project/>" ) );
+
+        assertEquals( 1,
+                      cache.getHits() );
+        assertEquals( 1,
+                      cache.getMisses() );
+    }
+
+    @Test
+    public void testChangedContentIsAMiss() {
+        cache.setModel( URI,
+                        "<project/>",
+                        new Model() );
+        assertNull( cache.getModel( URI,
+                                    "<project><version>2.0</version></project>" ) );
+        assertEquals( 1,
+                      cache.getMisses() );
+    }
+
+    @Test
+    public void testEntriesAreBoundedAndEvictionsCounted() {
+        final POMModelCache smallCache = new POMModelCache( 2 );
+        for ( int i = 0; i < 5; i++ ) {
+            smallCache.setModel( "default://master@repo/project" + i + "/pom.xml",
+                                 "<project/>",
+                                 new Model() );
+        }
+        assertEquals( 2,
+                      smallCache.size() );
+        assertEquals( 3,
+                      smallCache.getEvictions() );
+    }
+
+}
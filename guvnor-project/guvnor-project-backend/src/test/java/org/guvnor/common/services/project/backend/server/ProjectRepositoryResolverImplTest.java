@@ -25,6 +25,7 @@ import java.util.Collection;
 import java.util.Set;
 
 import org.apache.maven.project.MavenProject;
+import org.guvnor.common.services.project.events.ArtifactDeployedEvent;
 import org.guvnor.common.services.project.model.GAV;
 import org.guvnor.common.services.project.model.MavenRepositoryMetadata;
 import org.guvnor.common.services.project.model.MavenRepositorySource;
@@ -1202,6 +1203,134 @@ public class ProjectRepositoryResolverImplTest {
         }
     }
 
+    @Test
+    public void testGetRepositoriesResolvingArtifact_RemoteResolutionIsCached() {
+        final String oldSettingsXmlPath = System.getProperty( "kie.maven.settings.custom" );
+
+        java.nio.file.Path remoteRepositoryFolder = null;
+
+        try {
+            remoteRepositoryFolder = Files.createTempDirectory( "distribution-repo" );
+
+            final String pomXml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                    "<project xsi:schemaLocation=\"http://maven.apache.org/POM/4.0.0 http://maven.apache.org/xsd/maven-4.0.0.xsd\" xmlns=\"http://maven.apache.org/POM/4.0.0\"\n" +
+                    "    xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n" +
+                    "  <modelVersion>4.0.0</modelVersion>\n" +
+                    "  <groupId>org.guvnor</groupId>\n" +
+                    "  <artifactId>test</artifactId>\n" +
+                    "  <version>0.0.1</version>\n" +
+                    "  <distributionManagement>\n" +
+                    "    <repository>\n" +
+                    "      <id>distribution-repo</id>\n" +
+                    "      <name>Distribution Repository</name>\n" +
+                    "      <url>file://" + remoteRepositoryFolder.toString() + "</url>\n" +
+                    "    </repository>\n" +
+                    "  </distributionManagement>\n" +
+                    "</project>";
+
+            System.setProperty( "kie.maven.settings.custom",
+                                settingsXmlPath.toString() );
+
+            final InputStream pomStream = new ByteArrayInputStream( pomXml.getBytes( StandardCharsets.UTF_8 ) );
+            final MavenProject mavenProject = MavenProjectLoader.parseMavenPom( pomStream );
+            deployArtifact( mavenProject,
+                            pomXml );
+
+            final Set<MavenRepositoryMetadata> metadata = service.getRepositoriesResolvingArtifact( pomXml );
+            assertEquals( 1,
+                          metadata.size() );
+
+            //Removing the Artifact from the 'Remote' Repository is not seen until the cached result expires
+            tearDownMavenRepositoryContent( remoteRepositoryFolder );
+
+            final Set<MavenRepositoryMetadata> metadata2 = service.getRepositoriesResolvingArtifact( pomXml );
+            assertEquals( 1,
+                          metadata2.size() );
+            assertContainsRepository( "distribution-repo",
+                                      "file://" + remoteRepositoryFolder.toString(),
+                                      MavenRepositorySource.DISTRIBUTION_MANAGEMENT,
+                                      metadata2 );
+
+            service = new ProjectRepositoryResolverImpl( ioService );
+            final Set<MavenRepositoryMetadata> metadata3 = service.getRepositoriesResolvingArtifact( pomXml );
+            assertEquals( 0,
+                          metadata3.size() );
+
+        } catch ( IOException ioe ) {
+            fail( ioe.getMessage() );
+
+        } finally {
+            tearDownMavenRepository( remoteRepositoryFolder );
+            if ( oldSettingsXmlPath != null ) {
+                System.setProperty( "kie.maven.settings.custom",
+                                    oldSettingsXmlPath );
+            }
+        }
+    }
+
+    @Test
+    public void testGetRepositoriesResolvingArtifact_DeploymentInvalidatesCachedResolution() {
+        final String oldSettingsXmlPath = System.getProperty( "kie.maven.settings.custom" );
+
+        java.nio.file.Path remoteRepositoryFolder = null;
+
+        try {
+            remoteRepositoryFolder = Files.createTempDirectory( "distribution-repo" );
+
+            final String pomXml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                    "<project xsi:schemaLocation=\"http://maven.apache.org/POM/4.0.0 http://maven.apache.org/xsd/maven-4.0.0.xsd\" xmlns=\"http://maven.apache.org/POM/4.0.0\"\n" +
+                    "    xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n" +
+                    "  <modelVersion>4.0.0</modelVersion>\n" +
+                    "  <groupId>org.guvnor</groupId>\n" +
+                    "  <artifactId>test</artifactId>\n" +
+                    "  <version>0.0.1</version>\n" +
+                    "  <distributionManagement>\n" +
+                    "    <repository>\n" +
+                    "      <id>distribution-repo</id>\n" +
+                    "      <name>Distribution Repository</name>\n" +
+                    "      <url>file://" + remoteRepositoryFolder.toString() + "</url>\n" +
+                    "    </repository>\n" +
+                    "  </distributionManagement>\n" +
+                    "</project>";
+
+            System.setProperty( "kie.maven.settings.custom",
+                                settingsXmlPath.toString() );
+
+            //The GAV is not in the 'Remote' Repository, which is cached
+            final Set<MavenRepositoryMetadata> metadata = service.getRepositoriesResolvingArtifact( pomXml );
+            assertEquals( 0,
+                          metadata.size() );
+
+            final InputStream pomStream = new ByteArrayInputStream( pomXml.getBytes( StandardCharsets.UTF_8 ) );
+            final MavenProject mavenProject = MavenProjectLoader.parseMavenPom( pomStream );
+            deployArtifact( mavenProject,
+                            pomXml );
+
+            //Deployment by this node is seen straight away
+            service.onArtifactDeployed( new ArtifactDeployedEvent( new GAV( "org.guvnor",
+                                                                            "test",
+                                                                            "0.0.1" ) ) );
+
+            final Set<MavenRepositoryMetadata> metadata2 = service.getRepositoriesResolvingArtifact( pomXml );
+            assertEquals( 1,
+                          metadata2.size() );
+            assertContainsRepository( "distribution-repo",
+                                      "file://" + remoteRepositoryFolder.toString(),
+                                      MavenRepositorySource.DISTRIBUTION_MANAGEMENT,
+                                      metadata2 );
+
+        } catch ( IOException ioe ) {
+            fail( ioe.getMessage() );
+
+        } finally {
+            tearDownMavenRepository( remoteRepositoryFolder );
+            if ( oldSettingsXmlPath != null ) {
+                System.setProperty( "kie.maven.settings.custom",
+                                    oldSettingsXmlPath );
+            }
+        }
+    }
+
     @Test
     public void testGetRepositoriesResolvingArtifact_ImplicitGAV_IsInstalledIsDeployed_Filtered() {
         final Project project = mock( Project.class );
@@ -1433,6 +1562,53 @@ public class ProjectRepositoryResolverImplTest {
         }
     }
 
+    @Test
+    public void testGetRepositoriesResolvingArtifact_UnreachableRepository() {
+        final String oldSettingsXmlPath = System.getProperty( "kie.maven.settings.custom" );
+
+        try {
+            //Nothing listens on port 1, so the Repository can be neither found to contain nor to not contain the GAV
+            final String pomXml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                    "<project xsi:schemaLocation=\"http://maven.apache.org/POM/4.0.0 http://maven.apache.org/xsd/maven-4.0.0.xsd\" xmlns=\"http://maven.apache.org/POM/4.0.0\"\n" +
+                    "    xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n" +
+                    "  <modelVersion>4.0.0</modelVersion>\n" +
+                    "  <groupId>org.guvnor</groupId>\n" +
+                    "  <artifactId>test-unreachable</artifactId>\n" +
+                    "  <version>0.0.1</version>\n" +
+                    "  <repositories>\n" +
+                    "    <repository>\n" +
+                    "      <id>unreachable-repo</id>\n" +
+                    "      <name>Unreachable Repository</name>\n" +
+                    "      <url>http://localhost:1/maven2/</url>\n" +
+                    "    </repository>\n" +
+                    "  </repositories>\n" +
+                    "</project>";
+
+            System.setProperty( "kie.maven.settings.custom",
+                                settingsXmlPath.toString() );
+
+            final Set<MavenRepositoryMetadata> metadata = service.getRepositoriesResolvingArtifact( pomXml );
+            assertNotNull( metadata );
+            for ( MavenRepositoryMetadata md : metadata ) {
+                assertFalse( "unreachable-repo".equals( md.getId() ) );
+            }
+
+            //Undetermined results are not cached, so the Repository is checked again
+            service.isResolutionFailClosed = true;
+            final Set<MavenRepositoryMetadata> failClosedMetadata = service.getRepositoriesResolvingArtifact( pomXml );
+            assertContainsRepository( "unreachable-repo",
+                                      "http://localhost:1/maven2/",
+                                      MavenRepositorySource.PROJECT,
+                                      failClosedMetadata );
+
+        } finally {
+            if ( oldSettingsXmlPath != null ) {
+                System.setProperty( "kie.maven.settings.custom",
+                                    oldSettingsXmlPath );
+            }
+        }
+    }
+
     private void assertContainsRepository( final String id,
                                            final String url,
                                            final MavenRepositorySource source,
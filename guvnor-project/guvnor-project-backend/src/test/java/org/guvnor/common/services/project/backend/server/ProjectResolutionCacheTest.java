@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.project.backend.server;
+
+import org.guvnor.common.services.project.events.DeleteProjectEvent;
+import org.guvnor.common.services.project.model.Package;
+import org.guvnor.common.services.project.model.Project;
+import org.junit.Before;
+import org.junit.Test;
+import org.uberfire.backend.vfs.Path;
+import org.uberfire.rpc.SessionInfo;
+import org.uberfire.workbench.events.ResourceAddedEvent;
+import org.uberfire.workbench.events.ResourceDeletedEvent;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class ProjectResolutionCacheTest {
+
+    private ProjectResolutionCache cache;
+
+    private org.uberfire.java.nio.file.Path projectRoot;
+
+    @Before
+    public void setup() {
+        cache = new ProjectResolutionCache( 100 );
+        projectRoot = mock( org.uberfire.java.nio.file.Path.class );
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        final Path resource = path( "default://master@repo/project/src/main/resources/org/test/rule.drl" );
+        assertNull( cache.getProjectRoot( resource ) );
+        cache.setProjectRoot( resource,
+                              projectRoot );
+        assertSame( projectRoot,
+                    cache.getProjectRoot( resource ) );
+
+        assertEquals( 1,
+                      cache.getHits() );
+        assertEquals( 1,
+                      cache.getMisses() );
+    }
+
+    @Test
+    public void testEntriesAreBounded() {
+        final ProjectResolutionCache smallCache = new ProjectResolutionCache( 2 );
+        for ( int i = 0; i < 5; i++ ) {
+            smallCache.setProjectRoot( path( "default://master@repo/project/file" + i ),
+                                       projectRoot );
+        }
+        assertEquals( 2,
+                      smallCache.size() );
+    }
+
+    @Test
+    public void testDeletingFolderInvalidatesResourcesWithin() {
+        final Path folder = path( "default://master@repo/project/src/main/resources/org" );
+        final Path within = path( "default://master@repo/project/src/main/resources/org/test/rule.drl" );
+        final Path sibling = path( "default://master@repo/project/src/main/resources/organisation/rule.drl" );
+        cache.setProjectRoot( within,
+                              projectRoot );
+        cache.setProjectRoot( sibling,
+                              projectRoot );
+        cache.setPackage( within,
+                          mock( Package.class ) );
+
+        cache.onResourceDeleted( new ResourceDeletedEvent( folder,
+                                                           "",
+                                                           mock( SessionInfo.class ) ) );
+
+        assertNull( cache.getProjectRoot( within ) );
+        assertNull( cache.getPackage( within ) );
+        assertSame( projectRoot,
+                    cache.getProjectRoot( sibling ) );
+    }
+
+    @Test
+    public void testAddingPomInvalidatesResourcesBeneathIt() {
+        final Path pom = path( "default://master@repo/project/module/pom.xml" );
+        final Path beneath = path( "default://master@repo/project/module/src/main/resources/rule.drl" );
+        final Path outside = path( "default://master@repo/project/src/main/resources/rule.drl" );
+        cache.setProjectRoot( beneath,
+                              projectRoot );
+        cache.setProjectRoot( outside,
+                              projectRoot );
+
+        cache.onResourceAdded( new ResourceAddedEvent( pom,
+                                                       "",
+                                                       mock( SessionInfo.class ) ) );
+
+        assertNull( cache.getProjectRoot( beneath ) );
+        assertSame( projectRoot,
+                    cache.getProjectRoot( outside ) );
+    }
+
+    @Test
+    public void testDeleteProjectInvalidatesProject() {
+        final Path root = path( "default://master@repo/project" );
+        final Path resource = path( "default://master@repo/project/src/main/resources/rule.drl" );
+        cache.setProjectRoot( resource,
+                              projectRoot );
+
+        final Project project = mock( Project.class );
+        when( project.getRootPath() ).thenReturn( root );
+        cache.onDeleteProject( new DeleteProjectEvent( project ) );
+
+        assertNull( cache.getProjectRoot( resource ) );
+    }
+
+    private Path path( final String uri ) {
+        final Path path = mock( Path.class );
+        when( path.toURI() ).thenReturn( uri );
+        when( path.getFileName() ).thenReturn( uri.substring( uri.lastIndexOf( '/' ) + 1 ) );
+        return path;
+    }
+
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.enterprise.event.Event;
+
+import org.guvnor.common.services.backend.util.SystemProperties;
+import org.guvnor.common.services.project.builder.model.BuildResults;
+import org.guvnor.common.services.project.builder.model.IncrementalBuildResults;
+import org.guvnor.common.services.project.builder.service.BuildService;
+import org.guvnor.common.services.project.model.Project;
+import org.guvnor.common.services.project.service.ProjectService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.uberfire.backend.vfs.Path;
+import org.uberfire.commons.async.DescriptiveThreadFactory;
+import org.uberfire.workbench.events.ResourceChange;
+import org.uberfire.workbench.events.ResourceChangeType;
+import org.uberfire.workbench.events.ResourceUpdated;
+
+/**
+ * Collects resource changes per Project and hands them to the IncrementalBuilderExecutorManager as a single batch.
+ * <p/>
+ * Changes are held until no further change for the Project has been received for the debounce window (or, under a
+ * constant stream of changes, until the window has elapsed ten times). At most one build per Project is in flight;
+ * changes received whilst a build is running are built by a follow-up run once it completes.
+ * <p/>
+ * Held changes are timed by a one-shot task per Project, scheduled for when its build falls due, that only hands the
+ * build to the IncrementalBuilderExecutorManager; no thread waits whilst changes are held.
+ */
+public class IncrementalBuildScheduler {
+
+    public static final String DEBOUNCE_PROPERTY_NAME = "org.guvnor.project.builder.debounce";
+
+    private static final long DEFAULT_DEBOUNCE_MILLIS = 500;
+
+    //Upper bound of the delay of a build, as a multiple of the debounce window
+    private static final int MAX_DELAY_WINDOWS = 10;
+
+    private static final Logger logger = LoggerFactory.getLogger( IncrementalBuildScheduler.class );
+
+    private final IncrementalBuilderExecutorManagerFactory executorManagerFactory;
+    private final long debounceMillis;
+
+    //Times held changes; its tasks only submit builds, so a single thread suffices
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor( new DescriptiveThreadFactory() );
+
+    //Per-Project state keyed by the Project's root Path, guarded by itself
+    private final Map<Path, ProjectBuild> builds = new HashMap<Path, ProjectBuild>();
+
+    public IncrementalBuildScheduler( final IncrementalBuilderExecutorManagerFactory executorManagerFactory ) {
+        this( executorManagerFactory,
+              getDebounceMillis() );
+    }
+
+    public IncrementalBuildScheduler( final IncrementalBuilderExecutorManagerFactory executorManagerFactory,
+                                      final long debounceMillis ) {
+        this.executorManagerFactory = executorManagerFactory;
+        this.debounceMillis = debounceMillis;
+    }
+
+    static long getDebounceMillis() {
+        return SystemProperties.getLong( DEBOUNCE_PROPERTY_NAME,
+                                         DEFAULT_DEBOUNCE_MILLIS,
+                                         0 );
+    }
+
+    /**
+     * Schedules an incremental build of a change to a resource within a Project.
+     * @param project Project containing the resource
+     * @param resource The changed resource
+     * @param change The change
+     */
+    public void scheduleChange( final Project project,
+                                final Path resource,
+                                final ResourceChange change ) {
+        synchronized ( builds ) {
+            final ProjectBuild build = getProjectBuild( project );
+            if ( !build.fullBuild ) {
+                build.addChange( resource,
+                                 change );
+            }
+            schedule( build );
+        }
+    }
+
+    /**
+     * Schedules a full build of a Project. Any pending incremental changes are covered by the full build.
+     * @param project The Project
+     */
+    public void scheduleFullBuild( final Project project ) {
+        synchronized ( builds ) {
+            final ProjectBuild build = getProjectBuild( project );
+            build.fullBuild = true;
+            build.changes.clear();
+            schedule( build );
+        }
+    }
+
+    public void shutdown() {
+        synchronized ( builds ) {
+            builds.clear();
+        }
+        timer.shutdownNow();
+    }
+
+    //Called whilst holding the builds lock
+    private ProjectBuild getProjectBuild( final Project project ) {
+        ProjectBuild build = builds.get( project.getRootPath() );
+        if ( build == null ) {
+            build = new ProjectBuild( project );
+            builds.put( project.getRootPath(),
+                        build );
+        } else {
+            build.project = project;
+        }
+        return build;
+    }
+
+    //Called whilst holding the builds lock
+    private void schedule( final ProjectBuild build ) {
+        //A build in flight schedules a follow-up run once it completes
+        if ( build.inFlight ) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        if ( build.firstChangeTime == 0 ) {
+            build.firstChangeTime = now;
+        }
+
+        final long delay = Math.min( debounceMillis,
+                                     build.firstChangeTime + debounceMillis * MAX_DELAY_WINDOWS - now );
+        cancelTimer( build );
+        if ( delay <= 0 ) {
+            submit( build );
+            return;
+        }
+        final long generation = ++build.timerGeneration;
+        try {
+            build.timer = timer.schedule( new Runnable() {
+                @Override
+                public void run() {
+                    submitDueBuild( build,
+                                    generation );
+                }
+            }, delay, TimeUnit.MILLISECONDS );
+
+        } catch ( RejectedExecutionException e ) {
+            //The scheduler has been shut down
+            logger.warn( "Incremental build of " + build.project.getProjectName() + " not scheduled: the scheduler has been shut down." );
+        }
+    }
+
+    //Called whilst holding the builds lock
+    private void cancelTimer( final ProjectBuild build ) {
+        if ( build.timer != null ) {
+            build.timer.cancel( false );
+            build.timer = null;
+        }
+    }
+
+    private void submitDueBuild( final ProjectBuild build,
+                                 final long generation ) {
+        synchronized ( builds ) {
+            //A task cancelled once it had already started is superseded by the task scheduled since
+            if ( build.timer == null || build.timerGeneration != generation || builds.get( build.project.getRootPath() ) != build ) {
+                return;
+            }
+            build.timer = null;
+            submit( build );
+        }
+    }
+
+    //Called whilst holding the builds lock
+    private void submit( final ProjectBuild build ) {
+        if ( !build.hasWork() ) {
+            builds.remove( build.project.getRootPath() );
+            return;
+        }
+        final Project project = build.project;
+        final boolean fullBuild = build.fullBuild;
+        final Map<Path, Collection<ResourceChange>> changes = build.changes;
+        build.fullBuild = false;
+        build.changes = new LinkedHashMap<Path, Collection<ResourceChange>>();
+        build.firstChangeTime = 0;
+        build.inFlight = true;
+
+        try {
+            executorManagerFactory.getExecutorManager().execute( new AsyncIncrementalBuilder() {
+
+                @Override
+                public void execute( final ProjectService projectService,
+                                     final BuildService buildService,
+                                     final Event<IncrementalBuildResults> incrementalBuildResultsEvent,
+                                     final Event<BuildResults> buildResultsEvent ) {
+                    try {
+                        logger.info( "Incremental build request being processed: " + project.getProjectName() + " (" + ( fullBuild ? "full build" : changes.size() + " resource(s)" ) + ")." );
+
+                        //Fall back to a Full Build in lieu of an Incremental Build if the Project has not been previously built
+                        if ( !fullBuild && buildService.isBuilt( project ) ) {
+                            final IncrementalBuildResults results = buildService.applyBatchResourceChanges( project,
+                                                                                                            changes );
+                            incrementalBuildResultsEvent.fire( results );
+                        } else {
+                            final BuildResults results = buildService.build( project );
+                            buildResultsEvent.fire( results );
+                        }
+
+                    } catch ( Exception e ) {
+                        logger.error( e.getMessage(),
+                                      e );
+                    } finally {
+                        buildCompleted( build );
+                    }
+                }
+
+                @Override
+                public String getDescription() {
+                    return "Incremental Build [" + project.getProjectName() + "]";
+                }
+            } );
+
+        } catch ( RuntimeException e ) {
+            logger.error( "Unable to schedule incremental build of " + project.getProjectName() + ": " + e.getMessage(),
+                          e );
+            build.inFlight = false;
+        }
+    }
+
+    private void buildCompleted( final ProjectBuild build ) {
+        synchronized ( builds ) {
+            build.inFlight = false;
+            if ( build.hasWork() ) {
+                schedule( build );
+            } else if ( builds.get( build.project.getRootPath() ) == build ) {
+                builds.remove( build.project.getRootPath() );
+            }
+        }
+    }
+
+    /**
+     * Merges a change to a resource with the changes already pending for it, so that the pending changes describe the
+     * net change since the last build:
+     * <ul>
+     * <li>A change supersedes a pending change of the same type.</li>
+     * <li>An update of a resource pending addition is part of the addition.</li>
+     * <li>A deletion supersedes a pending update, and cancels a pending addition altogether.</li>
+     * <li>An addition of a resource pending deletion is an update.</li>
+     * </ul>
+     * The pending changes may be left empty, in which case there is nothing to build for the resource.
+     */
+    static void mergeChange( final Collection<ResourceChange> pending,
+                             final ResourceChange change ) {
+        ResourceChange merged = change;
+        final Iterator<ResourceChange> itr = pending.iterator();
+        while ( itr.hasNext() ) {
+            final ResourceChange existing = itr.next();
+            if ( existing.getType() == change.getType() ) {
+                itr.remove();
+            } else if ( existing.getType() == ResourceChangeType.ADD && change.getType() == ResourceChangeType.UPDATE ) {
+                return;
+            } else if ( existing.getType() == ResourceChangeType.ADD && change.getType() == ResourceChangeType.DELETE ) {
+                itr.remove();
+                merged = null;
+            } else if ( existing.getType() == ResourceChangeType.UPDATE && change.getType() == ResourceChangeType.DELETE ) {
+                itr.remove();
+            } else if ( existing.getType() == ResourceChangeType.DELETE && change.getType() == ResourceChangeType.ADD ) {
+                itr.remove();
+                merged = new ResourceUpdated( change.getMessage() );
+            }
+        }
+        if ( merged != null ) {
+            pending.add( merged );
+        }
+    }
+
+    private class ProjectBuild {
+
+        private Project project;
+        private Map<Path, Collection<ResourceChange>> changes = new LinkedHashMap<Path, Collection<ResourceChange>>();
+        private boolean fullBuild;
+        private boolean inFlight;
+        private long firstChangeTime;
+        //The task that submits the held changes once they fall due, or null if they are not held
+        private ScheduledFuture<?> timer;
+        //Incremented whenever the task is scheduled
+        private long timerGeneration;
+
+        private ProjectBuild( final Project project ) {
+            this.project = project;
+        }
+
+        private void addChange( final Path resource,
+                                final ResourceChange change ) {
+            Collection<ResourceChange> pending = changes.get( resource );
+            if ( pending == null ) {
+                pending = new ArrayList<ResourceChange>();
+                changes.put( resource,
+                             pending );
+            }
+            mergeChange( pending,
+                         change );
+            if ( pending.isEmpty() ) {
+                changes.remove( resource );
+            }
+        }
+
+        private boolean hasWork() {
+            return fullBuild || !changes.isEmpty();
+        }
+    }
+
+}
@@ -20,12 +20,15 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.ejb.Asynchronous;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
 import javax.ejb.TransactionAttribute;
 import javax.enterprise.event.Event;
 import javax.inject.Inject;
 
+import org.guvnor.common.services.backend.util.SystemProperties;
 import org.guvnor.common.services.project.builder.model.BuildResults;
 import org.guvnor.common.services.project.builder.model.IncrementalBuildResults;
 import org.guvnor.common.services.project.builder.service.BuildService;
@@ -39,6 +42,8 @@ import static javax.ejb.TransactionAttributeType.*;
 @Singleton
 @Startup
 @TransactionAttribute(NOT_SUPPORTED)
+//Builds of different Projects, and the scheduler's timing of held changes, must not wait for one another
+@Lock(LockType.READ)
 public class IncrementalBuilderExecutorManager {
 
     @Inject
@@ -53,6 +58,8 @@ public class IncrementalBuilderExecutorManager {
     @Inject
     private Event<IncrementalBuildResults> incrementalBuildResultsEvent;
 
+    public static final String THREADS_PROPERTY_NAME = "org.guvnor.project.builder.threads";
+
     private AtomicBoolean useExecService = new AtomicBoolean( false );
     private ExecutorService executorService = null;
 
@@ -87,13 +94,22 @@ public class IncrementalBuilderExecutorManager {
         this.useExecService.set( true );
     }
 
-    private ExecutorService getExecutorService() {
+    private synchronized ExecutorService getExecutorService() {
         if ( executorService == null ) {
-            executorService = Executors.newCachedThreadPool( new DescriptiveThreadFactory() );
+            //Builds are scheduled at most once per Project at a time so a bounded pool is sufficient
+            executorService = Executors.newFixedThreadPool( getThreads(),
+                                                            new DescriptiveThreadFactory() );
         }
         return executorService;
     }
 
+    static int getThreads() {
+        return SystemProperties.getInt( THREADS_PROPERTY_NAME,
+                                        Math.max( 2,
+                                                  Runtime.getRuntime().availableProcessors() ),
+                                        1 );
+    }
+
     public void setServices( final ProjectService projectService,
                              final BuildService buildService,
                              final Event<BuildResults> buildResultsEvent,
@@ -62,11 +62,11 @@ public class IncrementalBuilderExecutorManagerFactoryImpl implements Incremental
                 try {
                     _executorManager = InitialContext.doLookup( "java:module/IncrementalBuilderExecutorManager" );
                 } catch ( final Exception e ) {
-                    LOG.warn( "Unable to instantiate EJB Asynchronous Bean. Falling back to Executors' CachedThreadPool.",
+                    LOG.warn( "Unable to instantiate EJB Asynchronous Bean. Falling back to Executors' FixedThreadPool.",
                               e );
                 }
             } else {
-                LOG.info( "Use of to Executors' CachedThreadPool has been requested; overriding container provisioning." );
+                LOG.info( "Use of Executors' FixedThreadPool has been requested; overriding container provisioning." );
             }
 
             if ( _executorManager == null ) {
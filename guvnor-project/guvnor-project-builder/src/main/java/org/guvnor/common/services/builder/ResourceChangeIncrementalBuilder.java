@@ -15,9 +15,8 @@
  */
 package org.guvnor.common.services.builder;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -37,10 +36,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.uberfire.backend.vfs.Path;
 import org.uberfire.commons.services.cdi.ApplicationStarted;
+import org.uberfire.workbench.events.ResourceAdded;
 import org.uberfire.workbench.events.ResourceChange;
+import org.uberfire.workbench.events.ResourceDeleted;
+import org.uberfire.workbench.events.ResourceUpdated;
 
 /**
- * Listener for changes to project resources to handle incremental builds
+ * Listener for changes to project resources to handle incremental builds. Changes are debounced and merged
+ * per Project by {@link IncrementalBuildScheduler}. The Projects containing changed resources are resolved by the
+ * IncrementalBuilderExecutorManager, off the thread raising the change.
  */
 @ApplicationScoped
 public class ResourceChangeIncrementalBuilder {
@@ -60,6 +64,8 @@ public class ResourceChangeIncrementalBuilder {
 
     private IncrementalBuilderExecutorManager executorManager = null;
 
+    private IncrementalBuildScheduler scheduler = null;
+
     protected boolean isIncrementalEnabled = false;
 
     @PostConstruct
@@ -79,6 +85,9 @@ public class ResourceChangeIncrementalBuilder {
 
     @PreDestroy
     private void destroyExecutorService() {
+        if ( scheduler != null ) {
+            scheduler.shutdown();
+        }
         if ( executorManager != null && !isEjb( executorManager, IncrementalBuilderExecutorManager.class ) ) {
             executorManager.shutdown();
         }
@@ -100,6 +109,18 @@ public class ResourceChangeIncrementalBuilder {
         return executorManager;
     }
 
+    private synchronized IncrementalBuildScheduler getScheduler() {
+        if ( scheduler == null ) {
+            scheduler = new IncrementalBuildScheduler( new IncrementalBuilderExecutorManagerFactory() {
+                @Override
+                public IncrementalBuilderExecutorManager getExecutorManager() {
+                    return getExecutor();
+                }
+            } );
+        }
+        return scheduler;
+    }
+
     public void addResource( final Path resource ) {
         //Do nothing if incremental builds are disabled
         if ( !isIncrementalEnabled ) {
@@ -115,37 +136,8 @@ public class ResourceChangeIncrementalBuilder {
         }
 
         //Schedule an incremental build
-        getExecutor().execute( new AsyncIncrementalBuilder() {
-
-            @Override
-            public void execute( final ProjectService projectService,
-                                 final BuildService buildService,
-                                 final Event<IncrementalBuildResults> incrementalBuildResultsEvent,
-                                 final Event<BuildResults> buildResultsEvent ) {
-                try {
-                    logger.info( "Incremental build request being processed: " + resource.toURI() + " (added)." );
-                    final Project project = projectService.resolveProject( resource );
-
-                    //Fall back to a Full Build in lieu of an Incremental Build if the Project has not been previously built
-                    if ( buildService.isBuilt( project ) ) {
-                        final IncrementalBuildResults results = buildService.addPackageResource( resource );
-                        incrementalBuildResultsEvent.fire( results );
-                    } else {
-                        final BuildResults results = buildService.build( project );
-                        buildResultsEvent.fire( results );
-                    }
-
-                } catch ( Exception e ) {
-                    logger.error( e.getMessage(),
-                                  e );
-                }
-            }
-
-            @Override
-            public String getDescription() {
-                return "Incremental Build [" + resource.toURI() + " (added)]";
-            }
-        } );
+        schedulePackageResourceChange( resource,
+                                       new ResourceAdded( "" ) );
     }
 
     public void deleteResource( final Path resource ) {
@@ -163,37 +155,8 @@ public class ResourceChangeIncrementalBuilder {
         }
 
         //Schedule an incremental build
-        getExecutor().execute( new AsyncIncrementalBuilder() {
-
-            @Override
-            public void execute( final ProjectService projectService,
-                                 final BuildService buildService,
-                                 final Event<IncrementalBuildResults> incrementalBuildResultsEvent,
-                                 final Event<BuildResults> buildResultsEvent ) {
-                try {
-                    logger.info( "Incremental build request being processed: " + resource.toURI() + " (deleted)." );
-                    final Project project = projectService.resolveProject( resource );
-
-                    //Fall back to a Full Build in lieu of an Incremental Build if the Project has not been previously built
-                    if ( buildService.isBuilt( project ) ) {
-                        final IncrementalBuildResults results = buildService.deletePackageResource( resource );
-                        incrementalBuildResultsEvent.fire( results );
-                    } else {
-                        final BuildResults results = buildService.build( project );
-                        buildResultsEvent.fire( results );
-                    }
-
-                } catch ( Exception e ) {
-                    logger.error( e.getMessage(),
-                                  e );
-                }
-            }
-
-            @Override
-            public String getDescription() {
-                return "Incremental Build [" + resource.toURI() + " (deleted)]";
-            }
-        } );
+        schedulePackageResourceChange( resource,
+                                       new ResourceDeleted( "" ) );
     }
 
     public void updateResource( final Path resource ) {
@@ -223,7 +186,6 @@ public class ResourceChangeIncrementalBuilder {
 
     //Schedule a re-build of a Project (changes to pom.xml or kmodule.xml require a full build)
     protected void scheduleProjectResourceUpdate( final Path resource ) {
-        final Project project = projectService.resolveProject( resource );
         getExecutor().execute( new AsyncIncrementalBuilder() {
 
             @Override
@@ -232,9 +194,11 @@ public class ResourceChangeIncrementalBuilder {
                                  final Event<IncrementalBuildResults> incrementalBuildResultsEvent,
                                  final Event<BuildResults> buildResultsEvent ) {
                 try {
-                    logger.info( "Incremental build request being processed: " + project.getRootPath() + " (updated)." );
-                    final BuildResults results = buildService.build( project );
-                    buildResultsEvent.fire( results );
+                    final Project project = projectService.resolveProject( resource );
+                    if ( project == null ) {
+                        return;
+                    }
+                    getScheduler().scheduleFullBuild( project );
 
                 } catch ( Exception e ) {
                     logger.error( e.getMessage(),
@@ -251,6 +215,12 @@ public class ResourceChangeIncrementalBuilder {
 
     //Schedule an incremental build for a package resource
     protected void schedulePackageResourceUpdate( final Path resource ) {
+        schedulePackageResourceChange( resource,
+                                       new ResourceUpdated( "" ) );
+    }
+
+    private void schedulePackageResourceChange( final Path resource,
+                                                final ResourceChange change ) {
         getExecutor().execute( new AsyncIncrementalBuilder() {
 
             @Override
@@ -259,17 +229,13 @@ public class ResourceChangeIncrementalBuilder {
                                  final Event<IncrementalBuildResults> incrementalBuildResultsEvent,
                                  final Event<BuildResults> buildResultsEvent ) {
                 try {
-                    logger.info( "Incremental build request being processed: " + resource.toURI() + " (updated)." );
                     final Project project = projectService.resolveProject( resource );
-
-                    //Fall back to a Full Build in lieu of an Incremental Build if the Project has not been previously built
-                    if ( buildService.isBuilt( project ) ) {
-                        final IncrementalBuildResults results = buildService.updatePackageResource( resource );
-                        incrementalBuildResultsEvent.fire( results );
-                    } else {
-                        final BuildResults results = buildService.build( project );
-                        buildResultsEvent.fire( results );
+                    if ( project == null ) {
+                        return;
                     }
+                    getScheduler().scheduleChange( project,
+                                                   resource,
+                                                   change );
 
                 } catch ( Exception e ) {
                     logger.error( e.getMessage(),
@@ -279,7 +245,7 @@ public class ResourceChangeIncrementalBuilder {
 
             @Override
             public String getDescription() {
-                return "Incremental Build [" + resource.toURI() + " (updated)]";
+                return "Incremental Build [" + resource.toURI() + " (" + change.getType().toString() + ")]";
             }
         } );
     }
@@ -292,53 +258,30 @@ public class ResourceChangeIncrementalBuilder {
 
         logger.info( "Batch incremental build request received." );
 
-        //Block changes together with their respective project as Builder operates at the Project level
-        final Map<Project, Map<Path, Collection<ResourceChange>>> projectBatchChanges = new HashMap<Project, Map<Path, Collection<ResourceChange>>>();
-
-        for ( Map.Entry<Path, Collection<ResourceChange>> pathCollectionEntry : batch.entrySet() ) {
-            for ( final ResourceChange change : pathCollectionEntry.getValue() ) {
-                final Path resource = pathCollectionEntry.getKey();
-
-                //If resource is not within a Package it cannot be used for an incremental build
-                final Project project = projectService.resolveProject( resource );
-                final Package pkg = projectService.resolvePackage( resource );
-                if ( project != null && pkg != null ) {
-                    if ( !projectBatchChanges.containsKey( project ) ) {
-                        projectBatchChanges.put( project,
-                                                 new HashMap<Path, Collection<ResourceChange>>() );
-                    }
-                    final Map<Path, Collection<ResourceChange>> projectChanges = projectBatchChanges.get( project );
-                    if ( !projectChanges.containsKey( pathCollectionEntry.getKey() ) ) {
-                        projectChanges.put( pathCollectionEntry.getKey(), new ArrayList<ResourceChange>() );
-                    }
-                    projectChanges.get( pathCollectionEntry.getKey() ).add( change );
-                    logger.info( "- Batch content: " + pathCollectionEntry.getKey().toURI() + " (" + change.getType().toString() + ")." );
-                }
-            }
-        }
-
-        //Schedule an incremental build for each Project
-        for ( final Map.Entry<Project, Map<Path, Collection<ResourceChange>>> e : projectBatchChanges.entrySet() ) {
-            getExecutor().execute( new AsyncIncrementalBuilder() {
+        //The batch may be changed by its sender once this returns
+        final Map<Path, Collection<ResourceChange>> changes = new LinkedHashMap<Path, Collection<ResourceChange>>( batch );
+        getExecutor().execute( new AsyncIncrementalBuilder() {
 
-                @Override
-                public void execute( final ProjectService projectService,
-                                     final BuildService buildService,
-                                     final Event<IncrementalBuildResults> incrementalBuildResultsEvent,
-                                     final Event<BuildResults> buildResultsEvent ) {
+            @Override
+            public void execute( final ProjectService projectService,
+                                 final BuildService buildService,
+                                 final Event<IncrementalBuildResults> incrementalBuildResultsEvent,
+                                 final Event<BuildResults> buildResultsEvent ) {
+                //Changes are blocked together with their respective project by the scheduler as Builder operates at the Project level
+                for ( Map.Entry<Path, Collection<ResourceChange>> pathCollectionEntry : changes.entrySet() ) {
+                    final Path resource = pathCollectionEntry.getKey();
                     try {
-                        logger.info( "Batch incremental build request being processed." );
-                        final Project project = e.getKey();
-                        final Map<Path, Collection<ResourceChange>> changes = e.getValue();
-
-                        //Fall back to a Full Build in lieu of an Incremental Build if the Project has not been previously built
-                        if ( buildService.isBuilt( project ) ) {
-                            final IncrementalBuildResults results = buildService.applyBatchResourceChanges( project,
-                                                                                                            changes );
-                            incrementalBuildResultsEvent.fire( results );
-                        } else {
-                            final BuildResults results = buildService.build( project );
-                            buildResultsEvent.fire( results );
+                        //If resource is not within a Package it cannot be used for an incremental build
+                        final Project project = projectService.resolveProject( resource );
+                        final Package pkg = projectService.resolvePackage( resource );
+                        if ( project == null || pkg == null ) {
+                            continue;
+                        }
+                        for ( final ResourceChange change : pathCollectionEntry.getValue() ) {
+                            getScheduler().scheduleChange( project,
+                                                           resource,
+                                                           change );
+                            logger.info( "- Batch content: " + resource.toURI() + " (" + change.getType().toString() + ")." );
                         }
 
                     } catch ( Exception e ) {
@@ -346,13 +289,13 @@ public class ResourceChangeIncrementalBuilder {
                                       e );
                     }
                 }
+            }
 
-                @Override
-                public String getDescription() {
-                    return "Batch incremental build [" + e.getKey().getProjectName() + "]";
-                }
-            } );
-        }
+            @Override
+            public String getDescription() {
+                return "Batch Incremental Build";
+            }
+        } );
     }
 
 }
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.builder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.enterprise.event.Event;
+
+import org.guvnor.common.services.project.builder.model.BuildResults;
+import org.guvnor.common.services.project.builder.model.IncrementalBuildResults;
+import org.guvnor.common.services.project.builder.service.BuildService;
+import org.guvnor.common.services.project.model.Project;
+import org.guvnor.common.services.project.service.ProjectService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.uberfire.backend.vfs.Path;
+import org.uberfire.workbench.events.ResourceAdded;
+import org.uberfire.workbench.events.ResourceChange;
+import org.uberfire.workbench.events.ResourceChangeType;
+import org.uberfire.workbench.events.ResourceDeleted;
+import org.uberfire.workbench.events.ResourceUpdated;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class IncrementalBuildSchedulerTest {
+
+    private BuildService buildService;
+    private Project project;
+    private ExecutorService executorService;
+    private IncrementalBuildScheduler scheduler;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        buildService = mock( BuildService.class );
+        project = mock( Project.class );
+        when( project.getRootPath() ).thenReturn( mock( Path.class ) );
+        when( project.getProjectName() ).thenReturn( "project" );
+        when( buildService.isBuilt( project ) ).thenReturn( true );
+
+        executorService = Executors.newFixedThreadPool( 2 );
+        final IncrementalBuilderExecutorManager executorManager = new IncrementalBuilderExecutorManager();
+        executorManager.setServices( mock( ProjectService.class ),
+                                     buildService,
+                                     mock( Event.class ),
+                                     mock( Event.class ) );
+        executorManager.setExecutorService( executorService );
+
+        scheduler = new IncrementalBuildScheduler( new IncrementalBuilderExecutorManagerFactory() {
+                                                       @Override
+                                                       public IncrementalBuilderExecutorManager getExecutorManager() {
+                                                           return executorManager;
+                                                       }
+                                                   },
+                                                   200 );
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+        executorService.shutdownNow();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testChangesAreMergedIntoOneBuild() {
+        final Path resource1 = mock( Path.class );
+        final Path resource2 = mock( Path.class );
+        scheduler.scheduleChange( project,
+                                  resource1,
+                                  new ResourceUpdated( "" ) );
+        scheduler.scheduleChange( project,
+                                  resource1,
+                                  new ResourceUpdated( "" ) );
+        scheduler.scheduleChange( project,
+                                  resource2,
+                                  new ResourceAdded( "" ) );
+
+        final ArgumentCaptor<Map> changesCaptor = ArgumentCaptor.forClass( Map.class );
+        verify( buildService,
+                timeout( 5000 ).times( 1 ) ).applyBatchResourceChanges( eq( project ),
+                                                                        changesCaptor.capture() );
+        final Map<Path, Collection<ResourceChange>> changes = changesCaptor.getValue();
+        assertEquals( 2,
+                      changes.size() );
+        assertEquals( 1,
+                      changes.get( resource1 ).size() );
+        assertEquals( 1,
+                      changes.get( resource2 ).size() );
+        verify( buildService,
+                never() ).build( project );
+    }
+
+    @Test
+    public void testFullBuildSupersedesChanges() {
+        scheduler.scheduleChange( project,
+                                  mock( Path.class ),
+                                  new ResourceUpdated( "" ) );
+        scheduler.scheduleFullBuild( project );
+
+        verify( buildService,
+                timeout( 5000 ).times( 1 ) ).build( project );
+        verify( buildService,
+                never() ).applyBatchResourceChanges( any( Project.class ),
+                                                     anyMap() );
+    }
+
+    @Test
+    public void testFollowUpBuildForChangesReceivedDuringBuild() throws Exception {
+        final CountDownLatch buildStarted = new CountDownLatch( 1 );
+        final CountDownLatch releaseBuild = new CountDownLatch( 1 );
+        when( buildService.build( project ) ).thenAnswer( new Answer<BuildResults>() {
+            @Override
+            public BuildResults answer( final InvocationOnMock invocation ) throws Throwable {
+                buildStarted.countDown();
+                releaseBuild.await();
+                return new BuildResults();
+            }
+        } );
+
+        scheduler.scheduleFullBuild( project );
+        assertTrue( buildStarted.await( 5,
+                                        TimeUnit.SECONDS ) );
+
+        //Changes received whilst the build is in flight must not start a concurrent build
+        scheduler.scheduleChange( project,
+                                  mock( Path.class ),
+                                  new ResourceDeleted( "" ) );
+        Thread.sleep( 400 );
+        verify( buildService,
+                never() ).applyBatchResourceChanges( any( Project.class ),
+                                                     anyMap() );
+
+        releaseBuild.countDown();
+        verify( buildService,
+                timeout( 5000 ).times( 1 ) ).applyBatchResourceChanges( any( Project.class ),
+                                                                        anyMap() );
+    }
+
+    @Test
+    public void testHeldChangesDoNotOccupyAnExecutorThread() throws Exception {
+        //Every thread of the executor is available to other work whilst changes are held
+        final CountDownLatch otherWork = new CountDownLatch( 2 );
+        scheduler.scheduleChange( project,
+                                  mock( Path.class ),
+                                  new ResourceUpdated( "" ) );
+        for ( int i = 0; i < 2; i++ ) {
+            executorService.submit( new Runnable() {
+                @Override
+                public void run() {
+                    otherWork.countDown();
+                    try {
+                        otherWork.await();
+                    } catch ( InterruptedException e ) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            } );
+        }
+        assertTrue( otherWork.await( 100,
+                                     TimeUnit.MILLISECONDS ) );
+
+        verify( buildService,
+                timeout( 5000 ).times( 1 ) ).applyBatchResourceChanges( any( Project.class ),
+                                                                        anyMap() );
+    }
+
+    @Test
+    public void testMergeChange() {
+        final Collection<ResourceChange> pending = new ArrayList<ResourceChange>();
+        IncrementalBuildScheduler.mergeChange( pending,
+                                               new ResourceAdded( "" ) );
+        IncrementalBuildScheduler.mergeChange( pending,
+                                               new ResourceUpdated( "" ) );
+        assertEquals( 1,
+                      pending.size() );
+        assertEquals( ResourceChangeType.ADD,
+                      pending.iterator().next().getType() );
+
+        //An addition then deletion leaves nothing to build
+        IncrementalBuildScheduler.mergeChange( pending,
+                                               new ResourceDeleted( "" ) );
+        assertTrue( pending.isEmpty() );
+    }
+
+    @Test
+    public void testMergeDelete() {
+        final Collection<ResourceChange> pending = new ArrayList<ResourceChange>();
+        IncrementalBuildScheduler.mergeChange( pending,
+                                               new ResourceUpdated( "" ) );
+        IncrementalBuildScheduler.mergeChange( pending,
+                                               new ResourceDeleted( "" ) );
+        assertEquals( 1,
+                      pending.size() );
+        assertEquals( ResourceChangeType.DELETE,
+                      pending.iterator().next().getType() );
+
+        //Re-adding a deleted resource updates it
+        IncrementalBuildScheduler.mergeChange( pending,
+                                               new ResourceAdded( "" ) );
+        assertEquals( 1,
+                      pending.size() );
+        assertEquals( ResourceChangeType.UPDATE,
+                      pending.iterator().next().getType() );
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCancelledChangesAreNotBuilt() {
+        final Path resource1 = mock( Path.class );
+        final Path resource2 = mock( Path.class );
+        scheduler.scheduleChange( project,
+                                  resource1,
+                                  new ResourceAdded( "" ) );
+        scheduler.scheduleChange( project,
+                                  resource2,
+                                  new ResourceUpdated( "" ) );
+        scheduler.scheduleChange( project,
+                                  resource1,
+                                  new ResourceDeleted( "" ) );
+
+        final ArgumentCaptor<Map> changesCaptor = ArgumentCaptor.forClass( Map.class );
+        verify( buildService,
+                timeout( 5000 ).times( 1 ) ).applyBatchResourceChanges( eq( project ),
+                                                                        changesCaptor.capture() );
+        final Map<Path, Collection<ResourceChange>> changes = changesCaptor.getValue();
+        assertEquals( 1,
+                      changes.size() );
+        assertTrue( changes.containsKey( resource2 ) );
+    }
+
+}
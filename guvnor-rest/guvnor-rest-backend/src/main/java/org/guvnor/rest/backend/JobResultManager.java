@@ -16,12 +16,11 @@
 package org.guvnor.rest.backend;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.PostConstruct;
@@ -29,6 +28,7 @@ import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 
+import org.guvnor.common.services.backend.util.SystemProperties;
 import org.guvnor.rest.client.JobRequest;
 import org.guvnor.rest.client.JobResult;
 import org.guvnor.rest.client.JobStatus;
@@ -46,27 +46,17 @@ public class JobResultManager {
     private static final Logger logger = LoggerFactory.getLogger(JobResultManager.class);
     private static AtomicInteger created = new AtomicInteger(0);
 
-    private static class Cache extends LinkedHashMap<String, JobResult> {
+    public static final String CACHE_SIZE_PROPERTY_NAME = "org.guvnor.rest.jobs.cache.size";
+    public static final String TTL_PROPERTY_NAME = "org.guvnor.rest.jobs.ttl";
+    public static final String DIRECTORY_PROPERTY_NAME = "org.guvnor.rest.jobs.dir";
+    public static final String CHECK_INTERVAL_PROPERTY_NAME = "org.guvnor.rest.jobs.check.interval";
 
-        private int maxSize = 1000;
+    private static final int DEFAULT_CACHE_SIZE = 10000;
+    private static final long DEFAULT_TTL = 24 * 60 * 60 * 1000;
+    private static final long DEFAULT_CHECK_INTERVAL = 5000;
 
-        public Cache(int maxSize) {
-            this.maxSize = maxSize;
-        }
-
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<String, JobResult> stringFutureEntry) {
-            return size() > maxSize;
-        }
-
-        public void setMaxSize(int maxSize) {
-            this.maxSize = maxSize;
-        }
-    }
-
-    private Map<String, JobResult> jobs = null;
-
-    private int maxCacheSize = 10000;
+    private JobResultStore jobs = null;
+    private long checkInterval = DEFAULT_CHECK_INTERVAL;
 
     @Inject
     private Instance<ExecutorService> jobExecutor;
@@ -76,14 +66,31 @@ public class JobResultManager {
         if (!created.compareAndSet(0, 1)) {
             throw new IllegalStateException("Only 1 JobResultManager instance is allowed per container!");
         }
-        Cache cache = new Cache(maxCacheSize);
-        jobs = Collections.synchronizedMap(cache);
+        final String directory = System.getProperty(DIRECTORY_PROPERTY_NAME);
+        jobs = new JobResultStore(getCacheSize(),
+                                  getTtl(),
+                                  directory == null || directory.trim().isEmpty() ? null : new File(directory.trim()));
+        checkInterval = getCheckInterval();
     }
 
+    static int getCacheSize() {
+        return SystemProperties.getInt(CACHE_SIZE_PROPERTY_NAME, DEFAULT_CACHE_SIZE, 1);
+    }
+
+    static long getTtl() {
+        return SystemProperties.getLong(TTL_PROPERTY_NAME, DEFAULT_TTL, 0);
+    }
+
+    static long getCheckInterval() {
+        return SystemProperties.getLong(CHECK_INTERVAL_PROPERTY_NAME, DEFAULT_CHECK_INTERVAL, 0);
+    }
+
+    //Jobs running on this node update the store themselves, so ACCEPTED jobs are served from the store and only
+    //checked against the executor, for jobs run elsewhere, at most once per check interval
     public JobResult getJob(String jobId) {
         JobResult job = jobs.get(jobId);
 
-        if (job != null && !JobStatus.ACCEPTED.equals(job.getStatus())) {
+        if (job != null && (!JobStatus.ACCEPTED.equals(job.getStatus()) || !jobs.claimCheck(jobId, checkInterval))) {
             return job;
         }
 
@@ -94,7 +101,8 @@ public class JobResultManager {
             if (jobsFound != null && !jobsFound.isEmpty()) {
                 RequestInfo executorJob = jobsFound.get(0);
                 JobResult requestedJob = (JobResult) getItemFromRequestOutput("JobResult", executorJob);
-                if (requestedJob == null) {
+                //The request only holds the status it was submitted with, which a stored job already has
+                if (requestedJob == null && job == null) {
                     JobRequest jobRequest = (JobRequest) getItemFromRequestInput("JobRequest", executorJob);
                     if (jobRequest != null) {
                         requestedJob = new JobResult();
@@ -103,10 +111,11 @@ public class JobResultManager {
                     }
                 }
 
-                // if it was found set it in cache
-                if (requestedJob != null) {
+                // if it was found and has changed set it in cache
+                if (requestedJob != null && !isSame(job, requestedJob)) {
                     job = requestedJob;
-                    jobs.put(jobId, job);
+                    job.setJobId(jobId);
+                    jobs.put(job);
                 }
             }
         }
@@ -114,8 +123,15 @@ public class JobResultManager {
         return job;
     }
 
+    private static boolean isSame(JobResult job, JobResult other) {
+        return job != null
+                && Objects.equals(job.getStatus(), other.getStatus())
+                && Objects.equals(job.getResult(), other.getResult())
+                && Objects.equals(job.getDetailedResult(), other.getDetailedResult());
+    }
+
     public void putJob(JobResult job) {
-        jobs.put(job.getJobId(), job);
+        jobs.put(job);
     }
 
     public JobResult removeJob(String jobId) {
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.rest.backend;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.guvnor.rest.client.JobResult;
+import org.guvnor.rest.client.JobStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Concurrent store of JobResults. Results expire once unchanged for the time to live and, beyond the maximum size,
+ * the least recently changed results are evicted. Lookups do not contend on a single lock.
+ * <p/>
+ * Should a directory be given, results are also written to it as one properties file per job, so they survive
+ * restarts and can be read back without Java deserialization. Files are deleted when their results expire or are
+ * evicted, so the directory is bounded like the store.
+ */
+class JobResultStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobResultStore.class);
+
+    private static final String FILE_EXTENSION = ".job";
+
+    private static final long MAX_SWEEP_INTERVAL = 60 * 1000;
+
+    //Job ids that are safe to use as file names
+    private static final Pattern FILE_NAME_PATTERN = Pattern.compile("[A-Za-z0-9._-]+");
+
+    private static final String STATUS = "status";
+    private static final String RESULT = "result";
+    private static final String LAST_MODIFIED = "lastModified";
+    private static final String DETAILED_RESULT = "detailedResult.";
+
+    private final ConcurrentMap<String, Entry> jobs = new ConcurrentHashMap<String, Entry>();
+
+    private final AtomicLong sequences = new AtomicLong();
+    private final AtomicLong lastSweep = new AtomicLong(System.currentTimeMillis());
+
+    private final int maxSize;
+    private final long ttl;
+    private final File directory;
+
+    JobResultStore(int maxSize, long ttl, File directory) {
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.directory = directory;
+        if (directory != null) {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IllegalArgumentException("Unable to create job result directory " + directory);
+            }
+            removeExpiredFiles();
+        }
+    }
+
+    JobResult get(String jobId) {
+        Entry entry = jobs.get(jobId);
+        if (entry != null) {
+            if (!entry.isExpired()) {
+                return entry.result;
+            }
+            if (jobs.remove(jobId, entry)) {
+                deleteFile(jobId);
+            }
+        }
+
+        JobResult result = read(jobId);
+        if (result != null) {
+            jobs.putIfAbsent(jobId, new Entry(result));
+        }
+        return result;
+    }
+
+    void put(JobResult job) {
+        jobs.put(job.getJobId(), new Entry(job));
+        write(job);
+        if (jobs.size() > maxSize || isSweepDue()) {
+            evict();
+        }
+    }
+
+    /**
+     * Claims the next check of a stored result against its source, at most once per interval.
+     * @return true if the result is not stored or was last checked at least the interval ago
+     */
+    boolean claimCheck(String jobId, long interval) {
+        Entry entry = jobs.get(jobId);
+        if (entry == null) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        long checked = entry.checked.get();
+        return now - checked >= interval && entry.checked.compareAndSet(checked, now);
+    }
+
+    JobResult remove(String jobId) {
+        Entry entry = jobs.remove(jobId);
+        File file = getFile(jobId);
+        JobResult result = entry == null ? null : entry.result;
+        if (file != null && file.exists()) {
+            if (result == null) {
+                result = read(jobId);
+            }
+            if (!file.delete()) {
+                logger.warn("Unable to delete job result file {}", file);
+            }
+        }
+        return result;
+    }
+
+    int size() {
+        return jobs.size();
+    }
+
+    //Results that are never read again are only removed by eviction, so expired results are swept periodically
+    private boolean isSweepDue() {
+        long now = System.currentTimeMillis();
+        long last = lastSweep.get();
+        return now - last >= Math.min(ttl, MAX_SWEEP_INTERVAL) && lastSweep.compareAndSet(last, now);
+    }
+
+    //Removes expired results then, if still too many, the least recently changed down to 90% of the maximum size
+    private synchronized void evict() {
+        List<Map.Entry<String, Entry>> live = new ArrayList<Map.Entry<String, Entry>>();
+        for (Map.Entry<String, Entry> e : jobs.entrySet()) {
+            if (e.getValue().isExpired()) {
+                if (jobs.remove(e.getKey(), e.getValue())) {
+                    deleteFile(e.getKey());
+                }
+            } else {
+                live.add(e);
+            }
+        }
+        if (directory != null) {
+            removeExpiredFiles();
+        }
+        if (jobs.size() <= maxSize) {
+            return;
+        }
+
+        int excess = live.size() - (maxSize - maxSize / 10);
+        if (excess <= 0) {
+            return;
+        }
+        Collections.sort(live, new Comparator<Map.Entry<String, Entry>>() {
+            @Override
+            public int compare(Map.Entry<String, Entry> e1, Map.Entry<String, Entry> e2) {
+                return e1.getValue().sequence < e2.getValue().sequence ? -1 : (e1.getValue().sequence == e2.getValue().sequence ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < excess; i++) {
+            if (jobs.remove(live.get(i).getKey(), live.get(i).getValue())) {
+                deleteFile(live.get(i).getKey());
+            }
+        }
+    }
+
+    private void deleteFile(String jobId) {
+        File file = getFile(jobId);
+        if (file == null || !file.exists()) {
+            return;
+        }
+        if (!file.delete()) {
+            logger.warn("Unable to delete job result file {}", file);
+        }
+        //The job may have been stored again whilst its previous result was being removed
+        Entry entry = jobs.get(jobId);
+        if (entry != null) {
+            write(entry.result);
+        }
+    }
+
+    private File getFile(String jobId) {
+        if (directory == null || jobId == null || !FILE_NAME_PATTERN.matcher(jobId).matches()) {
+            return null;
+        }
+        return new File(directory, jobId + FILE_EXTENSION);
+    }
+
+    private void write(JobResult job) {
+        File file = getFile(job.getJobId());
+        if (file == null) {
+            return;
+        }
+        Properties properties = new Properties();
+        if (job.getStatus() != null) {
+            properties.setProperty(STATUS, job.getStatus().name());
+        }
+        if (job.getResult() != null) {
+            properties.setProperty(RESULT, job.getResult());
+        }
+        if (job.getLastModified() != null) {
+            properties.setProperty(LAST_MODIFIED, String.valueOf(job.getLastModified()));
+        }
+        if (job.getDetailedResult() != null) {
+            for (int i = 0; i < job.getDetailedResult().size(); i++) {
+                properties.setProperty(DETAILED_RESULT + i, String.valueOf(job.getDetailedResult().get(i)));
+            }
+        }
+
+        //Written aside and moved into place so that readers never see a partial file
+        File temp = new File(directory, job.getJobId() + FILE_EXTENSION + ".tmp");
+        try {
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                properties.store(out, null);
+            } finally {
+                out.close();
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Unable to write result of job {} to {}", job.getJobId(), file, e);
+        }
+    }
+
+    private JobResult read(String jobId) {
+        File file = getFile(jobId);
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        if (System.currentTimeMillis() - file.lastModified() > ttl) {
+            file.delete();
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            logger.debug("Unable to read result of job {} from {}", jobId, file, e);
+            return null;
+        }
+
+        JobResult result = new JobResult();
+        result.setJobId(jobId);
+        try {
+            if (properties.getProperty(STATUS) != null) {
+                result.setStatus(JobStatus.valueOf(properties.getProperty(STATUS)));
+            }
+            if (properties.getProperty(LAST_MODIFIED) != null) {
+                result.setLastModified(Long.parseLong(properties.getProperty(LAST_MODIFIED)));
+            }
+        } catch (IllegalArgumentException e) {
+            logger.debug("Invalid result of job {} in {}", jobId, file, e);
+            return null;
+        }
+        result.setResult(properties.getProperty(RESULT));
+        if (properties.getProperty(DETAILED_RESULT + 0) != null) {
+            List<String> detailedResult = new ArrayList<String>();
+            for (int i = 0; properties.getProperty(DETAILED_RESULT + i) != null; i++) {
+                detailedResult.add(properties.getProperty(DETAILED_RESULT + i));
+            }
+            result.setDetailedResult(detailedResult);
+        }
+        return result;
+    }
+
+    private void removeExpiredFiles() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (File file : files) {
+            if (file.getName().endsWith(FILE_EXTENSION) && now - file.lastModified() > ttl) {
+                file.delete();
+            }
+        }
+    }
+
+    private class Entry {
+
+        private final JobResult result;
+        private final long created = System.currentTimeMillis();
+        //Order in which results were stored, as many may be stored within the same millisecond
+        private final long sequence = sequences.incrementAndGet();
+        //When the result was last checked against its source
+        private final AtomicLong checked = new AtomicLong(created);
+
+        private Entry(JobResult result) {
+            this.result = result;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() - created > ttl;
+        }
+    }
+}
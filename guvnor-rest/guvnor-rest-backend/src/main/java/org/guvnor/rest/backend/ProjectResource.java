@@ -18,8 +18,11 @@ package org.guvnor.rest.backend;
 import static org.kie.internal.remote.PermissionConstants.*;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.security.RolesAllowed;
@@ -28,16 +31,22 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.SecurityContext;
 import javax.ws.rs.core.UriInfo;
 import javax.ws.rs.core.Variant;
 
@@ -67,12 +76,14 @@ import org.guvnor.rest.client.RepositoryResponse;
 import org.guvnor.rest.client.TestProjectRequest;
 import org.guvnor.rest.client.UpdateOrganizationalUnit;
 import org.guvnor.rest.client.UpdateOrganizationalUnitRequest;
+import org.guvnor.structure.backend.repositories.git.GitCommits;
 import org.guvnor.structure.organizationalunit.OrganizationalUnitService;
 import org.guvnor.structure.repositories.Repository;
 import org.guvnor.structure.repositories.RepositoryService;
 import org.kie.internal.remote.PermissionConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.uberfire.backend.server.util.Paths;
 import org.uberfire.io.IOService;
 
 /**
@@ -88,6 +99,9 @@ public class ProjectResource {
     @Context
     protected UriInfo uriInfo;
 
+    @Context
+    protected SecurityContext securityContext;
+
     @Inject
     @Named("ioStrategy")
     private IOService ioService;
@@ -98,6 +112,10 @@ public class ProjectResource {
     @Inject
     private RepositoryService repositoryService;
 
+    @Inject
+    @Named("system")
+    private Repository systemRepository;
+
     @Inject
     private ProjectService<? extends Project> projectService;
 
@@ -162,12 +180,28 @@ public class ProjectResource {
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/repositories")
     @RolesAllowed({REST_ROLE, REST_PROJECT_ROLE})
-    public Collection<RepositoryResponse> getRepositories() {
+    public Collection<RepositoryResponse> getRepositories( @QueryParam("offset") @DefaultValue("0") int offset,
+                                                           @QueryParam("limit") @DefaultValue("-1") int limit,
+                                                           @QueryParam("prefix") String prefix ) {
         logger.debug( "-----getRepositories--- " );
+        checkPage( offset, limit );
+
+        List<org.guvnor.structure.repositories.Repository> repos = new ArrayList<org.guvnor.structure.repositories.Repository>();
+        for ( org.guvnor.structure.repositories.Repository r : repositoryService.getRepositories() ) {
+            if ( matches( r.getAlias(), prefix ) ) {
+                repos.add( r );
+            }
+        }
+        Collections.sort( repos, new Comparator<org.guvnor.structure.repositories.Repository>() {
+            @Override
+            public int compare( org.guvnor.structure.repositories.Repository r1,
+                                org.guvnor.structure.repositories.Repository r2 ) {
+                return r1.getAlias().compareTo( r2.getAlias() );
+            }
+        } );
 
-        Collection<org.guvnor.structure.repositories.Repository> repos = repositoryService.getRepositories();
         List<RepositoryResponse> result = new ArrayList<RepositoryResponse>();
-        for ( org.guvnor.structure.repositories.Repository r : repos ) {
+        for ( org.guvnor.structure.repositories.Repository r : page( repos, offset, limit ) ) {
             RepositoryResponse repo = new RepositoryResponse();
             repo.setGitURL( r.getUri() );
             repo.setName( r.getAlias() );
@@ -267,19 +301,102 @@ public class ProjectResource {
         return createAcceptedStatusResponse( jobRequest );
     }
 
+    /**
+     * Lists the projects of a branch of a repository, ordered by name. Only the projects on the requested page are
+     * loaded. The response carries an ETag derived from the branch's last commit and the last commit of the system
+     * repository, which holds the projects' security groups, so a client that sends it back in If-None-Match is
+     * answered with 304 Not Modified until either changes.
+     */
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/repositories/{repositoryName}/projects")
     @RolesAllowed({REST_ROLE, REST_PROJECT_ROLE})
-    public Collection<ProjectResponse> getProjects( @PathParam("repositoryName") String repositoryName) {
-        logger.info( "-----getProjects--- , repositoryName: {}", repositoryName );
+    public Response getProjects( @PathParam("repositoryName") String repositoryName,
+                                 @QueryParam("branch") @DefaultValue("master") String branch,
+                                 @QueryParam("offset") @DefaultValue("0") int offset,
+                                 @QueryParam("limit") @DefaultValue("-1") int limit,
+                                 @QueryParam("prefix") String prefix,
+                                 @Context Request request ) {
+        logger.info( "-----getProjects--- , repositoryName: {}, branch: {}", repositoryName, branch );
+        checkPage( offset, limit );
 
         Repository repository = repositoryService.getRepository(repositoryName);
         if( repository == null ) {
             throw new WebApplicationException( Response.status( Response.Status.NOT_FOUND ).entity( repositoryName ).build() );
         }
+        checkBranchExistence( repository, branch );
+
+        final EntityTag etag = getProjectsEntityTag( repository, branch, offset, limit, prefix );
+        if ( etag != null && request != null ) {
+            final Response.ResponseBuilder notModified = request.evaluatePreconditions( etag );
+            if ( notModified != null ) {
+                return notModified.tag( etag ).build();
+            }
+        }
+
+        final List<ProjectResponse> projects = getProjectResponses( repository, branch, prefix, offset, limit );
+        final Response.ResponseBuilder builder = Response.ok( new GenericEntity<List<ProjectResponse>>( projects ) {
+        } ).variant( defaultVariant );
+        if ( etag != null ) {
+            builder.tag( etag );
+        }
+        return builder.build();
+    }
 
-        Set<Project> projects = projectService.getProjects(repository, "master");
+    /**
+     * Lists the projects of a branch of many repositories in one call, keyed by repository name. All repositories are
+     * listed unless repository names are given. The offset and limit page the repositories, ordered by name.
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/projects")
+    @RolesAllowed({REST_ROLE, REST_PROJECT_ROLE})
+    public Map<String, Collection<ProjectResponse>> getProjectsOfRepositories( @QueryParam("repositoryName") List<String> repositoryNames,
+                                                                               @QueryParam("branch") @DefaultValue("master") String branch,
+                                                                               @QueryParam("offset") @DefaultValue("0") int offset,
+                                                                               @QueryParam("limit") @DefaultValue("-1") int limit,
+                                                                               @QueryParam("prefix") String prefix ) {
+        logger.info( "-----getProjectsOfRepositories--- , repositoryNames: {}, branch: {}", repositoryNames, branch );
+        checkPage( offset, limit );
+
+        final List<Repository> repositories = new ArrayList<Repository>();
+        if ( repositoryNames == null || repositoryNames.isEmpty() ) {
+            for ( Repository repository : repositoryService.getRepositories() ) {
+                if ( repository.getBranches().contains( branch ) ) {
+                    repositories.add( repository );
+                }
+            }
+        } else {
+            for ( String repositoryName : repositoryNames ) {
+                final Repository repository = checkRepositoryExistence( repositoryName );
+                checkBranchExistence( repository, branch );
+                repositories.add( repository );
+            }
+        }
+
+        Collections.sort( repositories, new Comparator<Repository>() {
+            @Override
+            public int compare( Repository r1,
+                                Repository r2 ) {
+                return String.valueOf( r1.getAlias() ).compareTo( String.valueOf( r2.getAlias() ) );
+            }
+        } );
+
+        final Map<String, Collection<ProjectResponse>> result = new TreeMap<String, Collection<ProjectResponse>>();
+        for ( Repository repository : page( repositories, offset, limit ) ) {
+            result.put( repository.getAlias(),
+                        getProjectResponses( repository, branch, prefix, 0, -1 ) );
+        }
+        return result;
+    }
+
+    private List<ProjectResponse> getProjectResponses( Repository repository,
+                                                       String branch,
+                                                       String prefix,
+                                                       int offset,
+                                                       int limit ) {
+        //The projects are filtered, ordered and paged by the service before any pom.xml is loaded
+        List<Project> projects = projectService.getProjects(repository, branch, prefix, offset, limit);
 
         List<ProjectResponse> projectRequests = new ArrayList<ProjectResponse>(projects.size());
         for( Project project : projects ) {
@@ -295,6 +412,46 @@ public class ProjectResource {
         return projectRequests;
     }
 
+    private EntityTag getProjectsEntityTag( Repository repository,
+                                            String branch,
+                                            int offset,
+                                            int limit,
+                                            String prefix ) {
+        try {
+            final String head = getHeadCommitId( repository, branch );
+            //The projects' security groups are held in the system repository
+            final String systemHead = getHeadCommitId( systemRepository );
+            if ( head == null || systemHead == null ) {
+                return null;
+            }
+            //The listing also depends upon the paging, filter and the projects the caller may access
+            final String identity = identity( repository, branch, offset, limit, prefix );
+            return new EntityTag( head + "-" + systemHead + "-" + Integer.toHexString( identity.hashCode() ) );
+        } catch ( Exception e ) {
+            logger.debug( "Unable to determine the last commit of branch {} of repository {}", branch, repository.getAlias(), e );
+            return null;
+        }
+    }
+
+    //Only the branch's ref is resolved; its history is never loaded
+    protected String getHeadCommitId( Repository repository,
+                                      String branch ) {
+        return GitCommits.getHeadCommitId( Paths.convert( repository.getBranchRoot( branch ) ) );
+    }
+
+    protected String getHeadCommitId( Repository repository ) {
+        return GitCommits.getHeadCommitId( Paths.convert( repository.getRoot() ) );
+    }
+
+    private String identity( Repository repository,
+                             String branch,
+                             int offset,
+                             int limit,
+                             String prefix ) {
+        final String user = securityContext == null || securityContext.getUserPrincipal() == null ? "" : securityContext.getUserPrincipal().getName();
+        return repository.getAlias() + "|" + branch + "|" + offset + "|" + limit + "|" + prefix + "|" + user;
+    }
+
     @DELETE
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/repositories/{repositoryName}/projects/{projectName}")
@@ -422,13 +579,29 @@ public class ProjectResource {
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/organizationalunits")
     @RolesAllowed({REST_ROLE, REST_PROJECT_ROLE})
-    public Collection<OrganizationalUnit> getOrganizationalUnits() {
+    public Collection<OrganizationalUnit> getOrganizationalUnits( @QueryParam("offset") @DefaultValue("0") int offset,
+                                                                  @QueryParam("limit") @DefaultValue("-1") int limit,
+                                                                  @QueryParam("prefix") String prefix ) {
         logger.debug( "-----getOrganizationalUnits--- " );
-        Collection<org.guvnor.structure.organizationalunit.OrganizationalUnit> origOrgUnits
-                = organizationalUnitService.getOrganizationalUnits();
+        checkPage( offset, limit );
+
+        List<org.guvnor.structure.organizationalunit.OrganizationalUnit> origOrgUnits
+                = new ArrayList<org.guvnor.structure.organizationalunit.OrganizationalUnit>();
+        for ( org.guvnor.structure.organizationalunit.OrganizationalUnit ou : organizationalUnitService.getOrganizationalUnits() ) {
+            if ( matches( ou.getName(), prefix ) ) {
+                origOrgUnits.add( ou );
+            }
+        }
+        Collections.sort( origOrgUnits, new Comparator<org.guvnor.structure.organizationalunit.OrganizationalUnit>() {
+            @Override
+            public int compare( org.guvnor.structure.organizationalunit.OrganizationalUnit ou1,
+                                org.guvnor.structure.organizationalunit.OrganizationalUnit ou2 ) {
+                return ou1.getName().compareTo( ou2.getName() );
+            }
+        } );
 
         List<OrganizationalUnit> organizationalUnits = new ArrayList<OrganizationalUnit>();
-        for ( org.guvnor.structure.organizationalunit.OrganizationalUnit ou : origOrgUnits ) {
+        for ( org.guvnor.structure.organizationalunit.OrganizationalUnit ou : page( origOrgUnits, offset, limit ) ) {
             OrganizationalUnit orgUnit = new OrganizationalUnit();
             orgUnit.setName( ou.getName() );
             orgUnit.setOwner( ou.getOwner() );
@@ -606,6 +779,35 @@ public class ProjectResource {
         return repo;
     }
 
+    private void checkBranchExistence( Repository repository,
+                                       String branch ) {
+        if ( !repository.getBranches().contains( branch ) ) {
+            throw new WebApplicationException( Response.status( Response.Status.NOT_FOUND ).entity( branch ).build() );
+        }
+    }
+
+    private void checkPage( int offset,
+                            int limit ) {
+        if ( offset < 0 || limit < -1 ) {
+            throw new WebApplicationException( Response.status( Response.Status.BAD_REQUEST ).entity( "offset=" + offset + ", limit=" + limit ).build() );
+        }
+    }
+
+    private static boolean matches( String name,
+                                    String prefix ) {
+        return prefix == null || prefix.isEmpty() || ( name != null && name.startsWith( prefix ) );
+    }
+
+    private static <T> List<T> page( List<T> items,
+                                     int offset,
+                                     int limit ) {
+        if ( offset >= items.size() ) {
+            return new ArrayList<T>();
+        }
+        final int end = limit < 0 ? items.size() : (int) Math.min( items.size(), (long) offset + limit );
+        return new ArrayList<T>( items.subList( offset, end ) );
+    }
+
     private org.guvnor.structure.organizationalunit.OrganizationalUnit checkOrganizationalUnitExistence( String orgUnitName ) {
         if( orgUnitName == null || orgUnitName.isEmpty() ) {
             throw new WebApplicationException( Response.status( Response.Status.NOT_FOUND ).entity( orgUnitName ).build() );
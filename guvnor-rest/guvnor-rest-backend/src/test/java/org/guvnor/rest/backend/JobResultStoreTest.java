@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.rest.backend;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.guvnor.rest.client.JobResult;
+import org.guvnor.rest.client.JobStatus;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+public class JobResultStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testResultsSurviveRestart() throws Exception {
+        JobResultStore store = new JobResultStore(100, 60000, folder.getRoot());
+        JobResult job = job("1234-1", JobStatus.SUCCESS);
+        job.setResult("done");
+        job.setLastModified(42L);
+        job.setDetailedResult(Arrays.asList("line 1", "line=2"));
+        store.put(job);
+
+        JobResult restored = new JobResultStore(100, 60000, folder.getRoot()).get("1234-1");
+        assertNotNull(restored);
+        assertEquals(JobStatus.SUCCESS, restored.getStatus());
+        assertEquals("done", restored.getResult());
+        assertEquals(Long.valueOf(42L), restored.getLastModified());
+        assertEquals(Arrays.asList("line 1", "line=2"), restored.getDetailedResult());
+
+        assertNotNull(store.remove("1234-1"));
+        assertNull(new JobResultStore(100, 60000, folder.getRoot()).get("1234-1"));
+    }
+
+    @Test
+    public void testResultsExpire() throws Exception {
+        JobResultStore store = new JobResultStore(100, 0, null);
+        store.put(job("1", JobStatus.SUCCESS));
+        Thread.sleep(5);
+        assertNull(store.get("1"));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        JobResultStore store = new JobResultStore(10, 60000, null);
+        for (int i = 0; i < 100; i++) {
+            store.put(job(String.valueOf(i), JobStatus.SUCCESS));
+        }
+        assertTrue(store.size() <= 10);
+        assertNotNull(store.get("99"));
+    }
+
+    @Test
+    public void testEvictedResultsAreDeleted() {
+        JobResultStore store = new JobResultStore(10, 60000, folder.getRoot());
+        for (int i = 0; i < 100; i++) {
+            store.put(job(String.valueOf(i), JobStatus.SUCCESS));
+        }
+        assertEquals(store.size(), folder.getRoot().listFiles().length);
+        assertTrue(new File(folder.getRoot(), "99.job").exists());
+        assertFalse(new File(folder.getRoot(), "0.job").exists());
+    }
+
+    @Test
+    public void testExpiredResultsAreDeleted() throws Exception {
+        JobResultStore store = new JobResultStore(100, 0, folder.getRoot());
+        store.put(job("1", JobStatus.SUCCESS));
+        Thread.sleep(5);
+        assertNull(store.get("1"));
+        assertEquals(0, folder.getRoot().listFiles().length);
+
+        //Results that are never read again are swept when others are stored
+        store.put(job("2", JobStatus.SUCCESS));
+        Thread.sleep(5);
+        store.put(job("3", JobStatus.SUCCESS));
+        assertFalse(new File(folder.getRoot(), "2.job").exists());
+    }
+
+    @Test
+    public void testChecksAreClaimedOncePerInterval() {
+        JobResultStore store = new JobResultStore(100, 60000, null);
+        assertTrue(store.claimCheck("1", 60000));
+        store.put(job("1", JobStatus.ACCEPTED));
+        assertFalse(store.claimCheck("1", 60000));
+        assertTrue(store.claimCheck("1", 0));
+    }
+
+    @Test
+    public void testUnsafeJobIdsAreNotWritten() {
+        JobResultStore store = new JobResultStore(100, 60000, folder.getRoot());
+        store.put(job("../escape", JobStatus.SUCCESS));
+        assertEquals(0, folder.getRoot().listFiles().length);
+        assertNotNull(store.get("../escape"));
+    }
+
+    private JobResult job(String jobId, JobStatus status) {
+        JobResult job = new JobResult();
+        job.setJobId(jobId);
+        job.setStatus(status);
+        return job;
+    }
+}
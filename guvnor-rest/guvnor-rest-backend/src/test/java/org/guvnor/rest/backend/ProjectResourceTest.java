@@ -0,0 +1,381 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.rest.backend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+
+import org.guvnor.common.services.project.model.GAV;
+import org.guvnor.common.services.project.model.POM;
+import org.guvnor.common.services.project.model.Project;
+import org.guvnor.common.services.project.service.ProjectService;
+import org.guvnor.rest.client.OrganizationalUnit;
+import org.guvnor.rest.client.ProjectResponse;
+import org.guvnor.rest.client.RepositoryResponse;
+import org.guvnor.structure.organizationalunit.OrganizationalUnitService;
+import org.guvnor.structure.repositories.Repository;
+import org.guvnor.structure.repositories.RepositoryService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith( MockitoJUnitRunner.class )
+public class ProjectResourceTest {
+
+    @Mock
+    private RepositoryService repositoryService;
+
+    @Mock
+    private OrganizationalUnitService organizationalUnitService;
+
+    @Mock
+    @SuppressWarnings("rawtypes")
+    private ProjectService projectService;
+
+    @Mock
+    private Repository systemRepository;
+
+    @Mock
+    private Request request;
+
+    private String headCommitId = "c0ffee";
+
+    private String systemHeadCommitId = "5ca1ab1e";
+
+    @InjectMocks
+    private ProjectResource resource = new ProjectResource() {
+        @Override
+        protected String getHeadCommitId( final Repository repository,
+                                          final String branch ) {
+            return headCommitId;
+        }
+
+        @Override
+        protected String getHeadCommitId( final Repository repository ) {
+            return systemHeadCommitId;
+        }
+    };
+
+    private Repository repository;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        repository = repository( "repository1" );
+        when( repositoryService.getRepository( "repository1" ) ).thenReturn( repository );
+        when( repositoryService.getRepositories() ).thenReturn( Arrays.asList( repository( "other" ),
+                                                                               repository,
+                                                                               repository( "repository2" ) ) );
+        when( projectService.getProjects( eq( repository ),
+                                          eq( "master" ),
+                                          (String) any(),
+                                          anyInt(),
+                                          anyInt() ) ).thenAnswer( projects( "projectC",
+                                                                             "projectA",
+                                                                             "other",
+                                                                             "projectB" ) );
+    }
+
+    @Test
+    public void testRepositoriesAreOrderedPagedAndFiltered() {
+        assertEquals( Arrays.asList( "other",
+                                     "repository1",
+                                     "repository2" ),
+                      repositoryNames( resource.getRepositories( 0,
+                                                                 -1,
+                                                                 null ) ) );
+        assertEquals( Arrays.asList( "repository2" ),
+                      repositoryNames( resource.getRepositories( 1,
+                                                                 1,
+                                                                 "repository" ) ) );
+        assertTrue( resource.getRepositories( 5,
+                                              10,
+                                              null ).isEmpty() );
+    }
+
+    @Test
+    public void testOrganizationalUnitsAreOrderedPagedAndFiltered() {
+        final List<org.guvnor.structure.organizationalunit.OrganizationalUnit> units = new ArrayList<org.guvnor.structure.organizationalunit.OrganizationalUnit>();
+        for ( String name : new String[]{ "ouB", "ouA", "demo" } ) {
+            final org.guvnor.structure.organizationalunit.OrganizationalUnit unit = mock( org.guvnor.structure.organizationalunit.OrganizationalUnit.class );
+            when( unit.getName() ).thenReturn( name );
+            when( unit.getRepositories() ).thenReturn( Collections.<Repository>emptyList() );
+            units.add( unit );
+        }
+        when( organizationalUnitService.getOrganizationalUnits() ).thenReturn( units );
+
+        final Collection<OrganizationalUnit> result = resource.getOrganizationalUnits( 0,
+                                                                                       1,
+                                                                                       "ou" );
+        assertEquals( 1,
+                      result.size() );
+        assertEquals( "ouA",
+                      result.iterator().next().getName() );
+    }
+
+    @Test(expected = WebApplicationException.class)
+    public void testNegativeOffsetIsRejected() {
+        resource.getRepositories( -1,
+                                  -1,
+                                  null );
+    }
+
+    @Test
+    public void testProjectsAreOrderedPagedAndFiltered() {
+        final Response response = resource.getProjects( "repository1",
+                                                        "master",
+                                                        1,
+                                                        2,
+                                                        "project",
+                                                        request );
+
+        assertEquals( 200,
+                      response.getStatus() );
+        assertEquals( Arrays.asList( "projectB",
+                                     "projectC" ),
+                      projectNames( projects( response ) ) );
+        assertNotNull( response.getMetadata().getFirst( "ETag" ) );
+        //The page is selected by the service, so that only its projects are loaded
+        verify( projectService ).getProjects( repository,
+                                              "master",
+                                              "project",
+                                              1,
+                                              2 );
+        verify( projectService,
+                never() ).getProjects( any( Repository.class ),
+                                       anyString() );
+    }
+
+    @Test
+    public void testMatchingIfNoneMatchIsNotModified() {
+        when( request.evaluatePreconditions( any( EntityTag.class ) ) ).thenReturn( Response.notModified() );
+
+        final Response response = resource.getProjects( "repository1",
+                                                        "master",
+                                                        0,
+                                                        -1,
+                                                        null,
+                                                        request );
+
+        assertEquals( 304,
+                      response.getStatus() );
+        //The projects are not loaded to answer a conditional request for an unchanged branch
+        verify( projectService,
+                never() ).getProjects( any( Repository.class ),
+                                       anyString(),
+                                       anyString(),
+                                       anyInt(),
+                                       anyInt() );
+    }
+
+    @Test
+    public void testEntityTagChangesWithBranchAndListing() {
+        final Object etag = getProjectsEntityTag( 0,
+                                                  -1,
+                                                  null );
+        assertEquals( etag,
+                      getProjectsEntityTag( 0,
+                                            -1,
+                                            null ) );
+        assertFalse( etag.equals( getProjectsEntityTag( 0,
+                                                        1,
+                                                        null ) ) );
+        assertFalse( etag.equals( getProjectsEntityTag( 0,
+                                                        -1,
+                                                        "project" ) ) );
+
+        headCommitId = "deadbeef";
+        assertFalse( etag.equals( getProjectsEntityTag( 0,
+                                                        -1,
+                                                        null ) ) );
+    }
+
+    @Test
+    public void testEntityTagChangesWithSecurityGroups() {
+        final Object etag = getProjectsEntityTag( 0,
+                                                  -1,
+                                                  null );
+
+        //Adding a group to, or removing a group from, a project commits to the system repository
+        systemHeadCommitId = "deadbeef";
+        assertFalse( etag.equals( getProjectsEntityTag( 0,
+                                                        -1,
+                                                        null ) ) );
+    }
+
+    @Test
+    public void testUnknownBranchIsNotFound() {
+        try {
+            resource.getProjects( "repository1",
+                                  "unknown",
+                                  0,
+                                  -1,
+                                  null,
+                                  request );
+            fail( "Expected WebApplicationException" );
+        } catch ( WebApplicationException e ) {
+            assertEquals( 404,
+                          e.getResponse().getStatus() );
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testProjectsOfRepositories() {
+        final Repository repository2 = repository( "repository2" );
+        when( repositoryService.getRepository( "repository2" ) ).thenReturn( repository2 );
+        when( repositoryService.getRepositories() ).thenReturn( Arrays.asList( repository,
+                                                                               repository2 ) );
+        when( projectService.getProjects( eq( repository2 ),
+                                          eq( "master" ),
+                                          (String) any(),
+                                          anyInt(),
+                                          anyInt() ) ).thenAnswer( projects( "projectD" ) );
+
+        final Map<String, Collection<ProjectResponse>> all = resource.getProjectsOfRepositories( null,
+                                                                                                "master",
+                                                                                                0,
+                                                                                                -1,
+                                                                                                "project" );
+        assertEquals( Arrays.asList( "repository1",
+                                     "repository2" ),
+                      new ArrayList<String>( all.keySet() ) );
+        assertEquals( Arrays.asList( "projectA",
+                                     "projectB",
+                                     "projectC" ),
+                      projectNames( all.get( "repository1" ) ) );
+
+        final Map<String, Collection<ProjectResponse>> one = resource.getProjectsOfRepositories( Arrays.asList( "repository1" ),
+                                                                                                "master",
+                                                                                                0,
+                                                                                                -1,
+                                                                                                null );
+        assertEquals( 1,
+                      one.size() );
+        assertEquals( 4,
+                      one.get( "repository1" ).size() );
+
+        //Repositories are paged in order of name
+        final Map<String, Collection<ProjectResponse>> second = resource.getProjectsOfRepositories( Arrays.asList( "repository2",
+                                                                                                                   "repository1" ),
+                                                                                                   "master",
+                                                                                                   1,
+                                                                                                   1,
+                                                                                                   null );
+        assertEquals( Arrays.asList( "repository2" ),
+                      new ArrayList<String>( second.keySet() ) );
+        verify( projectService,
+                never() ).getProjects( any( Repository.class ),
+                                       anyString() );
+    }
+
+    private Object getProjectsEntityTag( final int offset,
+                                         final int limit,
+                                         final String prefix ) {
+        return resource.getProjects( "repository1",
+                                     "master",
+                                     offset,
+                                     limit,
+                                     prefix,
+                                     request ).getMetadata().getFirst( "ETag" );
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ProjectResponse> projects( final Response response ) {
+        final Object entity = response.getEntity();
+        if ( entity instanceof GenericEntity ) {
+            return (List<ProjectResponse>) ( (GenericEntity) entity ).getEntity();
+        }
+        return (List<ProjectResponse>) entity;
+    }
+
+    private List<String> projectNames( final Collection<ProjectResponse> projects ) {
+        final List<String> names = new ArrayList<String>();
+        for ( ProjectResponse project : projects ) {
+            names.add( project.getName() );
+        }
+        return names;
+    }
+
+    private List<String> repositoryNames( final Collection<RepositoryResponse> repositories ) {
+        final List<String> names = new ArrayList<String>();
+        for ( RepositoryResponse repository : repositories ) {
+            names.add( repository.getName() );
+        }
+        return names;
+    }
+
+    private Repository repository( final String alias ) {
+        final Repository repository = mock( Repository.class );
+        when( repository.getAlias() ).thenReturn( alias );
+        when( repository.getUri() ).thenReturn( "default://" + alias );
+        when( repository.getBranches() ).thenReturn( Arrays.asList( "master" ) );
+        return repository;
+    }
+
+    //Answers as the service does: the projects are filtered by prefix, ordered by name and paged
+    private Answer<List<Project>> projects( final String... names ) {
+        return new Answer<List<Project>>() {
+            @Override
+            public List<Project> answer( final InvocationOnMock invocation ) {
+                final String prefix = (String) invocation.getArguments()[ 2 ];
+                final int offset = (Integer) invocation.getArguments()[ 3 ];
+                final int limit = (Integer) invocation.getArguments()[ 4 ];
+                final List<String> matching = new ArrayList<String>();
+                for ( String name : names ) {
+                    if ( prefix == null || name.startsWith( prefix ) ) {
+                        matching.add( name );
+                    }
+                }
+                Collections.sort( matching );
+                final List<Project> page = new ArrayList<Project>();
+                for ( int i = offset; i < matching.size() && ( limit < 0 || page.size() < limit ); i++ ) {
+                    page.add( project( matching.get( i ) ) );
+                }
+                return page;
+            }
+        };
+    }
+
+    private Project project( final String name ) {
+        final Project project = mock( Project.class );
+        when( project.getProjectName() ).thenReturn( name );
+        when( project.getPom() ).thenReturn( new POM( name,
+                                                      "description",
+                                                      new GAV( "org.guvnor",
+                                                               name,
+                                                               "1.0" ) ) );
+        return project;
+    }
+
+}
@@ -15,24 +15,38 @@
 
 package org.guvnor.common.services.backend.archive;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.concurrent.Semaphore;
 import javax.inject.Inject;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.guvnor.common.services.backend.util.SystemProperties;
 import org.guvnor.common.services.shared.file.upload.FileManagerFields;
 import org.uberfire.server.BaseFilteredServlet;
 
 public class ArchiveServlet
         extends BaseFilteredServlet {
 
+    public static final String MAX_CONCURRENT_EXPORTS_PROPERTY_NAME = "org.guvnor.archive.max.concurrent";
+
+    private static final int DEFAULT_MAX_CONCURRENT_EXPORTS = 4;
+
     @Inject
     private Archiver archiver;
 
+    //Each export holds a thread and reads the whole folder, so the number in progress at once is bounded
+    private final Semaphore exports = new Semaphore( getMaxConcurrentExports() );
+
+    static int getMaxConcurrentExports() {
+        return SystemProperties.getInt( MAX_CONCURRENT_EXPORTS_PROPERTY_NAME,
+                                        DEFAULT_MAX_CONCURRENT_EXPORTS,
+                                        1 );
+    }
+
     protected void doGet( final HttpServletRequest request,
                           final HttpServletResponse response ) throws ServletException, IOException {
         final String uri = request.getParameter( FileManagerFields.FORM_FIELD_PATH );
@@ -44,25 +58,32 @@ public class ArchiveServlet
                     return;
                 }
 
-                // Try to extract a meaningful name for the zip-file from the URI.
-                int index = uri.lastIndexOf( "@" ) + 1;
-                if ( index < 0 ) index = 0;
-                String downLoadFileName = uri.substring( index );
-                if ( downLoadFileName.startsWith( "/" ) ) downLoadFileName = downLoadFileName.substring( 1 );
-                if ( downLoadFileName.endsWith( "/" ) ) downLoadFileName = downLoadFileName.substring( 0, downLoadFileName.length() - 1 );
-                downLoadFileName.replaceAll( "/", "_" );
-
-                final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                if ( !exports.tryAcquire() ) {
+                    response.setHeader( "Retry-After",
+                                        "30" );
+                    response.sendError( HttpServletResponse.SC_SERVICE_UNAVAILABLE );
+                    return;
+                }
 
-                archiver.archive( outputStream, uri );
+                try {
+                    // Try to extract a meaningful name for the zip-file from the URI.
+                    int index = uri.lastIndexOf( "@" ) + 1;
+                    if ( index < 0 ) index = 0;
+                    String downLoadFileName = uri.substring( index );
+                    if ( downLoadFileName.startsWith( "/" ) ) downLoadFileName = downLoadFileName.substring( 1 );
+                    if ( downLoadFileName.endsWith( "/" ) ) downLoadFileName = downLoadFileName.substring( 0, downLoadFileName.length() - 1 );
+                    downLoadFileName.replaceAll( "/", "_" );
 
-                response.setContentType( "application/zip" );
-                response.setHeader( "Content-Disposition",
-                        "attachment; filename=" + downLoadFileName + ".zip" );
+                    response.setContentType( "application/zip" );
+                    response.setHeader( "Content-Disposition",
+                            "attachment; filename=" + downLoadFileName + ".zip" );
 
-                response.setContentLength( outputStream.size() );
-                response.getOutputStream().write( outputStream.toByteArray() );
-                response.getOutputStream().flush();
+                    // The size is unknown until the archive is complete, so it is sent with chunked transfer encoding.
+                    archiver.archive( response.getOutputStream(), uri );
+                    response.getOutputStream().flush();
+                } finally {
+                    exports.release();
+                }
             } else {
                 response.sendError( HttpServletResponse.SC_BAD_REQUEST );
             }
@@ -15,27 +15,58 @@
  */
 package org.guvnor.common.services.backend.archive;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.zip.ZipEntry;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.guvnor.common.services.backend.util.SystemProperties;
 import org.uberfire.io.IOService;
 import org.uberfire.java.nio.file.DirectoryStream;
 import org.uberfire.java.nio.file.Files;
 import org.uberfire.java.nio.file.Path;
 
+/**
+ * Writes a ZIP archive of a file or folder to an OutputStream. Content is streamed entry by entry, so the archive is
+ * never held in memory. Archiver holds no state between calls and may be used concurrently.
+ */
 public class Archiver {
 
-    private Path originalPath;
-
-    private ZipWriter zipWriter;
+    public static final String STORE_COMPRESSED_PROPERTY_NAME = "org.guvnor.archive.store.compressed";
+
+    //Extensions of files whose content is already compressed
+    private static final Set<String> COMPRESSED_EXTENSIONS = Collections.unmodifiableSet( new HashSet<String>( Arrays.asList( "zip",
+                                                                                                                             "jar",
+                                                                                                                             "war",
+                                                                                                                             "ear",
+                                                                                                                             "kjar",
+                                                                                                                             "gz",
+                                                                                                                             "tgz",
+                                                                                                                             "bz2",
+                                                                                                                             "xz",
+                                                                                                                             "7z",
+                                                                                                                             "png",
+                                                                                                                             "jpg",
+                                                                                                                             "jpeg",
+                                                                                                                             "gif",
+                                                                                                                             "mp3",
+                                                                                                                             "mp4",
+                                                                                                                             "pdf",
+                                                                                                                             "docx",
+                                                                                                                             "xlsx",
+                                                                                                                             "pptx" ) ) );
 
     private IOService ioService;
 
+    private final boolean storeCompressed = isStoreCompressed();
+
     public Archiver() {
     }
 
@@ -44,44 +75,69 @@ public class Archiver {
         this.ioService = ioService;
     }
 
-    public void archive( final ByteArrayOutputStream outputStream,
-                         final String uri ) throws IOException, URISyntaxException {
-
-        init(outputStream, uri);
-        zip();
+    static boolean isStoreCompressed() {
+        return SystemProperties.getBoolean( STORE_COMPRESSED_PROPERTY_NAME,
+                                            true );
     }
 
-    private void zip() throws IOException {
-        if (Files.isDirectory(originalPath)) {
-            addPath(Files.newDirectoryStream(originalPath));
+    public void archive( final OutputStream outputStream,
+                         final String uri ) throws IOException, URISyntaxException {
+        final Path originalPath = ioService.get( new URI( uri ) );
+        final ZipWriter zipWriter = new ZipWriter( outputStream );
+
+        if ( Files.isDirectory( originalPath ) ) {
+            addPath( zipWriter,
+                     originalPath,
+                     originalPath );
         } else {
-            addFile(originalPath);
+            addFile( zipWriter,
+                     originalPath,
+                     originalPath );
         }
         zipWriter.close();
     }
 
-    private void init( final ByteArrayOutputStream outputStream,
-                       final String uri ) throws URISyntaxException {
-        this.originalPath = ioService.get(new URI(uri));
-        this.zipWriter = new ZipWriter( outputStream );
-    }
-
-    private void addPath(DirectoryStream<Path> directoryStream) throws IOException {
-        for (Path subPath : directoryStream) {
-            if (Files.isDirectory(subPath)) {
-                addPath(Files.newDirectoryStream(subPath));
-            } else {
-                addFile(subPath);
+    private void addPath( final ZipWriter zipWriter,
+                          final Path originalPath,
+                          final Path directory ) throws IOException {
+        final DirectoryStream<Path> directoryStream = Files.newDirectoryStream( directory );
+        try {
+            for ( Path subPath : directoryStream ) {
+                if ( Files.isDirectory( subPath ) ) {
+                    addPath( zipWriter,
+                             originalPath,
+                             subPath );
+                } else {
+                    addFile( zipWriter,
+                             originalPath,
+                             subPath );
+                }
             }
+        } finally {
+            directoryStream.close();
         }
     }
 
-    private void addFile( final Path subPath ) throws IOException {
-        zipWriter.addFile( getZipEntry( subPath ),
-                           ioService.newInputStream( subPath ) );
+    private void addFile( final ZipWriter zipWriter,
+                          final Path originalPath,
+                          final Path subPath ) throws IOException {
+        zipWriter.addFile( getZipEntry( originalPath,
+                                        subPath ),
+                           ioService.newInputStream( subPath ),
+                           !( storeCompressed && isCompressed( subPath ) ) );
+    }
+
+    static boolean isCompressed( final Path path ) {
+        if ( path.getFileName() == null ) {
+            return false;
+        }
+        final String fileName = path.getFileName().toString();
+        final int index = fileName.lastIndexOf( '.' );
+        return index >= 0 && COMPRESSED_EXTENSIONS.contains( fileName.substring( index + 1 ).toLowerCase() );
     }
 
-    private ZipEntry getZipEntry( final Path subPath ) {
+    private ZipEntry getZipEntry( final Path originalPath,
+                                  final Path subPath ) {
         return new ZipEntry(FileNameResolver.resolve(subPath.toUri().getPath(), originalPath.toUri().getPath()));
     }
 
@@ -15,37 +15,63 @@
  */
 package org.guvnor.common.services.backend.archive;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 public class ZipWriter {
 
-    private ZipOutputStream outputStream;
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ZipOutputStream outputStream;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    private boolean compressing = true;
 
     public ZipWriter( final OutputStream outputStream ) {
-        this.outputStream = new ZipOutputStream( new BufferedOutputStream( outputStream ) );
+        this.outputStream = new ZipOutputStream( new BufferedOutputStream( outputStream,
+                                                                           BUFFER_SIZE ) );
     }
 
     public void addFile( final ZipEntry zipEntry,
                          final InputStream inputStream ) throws IOException {
-        final int BUFFER = 2048;
-        byte data[] = new byte[BUFFER];
+        addFile( zipEntry,
+                 inputStream,
+                 true );
+    }
 
-        BufferedInputStream origin = new BufferedInputStream( inputStream, BUFFER );
+    /**
+     * Adds a file to the archive, closing the InputStream once copied.
+     * @param zipEntry Entry of the file
+     * @param inputStream Content of the file
+     * @param compress False to store the content without compression, for content that is already compressed
+     */
+    public void addFile( final ZipEntry zipEntry,
+                         final InputStream inputStream,
+                         final boolean compress ) throws IOException {
+        try {
+            //The level applies to the data written from here on, so can change between entries
+            if ( compress != compressing ) {
+                outputStream.setLevel( compress ? Deflater.DEFAULT_COMPRESSION : Deflater.NO_COMPRESSION );
+                compressing = compress;
+            }
 
-        outputStream.putNextEntry( zipEntry );
-        int count;
-        while ((count = origin.read( data, 0, BUFFER )) != -1) {
-            outputStream.write( data, 0, count );
+            outputStream.putNextEntry( zipEntry );
+            int count;
+            while ( ( count = inputStream.read( buffer ) ) != -1 ) {
+                outputStream.write( buffer,
+                                    0,
+                                    count );
+            }
+            outputStream.closeEntry();
+        } finally {
+            inputStream.close();
         }
-
-        outputStream.flush();
-        origin.close();
     }
 
     public void close() throws IOException {
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.backend.cache;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Access ordered Map holding at most a fixed number of entries; the least recently used entry is evicted when the
+ * limit is exceeded. The Map is not thread-safe; use {@link #newSynchronizedMap(int)} or synchronize externally.
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class BoundedLRUMap<K, V> extends LinkedHashMap<K, V> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int maxEntries;
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    public BoundedLRUMap( final int maxEntries ) {
+        super( 16,
+               0.75f,
+               true );
+        this.maxEntries = maxEntries;
+    }
+
+    public static <K, V> Map<K, V> newSynchronizedMap( final int maxEntries ) {
+        return Collections.synchronizedMap( new BoundedLRUMap<K, V>( maxEntries ) );
+    }
+
+    @Override
+    protected boolean removeEldestEntry( final Map.Entry<K, V> eldest ) {
+        if ( size() > maxEntries && canEvict( eldest ) ) {
+            evictions.incrementAndGet();
+            onEviction( eldest );
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Allows sub-classes to retain an entry that would otherwise be evicted; the Map then grows beyond its limit
+     * until a later insertion finds the eldest entry evictable.
+     */
+    protected boolean canEvict( final Map.Entry<K, V> eldest ) {
+        return true;
+    }
+
+    /**
+     * Called before an entry is evicted, for sub-classes to release resources associated with it.
+     */
+    protected void onEviction( final Map.Entry<K, V> eldest ) {
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.backend.cache;
+
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Thread-safe bounded LRU cache keyed by resource URI. A sorted index of the keys allows the entries of a folder and
+ * everything within it to be invalidated without scanning the whole cache.
+ * @param <V> Value type
+ */
+public class URIKeyedLRUCache<V> {
+
+    private final NavigableSet<String> keys = new TreeSet<String>();
+
+    private final BoundedLRUMap<String, V> entries;
+
+    public URIKeyedLRUCache( final int maxEntries ) {
+        this.entries = new BoundedLRUMap<String, V>( maxEntries ) {
+            @Override
+            protected void onEviction( final Map.Entry<String, V> eldest ) {
+                keys.remove( eldest.getKey() );
+            }
+        };
+    }
+
+    public synchronized V get( final String uri ) {
+        return entries.get( uri );
+    }
+
+    public synchronized void put( final String uri,
+                                  final V value ) {
+        keys.add( uri );
+        entries.put( uri,
+                     value );
+    }
+
+    public synchronized V remove( final String uri ) {
+        keys.remove( uri );
+        return entries.remove( uri );
+    }
+
+    /**
+     * Removes the entry for a URI and, should the URI be a folder, the entries of all URIs within it.
+     * @param uri The URI
+     */
+    public synchronized void removeTree( final String uri ) {
+        remove( uri );
+        final String prefix = uri.endsWith( "/" ) ? uri : uri + "/";
+        final NavigableSet<String> children = keys.subSet( prefix,
+                                                           true,
+                                                           prefix + Character.MAX_VALUE,
+                                                           false );
+        for ( String child : children ) {
+            entries.remove( child );
+        }
+        children.clear();
+    }
+
+    public synchronized void clear() {
+        keys.clear();
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getEvictions() {
+        return entries.getEvictions();
+    }
+
+}
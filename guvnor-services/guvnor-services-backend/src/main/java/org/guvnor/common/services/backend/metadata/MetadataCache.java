@@ -0,0 +1,147 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.common.services.backend.metadata;
+
+import java.util.ArrayList;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+
+import org.guvnor.common.services.backend.cache.URIKeyedLRUCache;
+import org.guvnor.common.services.backend.util.SystemProperties;
+import org.guvnor.common.services.shared.metadata.model.DiscussionRecord;
+import org.guvnor.common.services.shared.metadata.model.Metadata;
+import org.uberfire.backend.vfs.Path;
+import org.uberfire.java.nio.base.version.VersionRecord;
+import org.uberfire.workbench.events.ResourceAddedEvent;
+import org.uberfire.workbench.events.ResourceBatchChangesEvent;
+import org.uberfire.workbench.events.ResourceCopiedEvent;
+import org.uberfire.workbench.events.ResourceDeletedEvent;
+import org.uberfire.workbench.events.ResourceRenamedEvent;
+import org.uberfire.workbench.events.ResourceUpdatedEvent;
+
+/**
+ * Bounded cache of the Metadata of resources, keyed by the resource's URI. Entries are invalidated by resource events.
+ * <p/>
+ * Metadata is mutable, so copies are stored and returned. Lock information is not cached as locks are not resources.
+ */
+@ApplicationScoped
+public class MetadataCache {
+
+    public static final String SIZE_PROPERTY_NAME = "org.guvnor.metadata.cache.size";
+
+    private static final int DEFAULT_SIZE = 1000;
+
+    private final URIKeyedLRUCache<Metadata> metadata;
+
+    public MetadataCache() {
+        this( getMaxEntries() );
+    }
+
+    public MetadataCache( final int maxEntries ) {
+        this.metadata = new URIKeyedLRUCache<Metadata>( maxEntries );
+    }
+
+    static int getMaxEntries() {
+        return SystemProperties.getInt( SIZE_PROPERTY_NAME,
+                                        DEFAULT_SIZE,
+                                        0 );
+    }
+
+    /**
+     * @return A copy of the cached Metadata, without lock information, or null if not cached.
+     */
+    public Metadata getMetadata( final org.uberfire.java.nio.file.Path path ) {
+        final Metadata cached = metadata.get( path.toUri().toString() );
+        return cached == null ? null : copy( cached );
+    }
+
+    public void setMetadata( final org.uberfire.java.nio.file.Path path,
+                             final Metadata value ) {
+        metadata.put( path.toUri().toString(),
+                      copy( value ) );
+    }
+
+    public int size() {
+        return metadata.size();
+    }
+
+    public void invalidateCache() {
+        metadata.clear();
+    }
+
+    /**
+     * Invalidates the entry for a resource and, should it be a folder, the entries of all resources within it.
+     * @param resource The resource
+     */
+    public void invalidateCache( final Path resource ) {
+        if ( resource == null ) {
+            return;
+        }
+        metadata.removeTree( resource.toURI() );
+    }
+
+    private Metadata copy( final Metadata source ) {
+        return MetadataBuilder.newMetadata()
+                .withPath( source.getPath() )
+                .withRealPath( source.getRealPath() )
+                .withCheckinComment( source.getCheckinComment() )
+                .withLastContributor( source.getLastContributor() )
+                .withCreator( source.getCreator() )
+                .withLastModified( source.getLastModified() )
+                .withDateCreated( source.getDateCreated() )
+                .withSubject( source.getSubject() )
+                .withType( source.getType() )
+                .withExternalRelation( source.getExternalRelation() )
+                .withExternalSource( source.getExternalSource() )
+                .withDescription( source.getDescription() )
+                .withTags( source.getTags() == null ? null : new ArrayList<String>( source.getTags() ) )
+                .withDiscussion( source.getDiscussion() == null ? null : new ArrayList<DiscussionRecord>( source.getDiscussion() ) )
+                .withVersion( source.getVersion() == null ? null : new ArrayList<VersionRecord>( source.getVersion() ) )
+                .build();
+    }
+
+    public void onResourceAdded( @Observes final ResourceAddedEvent event ) {
+        invalidateCache( event.getPath() );
+    }
+
+    public void onResourceUpdated( @Observes final ResourceUpdatedEvent event ) {
+        invalidateCache( event.getPath() );
+    }
+
+    public void onResourceDeleted( @Observes final ResourceDeletedEvent event ) {
+        invalidateCache( event.getPath() );
+    }
+
+    public void onResourceRenamed( @Observes final ResourceRenamedEvent event ) {
+        invalidateCache( event.getPath() );
+        invalidateCache( event.getDestinationPath() );
+    }
+
+    public void onResourceCopied( @Observes final ResourceCopiedEvent event ) {
+        invalidateCache( event.getDestinationPath() );
+    }
+
+    public void onBatchResourceChanges( @Observes final ResourceBatchChangesEvent event ) {
+        if ( event.getBatch() == null ) {
+            return;
+        }
+        for ( Path path : event.getBatch().keySet() ) {
+            invalidateCache( path );
+        }
+    }
+
+}
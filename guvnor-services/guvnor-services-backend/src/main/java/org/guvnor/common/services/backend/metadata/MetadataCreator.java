@@ -29,10 +29,10 @@ import org.uberfire.backend.vfs.PathFactory;
 import org.uberfire.backend.vfs.impl.LockInfo;
 import org.uberfire.ext.editor.commons.version.impl.PortableVersionRecord;
 import org.uberfire.io.IOService;
+import org.uberfire.io.attribute.DublinCoreAttributes;
 import org.uberfire.io.attribute.DublinCoreView;
 import org.uberfire.java.nio.base.version.VersionAttributeView;
 import org.uberfire.java.nio.base.version.VersionAttributes;
-import org.uberfire.java.nio.base.version.VersionHistory;
 import org.uberfire.java.nio.base.version.VersionRecord;
 import org.uberfire.java.nio.file.NoSuchFileException;
 import org.uberfire.java.nio.file.Path;
@@ -67,98 +67,48 @@ public class MetadataCreator {
     }
 
     public Metadata create() {
+        //Each attribute view is read once; reading the version attributes resolves the file's history
+        final VersionAttributes versionAttributes = versionAttributeView.readAttributes();
+        final List<VersionRecord> records = versionAttributes.history().records();
+        final DublinCoreAttributes dublinCoreAttributes = dublinCoreView.readAttributes();
+        final VersionRecord firstRecord = records.isEmpty() ? null : records.get( 0 );
+        final VersionRecord lastRecord = records.isEmpty() ? null : records.get( records.size() - 1 );
+
         return MetadataBuilder.newMetadata()
                 .withPath( Paths.convert( path ) )
                 .withRealPath( Paths.convert( path.toRealPath() ) )
-                .withCheckinComment( getCheckinComment() )
-                .withLastContributor( getLastContributor() )
-                .withCreator( getCreator() )
-                .withLastModified( getLastModified() )
-                .withDateCreated( getDateCreated() )
-                .withSubject( getSubject() )
-                .withType( getType() )
-                .withExternalRelation( getExternalRelation() )
-                .withExternalSource( getExternalSource() )
-                .withDescription( getDescription() )
-                .withTags( getTags() )
-                .withDiscussion( getDiscussion() )
-                .withLockInfo( retrieveLockInfo( Paths.convert( path ) ) )
-                .withVersion( getVersion() )
+                .withCheckinComment( lastRecord == null ? null : lastRecord.comment() )
+                .withLastContributor( lastRecord == null ? null : lastRecord.author() )
+                .withCreator( firstRecord == null ? null : firstRecord.author() )
+                .withLastModified( new Date( versionAttributes.lastModifiedTime().toMillis() ) )
+                .withDateCreated( new Date( versionAttributes.creationTime().toMillis() ) )
+                .withSubject( first( dublinCoreAttributes.subjects() ) )
+                .withType( first( dublinCoreAttributes.types() ) )
+                .withExternalRelation( first( dublinCoreAttributes.relations() ) )
+                .withExternalSource( first( dublinCoreAttributes.sources() ) )
+                .withDescription( first( dublinCoreAttributes.descriptions() ) )
+                .withTags( otherMetaView.readAttributes().tags() )
+                .withDiscussion( discussView.readAttributes().discussion() )
+                .withLockInfo( retrieveLockInfo( configIOService,
+                                                 Paths.convert( path ) ) )
+                .withVersion( getVersion( records ) )
                 .build();
     }
 
-    private ArrayList<VersionRecord> getVersion() {
-        return new ArrayList<VersionRecord>( versionAttributeView.readAttributes().history().records().size() ) {{
-            for ( final VersionRecord record : versionAttributeView.readAttributes().history().records() ) {
-                add( new PortableVersionRecord( record.id(), record.author(), record.email(), record.comment(), record.date(), record.uri() ) );
-            }
-        }};
-    }
-
-    private List<DiscussionRecord> getDiscussion() {
-        return discussView.readAttributes().discussion();
-    }
-
-    private List<String> getTags() {
-        return otherMetaView.readAttributes().tags();
-    }
-
-    private String getDescription() {
-        return dublinCoreView.readAttributes().descriptions().size() > 0 ? dublinCoreView.readAttributes().descriptions().get( 0 ) : null;
-    }
-
-    private String getExternalSource() {
-        return dublinCoreView.readAttributes().sources().size() > 0 ? dublinCoreView.readAttributes().sources().get( 0 ) : null;
-    }
-
-    private String getExternalRelation() {
-        return dublinCoreView.readAttributes().relations().size() > 0 ? dublinCoreView.readAttributes().relations().get( 0 ) : null;
-    }
-
-    private String getType() {
-        return dublinCoreView.readAttributes().types().size() > 0 ? dublinCoreView.readAttributes().types().get( 0 ) : null;
-    }
-
-    private String getSubject() {
-        return dublinCoreView.readAttributes().subjects().size() > 0 ? dublinCoreView.readAttributes().subjects().get( 0 ) : null;
-    }
-
-    private Date getDateCreated() {
-        return new Date( versionAttributeView.readAttributes().creationTime().toMillis() );
-    }
-
-    private Date getLastModified() {
-        return new Date( versionAttributeView.readAttributes().lastModifiedTime().toMillis() );
-    }
-
-    private String getCreator() {
-        if ( versionAttributeView.readAttributes().history().records().size() > 0 ) {
-            return versionAttributeView.readAttributes().history().records().get( 0 ).author();
-        } else {
-            return null;
-        }
-    }
-
-    private String getLastContributor() {
-        if ( versionAttributeView.readAttributes().history().records().size() > 0 ) {
-            return versionAttributeView.readAttributes().history().records().get( versionAttributeView.readAttributes().history().records().size() - 1 ).author();
-        } else {
-            return null;
+    private List<VersionRecord> getVersion( final List<VersionRecord> records ) {
+        final List<VersionRecord> version = new ArrayList<VersionRecord>( records.size() );
+        for ( final VersionRecord record : records ) {
+            version.add( new PortableVersionRecord( record.id(), record.author(), record.email(), record.comment(), record.date(), record.uri() ) );
         }
+        return version;
     }
 
-    private String getCheckinComment() {
-        VersionAttributes versionAttributes = versionAttributeView.readAttributes();
-        VersionHistory history = versionAttributes.history();
-        List<VersionRecord> records = history.records();
-        if ( records.size() > 0 ) {
-            return versionAttributeView.readAttributes().history().records().get( versionAttributeView.readAttributes().history().records().size() - 1 ).comment();
-        } else {
-            return null;
-        }
+    private String first( final List<String> values ) {
+        return values.size() > 0 ? values.get( 0 ) : null;
     }
 
-    private LockInfo retrieveLockInfo( org.uberfire.backend.vfs.Path path ) {
+    static LockInfo retrieveLockInfo( final IOService configIOService,
+                                      final org.uberfire.backend.vfs.Path path ) {
         final org.uberfire.java.nio.file.Path lockPath = Paths.convert( PathFactory.newLock( path ) );
         try {
             //See https://issues.jboss.org/browse/GUVNOR-2399. We simply try to read the lock file returning a default.
@@ -64,6 +64,8 @@ public class MetadataServiceImpl
     @Inject
     private SessionInfo sessionInfo;
 
+    private MetadataCache metadataCache = new MetadataCache();
+
     public MetadataServiceImpl() {
     }
 
@@ -72,6 +74,15 @@ public class MetadataServiceImpl
         this.ioService = ioService;
     }
 
+    @Inject
+    public void setMetadataCache( final MetadataCache metadataCache ) {
+        this.metadataCache = metadataCache;
+    }
+
+    public MetadataCache getMetadataCache() {
+        return metadataCache;
+    }
+
     @Override
     public Metadata getMetadata( final Path pathToResource ) {
         return getMetadata( Paths.convert( pathToResource ) );
@@ -81,13 +92,24 @@ public class MetadataServiceImpl
     public Metadata getMetadata( org.uberfire.java.nio.file.Path path ) {
 
         try {
-            return new MetadataCreator( path,
-                                        configIOService,
-                                        sessionInfo,
-                                        ioService.getFileAttributeView( path, DublinCoreView.class ),
-                                        ioService.getFileAttributeView( path, DiscussionView.class ),
-                                        ioService.getFileAttributeView( path, OtherMetaView.class ),
-                                        ioService.getFileAttributeView( path, VersionAttributeView.class ) ).create();
+            final Metadata cached = metadataCache.getMetadata( path );
+            if ( cached != null ) {
+                //Locks are not resources so their state is always read
+                cached.setLockInfo( MetadataCreator.retrieveLockInfo( configIOService,
+                                                                      Paths.convert( path ) ) );
+                return cached;
+            }
+
+            final Metadata metadata = new MetadataCreator( path,
+                                                           configIOService,
+                                                           sessionInfo,
+                                                           ioService.getFileAttributeView( path, DublinCoreView.class ),
+                                                           ioService.getFileAttributeView( path, DiscussionView.class ),
+                                                           ioService.getFileAttributeView( path, OtherMetaView.class ),
+                                                           ioService.getFileAttributeView( path, VersionAttributeView.class ) ).create();
+            metadataCache.setMetadata( path,
+                                       metadata );
+            return metadata;
 
         } catch ( Exception e ) {
             throw ExceptionUtilities.handleException( e );
@@ -372,6 +394,9 @@ public class MetadataServiceImpl
     public Map<String, Object> setUpAttributes( final Path path,
                                                 final Metadata metadata ) {
         try {
+            //The attributes are about to be written so the cached Metadata is stale
+            metadataCache.invalidateCache( path );
+
             Map<String, Object> attributes;
             try {
                 attributes = ioService.readAttributes( Paths.convert( path ) );
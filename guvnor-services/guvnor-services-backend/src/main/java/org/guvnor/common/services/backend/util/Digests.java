@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.common.services.backend.util;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-1 digests, as used to detect changed content, rendered as lower case hexadecimal strings.
+ */
+public final class Digests {
+
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    private Digests() {
+    }
+
+    /**
+     * @return A new SHA-1 MessageDigest; MessageDigests are not thread-safe so one is needed per thread.
+     */
+    public static MessageDigest newSha1() {
+        try {
+            return MessageDigest.getInstance( "SHA-1" );
+        } catch ( NoSuchAlgorithmException e ) {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    /**
+     * @return The SHA-1 of the UTF-8 encoding of the content.
+     */
+    public static String sha1( final String content ) {
+        return toHex( newSha1().digest( content.getBytes( UTF8 ) ) );
+    }
+
+    /**
+     * @return The id git assigns a blob of the UTF-8 encoding of the content, so identical content always has the same id.
+     */
+    public static String blobId( final String content ) {
+        final byte[] bytes = content.getBytes( UTF8 );
+        final MessageDigest digest = newSha1();
+        digest.update( blobHeader( bytes.length ) );
+        digest.update( bytes );
+        return toHex( digest.digest() );
+    }
+
+    /**
+     * @return The header git prefixes a blob's content with before digesting it.
+     */
+    public static byte[] blobHeader( final long size ) {
+        return ( "blob " + size + "\0" ).getBytes( UTF8 );
+    }
+
+    public static String toHex( final byte[] bytes ) {
+        final StringBuilder sb = new StringBuilder( bytes.length * 2 );
+        for ( byte b : bytes ) {
+            sb.append( Character.forDigit( ( b >> 4 ) & 0xF,
+                                           16 ) );
+            sb.append( Character.forDigit( b & 0xF,
+                                           16 ) );
+        }
+        return sb.toString();
+    }
+
+}
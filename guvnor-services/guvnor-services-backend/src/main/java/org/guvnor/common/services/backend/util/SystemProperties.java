@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.backend.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads tuning parameters from System Properties. Missing values yield the default; invalid values are logged and
+ * yield the default; values below the minimum are raised to it.
+ */
+public final class SystemProperties {
+
+    private static final Logger logger = LoggerFactory.getLogger( SystemProperties.class );
+
+    private SystemProperties() {
+    }
+
+    public static int getInt( final String name,
+                              final int defaultValue,
+                              final int minimum ) {
+        final String value = System.getProperty( name );
+        if ( value == null ) {
+            return defaultValue;
+        }
+        try {
+            return Math.max( minimum,
+                             Integer.parseInt( value.trim() ) );
+        } catch ( NumberFormatException nfe ) {
+            logInvalidValue( name,
+                             value,
+                             defaultValue );
+            return defaultValue;
+        }
+    }
+
+    public static long getLong( final String name,
+                                final long defaultValue,
+                                final long minimum ) {
+        final String value = System.getProperty( name );
+        if ( value == null ) {
+            return defaultValue;
+        }
+        try {
+            return Math.max( minimum,
+                             Long.parseLong( value.trim() ) );
+        } catch ( NumberFormatException nfe ) {
+            logInvalidValue( name,
+                             value,
+                             defaultValue );
+            return defaultValue;
+        }
+    }
+
+    public static boolean getBoolean( final String name,
+                                      final boolean defaultValue ) {
+        final String value = System.getProperty( name );
+        if ( value == null ) {
+            return defaultValue;
+        }
+        final String trimmed = value.trim();
+        if ( "true".equalsIgnoreCase( trimmed ) ) {
+            return true;
+        }
+        if ( "false".equalsIgnoreCase( trimmed ) ) {
+            return false;
+        }
+        logInvalidValue( name,
+                         value,
+                         defaultValue );
+        return defaultValue;
+    }
+
+    private static void logInvalidValue( final String name,
+                                         final String value,
+                                         final Object defaultValue ) {
+        logger.warn( "Invalid value '" + value + "' for '" + name + "'. Using " + defaultValue + "." );
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.backend.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class ZipWriterTest {
+
+    @Test
+    public void testCompressedAndStoredEntries() throws Exception {
+        final byte[] content = new byte[ZipWriter.BUFFER_SIZE * 3];
+        for ( int i = 0; i < content.length; i++ ) {
+            content[ i ] = (byte) ( i % 7 );
+        }
+
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final ZipWriter zipWriter = new ZipWriter( outputStream );
+        final InputStream stored = spy( new ByteArrayInputStream( content ) );
+        zipWriter.addFile( new ZipEntry( "a.txt" ),
+                           new ByteArrayInputStream( content ) );
+        zipWriter.addFile( new ZipEntry( "b.zip" ),
+                           stored,
+                           false );
+        zipWriter.addFile( new ZipEntry( "c.txt" ),
+                           new ByteArrayInputStream( content ) );
+        zipWriter.close();
+
+        verify( stored ).close();
+
+        final Map<String, Long> sizes = new HashMap<String, Long>();
+        final Map<String, Long> compressedSizes = new HashMap<String, Long>();
+        final ZipInputStream zipInputStream = new ZipInputStream( new ByteArrayInputStream( outputStream.toByteArray() ) );
+        ZipEntry entry;
+        while ( ( entry = zipInputStream.getNextEntry() ) != null ) {
+            long size = 0;
+            final byte[] buffer = new byte[1024];
+            int count;
+            while ( ( count = zipInputStream.read( buffer ) ) != -1 ) {
+                size += count;
+            }
+            sizes.put( entry.getName(),
+                       size );
+            //Sizes are only known once the entry's data, and any data descriptor following it, has been read
+            compressedSizes.put( entry.getName(),
+                                 entry.getCompressedSize() );
+        }
+        assertEquals( 3,
+                      sizes.size() );
+        for ( Long size : sizes.values() ) {
+            assertEquals( content.length,
+                          size.longValue() );
+        }
+        //The stored entry is written as is, whilst the others are deflated
+        assertTrue( compressedSizes.get( "b.zip" ) >= sizes.get( "b.zip" ) );
+        assertTrue( compressedSizes.get( "a.txt" ) < sizes.get( "a.txt" ) );
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.backend.cache;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BoundedLRUMapTest {
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        final BoundedLRUMap<String, String> map = new BoundedLRUMap<String, String>( 2 );
+        map.put( "a",
+                 "a" );
+        map.put( "b",
+                 "b" );
+        map.get( "a" );
+        map.put( "c",
+                 "c" );
+
+        assertEquals( 2,
+                      map.size() );
+        assertTrue( map.containsKey( "a" ) );
+        assertFalse( map.containsKey( "b" ) );
+        assertEquals( 1,
+                      map.getEvictions() );
+    }
+
+    @Test
+    public void testRetainedEntriesAreNotEvicted() {
+        final BoundedLRUMap<String, Boolean> map = new BoundedLRUMap<String, Boolean>( 1 ) {
+            @Override
+            protected boolean canEvict( final Map.Entry<String, Boolean> eldest ) {
+                return eldest.getValue();
+            }
+        };
+        map.put( "retained",
+                 false );
+        map.put( "a",
+                 true );
+
+        assertEquals( 2,
+                      map.size() );
+        assertEquals( 0,
+                      map.getEvictions() );
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.common.services.backend.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class URIKeyedLRUCacheTest {
+
+    private URIKeyedLRUCache<String> cache;
+
+    @Before
+    public void setup() {
+        cache = new URIKeyedLRUCache<String>( 100 );
+    }
+
+    @Test
+    public void testRemoveTreeRemovesFolderAndContents() {
+        cache.put( "default://master@repo/folder",
+                   "folder" );
+        cache.put( "default://master@repo/folder/file1.txt",
+                   "file1" );
+        cache.put( "default://master@repo/folder/sub/file2.txt",
+                   "file2" );
+        cache.put( "default://master@repo/folder2/file3.txt",
+                   "file3" );
+        cache.put( "default://master@repo/folder.txt",
+                   "sibling" );
+
+        cache.removeTree( "default://master@repo/folder" );
+
+        assertEquals( 2,
+                      cache.size() );
+        assertNull( cache.get( "default://master@repo/folder" ) );
+        assertNull( cache.get( "default://master@repo/folder/sub/file2.txt" ) );
+        assertEquals( "file3",
+                      cache.get( "default://master@repo/folder2/file3.txt" ) );
+        assertEquals( "sibling",
+                      cache.get( "default://master@repo/folder.txt" ) );
+    }
+
+    @Test
+    public void testEvictedEntriesAreRemovedFromIndex() {
+        final URIKeyedLRUCache<String> smallCache = new URIKeyedLRUCache<String>( 1 );
+        smallCache.put( "default://master@repo/folder/file1.txt",
+                        "file1" );
+        smallCache.put( "default://master@repo/file2.txt",
+                        "file2" );
+        assertEquals( 1,
+                      smallCache.getEvictions() );
+
+        //Re-adding the evicted entry must not be affected by a stale index entry
+        smallCache.put( "default://master@repo/folder/file1.txt",
+                        "file1" );
+        smallCache.removeTree( "default://master@repo/folder" );
+        assertEquals( 0,
+                      smallCache.size() );
+    }
+
+}
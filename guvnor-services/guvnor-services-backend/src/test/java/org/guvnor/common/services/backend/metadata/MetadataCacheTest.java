@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.common.services.backend.metadata;
+
+import java.net.URI;
+import java.util.ArrayList;
+
+import org.guvnor.common.services.shared.metadata.model.DiscussionRecord;
+import org.guvnor.common.services.shared.metadata.model.Metadata;
+import org.junit.Before;
+import org.junit.Test;
+import org.uberfire.java.nio.base.version.VersionRecord;
+import org.uberfire.java.nio.file.Path;
+import org.uberfire.rpc.SessionInfo;
+import org.uberfire.workbench.events.ResourceDeletedEvent;
+import org.uberfire.workbench.events.ResourceUpdatedEvent;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class MetadataCacheTest {
+
+    private MetadataCache cache;
+
+    @Before
+    public void setup() {
+        cache = new MetadataCache( 10 );
+    }
+
+    @Test
+    public void testCachedMetadataIsCopied() {
+        final Path path = path( "default://master@repo/project/file.txt" );
+        final Metadata metadata = metadata();
+        cache.setMetadata( path,
+                           metadata );
+
+        final Metadata cached = cache.getMetadata( path );
+        assertNotSame( metadata,
+                       cached );
+        assertEquals( "subject",
+                      cached.getSubject() );
+
+        //Changes made by the caller do not leak into the cache
+        cached.addTag( "tag" );
+        cached.setSubject( "changed" );
+        assertTrue( cache.getMetadata( path ).getTags().isEmpty() );
+        assertEquals( "subject",
+                      cache.getMetadata( path ).getSubject() );
+    }
+
+    @Test
+    public void testUpdateInvalidatesResource() {
+        final Path path = path( "default://master@repo/project/file.txt" );
+        final Path other = path( "default://master@repo/project/other.txt" );
+        cache.setMetadata( path,
+                           metadata() );
+        cache.setMetadata( other,
+                           metadata() );
+
+        cache.onResourceUpdated( new ResourceUpdatedEvent( vfsPath( "default://master@repo/project/file.txt" ),
+                                                           "",
+                                                           mock( SessionInfo.class ) ) );
+
+        assertNull( cache.getMetadata( path ) );
+        assertNotNull( cache.getMetadata( other ) );
+    }
+
+    @Test
+    public void testDeletingFolderInvalidatesResourcesWithin() {
+        final Path within = path( "default://master@repo/project/src/file.txt" );
+        final Path sibling = path( "default://master@repo/project/srcfile.txt" );
+        cache.setMetadata( within,
+                           metadata() );
+        cache.setMetadata( sibling,
+                           metadata() );
+
+        cache.onResourceDeleted( new ResourceDeletedEvent( vfsPath( "default://master@repo/project/src" ),
+                                                           "",
+                                                           mock( SessionInfo.class ) ) );
+
+        assertNull( cache.getMetadata( within ) );
+        assertNotNull( cache.getMetadata( sibling ) );
+    }
+
+    @Test
+    public void testEntriesAreBounded() {
+        for ( int i = 0; i < 20; i++ ) {
+            cache.setMetadata( path( "default://master@repo/project/file" + i ),
+                               metadata() );
+        }
+        assertEquals( 10,
+                      cache.size() );
+    }
+
+    private Metadata metadata() {
+        return MetadataBuilder.newMetadata()
+                .withSubject( "subject" )
+                .withTags( new ArrayList<String>() )
+                .withDiscussion( new ArrayList<DiscussionRecord>() )
+                .withVersion( new ArrayList<VersionRecord>() )
+                .build();
+    }
+
+    private Path path( final String uri ) {
+        final Path path = mock( Path.class );
+        when( path.toUri() ).thenReturn( URI.create( uri ) );
+        return path;
+    }
+
+    private org.uberfire.backend.vfs.Path vfsPath( final String uri ) {
+        final org.uberfire.backend.vfs.Path path = mock( org.uberfire.backend.vfs.Path.class );
+        when( path.toURI() ).thenReturn( uri );
+        return path;
+    }
+
+}
@@ -109,6 +109,28 @@ public class MetadataCreatorTest {
         assertNotNull( metadata.getVersion() );
     }
 
+    @Test
+    public void testAttributeViewsAreReadOnce() throws Exception {
+        versionRecords.add( createVersionRecord() );
+
+        final Metadata metadata = service.create();
+
+        assertEquals( 2,
+                      metadata.getVersion().size() );
+        assertEquals( "admin",
+                      metadata.getCreator() );
+        assertEquals( "Some commit",
+                      metadata.getCheckinComment() );
+        verify( versionAttributeView,
+                times( 1 ) ).readAttributes();
+        verify( dcoreView,
+                times( 1 ) ).readAttributes();
+        verify( otherMetaView,
+                times( 1 ) ).readAttributes();
+        verify( discussView,
+                times( 1 ) ).readAttributes();
+    }
+
     @Test
     //See https://issues.jboss.org/browse/GUVNOR-2399
     public void testConcurrency() throws Throwable {
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.common.services.backend.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DigestsTest {
+
+    @Test
+    public void testSha1() {
+        //$ echo -n "hello" | sha1sum
+        assertEquals( "aaf4c61ddcc5e8a2dabede0f3b482cd9aea9434d",
+                      Digests.sha1( "hello" ) );
+    }
+
+    @Test
+    public void testBlobIdMatchesGit() {
+        //$ echo -n "hello" | git hash-object --stdin
+        assertEquals( "b6fc4c620b67d95f953a5c1c1230aaab5db5a1b0",
+                      Digests.blobId( "hello" ) );
+    }
+
+    @Test
+    public void testToHexPadsBytes() {
+        assertEquals( "000fff",
+                      Digests.toHex( new byte[]{ 0, 15, -1 } ) );
+    }
+
+}
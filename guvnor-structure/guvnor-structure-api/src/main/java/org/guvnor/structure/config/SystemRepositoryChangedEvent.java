@@ -15,9 +15,71 @@
  */
 package org.guvnor.structure.config;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
 import org.jboss.errai.common.client.api.annotations.Portable;
 
+/**
+ * Fired when the system repository has been changed by another node. The event may carry the names of the changed
+ * ConfigGroups, keyed by the name of their ConfigType; if it does not the changes are unknown and everything loaded
+ * from the system repository should be considered stale.
+ */
 @Portable
 public class SystemRepositoryChangedEvent {
 
+    private String commitId;
+    private Map<String, Set<String>> changedConfigs;
+
+    public SystemRepositoryChangedEvent() {
+    }
+
+    public SystemRepositoryChangedEvent( final String commitId,
+                                         final Map<String, Set<String>> changedConfigs ) {
+        this.commitId = commitId;
+        if ( changedConfigs != null ) {
+            this.changedConfigs = new HashMap<String, Set<String>>();
+            for ( Map.Entry<String, Set<String>> entry : changedConfigs.entrySet() ) {
+                this.changedConfigs.put( entry.getKey(),
+                                         new HashSet<String>( entry.getValue() ) );
+            }
+        }
+    }
+
+    /**
+     * @return Id of the system repository commit the event relates to, or null if not known.
+     */
+    public String getCommitId() {
+        return commitId;
+    }
+
+    /**
+     * @return true if the changed ConfigGroups are known; false if everything should be reloaded.
+     */
+    public boolean hasChangedConfigs() {
+        return changedConfigs != null;
+    }
+
+    /**
+     * @param configType Name of the ConfigType
+     * @return true if ConfigGroups of the ConfigType have changed, or the changes are not known.
+     */
+    public boolean isChanged( final String configType ) {
+        return changedConfigs == null || changedConfigs.containsKey( configType );
+    }
+
+    /**
+     * @param configType Name of the ConfigType
+     * @return Names of the changed ConfigGroups of the ConfigType; empty if there were none or the changes are not known.
+     */
+    public Set<String> getChangedConfigNames( final String configType ) {
+        if ( changedConfigs == null || !changedConfigs.containsKey( configType ) ) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet( changedConfigs.get( configType ) );
+    }
+
 }
@@ -26,6 +26,16 @@ public interface FileNavigatorService {
 
     NavigatorContent listContent( final Path path );
 
+    /**
+     * Lists a page of the content of a folder. Folders are listed before files, each in order of name.
+     * @param path The folder
+     * @param startIndex Index of the first entry to return
+     * @param pageSize Maximum number of entries to return, or negative for all entries
+     */
+    NavigatorContent listContent( final Path path,
+                                  final int startIndex,
+                                  final int pageSize );
+
     List<Repository> listRepositories();
 
 }
@@ -28,6 +28,8 @@ public class NavigatorContent {
     private Path root;
     private List<Path> breadcrumbs = new ArrayList<Path>();
     private List<DataContent> content = new ArrayList<DataContent>();
+    private int startIndex;
+    private int totalCount;
 
     public NavigatorContent() {
     }
@@ -36,10 +38,26 @@ public class NavigatorContent {
                              final Path root,
                              final List<Path> breadcrumbs,
                              final List<DataContent> content ) {
+        this( repoName,
+              root,
+              breadcrumbs,
+              content,
+              0,
+              content.size() );
+    }
+
+    public NavigatorContent( final String repoName,
+                             final Path root,
+                             final List<Path> breadcrumbs,
+                             final List<DataContent> content,
+                             final int startIndex,
+                             final int totalCount ) {
         this.repoName = repoName;
         this.root = root;
         this.breadcrumbs = breadcrumbs;
         this.content = content;
+        this.startIndex = startIndex;
+        this.totalCount = totalCount;
     }
 
     public List<Path> getBreadcrumbs() {
@@ -57,4 +75,25 @@ public class NavigatorContent {
     public String getRepoName() {
         return repoName;
     }
+
+    /**
+     * @return Index, within the folder, of the first entry of this page
+     */
+    public int getStartIndex() {
+        return startIndex;
+    }
+
+    /**
+     * @return Number of entries in the folder, of which this page may hold only some
+     */
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return true if the folder has entries after this page
+     */
+    public boolean hasMore() {
+        return startIndex + content.size() < totalCount;
+    }
 }
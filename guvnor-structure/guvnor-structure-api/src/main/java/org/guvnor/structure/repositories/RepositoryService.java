@@ -35,6 +35,17 @@ public interface RepositoryService {
                                               final int startIndex,
                                               final int endIndex );
 
+    /**
+     * Pages through the history of a repository, newest first.
+     * @param alias Name of the repository
+     * @param commitId Id of the last commit of the previous page, or null for the first page
+     * @param pageSize Maximum number of commits to return
+     * @return Commits older than the given commit
+     */
+    List<VersionRecord> getRepositoryHistoryAfter( final String alias,
+                                                   final String commitId,
+                                                   final int pageSize );
+
     List<VersionRecord> getRepositoryHistoryAll( final String alias );
 
     Repository getRepository( final String alias );
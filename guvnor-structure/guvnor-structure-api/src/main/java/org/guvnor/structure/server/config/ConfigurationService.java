@@ -19,6 +19,10 @@ import java.util.List;
 
 public interface ConfigurationService {
 
+    /**
+     * @deprecated Changes to the system repository are detected by its HEAD commit; the marker is no longer written.
+     */
+    @Deprecated
     public static final String LAST_MODIFIED_MARKER_FILE = ".lastmodified";
 
     void startBatch();
@@ -27,6 +31,15 @@ public interface ConfigurationService {
 
     List<ConfigGroup> getConfiguration( final ConfigType type );
 
+    /**
+     * Retrieves a ConfigGroup by name without scanning all ConfigGroups of the type.
+     * @param type ConfigType of the ConfigGroup
+     * @param name Name of the ConfigGroup
+     * @return The ConfigGroup, or null if there is no ConfigGroup of the type with the name.
+     */
+    ConfigGroup getConfiguration( final ConfigType type,
+                                  final String name );
+
     boolean addConfiguration( final ConfigGroup configGroup );
 
     boolean updateConfiguration( final ConfigGroup configGroup );
@@ -17,12 +17,20 @@ package org.guvnor.structure.backend;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.guvnor.common.services.backend.cache.BoundedLRUMap;
+import org.guvnor.common.services.backend.util.SystemProperties;
+import org.guvnor.structure.backend.repositories.git.GitCommits;
 import org.guvnor.structure.repositories.Repository;
 import org.guvnor.structure.repositories.RepositoryService;
 import org.jboss.errai.bus.server.annotations.Service;
@@ -30,6 +38,8 @@ import org.ocpsoft.prettytime.PrettyTime;
 import org.uberfire.backend.server.util.Paths;
 import org.uberfire.io.IOService;
 import org.uberfire.java.nio.base.version.VersionAttributeView;
+import org.uberfire.java.nio.base.version.VersionAttributes;
+import org.uberfire.java.nio.base.version.VersionRecord;
 import org.uberfire.java.nio.file.DirectoryStream;
 import org.uberfire.java.nio.file.Files;
 import org.uberfire.java.nio.file.Path;
@@ -43,6 +53,10 @@ import static java.util.Collections.*;
 @ApplicationScoped
 public class FileNavigatorServiceImpl implements FileNavigatorService {
 
+    public static final String CACHE_SIZE_PROPERTY_NAME = "org.guvnor.navigator.cache.size";
+
+    private static final int DEFAULT_CACHE_SIZE = 100;
+
     @Inject
     @Named("ioStrategy")
     private IOService ioService;
@@ -52,41 +66,113 @@ public class FileNavigatorServiceImpl implements FileNavigatorService {
 
     private final PrettyTime p = new PrettyTime();
 
+    //Listings keyed by folder URI, each valid for the commit at the tip of the folder's branch
+    private final Map<String, FolderListing> listings = BoundedLRUMap.newSynchronizedMap( getMaxListings() );
+
+    static int getMaxListings() {
+        return SystemProperties.getInt( CACHE_SIZE_PROPERTY_NAME,
+                                        DEFAULT_CACHE_SIZE,
+                                        1 );
+    }
+
     @Override
     public NavigatorContent listContent( final org.uberfire.backend.vfs.Path _path ) {
+        return listContent( _path,
+                            0,
+                            -1 );
+    }
+
+    @Override
+    public NavigatorContent listContent( final org.uberfire.backend.vfs.Path _path,
+                                         final int startIndex,
+                                         final int pageSize ) {
+        return listContent( Paths.convert( _path ),
+                            startIndex,
+                            pageSize );
+    }
+
+    NavigatorContent listContent( Path path,
+                                  final int startIndex,
+                                  final int pageSize ) {
         final ArrayList<DataContent> result = new ArrayList<DataContent>();
         final ArrayList<org.uberfire.backend.vfs.Path> breadcrumbs = new ArrayList<org.uberfire.backend.vfs.Path>();
 
-        Path path = Paths.convert( _path );
-        final DirectoryStream<Path> stream = ioService.newDirectoryStream( path );
+        final FolderListing listing = getListing( path );
+
+        final int totalCount = listing.entries.size();
+        final int fromIndex = (int) Math.min( totalCount,
+                                              Math.max( 0,
+                                                        startIndex ) );
+        final int toIndex = pageSize < 0 ? totalCount : (int) Math.min( totalCount,
+                                                                      (long) fromIndex + pageSize );
+        //The last commit of each entry is only resolved for the entries listed
+        final List<FolderEntry> page = listing.entries.subList( fromIndex,
+                                                                toIndex );
+        listing.resolveLastCommits( path,
+                                    page );
+        for ( final FolderEntry entry : page ) {
+            final LastCommit lastCommit = listing.lastCommits.get( entry.getFileName() );
+            result.add( new DataContent( entry.directory,
+                                         lastCommit.comment,
+                                         lastCommit.author,
+                                         lastCommit.authorEmail,
+                                         p.format( lastCommit.lastModified ),
+                                         Paths.convert( entry.path ) ) );
+        }
+
+        if ( !path.equals( path.getRoot() ) ) {
+            while ( !path.getParent().equals( path.getRoot() ) ) {
+                path = path.getParent();
+                breadcrumbs.add( Paths.convert( path ) );
+            }
 
-        for ( final Path activePath : stream ) {
-            final VersionAttributeView versionAttributeView = ioService.getFileAttributeView( activePath, VersionAttributeView.class );
-            int index = versionAttributeView.readAttributes().history().records().size() - 1;
+            reverse( breadcrumbs );
+        }
+        final org.uberfire.backend.vfs.Path root = Paths.convert( path.getRoot() );
 
-            final String authorEmail = versionAttributeView.readAttributes().history().records().get( index ).email();
-            final String author = versionAttributeView.readAttributes().history().records().get( index ).author();
-            final String comment = versionAttributeView.readAttributes().history().records().get( index ).comment();
+        return new NavigatorContent( repositoryService.getRepository( root ).getAlias(), root, breadcrumbs, result, fromIndex, totalCount );
+    }
 
-            final String time = p.format( new Date( Files.getLastModifiedTime( activePath ).toMillis() ) );
-            result.add( new DataContent( Files.isDirectory( activePath ), comment, author, authorEmail, time, Paths.convert( activePath ) ) );
+    /**
+     * Returns the sorted entries of a folder. Listings are reused for as long as the tip of the folder's branch, which
+     * changes whenever anything within the folder changes, is unchanged.
+     */
+    private FolderListing getListing( final Path path ) {
+        final String key = path.toUri().toString();
+        final String commitId = getHeadCommitId( path );
+        if ( commitId != null ) {
+            final FolderListing listing = listings.get( key );
+            if ( listing != null && commitId.equals( listing.commitId ) ) {
+                return listing;
+            }
         }
 
-        sort( result, new Comparator<DataContent>() {
+        final List<FolderEntry> entries = new ArrayList<FolderEntry>();
+        final DirectoryStream<Path> stream = ioService.newDirectoryStream( path );
+        try {
+            for ( final Path activePath : stream ) {
+                entries.add( new FolderEntry( activePath,
+                                              isDirectory( activePath ) ) );
+            }
+        } finally {
+            stream.close();
+        }
+
+        sort( entries, new Comparator<FolderEntry>() {
             @Override
-            public int compare( final DataContent dataContent,
-                                final DataContent dataContent2 ) {
+            public int compare( final FolderEntry entry,
+                                final FolderEntry entry2 ) {
 
-                int fileCompare = dataContent.getPath().getFileName().toLowerCase().compareTo( dataContent2.getPath().getFileName().toLowerCase() );
-                if ( dataContent.isDirectory() && dataContent2.isDirectory() ) {
+                int fileCompare = entry.getFileName().toLowerCase().compareTo( entry2.getFileName().toLowerCase() );
+                if ( entry.directory && entry2.directory ) {
                     return fileCompare;
                 }
 
-                if ( dataContent.isDirectory() ) {
+                if ( entry.directory ) {
                     return -1;
                 }
 
-                if ( dataContent2.isDirectory() ) {
+                if ( entry2.directory ) {
                     return 1;
                 }
 
@@ -95,21 +181,132 @@ public class FileNavigatorServiceImpl implements FileNavigatorService {
             }
         } );
 
-        if ( !path.equals( path.getRoot() ) ) {
-            while ( !path.getParent().equals( path.getRoot() ) ) {
-                path = path.getParent();
-                breadcrumbs.add( Paths.convert( path ) );
-            }
+        final FolderListing listing = new FolderListing( commitId,
+                                                         entries );
+        if ( commitId != null ) {
+            listings.put( key,
+                          listing );
+        }
+        return listing;
+    }
 
-            reverse( breadcrumbs );
+    //The tip of the folder's branch changes whenever the folder does, and is resolved without loading any history
+    protected String getHeadCommitId( final Path path ) {
+        return GitCommits.getHeadCommitId( path );
+    }
+
+    protected boolean isDirectory( final Path path ) {
+        return Files.isDirectory( path );
+    }
+
+    /**
+     * Resolves the last commits of entries of a folder with a single walk of the folder's log.
+     * @return The last commit of each entry found, keyed by the entry's name
+     */
+    protected Map<String, LastCommit> getLastCommits( final Path folder,
+                                                      final String commitId,
+                                                      final Collection<String> names ) {
+        final Map<String, LastCommit> lastCommits = new HashMap<String, LastCommit>();
+        for ( Map.Entry<String, RevCommit> e : GitCommits.getLastCommits( folder,
+                                                                          commitId,
+                                                                          names ).entrySet() ) {
+            final RevCommit commit = e.getValue();
+            lastCommits.put( e.getKey(),
+                             new LastCommit( commit.getFullMessage(),
+                                             commit.getAuthorIdent().getName(),
+                                             commit.getAuthorIdent().getEmailAddress(),
+                                             commit.getCommitterIdent().getWhen() ) );
         }
-        final org.uberfire.backend.vfs.Path root = Paths.convert( path.getRoot() );
+        return lastCommits;
+    }
 
-        return new NavigatorContent( repositoryService.getRepository( root ).getAlias(), root, breadcrumbs, result );
+    //Reads an entry's own history, for entries not in a git file system
+    private LastCommit readLastCommit( final Path path ) {
+        //A single read of the entry's history provides both its last commit and its last modified time
+        final VersionAttributes attributes = ioService.getFileAttributeView( path, VersionAttributeView.class ).readAttributes();
+        final List<VersionRecord> records = attributes.history().records();
+        final VersionRecord record = records.get( records.size() - 1 );
+        return new LastCommit( record.comment(),
+                               record.author(),
+                               record.email(),
+                               new Date( attributes.lastModifiedTime().toMillis() ) );
     }
 
     @Override
     public List<Repository> listRepositories() {
         return new ArrayList<Repository>( repositoryService.getRepositories() );
     }
+
+    private class FolderListing {
+
+        private final String commitId;
+        private final List<FolderEntry> entries;
+        //Last commits of the entries resolved so far, keyed by entry name
+        private final Map<String, LastCommit> lastCommits = new ConcurrentHashMap<String, LastCommit>();
+
+        private FolderListing( final String commitId,
+                               final List<FolderEntry> entries ) {
+            this.commitId = commitId;
+            this.entries = entries;
+        }
+
+        private void resolveLastCommits( final Path folder,
+                                         final List<FolderEntry> page ) {
+            final Map<String, FolderEntry> unresolved = new HashMap<String, FolderEntry>();
+            for ( FolderEntry entry : page ) {
+                if ( !lastCommits.containsKey( entry.getFileName() ) ) {
+                    unresolved.put( entry.getFileName(),
+                                    entry );
+                }
+            }
+            if ( unresolved.isEmpty() ) {
+                return;
+            }
+            if ( commitId != null ) {
+                lastCommits.putAll( getLastCommits( folder,
+                                                    commitId,
+                                                    unresolved.keySet() ) );
+            }
+            for ( FolderEntry entry : unresolved.values() ) {
+                if ( !lastCommits.containsKey( entry.getFileName() ) ) {
+                    lastCommits.put( entry.getFileName(),
+                                     readLastCommit( entry.path ) );
+                }
+            }
+        }
+    }
+
+    private static class FolderEntry {
+
+        private final Path path;
+        private final boolean directory;
+
+        private FolderEntry( final Path path,
+                             final boolean directory ) {
+            this.path = path;
+            this.directory = directory;
+        }
+
+        private String getFileName() {
+            return path.getFileName() == null ? "" : path.getFileName().toString();
+        }
+    }
+
+    static class LastCommit {
+
+        private final String comment;
+        private final String author;
+        private final String authorEmail;
+        private final Date lastModified;
+
+        LastCommit( final String comment,
+                    final String author,
+                    final String authorEmail,
+                    final Date lastModified ) {
+            this.comment = comment;
+            this.author = author;
+            this.authorEmail = authorEmail;
+            this.lastModified = lastModified;
+        }
+    }
 }
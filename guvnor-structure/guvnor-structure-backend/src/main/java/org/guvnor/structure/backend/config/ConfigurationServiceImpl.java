@@ -16,8 +16,11 @@
 package org.guvnor.structure.backend.config;
 
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -27,7 +30,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
@@ -36,17 +39,17 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.naming.InitialContext;
 
+import org.guvnor.common.services.backend.util.Digests;
 import org.guvnor.structure.backend.config.watch.AsyncConfigWatchService;
 import org.guvnor.structure.backend.config.watch.AsyncWatchServiceCallback;
 import org.guvnor.structure.backend.config.watch.ConfigServiceWatchServiceExecutor;
 import org.guvnor.structure.backend.config.watch.ConfigServiceWatchServiceExecutorImpl;
+import org.guvnor.structure.backend.repositories.git.GitCommits;
 import org.guvnor.structure.config.SystemRepositoryChangedEvent;
 import org.guvnor.structure.server.config.ConfigGroup;
 import org.guvnor.structure.server.config.ConfigType;
 import org.guvnor.structure.server.config.ConfigurationService;
 import org.jboss.errai.security.shared.api.identity.User;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.uberfire.commons.async.DescriptiveRunnable;
 import org.uberfire.io.IOService;
 import org.uberfire.java.nio.IOException;
@@ -56,7 +59,6 @@ import org.uberfire.java.nio.file.DirectoryStream;
 import org.uberfire.java.nio.file.FileSystem;
 import org.uberfire.java.nio.file.Files;
 import org.uberfire.java.nio.file.Path;
-import org.uberfire.java.nio.file.StandardWatchEventKind;
 import org.uberfire.java.nio.file.WatchEvent;
 import org.uberfire.java.nio.file.WatchKey;
 import org.uberfire.java.nio.file.WatchService;
@@ -67,8 +69,6 @@ import static org.uberfire.backend.server.util.Paths.*;
 public class ConfigurationServiceImpl implements ConfigurationService,
                                                  AsyncWatchServiceCallback {
 
-    private static final Logger logger = LoggerFactory.getLogger( ConfigurationServiceImpl.class );
-
     private static final String MONITOR_DISABLED = "org.uberfire.sys.repo.monitor.disabled";
     //    private static final String MONITOR_CHECK_INTERVAL = "org.uberfire.sys.repo.monitor.interval";
     // mainly for windows as *NIX is based on POSIX but escape always to keep it consistent
@@ -84,9 +84,19 @@ public class ConfigurationServiceImpl implements ConfigurationService,
     @Inject
     private User identity;
 
-    //Cache of ConfigGroups to avoid reloading them from file
-    private final Map<ConfigType, List<ConfigGroup>> configuration = new ConcurrentHashMap<ConfigType, List<ConfigGroup>>();
-    private AtomicLong localLastModifiedValue = new AtomicLong( -1 );
+    //Cache of ConfigGroups to avoid reloading them from file. Each entry holds the ConfigGroups of a ConfigType, keyed
+    //by file name, together with their index by name. Entries are replaced (never modified) whilst holding the lock
+    //so readers always see a consistent snapshot.
+    private final Map<ConfigType, CachedConfiguration> configuration = new ConcurrentHashMap<ConfigType, CachedConfiguration>();
+    private final Object configurationLock = new Object();
+    //Incremented, whilst holding the lock, on every change to the config files so that a load that raced with a
+    //change is not cached
+    private long configurationVersion = 0;
+
+    //Names of config files changed in the system repository since the last refresh
+    private final Set<String> changedConfigFiles = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+    //Id of the system repository's HEAD commit once this node's last change, or refresh, was applied
+    private final AtomicReference<String> localCommitId = new AtomicReference<String>();
 
     @Inject
     @Named("configIO")
@@ -134,6 +144,7 @@ public class ConfigurationServiceImpl implements ConfigurationService,
 
         // enable monitor by default
         if ( System.getProperty( MONITOR_DISABLED ) == null ) {
+            localCommitId.set( getHeadCommitId() );
             watchService = fs.newWatchService();
             configUpdates = new CheckConfigurationUpdates( watchService );
             final ConfigServiceWatchServiceExecutor configServiceWatchServiceExecutor = getWatchServiceExecutor();
@@ -194,10 +205,25 @@ public class ConfigurationServiceImpl implements ConfigurationService,
 
     @Override
     public List<ConfigGroup> getConfiguration( final ConfigType type ) {
-        if ( configuration.containsKey( type ) ) {
-            return configuration.get( type );
+        return loadConfiguration( type ).configGroups;
+    }
+
+    @Override
+    public ConfigGroup getConfiguration( final ConfigType type,
+                                         final String name ) {
+        return loadConfiguration( type ).configGroupsByName.get( name );
+    }
+
+    private CachedConfiguration loadConfiguration( final ConfigType type ) {
+        final CachedConfiguration cachedConfiguration = configuration.get( type );
+        if ( cachedConfiguration != null ) {
+            return cachedConfiguration;
+        }
+        final long version;
+        synchronized ( configurationLock ) {
+            version = configurationVersion;
         }
-        final List<ConfigGroup> configGroups = new ArrayList<ConfigGroup>();
+        final Map<String, CachedConfigGroup> entries = new LinkedHashMap<String, CachedConfigGroup>();
         final DirectoryStream<Path> foundConfigs = ioService.newDirectoryStream( ioService.get( systemRepository.getUri() ),
                                                                                  new DirectoryStream.Filter<Path>() {
                                                                                      @Override
@@ -213,22 +239,142 @@ public class ConfigurationServiceImpl implements ConfigurationService,
                                                                                );
         //Only load and cache if a file was found!
         final Iterator<Path> it = foundConfigs.iterator();
-        if ( it.hasNext() ) {
-            while ( it.hasNext() ) {
-                final String content = ioService.readAllString( it.next() );
-                final ConfigGroup configGroup = marshaller.unmarshall( content );
-                configGroups.add( configGroup );
+        if ( !it.hasNext() ) {
+            return new CachedConfiguration( entries );
+        }
+        while ( it.hasNext() ) {
+            final Path path = it.next();
+            final String content = ioService.readAllString( path );
+            entries.put( path.getFileName().toString(),
+                         new CachedConfigGroup( marshaller.unmarshall( content ),
+                                                Digests.sha1( content ) ) );
+        }
+        final CachedConfiguration loadedConfiguration = new CachedConfiguration( entries );
+        synchronized ( configurationLock ) {
+            //Do not cache what was read if the config files changed whilst reading them
+            if ( version == configurationVersion && !configuration.containsKey( type ) ) {
+                configuration.put( type,
+                                   loadedConfiguration );
             }
-            configuration.put( type, configGroups );
         }
-        return configGroups;
+        return loadedConfiguration;
+    }
+
+    /**
+     * Replaces, adds or (if content is null) removes the cached entry for a config file. ConfigTypes that are not
+     * cached are left to be loaded on demand.
+     * @return false if the cached entry was already up to date; true otherwise, including when the ConfigType is not
+     * cached.
+     */
+    private boolean patchConfiguration( final ConfigType type,
+                                        final String fileName,
+                                        final String content ) {
+        synchronized ( configurationLock ) {
+            configurationVersion++;
+            final CachedConfiguration cachedConfiguration = configuration.get( type );
+            if ( cachedConfiguration == null ) {
+                return true;
+            }
+            final Map<String, CachedConfigGroup> entries = new LinkedHashMap<String, CachedConfigGroup>( cachedConfiguration.entries );
+            if ( content == null ) {
+                if ( entries.remove( fileName ) == null ) {
+                    return false;
+                }
+            } else {
+                final String contentHash = Digests.sha1( content );
+                final CachedConfigGroup existing = entries.get( fileName );
+                if ( existing != null && existing.contentHash.equals( contentHash ) ) {
+                    return false;
+                }
+                //Unmarshall a copy so later changes to the caller's ConfigGroup do not leak into the cache
+                entries.put( fileName,
+                             new CachedConfigGroup( marshaller.unmarshall( content ),
+                                                    contentHash ) );
+            }
+            if ( entries.isEmpty() ) {
+                configuration.remove( type );
+            } else {
+                configuration.put( type,
+                                   new CachedConfiguration( entries ) );
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Re-reads changed config files into the cache.
+     * @return Names of the ConfigGroups that have changed, keyed by ConfigType. Config files whose content matches
+     * the cache (e.g. those written by this node) are not included.
+     */
+    private Map<ConfigType, Set<String>> refreshConfiguration( final Set<String> fileNames ) {
+        final Map<ConfigType, Set<String>> changes = new HashMap<ConfigType, Set<String>>();
+        final Path root = ioService.get( systemRepository.getUri() );
+        for ( String fileName : fileNames ) {
+            final ConfigType type = getConfigType( fileName );
+            if ( type == null ) {
+                continue;
+            }
+            final CachedConfigGroup previous = getCachedConfigGroup( type,
+                                                                     fileName );
+            //ConfigTypes that are not cached are still patched so that a concurrent load is not cached
+            final Path path = root.resolve( fileName );
+            final boolean read = configuration.containsKey( type ) && ioService.exists( path );
+            if ( !patchConfiguration( type,
+                                      fileName,
+                                      read ? ioService.readAllString( path ) : null ) ) {
+                continue;
+            }
+            final CachedConfigGroup current = getCachedConfigGroup( type,
+                                                                    fileName );
+
+            Set<String> names = changes.get( type );
+            if ( names == null ) {
+                names = new HashSet<String>();
+                changes.put( type,
+                             names );
+            }
+            if ( previous != null ) {
+                names.add( previous.configGroup.getName() );
+            }
+            if ( current != null ) {
+                names.add( current.configGroup.getName() );
+            }
+            if ( previous == null && current == null ) {
+                //Not cached; the file name is the ConfigGroup's name bar any characters invalid in file names
+                names.add( fileName.substring( 0,
+                                               fileName.length() - type.getExt().length() ) );
+            }
+        }
+        return changes;
+    }
+
+    private CachedConfigGroup getCachedConfigGroup( final ConfigType type,
+                                                    final String fileName ) {
+        final CachedConfiguration cachedConfiguration = configuration.get( type );
+        return cachedConfiguration == null ? null : cachedConfiguration.entries.get( fileName );
+    }
+
+    private ConfigType getConfigType( final String fileName ) {
+        if ( fileName.startsWith( "." ) ) {
+            return null;
+        }
+        for ( ConfigType type : ConfigType.values() ) {
+            if ( fileName.endsWith( type.getExt() ) ) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private String getConfigFileName( final ConfigGroup configGroup ) {
+        return configGroup.getName().replaceAll( INVALID_FILENAME_CHARS, "_" ) + configGroup.getType().getExt();
     }
 
     @Override
     public boolean addConfiguration( final ConfigGroup configGroup ) {
-        String filename = configGroup.getName().replaceAll( INVALID_FILENAME_CHARS, "_" );
+        final String fileName = getConfigFileName( configGroup );
 
-        final Path filePath = ioService.get( systemRepository.getUri() ).resolve( filename + configGroup.getType().getExt() );
+        final Path filePath = ioService.get( systemRepository.getUri() ).resolve( fileName );
         // avoid duplicated writes to not cause cyclic cluster sync
         if ( ioService.exists( filePath ) ) {
             return true;
@@ -236,70 +382,87 @@ public class ConfigurationServiceImpl implements ConfigurationService,
 
         final CommentedOption commentedOption = new CommentedOption( getIdentityName(),
                                                                      "Created config " + filePath.getFileName() );
+        final String content = marshaller.marshall( configGroup );
+        final String parentCommitId;
         try {
             ioService.startBatch( filePath.getFileSystem() );
-            ioService.write( filePath, marshaller.marshall( configGroup ), commentedOption );
-
-            updateLastModified();
+            parentCommitId = getHeadCommitId();
+            ioService.write( filePath, content, commentedOption );
         } catch ( Exception ex ) {
             throw new RuntimeException( ex );
         } finally {
             ioService.endBatch();
         }
-        //Invalidate cache if a new item has been created; otherwise cached value is stale
-        configuration.remove( configGroup.getType() );
+
+        //Add the new item to the cache once it is committed; otherwise cached value is stale
+        patchConfiguration( configGroup.getType(),
+                            fileName,
+                            content );
+        updateLocalCommitId( parentCommitId,
+                             fileName );
 
         return true;
     }
 
     @Override
     public boolean updateConfiguration( ConfigGroup configGroup ) {
-        String filename = configGroup.getName().replaceAll( INVALID_FILENAME_CHARS, "_" );
+        final String fileName = getConfigFileName( configGroup );
 
-        final Path filePath = ioService.get( systemRepository.getUri() ).resolve( filename + configGroup.getType().getExt() );
+        final Path filePath = ioService.get( systemRepository.getUri() ).resolve( fileName );
 
         final CommentedOption commentedOption = new CommentedOption( getIdentityName(),
                                                                      "Updated config " + filePath.getFileName() );
+        final String content = marshaller.marshall( configGroup );
+        final String parentCommitId;
         try {
             ioService.startBatch( filePath.getFileSystem() );
-            ioService.write( filePath, marshaller.marshall( configGroup ), commentedOption );
-
-            updateLastModified();
+            parentCommitId = getHeadCommitId();
+            ioService.write( filePath, content, commentedOption );
         } catch ( Exception ex ) {
             throw new RuntimeException( ex );
         } finally {
             ioService.endBatch();
         }
-        //Invalidate cache if a new item has been created; otherwise cached value is stale
-        configuration.remove( configGroup.getType() );
+
+        //Replace the item in the cache once it is committed; otherwise cached value is stale
+        patchConfiguration( configGroup.getType(),
+                            fileName,
+                            content );
+        updateLocalCommitId( parentCommitId,
+                             fileName );
 
         return true;
     }
 
     @Override
     public boolean removeConfiguration( final ConfigGroup configGroup ) {
+        final String fileName = getConfigFileName( configGroup );
 
-        //Invalidate cache if an item has been removed; otherwise cached value is stale
-        configuration.remove( configGroup.getType() );
-        String filename = configGroup.getName().replaceAll( INVALID_FILENAME_CHARS, "_" );
-        final Path filePath = ioService.get( systemRepository.getUri() ).resolve( filename + configGroup.getType().getExt() );
+        final Path filePath = ioService.get( systemRepository.getUri() ).resolve( fileName );
 
         // avoid duplicated writes to not cause cyclic cluster sync
         if ( !ioService.exists( filePath ) ) {
             return true;
         }
         boolean result;
+        final String parentCommitId;
         try {
             ioService.startBatch( filePath.getFileSystem() );
+            parentCommitId = getHeadCommitId();
             result = ioService.deleteIfExists( filePath );
-            if ( result ) {
-                updateLastModified();
-            }
         } catch ( Exception ex ) {
             throw new RuntimeException( ex );
         } finally {
             ioService.endBatch();
         }
+        if ( result ) {
+            //Remove the item from the cache once its deletion is committed; otherwise cached value is stale
+            patchConfiguration( configGroup.getType(),
+                                fileName,
+                                null );
+            updateLocalCommitId( parentCommitId,
+                                 fileName );
+        }
 
         return result;
     }
@@ -312,27 +475,93 @@ public class ConfigurationServiceImpl implements ConfigurationService,
         }
     }
 
-    protected long getLastModified() {
-        final Path lastModifiedPath = ioService.get( systemRepository.getUri() ).resolve( LAST_MODIFIED_MARKER_FILE );
+    protected String getHeadCommitId() {
+        return GitCommits.getHeadCommitId( ioService.get( systemRepository.getUri() ) );
+    }
 
-        return ioService.getLastModifiedTime( lastModifiedPath ).toMillis();
+    /**
+     * @return Names of the config files that differ between the trees of two commits of the system repository, or null
+     * if they cannot be compared
+     */
+    protected Set<String> getChangedConfigFiles( final String fromCommitId,
+                                                 final String toCommitId ) {
+        final Set<String> changedPaths = GitCommits.getChangedPaths( ioService.get( systemRepository.getUri() ),
+                                                                     fromCommitId,
+                                                                     toCommitId );
+        if ( changedPaths == null ) {
+            return null;
+        }
+        //Config files are kept at the root of the system repository
+        final Set<String> fileNames = new HashSet<String>();
+        for ( String changedPath : changedPaths ) {
+            if ( changedPath.indexOf( '/' ) < 0 && getConfigType( changedPath ) != null ) {
+                fileNames.add( changedPath );
+            }
+        }
+        return fileNames;
     }
 
-    protected void updateLastModified() {
-        final Path lastModifiedPath = ioService.get( systemRepository.getUri() ).resolve( LAST_MODIFIED_MARKER_FILE );
-        final CommentedOption commentedOption = new CommentedOption( "system", "system repo updated" );
+    /**
+     * Records the commit of a change made by this node, as the changes have already been applied to the cache and
+     * the monitor need not act upon it.
+     * <p/>
+     * Another node's commit may land between the end of the batch and HEAD being read, so HEAD is only taken to be
+     * this node's commit if its parent is the HEAD read within the batch and it changes nothing but the config file.
+     * The local commit id only advances if it was at that parent, so changes not yet applied are never skipped.
+     * @param parentCommitId The HEAD commit id read within the batch
+     * @param fileName The config file written or deleted within the batch
+     */
+    protected void updateLocalCommitId( final String parentCommitId,
+                                        final String fileName ) {
+        final Path root = ioService.get( systemRepository.getUri() );
+        final String headCommitId = GitCommits.getHeadCommitId( root );
+        if ( GitCommits.isOnlyChangeTo( root,
+                                        parentCommitId,
+                                        headCommitId,
+                                        fileName ) ) {
+            localCommitId.compareAndSet( parentCommitId,
+                                         headCommitId );
+        }
+    }
 
-        ioService.write( lastModifiedPath, new Date().toString().getBytes(), commentedOption );
+    @Override
+    public Map<ConfigType, Set<String>> callback( final String commitId ) {
+        final String previousCommitId = localCommitId.getAndSet( commitId );
+        final Set<String> fileNames = new HashSet<String>( changedConfigFiles );
+        changedConfigFiles.removeAll( fileNames );
+        //A diff of the trees of the last applied commit and HEAD covers every change since, however the watch events
+        //that reported them were coalesced
+        final Set<String> changedFileNames = getChangedConfigFiles( previousCommitId,
+                                                                    commitId );
+        if ( changedFileNames != null ) {
+            fileNames.addAll( changedFileNames );
+            if ( fileNames.isEmpty() ) {
+                return new HashMap<ConfigType, Set<String>>();
+            }
+        }
+        if ( fileNames.isEmpty() ) {
+            // the changes are unknown so invalidate all cached values
+            synchronized ( configurationLock ) {
+                configurationVersion++;
+                configuration.clear();
+            }
+            return null;
+        }
+        // only re-read the config files that have changed
+        return refreshConfiguration( fileNames );
+    }
 
-        // update the last value to avoid to be retriggered byt the monitor
-        localLastModifiedValue.set( getLastModified() );
+    //Records a config file reported changed by the watch service
+    void addChangedConfigFile( final String fileName ) {
+        if ( fileName != null && getConfigType( fileName ) != null ) {
+            changedConfigFiles.add( fileName );
+        }
     }
 
     @Override
-    public void callback( long value ) {
-        localLastModifiedValue.set( value );
-        // invalidate cached values as system repo has changed
-        configuration.clear();
+    public void upToDate( final String commitId ) {
+        //The config files reported changed were changed by this node, and would otherwise be re-read by the next callback
+        changedConfigFiles.clear();
     }
 
     private class CheckConfigurationUpdates implements AsyncConfigWatchService {
@@ -362,34 +591,16 @@ public class ConfigurationServiceImpl implements ConfigurationService,
 
                     final List<WatchEvent<?>> events = wk.pollEvents();
 
-                    boolean markerFileModified = false;
                     for ( final WatchEvent<?> event : events ) {
                         final WatchContext context = (WatchContext) event.context();
-                        if ( event.kind().equals( StandardWatchEventKind.ENTRY_MODIFY ) ) {
-                            if ( context.getOldPath().getFileName().toString().equals( LAST_MODIFIED_MARKER_FILE ) ) {
-                                markerFileModified = true;
-                                break;
-                            }
-                        } else if ( event.kind().equals( StandardWatchEventKind.ENTRY_CREATE ) ) {
-                            if ( context.getPath().getFileName().toString().equals( LAST_MODIFIED_MARKER_FILE ) ) {
-                                markerFileModified = true;
-                                break;
-                            }
-                        } else if ( event.kind().equals( StandardWatchEventKind.ENTRY_RENAME ) ) {
-                            if ( context.getOldPath().getFileName().toString().equals( LAST_MODIFIED_MARKER_FILE ) ) {
-                                markerFileModified = true;
-                                break;
-                            }
-                        } else if ( event.kind().equals( StandardWatchEventKind.ENTRY_DELETE ) ) {
-                            if ( context.getOldPath().getFileName().toString().equals( LAST_MODIFIED_MARKER_FILE ) ) {
-                                markerFileModified = true;
-                                break;
-                            }
-                        }
+                        //The JGit file system derives these events from a diff of the trees of the old and new commits,
+                        //so they identify exactly which config files need to be re-read
+                        addChangedConfigFile( getFileName( context.getOldPath() ) );
+                        addChangedConfigFile( getFileName( context.getPath() ) );
                     }
 
-                    if ( markerFileModified ) {
-                        wsExecutor.execute( wk, localLastModifiedValue.get(), ConfigurationServiceImpl.this );
+                    if ( !changedConfigFiles.isEmpty() ) {
+                        wsExecutor.execute( wk, localCommitId.get(), ConfigurationServiceImpl.this );
                     }
 
                     boolean valid = wk.reset();
@@ -401,12 +612,51 @@ public class ConfigurationServiceImpl implements ConfigurationService,
             }
         }
 
+        private String getFileName( final Path path ) {
+            if ( path == null || path.getFileName() == null ) {
+                return null;
+            }
+            return path.getFileName().toString();
+        }
+
         @Override
         public String getDescription() {
             return "Config File Watch Service";
         }
     }
 
+    private static class CachedConfigGroup {
+
+        private final ConfigGroup configGroup;
+        private final String contentHash;
+
+        private CachedConfigGroup( final ConfigGroup configGroup,
+                                   final String contentHash ) {
+            this.configGroup = configGroup;
+            this.contentHash = contentHash;
+        }
+    }
+
+    private static class CachedConfiguration {
+
+        private final Map<String, CachedConfigGroup> entries;
+        private final List<ConfigGroup> configGroups = new ArrayList<ConfigGroup>();
+        private final Map<String, ConfigGroup> configGroupsByName = new HashMap<String, ConfigGroup>();
+
+        private CachedConfiguration( final Map<String, CachedConfigGroup> entries ) {
+            this.entries = entries;
+            for ( CachedConfigGroup entry : entries.values() ) {
+                final ConfigGroup configGroup = entry.configGroup;
+                configGroups.add( configGroup );
+                //Lookups by name have always returned the first ConfigGroup with the name
+                if ( !configGroupsByName.containsKey( configGroup.getName() ) ) {
+                    configGroupsByName.put( configGroup.getName(),
+                                            configGroup );
+                }
+            }
+        }
+    }
+
     protected ConfigServiceWatchServiceExecutor getWatchServiceExecutor() {
         if ( executor == null ) {
             ConfigServiceWatchServiceExecutor _executor = null;
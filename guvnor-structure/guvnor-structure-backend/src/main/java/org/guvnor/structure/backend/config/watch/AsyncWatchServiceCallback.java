@@ -15,8 +15,25 @@
 
 package org.guvnor.structure.backend.config.watch;
 
+import java.util.Map;
+import java.util.Set;
+
+import org.guvnor.structure.server.config.ConfigType;
+
 public interface AsyncWatchServiceCallback {
 
-    public void callback( long value );
+    /**
+     * Invoked when the system repository has moved to a commit not made by this node.
+     * @param commitId Id of the system repository's current HEAD commit
+     * @return Names of the changed ConfigGroups keyed by ConfigType, or null if the changes are not known.
+     */
+    public Map<ConfigType, Set<String>> callback( String commitId );
+
+    /**
+     * Invoked when the system repository's HEAD is still the commit this node last applied, so whatever changes were
+     * reported since are already applied.
+     * @param commitId Id of the system repository's current HEAD commit
+     */
+    public void upToDate( String commitId );
 
 }
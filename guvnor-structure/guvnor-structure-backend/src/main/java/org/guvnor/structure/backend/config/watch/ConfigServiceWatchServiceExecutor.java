@@ -20,7 +20,7 @@ import org.uberfire.java.nio.file.WatchKey;
 public interface ConfigServiceWatchServiceExecutor {
 
     void execute( final WatchKey watchKey,
-                  final long localLastModifiedValue,
+                  final String localCommitId,
                   final AsyncWatchServiceCallback callback);
 
 }
@@ -15,6 +15,9 @@
 
 package org.guvnor.structure.backend.config.watch;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
 import javax.ejb.TransactionAttribute;
@@ -22,12 +25,12 @@ import javax.enterprise.event.Event;
 import javax.inject.Inject;
 import javax.inject.Named;
 
-import org.guvnor.structure.backend.config.ConfigurationServiceImpl;
 import org.guvnor.structure.backend.config.OrgUnit;
 import org.guvnor.structure.backend.config.Repository;
+import org.guvnor.structure.backend.repositories.git.GitCommits;
 import org.guvnor.structure.config.SystemRepositoryChangedEvent;
+import org.guvnor.structure.server.config.ConfigType;
 import org.uberfire.io.IOService;
-import org.uberfire.java.nio.file.Path;
 import org.uberfire.java.nio.file.WatchKey;
 
 import static javax.ejb.TransactionAttributeType.*;
@@ -69,24 +72,45 @@ public class ConfigServiceWatchServiceExecutorImpl implements ConfigServiceWatch
 
     @Override
     public void execute( final WatchKey watchKey,
-                         final long localLastModifiedValue,
+                         final String localCommitId,
                          final AsyncWatchServiceCallback callback ) {
-        final long currentValue = getLastModified();
-        if ( currentValue > localLastModifiedValue ) {
-            callback.callback( currentValue );
+        final String currentCommitId = getHeadCommitId();
+        if ( currentCommitId != null && currentCommitId.equals( localCommitId ) ) {
+            // the changes were made by this node and are already applied
+            callback.upToDate( currentCommitId );
+        } else {
+            final Map<ConfigType, Set<String>> changes = callback.callback( currentCommitId );
+            // nothing to notify if the changed config files were already known, i.e. written by this node
+            if ( changes != null && changes.isEmpty() ) {
+                return;
+            }
+            final Map<String, Set<String>> changedConfigs = toChangedConfigs( changes );
             // notify first repository
-            repoChangedEvent.fire( new SystemRepositoryChangedEvent() );
+            repoChangedEvent.fire( new SystemRepositoryChangedEvent( currentCommitId,
+                                                                     changedConfigs ) );
             // then org unit
-            orgUnitChangedEvent.fire( new SystemRepositoryChangedEvent() );
+            orgUnitChangedEvent.fire( new SystemRepositoryChangedEvent( currentCommitId,
+                                                                        changedConfigs ) );
             // lastly all others
-            changedEvent.fire( new SystemRepositoryChangedEvent() );
+            changedEvent.fire( new SystemRepositoryChangedEvent( currentCommitId,
+                                                                 changedConfigs ) );
         }
     }
 
-    private long getLastModified() {
-        final Path lastModifiedPath = ioService.get( systemRepository.getUri() ).resolve( ConfigurationServiceImpl.LAST_MODIFIED_MARKER_FILE );
+    private Map<String, Set<String>> toChangedConfigs( final Map<ConfigType, Set<String>> changes ) {
+        if ( changes == null ) {
+            return null;
+        }
+        final Map<String, Set<String>> changedConfigs = new HashMap<String, Set<String>>();
+        for ( Map.Entry<ConfigType, Set<String>> entry : changes.entrySet() ) {
+            changedConfigs.put( entry.getKey().name(),
+                                entry.getValue() );
+        }
+        return changedConfigs;
+    }
 
-        return ioService.getLastModifiedTime( lastModifiedPath ).toMillis();
+    protected String getHeadCommitId() {
+        return GitCommits.getHeadCommitId( ioService.get( systemRepository.getUri() ) );
     }
 
 }
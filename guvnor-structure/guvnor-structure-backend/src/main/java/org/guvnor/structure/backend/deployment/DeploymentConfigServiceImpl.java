@@ -107,6 +107,21 @@ public class DeploymentConfigServiceImpl implements DeploymentConfigService {
 
     public void updateRegisteredDeployments( @Observes SystemRepositoryChangedEvent changedEvent ) {
         logger.debug( "Received deployment changed event, processing..." );
+        if ( changedEvent.hasChangedConfigs() ) {
+            // only process the deployments that have changed
+            for ( String name : changedEvent.getChangedConfigNames( ConfigType.DEPLOYMENT.name() ) ) {
+                final ConfigGroup deploymentConfig = configurationService.getConfiguration( ConfigType.DEPLOYMENT,
+                                                                                            name );
+                if ( deploymentConfig == null ) {
+                    if ( registeredDeployments.containsKey( name ) ) {
+                        undeploy( name );
+                    }
+                } else if ( !registeredDeployments.containsKey( name ) ) {
+                    deploy( deploymentConfig );
+                }
+            }
+            return;
+        }
         Collection<ConfigGroup> deployments = configurationService.getConfiguration( ConfigType.DEPLOYMENT );
         if ( deployments != null ) {
             List<String> processedDeployments = new ArrayList<String>();
@@ -114,17 +129,7 @@ public class DeploymentConfigServiceImpl implements DeploymentConfigService {
                 String name = deploymentConfig.getName();
 
                 if ( !this.registeredDeployments.containsKey( name ) ) {
-                    try {
-                        logger.debug( "New deployment {} has been discovered and will be deployed", name );
-                        // add it to registered deployments
-                        DeploymentConfig deployment = deploymentFactory.newDeployment( deploymentConfig );
-                        // trigger deployment of new element
-                        addedDeploymentEvent.fire( new DeploymentConfigChangedEvent( deployment.getDeploymentUnit() ) );
-                        registeredDeployments.put( deployment.getIdentifier(), deployment );
-                        logger.debug( "Deployment {} deployed successfully", name );
-                    } catch ( RuntimeException e ) {
-                        logger.warn( "Deployment {} failed to deploy due to {}", name, e.getMessage(), e );
-                    }
+                    deploy( deploymentConfig );
                 }
 
                 processedDeployments.add( name );
@@ -135,18 +140,37 @@ public class DeploymentConfigServiceImpl implements DeploymentConfigService {
             // process undeploy
             for ( String identifier : registeredDeploymedIds ) {
                 if ( !processedDeployments.contains( identifier ) ) {
-                    try {
-                        logger.debug( "New deployment {} has been discovered and will be deployed", identifier );
-                        DeploymentConfig deployment = registeredDeployments.remove( identifier );
-
-                        // trigger undeloyment as it was removed
-                        removedDeploymentEvent.fire( new DeploymentConfigChangedEvent( deployment.getDeploymentUnit() ) );
-                        logger.debug( "Deployment {} undeployed successfully", identifier );
-                    } catch ( RuntimeException e ) {
-                        logger.warn( "Undeployment {} failed to deploy due to {}", identifier, e.getMessage(), e );
-                    }
+                    undeploy( identifier );
                 }
             }
         }
     }
+
+    private void deploy( final ConfigGroup deploymentConfig ) {
+        final String name = deploymentConfig.getName();
+        try {
+            logger.debug( "New deployment {} has been discovered and will be deployed", name );
+            // add it to registered deployments
+            DeploymentConfig deployment = deploymentFactory.newDeployment( deploymentConfig );
+            // trigger deployment of new element
+            addedDeploymentEvent.fire( new DeploymentConfigChangedEvent( deployment.getDeploymentUnit() ) );
+            registeredDeployments.put( deployment.getIdentifier(), deployment );
+            logger.debug( "Deployment {} deployed successfully", name );
+        } catch ( RuntimeException e ) {
+            logger.warn( "Deployment {} failed to deploy due to {}", name, e.getMessage(), e );
+        }
+    }
+
+    private void undeploy( final String identifier ) {
+        try {
+            logger.debug( "New deployment {} has been discovered and will be deployed", identifier );
+            DeploymentConfig deployment = registeredDeployments.remove( identifier );
+
+            // trigger undeloyment as it was removed
+            removedDeploymentEvent.fire( new DeploymentConfigChangedEvent( deployment.getDeploymentUnit() ) );
+            logger.debug( "Deployment {} undeployed successfully", identifier );
+        } catch ( RuntimeException e ) {
+            logger.warn( "Undeployment {} failed to deploy due to {}", identifier, e.getMessage(), e );
+        }
+    }
 }
@@ -343,15 +343,8 @@ public class OrganizationalUnitServiceImpl implements OrganizationalUnitService
     }
 
     protected ConfigGroup findGroupConfig( final String name ) {
-        final Collection<ConfigGroup> groups = configurationService.getConfiguration( ConfigType.ORGANIZATIONAL_UNIT );
-        if ( groups != null ) {
-            for ( ConfigGroup groupConfig : groups ) {
-                if ( groupConfig.getName().equals( name ) ) {
-                    return groupConfig;
-                }
-            }
-        }
-        return null;
+        return configurationService.getConfiguration( ConfigType.ORGANIZATIONAL_UNIT,
+                                                      name );
     }
 
     @Override
@@ -402,6 +395,10 @@ public class OrganizationalUnitServiceImpl implements OrganizationalUnitService
     }
 
     public void updateRegisteredOU( @Observes @OrgUnit SystemRepositoryChangedEvent changedEvent ) {
+        // Organizational Units reference their Repositories so changes to either require a reload
+        if ( !( changedEvent.isChanged( ConfigType.ORGANIZATIONAL_UNIT.name() ) || changedEvent.isChanged( ConfigType.REPOSITORY.name() ) ) ) {
+            return;
+        }
         registeredOrganizationalUnits.clear();
         loadOrganizationalUnits();
     }
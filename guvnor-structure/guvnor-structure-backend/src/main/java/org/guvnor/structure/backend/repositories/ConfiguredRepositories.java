@@ -17,23 +17,33 @@
 package org.guvnor.structure.backend.repositories;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Observes;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.guvnor.common.services.backend.util.SystemProperties;
 import org.guvnor.structure.config.SystemRepositoryChangedEvent;
 import org.guvnor.structure.repositories.NewBranchEvent;
 import org.guvnor.structure.repositories.Repository;
 import org.guvnor.structure.repositories.impl.git.GitRepository;
 import org.guvnor.structure.server.config.ConfigGroup;
+import org.guvnor.structure.server.config.ConfigItem;
 import org.guvnor.structure.server.config.ConfigurationService;
 import org.guvnor.structure.server.repositories.RepositoryFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.uberfire.backend.vfs.Path;
+import org.uberfire.commons.async.DescriptiveRunnable;
 import org.uberfire.java.nio.file.FileSystem;
 
 import static org.guvnor.structure.server.config.ConfigType.*;
@@ -41,16 +51,33 @@ import static org.uberfire.backend.server.util.Paths.*;
 
 /**
  * Cache for configured repositories.
+ * <p/>
+ * The repositories are held in an immutable snapshot that is replaced, whilst holding the lock on this instance, on
+ * every change. Readers therefore never block and always see a consistent set of repositories and indexes. Reloads
+ * only rebuild repositories whose configuration has changed; these may be built concurrently, on the threads provided
+ * by RepositoryBootstrapExecutorManager (see {@link #BOOTSTRAP_THREADS_PROPERTY_NAME}). A repository that fails to build is logged and left out without
+ * affecting the others.
  */
 @ApplicationScoped
 public class ConfiguredRepositories {
 
+    public static final String BOOTSTRAP_THREADS_PROPERTY_NAME = "org.guvnor.repositories.bootstrap.threads";
+
+    private static final int DEFAULT_BOOTSTRAP_THREADS = 1;
+
+    private static final Logger logger = LoggerFactory.getLogger( ConfiguredRepositories.class );
+
     private ConfigurationService configurationService;
     private RepositoryFactory    repositoryFactory;
     private Repository           systemRepository;
+    private RepositoryBootstrapExecutorManagerFactory executorManagerFactory;
+
+    private volatile Snapshot snapshot = new Snapshot( Collections.<String, ConfiguredRepository>emptyMap() );
+
+    private int bootstrapThreads = getBootstrapThreads();
 
-    private Map<String, Repository> repositoriesByAlias      = new HashMap<>();
-    private Map<Path, Repository>   repositoriesByBranchRoot = new HashMap<>();
+    //Time, in milliseconds, taken to build each repository when it was last built
+    private final Map<String, Long> buildTimes = new ConcurrentHashMap<>();
 
     public ConfiguredRepositories() {
     }
@@ -58,27 +85,190 @@ public class ConfiguredRepositories {
     @Inject
     public ConfiguredRepositories( final ConfigurationService configurationService,
                                    final RepositoryFactory repositoryFactory,
-                                   final @Named( "system" ) Repository systemRepository ) {
+                                   final @Named( "system" ) Repository systemRepository,
+                                   final RepositoryBootstrapExecutorManagerFactory executorManagerFactory ) {
         this.configurationService = configurationService;
         this.repositoryFactory = repositoryFactory;
         this.systemRepository = systemRepository;
+        this.executorManagerFactory = executorManagerFactory;
+    }
+
+    static int getBootstrapThreads() {
+        return SystemProperties.getInt( BOOTSTRAP_THREADS_PROPERTY_NAME,
+                                        DEFAULT_BOOTSTRAP_THREADS,
+                                        1 );
+    }
+
+    void setBootstrapThreads( final int bootstrapThreads ) {
+        this.bootstrapThreads = bootstrapThreads;
     }
 
-    @SuppressWarnings( "unchecked" )
     @PostConstruct
-    public void loadRepositories() {
-        repositoriesByAlias.clear();
-        repositoriesByBranchRoot.clear();
+    public synchronized void loadRepositories() {
+        final long start = System.currentTimeMillis();
+        final Map<String, ConfiguredRepository> current = snapshot.repositoriesByAlias;
+        final Map<String, ConfiguredRepository> repositories = new LinkedHashMap<>();
 
         final List<ConfigGroup> repoConfigs = configurationService.getConfiguration( REPOSITORY );
-        if ( !(repoConfigs == null || repoConfigs.isEmpty()) ) {
-            for ( final ConfigGroup configGroup : repoConfigs ) {
-                final Repository repository = repositoryFactory.newRepository( configGroup );
+        if ( repoConfigs == null || repoConfigs.isEmpty() ) {
+            snapshot = new Snapshot( repositories );
+            return;
+        }
+
+        final List<ConfigGroup> changedConfigs = new ArrayList<>();
+        for ( final ConfigGroup configGroup : repoConfigs ) {
+            if ( !isUnchanged( current.get( configGroup.getName() ),
+                               configGroup ) ) {
+                changedConfigs.add( configGroup );
+            }
+        }
+        final Map<String, ConfiguredRepository> built = buildRepositories( changedConfigs );
+
+        //Retain the configured order
+        for ( final ConfigGroup configGroup : repoConfigs ) {
+            ConfiguredRepository repository = built.get( configGroup.getName() );
+            if ( repository == null && isUnchanged( current.get( configGroup.getName() ),
+                                                    configGroup ) ) {
+                repository = current.get( configGroup.getName() );
+            }
+            if ( repository != null ) {
+                repositories.put( repository.repository.getAlias(),
+                                  repository );
+            }
+        }
+
+        snapshot = new Snapshot( repositories );
+
+        logger.info( "Loaded " + repositories.size() + " of " + repoConfigs.size() + " configured repositories in "
+                             + ( System.currentTimeMillis() - start ) + "ms (" + changedConfigs.size() + " built)." );
+    }
+
+    /**
+     * Builds repositories, concurrently if so configured. Repositories that fail to build are logged and omitted.
+     * @return The built repositories keyed by the name of their ConfigGroup.
+     */
+    private Map<String, ConfiguredRepository> buildRepositories( final List<ConfigGroup> configGroups ) {
+        final Map<String, ConfiguredRepository> built = new ConcurrentHashMap<>();
+        final int threads = Math.min( bootstrapThreads,
+                                      configGroups.size() );
+        if ( threads <= 1 ) {
+            for ( final ConfigGroup configGroup : configGroups ) {
+                buildRepository( configGroup,
+                                 built );
+            }
+            return built;
+        }
+
+        final RepositoryBootstrapExecutorManager executorManager = executorManagerFactory.getExecutorManager();
+        final CountDownLatch latch = new CountDownLatch( configGroups.size() );
+        for ( final ConfigGroup configGroup : configGroups ) {
+            executorManager.execute( new DescriptiveRunnable() {
+                @Override
+                public String getDescription() {
+                    return "Build repository " + configGroup.getName();
+                }
+
+                @Override
+                public void run() {
+                    try {
+                        buildRepository( configGroup,
+                                         built );
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            } );
+        }
+        try {
+            latch.await();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( e );
+        }
+        return built;
+    }
+
+    private void buildRepository( final ConfigGroup configGroup,
+                                  final Map<String, ConfiguredRepository> built ) {
+        final long start = System.currentTimeMillis();
+        try {
+            built.put( configGroup.getName(),
+                       new ConfiguredRepository( repositoryFactory.newRepository( configGroup ),
+                                                 fingerprint( configGroup ) ) );
+        } catch ( RuntimeException e ) {
+            logger.error( "Unable to load repository '" + configGroup.getName() + "': " + e.getMessage(),
+                          e );
+        } finally {
+            final long time = System.currentTimeMillis() - start;
+            buildTimes.put( configGroup.getName(),
+                            time );
+            logger.debug( "Repository '{}' built in {}ms", configGroup.getName(), time );
+        }
+    }
 
-                add( repository );
+    /**
+     * @return Time, in milliseconds, taken to build each repository when it was last built, keyed by alias.
+     */
+    public Map<String, Long> getBuildTimes() {
+        return Collections.unmodifiableMap( new HashMap<>( buildTimes ) );
+    }
 
+    /**
+     * Reloads a single repository from its configuration, removing it if it is no longer configured.
+     * @param alias Name of the repository.
+     */
+    public synchronized void reloadRepository( final String alias ) {
+        final Map<String, ConfiguredRepository> repositories = new LinkedHashMap<>( snapshot.repositoriesByAlias );
+        final ConfiguredRepository existing = repositories.remove( alias );
+
+        final ConfigGroup configGroup = configurationService.getConfiguration( REPOSITORY,
+                                                                               alias );
+        if ( configGroup != null ) {
+            //As when loading, a repository that fails to build is logged and left out
+            final ConfiguredRepository repository = reuseOrBuild( existing,
+                                                                  configGroup );
+            if ( repository != null ) {
+                repositories.put( repository.repository.getAlias(),
+                                  repository );
             }
+        } else if ( existing == null ) {
+            return;
+        }
+
+        snapshot = new Snapshot( repositories );
+    }
+
+    private ConfiguredRepository reuseOrBuild( final ConfiguredRepository existing,
+                                               final ConfigGroup configGroup ) {
+        if ( isUnchanged( existing,
+                          configGroup ) ) {
+            return existing;
+        }
+        final Map<String, ConfiguredRepository> built = new HashMap<>();
+        buildRepository( configGroup,
+                         built );
+        return built.get( configGroup.getName() );
+    }
+
+    private boolean isUnchanged( final ConfiguredRepository existing,
+                                 final ConfigGroup configGroup ) {
+        return existing != null && existing.fingerprint != null && existing.fingerprint.equals( fingerprint( configGroup ) );
+    }
+
+    /**
+     * @return A representation of the ConfigGroup's content; equal representations build equal repositories.
+     */
+    static String fingerprint( final ConfigGroup configGroup ) {
+        if ( configGroup == null ) {
+            return null;
+        }
+        final Map<String, String> items = new TreeMap<>();
+        for ( final ConfigItem item : configGroup.getItems() ) {
+            final Object value = item.getValue();
+            items.put( item.getName(),
+                       ( value == null ? "null" : value.getClass().getName() + ":" + value ) );
         }
+        return configGroup.getName() + "|" + configGroup.getDescription() + "|" + configGroup.isEnabled() + "|" + items;
     }
 
     /**
@@ -87,7 +277,8 @@ public class ConfiguredRepositories {
      * @return Repository that has a random branch as a root, usually master if master exists.
      */
     public Repository getRepositoryByRepositoryAlias( final String alias ) {
-        return repositoriesByAlias.get( alias );
+        final ConfiguredRepository repository = snapshot.repositoriesByAlias.get( alias );
+        return repository == null ? null : repository.repository;
     }
 
     /**
@@ -104,13 +295,7 @@ public class ConfiguredRepositories {
             return systemRepository;
         }
 
-        for ( final Repository repository : repositoriesByAlias.values() ) {
-            if ( convert( repository.getRoot() ).getFileSystem().equals( fs ) ) {
-                return repository;
-            }
-        }
-
-        return null;
+        return snapshot.getRepositoriesByFileSystem().get( fs );
     }
 
     /**
@@ -118,79 +303,155 @@ public class ConfiguredRepositories {
      * @return Repository root branch is still the default, usually master.
      */
     public Repository getRepositoryByRootPath( final Path root ) {
-        return repositoriesByBranchRoot.get( root );
+        return snapshot.repositoriesByBranchRoot.get( root );
     }
 
     /**
      * @return Does not include system repository.
      */
     public List<Repository> getAllConfiguredRepositories() {
-        return new ArrayList<>( repositoriesByAlias.values() );
+        final Snapshot current = snapshot;
+        final List<Repository> result = new ArrayList<>( current.repositoriesByAlias.size() );
+        for ( final ConfiguredRepository repository : current.repositoriesByAlias.values() ) {
+            result.add( repository.repository );
+        }
+        return result;
     }
 
     public boolean containsAlias( final String alias ) {
-        return repositoriesByAlias.containsKey( alias ) || SystemRepository.SYSTEM_REPO.getAlias().equals( alias );
+        return snapshot.repositoriesByAlias.containsKey( alias ) || SystemRepository.SYSTEM_REPO.getAlias().equals( alias );
     }
 
-    public void add( final Repository repository ) {
-        repositoriesByAlias.put( repository.getAlias(),
-                                 repository );
+    public synchronized void add( final Repository repository ) {
+        final Map<String, ConfiguredRepository> repositories = new LinkedHashMap<>( snapshot.repositoriesByAlias );
+        //The repository was built from its current configuration, so record it to avoid rebuilding it on reload
+        repositories.put( repository.getAlias(),
+                          new ConfiguredRepository( repository,
+                                                    fingerprint( configurationService.getConfiguration( REPOSITORY,
+                                                                                                        repository.getAlias() ) ) ) );
 
-        if ( repository instanceof GitRepository &&
-                repository.getBranches() != null ) {
-            for ( String branch : repository.getBranches() ) {
-                repositoriesByBranchRoot.put( repository.getBranchRoot( branch ),
-                                              repository );
-            }
-        } else {
-            repositoriesByBranchRoot.put( repository.getRoot(),
-                                          repository );
-        }
+        snapshot = new Snapshot( repositories );
     }
 
     public void update( final Repository updatedRepo ) {
         add( updatedRepo );
     }
 
-    public Repository remove( final String alias ) {
+    public synchronized Repository remove( final String alias ) {
+        final Map<String, ConfiguredRepository> repositories = new LinkedHashMap<>( snapshot.repositoriesByAlias );
+
+        final ConfiguredRepository removed = repositories.remove( alias );
+        if ( removed == null ) {
+            return null;
+        }
+
+        snapshot = new Snapshot( repositories );
 
-        final Repository removed = repositoriesByAlias.remove( alias );
+        return removed.repository;
+    }
 
-        removeFromRootByAlias( alias );
+    public synchronized void onNewBranch( final @Observes NewBranchEvent changedEvent ) {
+
+        final Map<String, ConfiguredRepository> repositories = new LinkedHashMap<>( snapshot.repositoriesByAlias );
+        final ConfiguredRepository configured = repositories.get( changedEvent.getRepositoryAlias() );
+        if ( configured != null && configured.repository instanceof GitRepository ) {
+            //The repository may be in use by readers of the current snapshot, so a copy is given the new branch
+            final GitRepository repository = copyOf( ( GitRepository ) configured.repository );
+            repository.addBranch( changedEvent.getBranchName(),
+                                  changedEvent.getBranchPath() );
+            repositories.put( repository.getAlias(),
+                              new ConfiguredRepository( repository,
+                                                        configured.fingerprint ) );
+            snapshot = new Snapshot( repositories );
+        }
+    }
 
-        return removed;
+    private static GitRepository copyOf( final GitRepository repository ) {
+        final GitRepository copy = new GitRepository( repository.getAlias(),
+                                                      repository.getPublicURIs() );
+        copy.getEnvironment().putAll( repository.getEnvironment() );
+        copy.setRoot( repository.getRoot() );
+        final Map<String, Path> branches = new HashMap<>();
+        for ( final String branch : repository.getBranches() ) {
+            branches.put( branch,
+                          repository.getBranchRoot( branch ) );
+        }
+        copy.setBranches( branches );
+        if ( repository.getGroups() != null ) {
+            copy.setGroups( repository.getGroups() );
+        }
+        if ( !repository.requiresRefresh() ) {
+            copy.markAsCached();
+        }
+        return copy;
     }
 
-    private void removeFromRootByAlias( final String alias ) {
-        for ( Path path : findFromRootMapByAlias( alias ) ) {
-            repositoriesByBranchRoot.remove( path );
+    public void flush( final @Observes @org.guvnor.structure.backend.config.Repository SystemRepositoryChangedEvent changedEvent ) {
+        if ( !changedEvent.hasChangedConfigs() ) {
+            loadRepositories();
+            return;
+        }
+        // only reload the repositories that have changed
+        for ( final String alias : changedEvent.getChangedConfigNames( REPOSITORY.name() ) ) {
+            reloadRepository( alias );
         }
     }
 
-    private List<Path> findFromRootMapByAlias( final String alias ) {
-        List<Path> result = new ArrayList<>();
-        for ( Path path : repositoriesByBranchRoot.keySet() ) {
-            if ( repositoriesByBranchRoot.get( path ).getAlias().equals( alias ) ) {
-                result.add( path );
-            }
+    private static class ConfiguredRepository {
+
+        private final Repository repository;
+        //Fingerprint of the ConfigGroup the repository was built from, or null if not known
+        private final String fingerprint;
+
+        private ConfiguredRepository( final Repository repository,
+                                      final String fingerprint ) {
+            this.repository = repository;
+            this.fingerprint = fingerprint;
         }
-        return result;
     }
 
-    public void onNewBranch( final @Observes NewBranchEvent changedEvent ) {
+    private static class Snapshot {
+
+        private final Map<String, ConfiguredRepository> repositoriesByAlias;
+        private final Map<Path, Repository> repositoriesByBranchRoot;
+        //Built on first use as resolving a repository's FileSystem requires the IOService
+        private volatile Map<FileSystem, Repository> repositoriesByFileSystem;
 
-        if ( repositoriesByAlias.containsKey( changedEvent.getRepositoryAlias() ) ) {
+        private Snapshot( final Map<String, ConfiguredRepository> repositoriesByAlias ) {
+            this.repositoriesByAlias = Collections.unmodifiableMap( repositoriesByAlias );
 
-            final Repository repository = getRepositoryByRepositoryAlias( changedEvent.getRepositoryAlias() );
-            if ( repository instanceof GitRepository ) {
-                (( GitRepository ) repository).addBranch( changedEvent.getBranchName(),
-                                                          changedEvent.getBranchPath() );
-                repositoriesByBranchRoot.put( changedEvent.getBranchPath(), repository );
+            final Map<Path, Repository> byBranchRoot = new HashMap<>();
+            for ( final ConfiguredRepository configured : repositoriesByAlias.values() ) {
+                final Repository repository = configured.repository;
+                if ( repository instanceof GitRepository &&
+                        repository.getBranches() != null ) {
+                    for ( String branch : repository.getBranches() ) {
+                        byBranchRoot.put( repository.getBranchRoot( branch ),
+                                          repository );
+                    }
+                } else {
+                    byBranchRoot.put( repository.getRoot(),
+                                      repository );
+                }
             }
+            this.repositoriesByBranchRoot = Collections.unmodifiableMap( byBranchRoot );
         }
-    }
 
-    public void flush( final @Observes @org.guvnor.structure.backend.config.Repository SystemRepositoryChangedEvent changedEvent ) {
-        loadRepositories();
+        private Map<FileSystem, Repository> getRepositoriesByFileSystem() {
+            Map<FileSystem, Repository> byFileSystem = repositoriesByFileSystem;
+            if ( byFileSystem == null ) {
+                byFileSystem = new HashMap<>();
+                for ( final ConfiguredRepository configured : repositoriesByAlias.values() ) {
+                    final FileSystem fs = convert( configured.repository.getRoot() ).getFileSystem();
+                    if ( !byFileSystem.containsKey( fs ) ) {
+                        byFileSystem.put( fs,
+                                          configured.repository );
+                    }
+                }
+                byFileSystem = Collections.unmodifiableMap( byFileSystem );
+                repositoriesByFileSystem = byFileSystem;
+            }
+            return byFileSystem;
+        }
     }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.structure.backend.repositories;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.ejb.Asynchronous;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionAttribute;
+
+import org.uberfire.commons.async.DescriptiveRunnable;
+import org.uberfire.commons.async.DescriptiveThreadFactory;
+
+import static javax.ejb.TransactionAttributeType.*;
+
+@Singleton
+@Startup
+@TransactionAttribute(NOT_SUPPORTED)
+//Repositories are built concurrently, so builds must not wait for one another
+@Lock(LockType.READ)
+public class RepositoryBootstrapExecutorManager {
+
+    private AtomicBoolean useExecService = new AtomicBoolean( false );
+    private ExecutorService executorService = null;
+
+    @Asynchronous
+    public void execute( final DescriptiveRunnable build ) {
+        if ( useExecService.get() ) {
+            getExecutorService().execute( build );
+        } else {
+            build.run();
+        }
+    }
+
+    //Public so we can set the ExecutorService for tests not within guvnor
+    public void setExecutorService( final ExecutorService executorService ) {
+        this.executorService = executorService;
+        this.useExecService.set( true );
+    }
+
+    void setUseExecutorService() {
+        this.useExecService.set( true );
+    }
+
+    private synchronized ExecutorService getExecutorService() {
+        if ( executorService == null ) {
+            executorService = Executors.newFixedThreadPool( ConfiguredRepositories.getBootstrapThreads(),
+                                                            new DescriptiveThreadFactory() );
+        }
+        return executorService;
+    }
+
+    public void shutdown() {
+        if ( useExecService.get() && executorService != null ) {
+            executorService.shutdown(); // Disable new tasks from being submitted
+            try {
+                // Wait a while for existing tasks to terminate
+                if ( !executorService.awaitTermination( 60, TimeUnit.SECONDS ) ) {
+                    executorService.shutdownNow(); // Cancel currently executing tasks
+                    // Wait a while for tasks to respond to being cancelled
+                    if ( !executorService.awaitTermination( 60, TimeUnit.SECONDS ) ) {
+                        System.err.println( "Pool did not terminate" );
+                    }
+                }
+            } catch ( InterruptedException ie ) {
+                // (Re-)Cancel if current thread also interrupted
+                executorService.shutdownNow();
+                // Preserve interrupt status
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
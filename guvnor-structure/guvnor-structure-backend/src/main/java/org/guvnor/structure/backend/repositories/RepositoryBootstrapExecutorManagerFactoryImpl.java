@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.structure.backend.repositories;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.naming.InitialContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@ApplicationScoped
+public class RepositoryBootstrapExecutorManagerFactoryImpl implements RepositoryBootstrapExecutorManagerFactory {
+
+    private static final Logger LOG = LoggerFactory.getLogger( RepositoryBootstrapExecutorManagerFactoryImpl.class );
+
+    private final boolean USE_EXECUTOR_SAFE_MODE = Boolean.parseBoolean( System.getProperty( "org.uberfire.async.executor.safemode", "false" ) );
+
+    private RepositoryBootstrapExecutorManager executorManager = null;
+
+    @Override
+    public synchronized RepositoryBootstrapExecutorManager getExecutorManager() {
+        if ( executorManager == null ) {
+            RepositoryBootstrapExecutorManager _executorManager = null;
+
+            //Unless overridden, delegate instantiation of the ExecutorService to the container
+            if ( !USE_EXECUTOR_SAFE_MODE ) {
+                try {
+                    _executorManager = InitialContext.doLookup( "java:module/RepositoryBootstrapExecutorManager" );
+                } catch ( final Exception e ) {
+                    LOG.warn( "Unable to instantiate EJB Asynchronous Bean. Falling back to Executors' FixedThreadPool.",
+                              e );
+                }
+            } else {
+                LOG.info( "Use of Executors' FixedThreadPool has been requested; overriding container provisioning." );
+            }
+
+            if ( _executorManager == null ) {
+                executorManager = new RepositoryBootstrapExecutorManager();
+                executorManager.setUseExecutorService();
+            } else {
+                executorManager = _executorManager;
+            }
+        }
+
+        return executorManager;
+    }
+
+    @PreDestroy
+    public synchronized void destroy() {
+        if ( executorManager != null ) {
+            executorManager.shutdown();
+        }
+    }
+
+}
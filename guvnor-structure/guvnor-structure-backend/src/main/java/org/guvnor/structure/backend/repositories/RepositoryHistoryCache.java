@@ -0,0 +1,291 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.structure.backend.repositories;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.guvnor.common.services.backend.util.SystemProperties;
+import org.guvnor.structure.backend.repositories.git.GitCommits;
+import org.guvnor.structure.repositories.Repository;
+import org.guvnor.structure.repositories.RepositoryRemovedEvent;
+import org.uberfire.ext.editor.commons.version.impl.PortableVersionRecord;
+import org.uberfire.java.nio.base.version.VersionRecord;
+import org.uberfire.java.nio.file.Path;
+
+import static org.uberfire.backend.server.util.Paths.*;
+
+/**
+ * Holds the most recent commits of each repository's root, newest first, so that the first pages of a repository's
+ * history are served without reading its entire log.
+ * <p/>
+ * A window is keyed by the commit at the tip of the repository's branch, so it is replaced as soon as the branch moves,
+ * however it was changed. Pages beyond the window are read by walking the log from the tip and stopping once the page
+ * has been read.
+ */
+@ApplicationScoped
+public class RepositoryHistoryCache {
+
+    public static final String SIZE_PROPERTY_NAME = "org.guvnor.repository.history.cache.size";
+
+    private static final int DEFAULT_SIZE = 100;
+
+    private final int windowSize;
+
+    //Windows keyed by repository alias, guarded by itself
+    private final Map<String, HistoryWindow> windows = new HashMap<String, HistoryWindow>();
+
+    public RepositoryHistoryCache() {
+        this( SystemProperties.getLong( SIZE_PROPERTY_NAME,
+                                        DEFAULT_SIZE,
+                                        0 ) );
+    }
+
+    RepositoryHistoryCache( final long windowSize ) {
+        this.windowSize = (int) Math.min( Integer.MAX_VALUE - 1,
+                                          windowSize );
+    }
+
+    /**
+     * @param repository The repository
+     * @param startIndex Index, from the most recent commit, of the first commit to return
+     * @param endIndex Index, from the most recent commit, of the commit after the last to return; or negative for all
+     * commits
+     * @return Commits of the repository's root, newest first
+     */
+    public List<VersionRecord> getHistory( final Repository repository,
+                                           final int startIndex,
+                                           final int endIndex ) {
+        final String headCommitId = getHeadCommitId( repository );
+        final HistoryWindow window = getWindow( repository,
+                                                headCommitId );
+        if ( endIndex >= 0 && ( endIndex <= window.records.size() || window.complete ) ) {
+            return slice( window.records,
+                          startIndex,
+                          endIndex );
+        }
+        return slice( readHistory( repository,
+                                   headCommitId,
+                                   endIndex ),
+                      startIndex,
+                      endIndex );
+    }
+
+    /**
+     * @param repository The repository
+     * @param commitId Id of the last commit of the previous page
+     * @param count Maximum number of commits to return
+     * @return Commits of the repository's root following, i.e. older than, the given commit, newest first. Empty if
+     * the commit is not in the history.
+     */
+    public List<VersionRecord> getHistoryAfter( final Repository repository,
+                                                final String commitId,
+                                                final int count ) {
+        final String headCommitId = getHeadCommitId( repository );
+        final HistoryWindow window = getWindow( repository,
+                                                headCommitId );
+        final int index = indexOf( window.records,
+                                   commitId );
+        if ( index >= 0 && ( index + 1 + count <= window.records.size() || window.complete ) ) {
+            return slice( window.records,
+                          index + 1,
+                          index + 1 + count );
+        }
+        if ( window.complete || count <= 0 ) {
+            return Collections.emptyList();
+        }
+
+        //The log is only walked as far as the end of the page
+        final List<VersionRecord> records = new ArrayList<VersionRecord>( count );
+        walkHistory( repository,
+                     headCommitId,
+                     new HistoryVisitor() {
+                         private boolean found;
+
+                         @Override
+                         public boolean visit( final VersionRecord record ) {
+                             if ( found ) {
+                                 records.add( record );
+                                 return records.size() < count;
+                             }
+                             found = record.id().equals( commitId );
+                             return true;
+                         }
+                     } );
+        return records;
+    }
+
+    public void invalidateCache( final String alias ) {
+        synchronized ( windows ) {
+            windows.remove( alias );
+        }
+    }
+
+    private HistoryWindow getWindow( final Repository repository,
+                                     final String headCommitId ) {
+        synchronized ( windows ) {
+            final HistoryWindow window = windows.get( repository.getAlias() );
+            if ( window != null && headCommitId != null && headCommitId.equals( window.headCommitId ) ) {
+                return window;
+            }
+        }
+
+        //One commit more than the window shows whether the window is the entire history
+        final List<VersionRecord> records = readHistory( repository,
+                                                         headCommitId,
+                                                         windowSize + 1 );
+        final HistoryWindow window = records.size() <= windowSize ?
+                new HistoryWindow( headCommitId,
+                                   records,
+                                   true ) :
+                new HistoryWindow( headCommitId,
+                                   new ArrayList<VersionRecord>( records.subList( 0,
+                                                                                  windowSize ) ),
+                                   false );
+        if ( headCommitId != null ) {
+            synchronized ( windows ) {
+                windows.put( repository.getAlias(),
+                             window );
+            }
+        }
+        return window;
+    }
+
+    /**
+     * Reads the most recent commits of a repository's root.
+     * @param limit Maximum number of commits to return, or negative for all
+     */
+    private List<VersionRecord> readHistory( final Repository repository,
+                                             final String headCommitId,
+                                             final int limit ) {
+        final List<VersionRecord> records = new ArrayList<VersionRecord>();
+        if ( limit == 0 ) {
+            return records;
+        }
+        walkHistory( repository,
+                     headCommitId,
+                     new HistoryVisitor() {
+                         @Override
+                         public boolean visit( final VersionRecord record ) {
+                             records.add( record );
+                             return limit < 0 || records.size() < limit;
+                         }
+                     } );
+        return records;
+    }
+
+    protected String getHeadCommitId( final Repository repository ) {
+        return GitCommits.getHeadCommitId( convert( repository.getRoot() ) );
+    }
+
+    /**
+     * Visits the commits of a repository's root, newest first, until the visitor returns false.
+     */
+    protected void walkHistory( final Repository repository,
+                                final String headCommitId,
+                                final HistoryVisitor visitor ) {
+        final Path root = convert( repository.getRoot() );
+        final String rootUri = root.toUri().toString();
+        GitCommits.walk( root,
+                         headCommitId,
+                         new GitCommits.CommitVisitor() {
+                             @Override
+                             public boolean visit( final RevCommit commit ) {
+                                 return visitor.visit( new PortableVersionRecord( commit.getName(),
+                                                                                  commit.getAuthorIdent().getName(),
+                                                                                  commit.getAuthorIdent().getEmailAddress(),
+                                                                                  commit.getFullMessage(),
+                                                                                  commit.getAuthorIdent().getWhen(),
+                                                                                  getVersionUri( rootUri,
+                                                                                                 commit.getName() ) ) );
+                             }
+                         } );
+    }
+
+    //The root at a commit, e.g. default://<commit id>@repository/ for default://master@repository/
+    static String getVersionUri( final String rootUri,
+                                 final String commitId ) {
+        final int schemeEnd = rootUri.indexOf( "://" );
+        final int branchEnd = rootUri.indexOf( '@' );
+        if ( schemeEnd < 0 || branchEnd < schemeEnd ) {
+            return rootUri;
+        }
+        return rootUri.substring( 0,
+                                  schemeEnd + 3 ) + commitId + rootUri.substring( branchEnd );
+    }
+
+    private static int indexOf( final List<VersionRecord> records,
+                                final String commitId ) {
+        for ( int i = 0; i < records.size(); i++ ) {
+            if ( records.get( i ).id().equals( commitId ) ) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static List<VersionRecord> slice( final List<VersionRecord> records,
+                                              int startIndex,
+                                              int endIndex ) {
+        if ( startIndex < 0 ) {
+            startIndex = 0;
+        }
+        if ( endIndex < 0 || endIndex > records.size() ) {
+            endIndex = records.size();
+        }
+        if ( startIndex >= records.size() || startIndex >= endIndex ) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<VersionRecord>( records.subList( startIndex,
+                                                              endIndex ) );
+    }
+
+    public void onRepositoryRemoved( @Observes final RepositoryRemovedEvent event ) {
+        if ( event.getRepository() != null ) {
+            invalidateCache( event.getRepository().getAlias() );
+        }
+    }
+
+    interface HistoryVisitor {
+
+        boolean visit( VersionRecord record );
+    }
+
+    private static class HistoryWindow {
+
+        //The commit at the tip of the branch when the window was read
+        private final String headCommitId;
+        private final List<VersionRecord> records;
+        //Whether the records are the entire history
+        private final boolean complete;
+
+        private HistoryWindow( final String headCommitId,
+                               final List<VersionRecord> records,
+                               final boolean complete ) {
+            this.headCommitId = headCommitId;
+            this.records = records;
+            this.complete = complete;
+        }
+    }
+
+}
@@ -47,9 +47,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.uberfire.backend.server.util.TextUtil;
 import org.uberfire.backend.vfs.Path;
-import org.uberfire.ext.editor.commons.version.impl.PortableVersionRecord;
 import org.uberfire.io.IOService;
-import org.uberfire.java.nio.base.version.VersionAttributeView;
 import org.uberfire.java.nio.base.version.VersionRecord;
 
 import static org.guvnor.structure.repositories.EnvironmentParameters.*;
@@ -92,6 +90,9 @@ public class RepositoryServiceImpl implements RepositoryService {
     @Inject
     private ConfiguredRepositories configuredRepositories;
 
+    @Inject
+    private RepositoryHistoryCache historyCache;
+
     private Repository createRepository( final ConfigGroup repositoryConfig ) {
         final Repository repository = repositoryFactory.newRepository( repositoryConfig );
         configurationService.addConfiguration( repositoryConfig );
@@ -139,27 +140,27 @@ public class RepositoryServiceImpl implements RepositoryService {
             return Collections.EMPTY_LIST;
         }
 
-        final VersionAttributeView versionAttributeView = ioService.getFileAttributeView( convert( repo.getRoot() ), VersionAttributeView.class );
-        final List<VersionRecord> records = versionAttributeView.readAttributes().history().records();
+        return historyCache.getHistory( repo,
+                                        startIndex,
+                                        endIndex );
+    }
 
-        if ( startIndex < 0 ) {
-            startIndex = 0;
-        }
-        if ( endIndex < 0 || endIndex > records.size() ) {
-            endIndex = records.size();
-        }
-        if ( startIndex >= records.size() || startIndex >= endIndex ) {
+    @Override
+    public List<VersionRecord> getRepositoryHistoryAfter( final String alias,
+                                                          final String commitId,
+                                                          final int pageSize ) {
+        final Repository repo = getRepository( alias );
+        if ( repo == null ) {
             return Collections.emptyList();
         }
-
-        Collections.reverse( records );
-
-        final List<VersionRecord> result = new ArrayList<VersionRecord>( endIndex - startIndex );
-        for ( VersionRecord record : records.subList( startIndex, endIndex ) ) {
-            result.add( new PortableVersionRecord( record.id(), record.author(), record.email(), record.comment(), record.date(), record.uri() ) );
+        if ( commitId == null ) {
+            return historyCache.getHistory( repo,
+                                            0,
+                                            pageSize );
         }
-
-        return result;
+        return historyCache.getHistoryAfter( repo,
+                                             commitId,
+                                             pageSize );
     }
 
     @Override
@@ -208,15 +209,8 @@ public class RepositoryServiceImpl implements RepositoryService {
     }
 
     protected ConfigGroup findRepositoryConfig( final String alias ) {
-        final Collection<ConfigGroup> groups = configurationService.getConfiguration( ConfigType.REPOSITORY );
-        if ( groups != null ) {
-            for ( ConfigGroup groupConfig : groups ) {
-                if ( groupConfig.getName().equals( alias ) ) {
-                    return groupConfig;
-                }
-            }
-        }
-        return null;
+        return configurationService.getConfiguration( ConfigType.REPOSITORY,
+                                                      alias );
     }
 
     @Override
@@ -0,0 +1,371 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.structure.backend.repositories.git;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.uberfire.java.nio.file.FileSystem;
+import org.uberfire.java.nio.file.Path;
+import org.uberfire.java.nio.fs.jgit.JGitFileSystem;
+
+/**
+ * Reads commit ids directly from the git repository behind a Path, resolving only the branch's ref rather than
+ * loading its history.
+ */
+public final class GitCommits {
+
+    private static final String DEFAULT_BRANCH = "master";
+
+    private GitCommits() {
+    }
+
+    /**
+     * @param path A Path in a branch of a git file system, e.g. default://master@repository/folder
+     * @return The id of the commit at the tip of the branch, or null if the Path is not in a git file system or the
+     * branch has no commits
+     */
+    public static String getHeadCommitId( final Path path ) {
+        final Repository repository = getRepository( path );
+        if ( repository == null ) {
+            return null;
+        }
+        try {
+            final ObjectId commitId = repository.resolve( Constants.R_HEADS + getBranchName( path ) );
+            return commitId == null ? null : commitId.getName();
+        } catch ( IOException e ) {
+            throw new RuntimeException( e );
+        }
+    }
+
+    /**
+     * @param path A Path in a branch of a git file system
+     * @param parentCommitId The expected parent of the commit
+     * @param commitId The commit
+     * @param filePath The path, relative to the root of the repository, of the only file the commit may change
+     * @return true if the commit's only parent is the expected parent and it changes no file other than the one given
+     */
+    public static boolean isOnlyChangeTo( final Path path,
+                                          final String parentCommitId,
+                                          final String commitId,
+                                          final String filePath ) {
+        final Repository repository = getRepository( path );
+        if ( repository == null || parentCommitId == null || commitId == null ) {
+            return false;
+        }
+        final ObjectReader reader = repository.newObjectReader();
+        final RevWalk rw = new RevWalk( reader );
+        try {
+            final RevCommit commit = rw.parseCommit( ObjectId.fromString( commitId ) );
+            if ( commit.getParentCount() != 1 || !commit.getParent( 0 ).getName().equals( parentCommitId ) ) {
+                return false;
+            }
+            final RevCommit parent = rw.parseCommit( commit.getParent( 0 ) );
+            final TreeWalk tw = new TreeWalk( reader );
+            try {
+                tw.setRecursive( true );
+                tw.setFilter( TreeFilter.ANY_DIFF );
+                tw.addTree( parent.getTree() );
+                tw.addTree( commit.getTree() );
+                while ( tw.next() ) {
+                    if ( !tw.getPathString().equals( filePath ) ) {
+                        return false;
+                    }
+                }
+            } finally {
+                tw.release();
+            }
+            return true;
+        } catch ( IOException e ) {
+            throw new RuntimeException( e );
+        } finally {
+            rw.release();
+        }
+    }
+
+    /**
+     * @param path A Path in a git file system
+     * @param fromCommitId The earlier commit
+     * @param toCommitId The later commit
+     * @return The paths, relative to the root of the repository, of the files that differ between the commits' trees,
+     * or null if the Path is not in a git file system or either commit is unknown
+     */
+    public static Set<String> getChangedPaths( final Path path,
+                                               final String fromCommitId,
+                                               final String toCommitId ) {
+        final Repository repository = getRepository( path );
+        if ( repository == null || fromCommitId == null || toCommitId == null ) {
+            return null;
+        }
+        final Set<String> changedPaths = new HashSet<String>();
+        final ObjectReader reader = repository.newObjectReader();
+        final RevWalk rw = new RevWalk( reader );
+        final TreeWalk tw = new TreeWalk( reader );
+        try {
+            tw.setRecursive( true );
+            tw.setFilter( TreeFilter.ANY_DIFF );
+            tw.addTree( rw.parseCommit( ObjectId.fromString( fromCommitId ) ).getTree() );
+            tw.addTree( rw.parseCommit( ObjectId.fromString( toCommitId ) ).getTree() );
+            while ( tw.next() ) {
+                changedPaths.add( tw.getPathString() );
+            }
+        } catch ( IOException e ) {
+            throw new RuntimeException( e );
+        } finally {
+            tw.release();
+            rw.release();
+            reader.release();
+        }
+        return changedPaths;
+    }
+
+    /**
+     * Visits the commits reachable from a commit, newest first as git log lists them, until the visitor returns false.
+     * @param path A Path in a git file system
+     * @param fromCommitId The commit to start from
+     * @param visitor The visitor
+     */
+    public static void walk( final Path path,
+                             final String fromCommitId,
+                             final CommitVisitor visitor ) {
+        final Repository repository = getRepository( path );
+        if ( repository == null || fromCommitId == null ) {
+            return;
+        }
+        final RevWalk rw = new RevWalk( repository );
+        try {
+            rw.markStart( rw.parseCommit( ObjectId.fromString( fromCommitId ) ) );
+            for ( RevCommit commit : rw ) {
+                if ( !visitor.visit( commit ) ) {
+                    return;
+                }
+            }
+        } catch ( IOException e ) {
+            throw new RuntimeException( e );
+        } finally {
+            rw.release();
+        }
+    }
+
+    /**
+     * Finds the last commit to change each of the given entries of a folder. The folder's log is walked once, from the
+     * given commit, and the walk stops as soon as every entry has been found.
+     * @param folder A folder in a git file system
+     * @param fromCommitId The commit to start from
+     * @param names Names of entries of the folder
+     * @return The last commit to change each entry found, keyed by the entry's name
+     */
+    public static Map<String, RevCommit> getLastCommits( final Path folder,
+                                                         final String fromCommitId,
+                                                         final Collection<String> names ) {
+        final Map<String, RevCommit> lastCommits = new HashMap<String, RevCommit>();
+        final Repository repository = getRepository( folder );
+        if ( repository == null || fromCommitId == null || names.isEmpty() ) {
+            return lastCommits;
+        }
+        final String folderPath = getPathInRepository( folder );
+        final Set<String> remaining = new HashSet<String>( names );
+        final ObjectReader reader = repository.newObjectReader();
+        final RevWalk rw = new RevWalk( reader );
+        try {
+            //Only commits that change the folder are visited, as git log -- folder lists them
+            rw.setTreeFilter( folderPath.isEmpty() ? TreeFilter.ANY_DIFF : AndTreeFilter.create( PathFilter.create( folderPath ),
+                                                                                                 TreeFilter.ANY_DIFF ) );
+            rw.markStart( rw.parseCommit( ObjectId.fromString( fromCommitId ) ) );
+            for ( RevCommit commit : rw ) {
+                for ( String name : getChangedEntries( rw,
+                                                       reader,
+                                                       commit,
+                                                       folderPath ) ) {
+                    if ( remaining.remove( name ) ) {
+                        lastCommits.put( name,
+                                         commit );
+                    }
+                }
+                if ( remaining.isEmpty() ) {
+                    break;
+                }
+            }
+        } catch ( IOException e ) {
+            throw new RuntimeException( e );
+        } finally {
+            rw.release();
+            reader.release();
+        }
+        return lastCommits;
+    }
+
+    /**
+     * Lists the files below a folder, at any depth, with their blob ids. Only the commit's trees are read, not the files.
+     * @param folder A folder in a git file system
+     * @param commitId The commit
+     * @return Blob ids keyed by the file's path relative to the folder, e.g. src/main/A.java, or null if the folder is
+     * not in a git file system
+     */
+    public static Map<String, String> getBlobIds( final Path folder,
+                                                  final String commitId ) {
+        final Repository repository = getRepository( folder );
+        if ( repository == null || commitId == null ) {
+            return null;
+        }
+        final String folderPath = getPathInRepository( folder );
+        final Map<String, String> blobIds = new HashMap<String, String>();
+        final ObjectReader reader = repository.newObjectReader();
+        final RevWalk rw = new RevWalk( reader );
+        final TreeWalk tw = new TreeWalk( reader );
+        try {
+            tw.setRecursive( true );
+            if ( !folderPath.isEmpty() ) {
+                tw.setFilter( PathFilter.create( folderPath ) );
+            }
+            tw.addTree( rw.parseCommit( ObjectId.fromString( commitId ) ).getTree() );
+            while ( tw.next() ) {
+                if ( ( tw.getRawMode( 0 ) & FileMode.TYPE_MASK ) != FileMode.TYPE_FILE ) {
+                    continue;
+                }
+                final String path = tw.getPathString();
+                blobIds.put( folderPath.isEmpty() ? path : path.substring( folderPath.length() + 1 ),
+                             tw.getObjectId( 0 ).getName() );
+            }
+        } catch ( IOException e ) {
+            throw new RuntimeException( e );
+        } finally {
+            tw.release();
+            rw.release();
+            reader.release();
+        }
+        return blobIds;
+    }
+
+    /**
+     * @param path A Path in a git file system
+     * @param blobId The id of a blob in the Path's repository
+     * @return The content of the blob
+     */
+    public static InputStream openBlob( final Path path,
+                                        final String blobId ) {
+        final Repository repository = getRepository( path );
+        if ( repository == null ) {
+            throw new IllegalArgumentException( "Path '" + path.toUri() + "' is not in a git file system." );
+        }
+        try {
+            return repository.open( ObjectId.fromString( blobId ),
+                                    Constants.OBJ_BLOB ).openStream();
+        } catch ( IOException e ) {
+            throw new RuntimeException( e );
+        }
+    }
+
+    //Names of the folder's entries that differ from every parent, so merges are only blamed for their own changes
+    private static Set<String> getChangedEntries( final RevWalk rw,
+                                                  final ObjectReader reader,
+                                                  final RevCommit commit,
+                                                  final String folderPath ) throws IOException {
+        final Set<String> changed = new HashSet<String>();
+        final TreeWalk tw = new TreeWalk( reader );
+        try {
+            if ( !folderPath.isEmpty() ) {
+                tw.setFilter( PathFilter.create( folderPath ) );
+            }
+            tw.addTree( commit.getTree() );
+            for ( RevCommit parent : commit.getParents() ) {
+                rw.parseHeaders( parent );
+                tw.addTree( parent.getTree() );
+            }
+            while ( tw.next() ) {
+                //The folder and the folders containing it are entered; the folder's own entries are not
+                if ( tw.getPathString().length() <= folderPath.length() ) {
+                    if ( tw.isSubtree() ) {
+                        tw.enterSubtree();
+                    }
+                    continue;
+                }
+                if ( tw.getRawMode( 0 ) != 0 && !isSameAsAnyParent( tw ) ) {
+                    changed.add( tw.getNameString() );
+                }
+            }
+        } finally {
+            tw.release();
+        }
+        return changed;
+    }
+
+    private static boolean isSameAsAnyParent( final TreeWalk tw ) {
+        for ( int i = 1; i < tw.getTreeCount(); i++ ) {
+            if ( tw.idEqual( 0,
+                             i ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //The Path relative to the root of the repository, e.g. folder/sub for default://master@repository/folder/sub
+    private static String getPathInRepository( final Path path ) {
+        String pathString = path.toUri().getPath();
+        if ( pathString == null ) {
+            return "";
+        }
+        while ( pathString.startsWith( "/" ) ) {
+            pathString = pathString.substring( 1 );
+        }
+        while ( pathString.endsWith( "/" ) ) {
+            pathString = pathString.substring( 0,
+                                               pathString.length() - 1 );
+        }
+        return pathString;
+    }
+
+    private static Repository getRepository( final Path path ) {
+        final FileSystem fileSystem = path.getFileSystem();
+        if ( !( fileSystem instanceof JGitFileSystem ) ) {
+            return null;
+        }
+        return ( (JGitFileSystem) fileSystem ).gitRepo().getRepository();
+    }
+
+    //The branch is the user info of the Path's URI, e.g. master in default://master@repository
+    private static String getBranchName( final Path path ) {
+        final String branchName = path.toUri().getUserInfo();
+        return branchName == null || branchName.isEmpty() ? DEFAULT_BRANCH : branchName;
+    }
+
+    public interface CommitVisitor {
+
+        /**
+         * @param commit The commit
+         * @return true to visit the next commit, false to stop
+         */
+        boolean visit( RevCommit commit );
+    }
+
+}
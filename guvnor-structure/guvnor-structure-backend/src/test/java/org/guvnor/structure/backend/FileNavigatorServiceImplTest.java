@@ -0,0 +1,323 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.structure.backend;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.guvnor.structure.navigator.DataContent;
+import org.guvnor.structure.navigator.NavigatorContent;
+import org.guvnor.structure.repositories.Repository;
+import org.guvnor.structure.repositories.RepositoryService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.uberfire.io.IOService;
+import org.uberfire.java.nio.base.version.VersionAttributeView;
+import org.uberfire.java.nio.base.version.VersionAttributes;
+import org.uberfire.java.nio.base.version.VersionHistory;
+import org.uberfire.java.nio.base.version.VersionRecord;
+import org.uberfire.java.nio.file.DirectoryStream;
+import org.uberfire.java.nio.file.Path;
+import org.uberfire.java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith( MockitoJUnitRunner.class )
+public class FileNavigatorServiceImplTest {
+
+    private static final String FOLDER_URI = "default://master@repository/folder";
+
+    @Mock
+    private IOService ioService;
+
+    @Mock
+    private RepositoryService repositoryService;
+
+    private String headCommitId = "c0ffee";
+
+    //The names whose last commits were looked up, one set per walk of the folder's log
+    private final List<Set<String>> lastCommitLookups = new ArrayList<Set<String>>();
+
+    @InjectMocks
+    private FileNavigatorServiceImpl navigatorService = new FileNavigatorServiceImpl() {
+        @Override
+        protected String getHeadCommitId( final Path path ) {
+            return headCommitId;
+        }
+
+        @Override
+        protected boolean isDirectory( final Path path ) {
+            return path.getFileName().toString().startsWith( "dir" );
+        }
+
+        @Override
+        protected Map<String, LastCommit> getLastCommits( final Path folder,
+                                                          final String commitId,
+                                                          final Collection<String> names ) {
+            lastCommitLookups.add( new HashSet<String>( names ) );
+            final Map<String, LastCommit> lastCommits = new HashMap<String, LastCommit>();
+            for ( String name : names ) {
+                //Entries that the walk does not find fall back to their own history
+                if ( !name.equals( "a.txt" ) ) {
+                    lastCommits.put( name,
+                                     new LastCommit( "comment",
+                                                     "author",
+                                                     "author@example.com",
+                                                     new Date() ) );
+                }
+            }
+            return lastCommits;
+        }
+    };
+
+    private DirectoryStream<Path> stream;
+    private Path folder;
+    private List<Path> entries;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        folder = path( FOLDER_URI,
+                       "folder" );
+        //The folder is its own root, so that no breadcrumbs are listed
+        when( folder.getRoot() ).thenReturn( folder );
+
+        entries = new ArrayList<Path>();
+        for ( String name : new String[]{ "e.txt", "dirB", "a.txt", "dirA", "c.txt" } ) {
+            final Path entry = path( FOLDER_URI + "/" + name,
+                                     name );
+            mockHistory( entry );
+            entries.add( entry );
+        }
+
+        stream = mock( DirectoryStream.class );
+        when( stream.iterator() ).thenAnswer( new Answer<Iterator<Path>>() {
+            @Override
+            public Iterator<Path> answer( final InvocationOnMock invocation ) {
+                return entries.iterator();
+            }
+        } );
+        when( ioService.newDirectoryStream( folder ) ).thenReturn( stream );
+
+        final Repository repository = mock( Repository.class );
+        when( repository.getAlias() ).thenReturn( "repository" );
+        when( repositoryService.getRepository( any( org.uberfire.backend.vfs.Path.class ) ) ).thenReturn( repository );
+    }
+
+    @Test
+    public void testFoldersAreListedBeforeFiles() {
+        final NavigatorContent content = navigatorService.listContent( folder,
+                                                                       0,
+                                                                       -1 );
+
+        assertEquals( Arrays.asList( "dirA", "dirB", "a.txt", "c.txt", "e.txt" ),
+                      names( content ) );
+        assertEquals( 5,
+                      content.getTotalCount() );
+        assertFalse( content.hasMore() );
+    }
+
+    @Test
+    public void testPaging() {
+        final NavigatorContent firstPage = navigatorService.listContent( folder,
+                                                                         0,
+                                                                         2 );
+        assertEquals( Arrays.asList( "dirA", "dirB" ),
+                      names( firstPage ) );
+        assertEquals( 0,
+                      firstPage.getStartIndex() );
+        assertEquals( 5,
+                      firstPage.getTotalCount() );
+        assertTrue( firstPage.hasMore() );
+
+        final NavigatorContent lastPage = navigatorService.listContent( folder,
+                                                                        4,
+                                                                        2 );
+        assertEquals( Arrays.asList( "e.txt" ),
+                      names( lastPage ) );
+        assertFalse( lastPage.hasMore() );
+    }
+
+    @Test
+    public void testPagingBounds() {
+        final NavigatorContent beyondEnd = navigatorService.listContent( folder,
+                                                                         10,
+                                                                         2 );
+        assertTrue( beyondEnd.getContent().isEmpty() );
+        assertEquals( 5,
+                      beyondEnd.getStartIndex() );
+        assertFalse( beyondEnd.hasMore() );
+
+        assertEquals( Arrays.asList( "dirA" ),
+                      names( navigatorService.listContent( folder,
+                                                           -3,
+                                                           1 ) ) );
+        assertEquals( 5,
+                      navigatorService.listContent( folder,
+                                                    0,
+                                                    Integer.MAX_VALUE ).getContent().size() );
+        assertTrue( navigatorService.listContent( folder,
+                                                  0,
+                                                  0 ).getContent().isEmpty() );
+    }
+
+    @Test
+    public void testListingIsCachedWhilstHeadCommitIsUnchanged() {
+        navigatorService.listContent( folder,
+                                      0,
+                                      -1 );
+        navigatorService.listContent( folder,
+                                      0,
+                                      -1 );
+        verify( ioService,
+                times( 1 ) ).newDirectoryStream( folder );
+
+        headCommitId = "deadbeef";
+        navigatorService.listContent( folder,
+                                      0,
+                                      -1 );
+        verify( ioService,
+                times( 2 ) ).newDirectoryStream( folder );
+    }
+
+    @Test
+    public void testListingIsNotCachedWithoutHeadCommit() {
+        headCommitId = null;
+        navigatorService.listContent( folder,
+                                      0,
+                                      -1 );
+        navigatorService.listContent( folder,
+                                      0,
+                                      -1 );
+        verify( ioService,
+                times( 2 ) ).newDirectoryStream( folder );
+    }
+
+    @Test
+    public void testDirectoryStreamIsClosed() {
+        navigatorService.listContent( folder,
+                                      0,
+                                      -1 );
+        verify( stream ).close();
+    }
+
+    @Test
+    public void testLastCommitsOfAPageAreResolvedInOneWalk() {
+        navigatorService.listContent( folder,
+                                      0,
+                                      2 );
+        navigatorService.listContent( folder,
+                                      0,
+                                      2 );
+
+        //dirA and dirB are listed; their last commits are found by a single walk and then reused
+        assertEquals( 1,
+                      lastCommitLookups.size() );
+        assertEquals( new HashSet<String>( Arrays.asList( "dirA", "dirB" ) ),
+                      lastCommitLookups.get( 0 ) );
+
+        //The next page only looks up the entries not resolved yet
+        navigatorService.listContent( folder,
+                                      1,
+                                      3 );
+        assertEquals( 2,
+                      lastCommitLookups.size() );
+        assertEquals( new HashSet<String>( Arrays.asList( "a.txt", "c.txt" ) ),
+                      lastCommitLookups.get( 1 ) );
+
+        //Only the entry the walk did not find reads its own history
+        verify( ioService,
+                times( 1 ) ).getFileAttributeView( entries.get( 2 ),
+                                                   VersionAttributeView.class );
+        for ( Path found : Arrays.asList( entries.get( 0 ), entries.get( 1 ), entries.get( 3 ), entries.get( 4 ) ) ) {
+            verify( ioService,
+                    never() ).getFileAttributeView( found,
+                                                    VersionAttributeView.class );
+        }
+    }
+
+    @Test
+    public void testLastCommitsAreReadFromEntryHistoryWithoutHeadCommit() {
+        headCommitId = null;
+        navigatorService.listContent( folder,
+                                      0,
+                                      2 );
+
+        assertTrue( lastCommitLookups.isEmpty() );
+        verify( ioService,
+                times( 1 ) ).getFileAttributeView( entries.get( 3 ),
+                                                   VersionAttributeView.class );
+        verify( ioService,
+                times( 1 ) ).getFileAttributeView( entries.get( 1 ),
+                                                   VersionAttributeView.class );
+        verify( ioService,
+                never() ).getFileAttributeView( entries.get( 0 ),
+                                                VersionAttributeView.class );
+    }
+
+    private List<String> names( final NavigatorContent content ) {
+        final List<String> names = new ArrayList<String>();
+        for ( DataContent dataContent : content.getContent() ) {
+            names.add( dataContent.getPath().getFileName() );
+        }
+        return names;
+    }
+
+    private Path path( final String uri,
+                       final String name ) {
+        final Path fileName = mock( Path.class );
+        when( fileName.toString() ).thenReturn( name );
+        final Path path = mock( Path.class );
+        when( path.getFileName() ).thenReturn( fileName );
+        when( path.toUri() ).thenReturn( URI.create( uri ) );
+        return path;
+    }
+
+    private void mockHistory( final Path path ) {
+        final VersionRecord record = mock( VersionRecord.class );
+        when( record.comment() ).thenReturn( "comment" );
+        when( record.author() ).thenReturn( "author" );
+        final VersionHistory history = mock( VersionHistory.class );
+        when( history.records() ).thenReturn( Arrays.asList( record ) );
+        final FileTime lastModified = mock( FileTime.class );
+        when( lastModified.toMillis() ).thenReturn( 0L );
+        final VersionAttributes attributes = mock( VersionAttributes.class );
+        when( attributes.history() ).thenReturn( history );
+        when( attributes.lastModifiedTime() ).thenReturn( lastModified );
+        final VersionAttributeView view = mock( VersionAttributeView.class );
+        when( view.readAttributes() ).thenReturn( attributes );
+        when( ioService.getFileAttributeView( path,
+                                              VersionAttributeView.class ) ).thenReturn( view );
+    }
+
+}
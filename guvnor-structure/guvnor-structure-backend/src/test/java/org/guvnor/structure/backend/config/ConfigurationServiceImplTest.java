@@ -0,0 +1,293 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.structure.backend.config;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.guvnor.structure.repositories.Repository;
+import org.guvnor.structure.server.config.ConfigGroup;
+import org.guvnor.structure.server.config.ConfigType;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.uberfire.io.IOService;
+import org.uberfire.java.nio.file.DirectoryStream;
+import org.uberfire.java.nio.file.Path;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith( MockitoJUnitRunner.class )
+public class ConfigurationServiceImplTest {
+
+    private static final String SYSTEM_URI = "git://system";
+
+    @Mock
+    private Repository systemRepository;
+
+    @Mock
+    private ConfigGroupMarshaller marshaller;
+
+    @Mock
+    private IOService ioService;
+
+    //Config files that differ between the commits given to the callback, or null if the commits cannot be compared
+    private Set<String> changedConfigFiles = null;
+
+    @InjectMocks
+    private ConfigurationServiceImpl configurationService = new ConfigurationServiceImpl() {
+        @Override
+        protected String getHeadCommitId() {
+            //The system repository's history is not relevant to these tests
+            return null;
+        }
+
+        @Override
+        protected Set<String> getChangedConfigFiles( final String fromCommitId,
+                                                     final String toCommitId ) {
+            return changedConfigFiles;
+        }
+
+        @Override
+        protected void updateLocalCommitId( final String parentCommitId,
+                                            final String fileName ) {
+        }
+    };
+
+    private Path root;
+
+    private ConfigGroup repository1;
+    private ConfigGroup repository2;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        repository1 = configGroup( "repository1" );
+        repository2 = configGroup( "repository2" );
+
+        root = mock( Path.class );
+        final Path path1 = configPath( "repository1.repository" );
+        final Path path2 = configPath( "repository2.repository" );
+        final DirectoryStream<Path> stream = mock( DirectoryStream.class );
+        when( stream.iterator() ).thenReturn( Arrays.asList( path1,
+                                                             path2 ).iterator(),
+                                              Arrays.asList( path1,
+                                                             path2 ).iterator() );
+
+        when( systemRepository.getUri() ).thenReturn( SYSTEM_URI );
+        when( ioService.get( SYSTEM_URI ) ).thenReturn( root );
+        when( ioService.newDirectoryStream( eq( root ),
+                                            any( DirectoryStream.Filter.class ) ) ).thenReturn( stream );
+        when( ioService.readAllString( path1 ) ).thenReturn( "repository1" );
+        when( ioService.readAllString( path2 ) ).thenReturn( "repository2" );
+        when( marshaller.unmarshall( "repository1" ) ).thenReturn( repository1 );
+        when( marshaller.unmarshall( "repository2" ) ).thenReturn( repository2 );
+    }
+
+    @Test
+    public void testGetConfigurationByName() {
+        assertSame( repository2,
+                    configurationService.getConfiguration( ConfigType.REPOSITORY,
+                                                           "repository2" ) );
+        assertSame( repository1,
+                    configurationService.getConfiguration( ConfigType.REPOSITORY,
+                                                           "repository1" ) );
+        assertNull( configurationService.getConfiguration( ConfigType.REPOSITORY,
+                                                           "unknown" ) );
+        assertEquals( 2,
+                      configurationService.getConfiguration( ConfigType.REPOSITORY ).size() );
+
+        //All lookups are served by the same cached load
+        verify( ioService,
+                times( 2 ) ).readAllString( any( Path.class ) );
+    }
+
+    @Test
+    public void testCallbackInvalidatesIndex() {
+        assertSame( repository1,
+                    configurationService.getConfiguration( ConfigType.REPOSITORY,
+                                                           "repository1" ) );
+
+        //The changed config files are unknown so everything is reloaded
+        assertNull( configurationService.callback( "commit" ) );
+
+        assertSame( repository1,
+                    configurationService.getConfiguration( ConfigType.REPOSITORY,
+                                                           "repository1" ) );
+        verify( ioService,
+                times( 2 ) ).newDirectoryStream( any( Path.class ),
+                                                 any( DirectoryStream.Filter.class ) );
+    }
+
+    @Test
+    public void testUpdateConfigurationPatchesCache() {
+        assertSame( repository1,
+                    configurationService.getConfiguration( ConfigType.REPOSITORY,
+                                                           "repository1" ) );
+
+        final ConfigGroup updated = configGroup( "repository1" );
+        when( root.resolve( "repository1.repository" ) ).thenReturn( mock( Path.class ) );
+        when( marshaller.marshall( repository1 ) ).thenReturn( "repository1-updated" );
+        when( marshaller.unmarshall( "repository1-updated" ) ).thenReturn( updated );
+
+        configurationService.updateConfiguration( repository1 );
+
+        assertSame( updated,
+                    configurationService.getConfiguration( ConfigType.REPOSITORY,
+                                                           "repository1" ) );
+        assertSame( repository2,
+                    configurationService.getConfiguration( ConfigType.REPOSITORY,
+                                                           "repository2" ) );
+        //The other config files are not re-read
+        verify( ioService,
+                times( 1 ) ).newDirectoryStream( any( Path.class ),
+                                                 any( DirectoryStream.Filter.class ) );
+    }
+
+    @Test
+    public void testRemoveConfigurationPatchesCache() {
+        assertEquals( 2,
+                      configurationService.getConfiguration( ConfigType.REPOSITORY ).size() );
+
+        final Path path2 = mock( Path.class );
+        when( root.resolve( "repository2.repository" ) ).thenReturn( path2 );
+        when( ioService.exists( path2 ) ).thenReturn( true );
+        when( ioService.deleteIfExists( path2 ) ).thenReturn( true );
+        configurationService.removeConfiguration( repository2 );
+
+        assertNull( configurationService.getConfiguration( ConfigType.REPOSITORY,
+                                                           "repository2" ) );
+        assertEquals( 1,
+                      configurationService.getConfiguration( ConfigType.REPOSITORY ).size() );
+        verify( ioService,
+                times( 1 ) ).newDirectoryStream( any( Path.class ),
+                                                 any( DirectoryStream.Filter.class ) );
+    }
+
+    @Test
+    public void testCacheIsNotPatchedWhenBatchFails() {
+        assertSame( repository1,
+                    configurationService.getConfiguration( ConfigType.REPOSITORY,
+                                                           "repository1" ) );
+
+        when( root.resolve( "repository1.repository" ) ).thenReturn( mock( Path.class ) );
+        when( marshaller.marshall( repository1 ) ).thenReturn( "repository1-updated" );
+        doThrow( new RuntimeException( "commit failed" ) ).when( ioService ).endBatch();
+
+        try {
+            configurationService.updateConfiguration( repository1 );
+            fail( "The failure to commit should be reported" );
+        } catch ( RuntimeException e ) {
+            assertEquals( "commit failed",
+                          e.getMessage() );
+        }
+
+        assertSame( repository1,
+                    configurationService.getConfiguration( ConfigType.REPOSITORY,
+                                                           "repository1" ) );
+        verify( marshaller,
+                never() ).unmarshall( "repository1-updated" );
+    }
+
+    @Test
+    public void testCacheIsNotPatchedWhenNothingIsDeleted() {
+        assertEquals( 2,
+                      configurationService.getConfiguration( ConfigType.REPOSITORY ).size() );
+
+        final Path path2 = mock( Path.class );
+        when( root.resolve( "repository2.repository" ) ).thenReturn( path2 );
+        when( ioService.exists( path2 ) ).thenReturn( true );
+        when( ioService.deleteIfExists( path2 ) ).thenReturn( false );
+        assertFalse( configurationService.removeConfiguration( repository2 ) );
+
+        assertSame( repository2,
+                    configurationService.getConfiguration( ConfigType.REPOSITORY,
+                                                           "repository2" ) );
+    }
+
+    @Test
+    public void testCallbackOnlyRereadsConfigFilesChangedBetweenCommits() {
+        assertEquals( 2,
+                      configurationService.getConfiguration( ConfigType.REPOSITORY ).size() );
+
+        final Path path2 = mock( Path.class );
+        when( root.resolve( "repository2.repository" ) ).thenReturn( path2 );
+        when( ioService.exists( path2 ) ).thenReturn( true );
+        when( ioService.readAllString( path2 ) ).thenReturn( "repository2-updated" );
+        final ConfigGroup updated = configGroup( "repository2" );
+        when( marshaller.unmarshall( "repository2-updated" ) ).thenReturn( updated );
+        changedConfigFiles = new HashSet<String>( Arrays.asList( "repository2.repository" ) );
+
+        final Map<ConfigType, Set<String>> changes = configurationService.callback( "commit" );
+
+        assertEquals( Collections.singleton( "repository2" ),
+                      changes.get( ConfigType.REPOSITORY ) );
+        assertSame( updated,
+                    configurationService.getConfiguration( ConfigType.REPOSITORY,
+                                                           "repository2" ) );
+        verify( ioService,
+                times( 1 ) ).newDirectoryStream( any( Path.class ),
+                                                 any( DirectoryStream.Filter.class ) );
+
+        //Commits that change no config file change nothing
+        changedConfigFiles = Collections.emptySet();
+        assertTrue( configurationService.callback( "commit2" ).isEmpty() );
+    }
+
+    @Test
+    public void testConfigFilesChangedByThisNodeAreDiscardedWhenUpToDate() {
+        assertEquals( 2,
+                      configurationService.getConfiguration( ConfigType.REPOSITORY ).size() );
+
+        //The watch reports this node's own change to repository2
+        configurationService.addChangedConfigFile( "repository2.repository" );
+        configurationService.upToDate( "commit" );
+
+        //The next change from another node only re-reads what it changed
+        final Path path1 = mock( Path.class );
+        when( root.resolve( "repository1.repository" ) ).thenReturn( path1 );
+        when( ioService.exists( path1 ) ).thenReturn( true );
+        when( ioService.readAllString( path1 ) ).thenReturn( "repository1" );
+        changedConfigFiles = Collections.singleton( "repository1.repository" );
+        configurationService.callback( "commit2" );
+        verify( root,
+                never() ).resolve( "repository2.repository" );
+    }
+
+    private Path configPath( final String fileName ) {
+        final Path path = mock( Path.class );
+        final Path name = mock( Path.class );
+        when( name.toString() ).thenReturn( fileName );
+        when( path.getFileName() ).thenReturn( name );
+        return path;
+    }
+
+    private ConfigGroup configGroup( final String name ) {
+        final ConfigGroup configGroup = new ConfigGroup();
+        configGroup.setName( name );
+        configGroup.setType( ConfigType.REPOSITORY );
+        return configGroup;
+    }
+
+}
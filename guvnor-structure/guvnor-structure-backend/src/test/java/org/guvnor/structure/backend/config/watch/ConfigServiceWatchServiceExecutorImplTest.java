@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.structure.backend.config.watch;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.enterprise.event.Event;
+
+import org.guvnor.structure.config.SystemRepositoryChangedEvent;
+import org.guvnor.structure.repositories.Repository;
+import org.guvnor.structure.server.config.ConfigType;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.uberfire.io.IOService;
+import org.uberfire.java.nio.file.WatchKey;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+@RunWith( MockitoJUnitRunner.class )
+public class ConfigServiceWatchServiceExecutorImplTest {
+
+    @Mock
+    private Repository systemRepository;
+
+    @Mock
+    private IOService ioService;
+
+    @Mock
+    private Event<SystemRepositoryChangedEvent> repoChangedEvent;
+
+    @Mock
+    private Event<SystemRepositoryChangedEvent> orgUnitChangedEvent;
+
+    @Mock
+    private Event<SystemRepositoryChangedEvent> changedEvent;
+
+    @Mock
+    private AsyncWatchServiceCallback callback;
+
+    private ConfigServiceWatchServiceExecutorImpl executor;
+
+    @Before
+    public void setup() {
+        executor = new ConfigServiceWatchServiceExecutorImpl() {
+            @Override
+            protected String getHeadCommitId() {
+                return "head";
+            }
+        };
+        executor.setConfig( systemRepository,
+                            ioService,
+                            repoChangedEvent,
+                            orgUnitChangedEvent,
+                            changedEvent );
+    }
+
+    @Test
+    public void testLocalCommitIsIgnored() {
+        executor.execute( mock( WatchKey.class ),
+                          "head",
+                          callback );
+
+        verify( callback,
+                never() ).callback( anyString() );
+        verify( callback ).upToDate( "head" );
+        verify( changedEvent,
+                never() ).fire( any( SystemRepositoryChangedEvent.class ) );
+    }
+
+    @Test
+    public void testChangesAreNotified() {
+        final Map<ConfigType, Set<String>> changes = new HashMap<ConfigType, Set<String>>();
+        changes.put( ConfigType.REPOSITORY,
+                     Collections.singleton( "repository1" ) );
+        when( callback.callback( "head" ) ).thenReturn( changes );
+
+        executor.execute( mock( WatchKey.class ),
+                          "first",
+                          callback );
+
+        final ArgumentCaptor<SystemRepositoryChangedEvent> eventCaptor = ArgumentCaptor.forClass( SystemRepositoryChangedEvent.class );
+        verify( repoChangedEvent ).fire( eventCaptor.capture() );
+        verify( orgUnitChangedEvent ).fire( any( SystemRepositoryChangedEvent.class ) );
+        verify( changedEvent ).fire( any( SystemRepositoryChangedEvent.class ) );
+
+        final SystemRepositoryChangedEvent event = eventCaptor.getValue();
+        assertEquals( "head",
+                      event.getCommitId() );
+        assertTrue( event.hasChangedConfigs() );
+        assertEquals( Collections.singleton( "repository1" ),
+                      event.getChangedConfigNames( ConfigType.REPOSITORY.name() ) );
+        assertFalse( event.isChanged( ConfigType.DEPLOYMENT.name() ) );
+    }
+
+    @Test
+    public void testNoEventsWhenChangesAreAlreadyApplied() {
+        when( callback.callback( "head" ) ).thenReturn( Collections.<ConfigType, Set<String>>emptyMap() );
+
+        executor.execute( mock( WatchKey.class ),
+                          "first",
+                          callback );
+
+        verify( repoChangedEvent,
+                never() ).fire( any( SystemRepositoryChangedEvent.class ) );
+        verify( changedEvent,
+                never() ).fire( any( SystemRepositoryChangedEvent.class ) );
+    }
+
+}
@@ -17,7 +17,14 @@
 package org.guvnor.structure.backend.repositories;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.guvnor.structure.config.SystemRepositoryChangedEvent;
 
 import org.guvnor.structure.repositories.NewBranchEvent;
 import org.guvnor.structure.repositories.Repository;
@@ -45,6 +52,9 @@ public class ConfiguredRepositoriesTest {
     @Mock
     RepositoryFactory repositoryFactory;
 
+    @Mock
+    RepositoryBootstrapExecutorManagerFactory executorManagerFactory;
+
     private ConfiguredRepositories configuredRepositories;
 
     @Before
@@ -59,7 +69,8 @@ public class ConfiguredRepositoriesTest {
 
         configuredRepositories = new ConfiguredRepositories( configurationService,
                                                              repositoryFactory,
-                                                             SystemRepository.SYSTEM_REPO );
+                                                             SystemRepository.SYSTEM_REPO,
+                                                             executorManagerFactory );
 
         configuredRepositories.loadRepositories();
 
@@ -68,6 +79,7 @@ public class ConfiguredRepositoriesTest {
     private ConfigGroup addRepository( final String alias,
                                        final String... branches ) {
         final ConfigGroup configGroup = new ConfigGroup();
+        configGroup.setName( alias );
         final GitRepository repository = new GitRepository( alias );
 
         final HashMap<String, Path> branchMap = new HashMap<>();
@@ -150,4 +162,122 @@ public class ConfiguredRepositoriesTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testNewBranchDoesNotChangeRepositoryInUse() throws Exception {
+        final Repository single = configuredRepositories.getRepositoryByRepositoryAlias( "single" );
+        configuredRepositories.onNewBranch( new NewBranchEvent( "single",
+                                                                "mybranch",
+                                                                mock( Path.class ),
+                                                                System.currentTimeMillis() ) );
+
+        assertEquals( 1, single.getBranches().size() );
+        assertNull( single.getBranchRoot( "mybranch" ) );
+        assertEquals( single.getRoot(),
+                      configuredRepositories.getRepositoryByRepositoryAlias( "single" ).getRoot() );
+    }
+
+    @Test
+    public void testFlushLogsRepositoryThatFailsToBuild() throws Exception {
+        final ConfigGroup broken = new ConfigGroup();
+        broken.setName( "single" );
+        broken.setDescription( "broken" );
+        when( repositoryFactory.newRepository( broken ) ).thenThrow( new RuntimeException( "Unable to open file system" ) );
+        when( configurationService.getConfiguration( REPOSITORY, "single" ) ).thenReturn( broken );
+
+        final Map<String, Set<String>> changes = new HashMap<>();
+        changes.put( REPOSITORY.name(), Collections.singleton( "single" ) );
+        configuredRepositories.flush( new SystemRepositoryChangedEvent( "commit", changes ) );
+
+        assertFalse( configuredRepositories.containsAlias( "single" ) );
+        assertTrue( configuredRepositories.containsAlias( "multibranch" ) );
+    }
+
+    @Test
+    public void testFlushReloadsChangedRepositoriesOnly() throws Exception {
+        final Repository multibranch = configuredRepositories.getRepositoryByRepositoryAlias( "multibranch" );
+        final ConfigGroup updated = addRepository( "single", "master", "dev" );
+        updated.setDescription( "updated" );
+        when( configurationService.getConfiguration( REPOSITORY, "single" ) ).thenReturn( updated );
+
+        final Map<String, Set<String>> changes = new HashMap<>();
+        changes.put( REPOSITORY.name(), Collections.singleton( "single" ) );
+        configuredRepositories.flush( new SystemRepositoryChangedEvent( "commit", changes ) );
+
+        assertEquals( 2, configuredRepositories.getRepositoryByRepositoryAlias( "single" ).getBranches().size() );
+        assertSame( multibranch, configuredRepositories.getRepositoryByRepositoryAlias( "multibranch" ) );
+        verify( configurationService, times( 1 ) ).getConfiguration( REPOSITORY );
+    }
+
+    @Test
+    public void testFlushRemovesDeletedRepository() throws Exception {
+        final Map<String, Set<String>> changes = new HashMap<>();
+        changes.put( REPOSITORY.name(), Collections.singleton( "single" ) );
+        configuredRepositories.flush( new SystemRepositoryChangedEvent( "commit", changes ) );
+
+        assertFalse( configuredRepositories.containsAlias( "single" ) );
+        assertEquals( 1, configuredRepositories.getAllConfiguredRepositories().size() );
+    }
+
+    @Test
+    public void testReloadOnlyBuildsChangedRepositories() throws Exception {
+        final Repository single = configuredRepositories.getRepositoryByRepositoryAlias( "single" );
+
+        configuredRepositories.loadRepositories();
+
+        assertSame( single, configuredRepositories.getRepositoryByRepositoryAlias( "single" ) );
+        verify( repositoryFactory, times( 2 ) ).newRepository( any( ConfigGroup.class ) );
+    }
+
+    @Test
+    public void testRepositoryByRootPathIsReplacedOnUpdate() throws Exception {
+        final Path devRoot = configuredRepositories.getRepositoryByRepositoryAlias( "multibranch" ).getBranchRoot( "dev" );
+
+        final GitRepository updated = new GitRepository( "multibranch" );
+        final HashMap<String, Path> branchMap = new HashMap<>();
+        branchMap.put( "master", mock( Path.class ) );
+        updated.setBranches( branchMap );
+        updated.setRoot( branchMap.get( "master" ) );
+        configuredRepositories.update( updated );
+
+        assertNull( configuredRepositories.getRepositoryByRootPath( devRoot ) );
+        assertSame( updated, configuredRepositories.getRepositoryByRootPath( updated.getRoot() ) );
+        assertEquals( 2, configuredRepositories.getAllConfiguredRepositories().size() );
+    }
+
+    @Test
+    public void testParallelLoadIsolatesFailingRepository() throws Exception {
+        final ArrayList<ConfigGroup> configGroups = new ArrayList<>();
+        configGroups.add( addRepository( "first", "master" ) );
+        final ConfigGroup broken = new ConfigGroup();
+        broken.setName( "broken" );
+        when( repositoryFactory.newRepository( broken ) ).thenThrow( new RuntimeException( "Unable to open file system" ) );
+        configGroups.add( broken );
+        configGroups.add( addRepository( "last", "master", "dev" ) );
+        when( configurationService.getConfiguration( REPOSITORY ) ).thenReturn( configGroups );
+
+        final ExecutorService executorService = Executors.newFixedThreadPool( 4 );
+        final RepositoryBootstrapExecutorManager executorManager = new RepositoryBootstrapExecutorManager();
+        executorManager.setExecutorService( executorService );
+        when( executorManagerFactory.getExecutorManager() ).thenReturn( executorManager );
+
+        final ConfiguredRepositories parallel = new ConfiguredRepositories( configurationService,
+                                                                            repositoryFactory,
+                                                                            SystemRepository.SYSTEM_REPO,
+                                                                            executorManagerFactory );
+        parallel.setBootstrapThreads( 4 );
+        try {
+            parallel.loadRepositories();
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        assertEquals( 2, parallel.getAllConfiguredRepositories().size() );
+        assertEquals( "first", parallel.getAllConfiguredRepositories().get( 0 ).getAlias() );
+        assertEquals( "last", parallel.getAllConfiguredRepositories().get( 1 ).getAlias() );
+        assertFalse( parallel.containsAlias( "broken" ) );
+        assertEquals( 3, parallel.getBuildTimes().size() );
+        //The sequential load in setUp does not need the managed executor
+        verify( executorManagerFactory, times( 1 ) ).getExecutorManager();
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.guvnor.structure.backend.repositories;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.guvnor.structure.repositories.Repository;
+import org.junit.Before;
+import org.junit.Test;
+import org.uberfire.java.nio.base.version.VersionRecord;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class RepositoryHistoryCacheTest {
+
+    private Repository repository;
+    private List<VersionRecord> records;
+    private String headCommitId;
+    //Number of commits visited by each walk of the log
+    private List<Integer> walks;
+    private RepositoryHistoryCache cache;
+
+    @Before
+    public void setup() {
+        //Newest first, as listed by git log
+        records = new ArrayList<VersionRecord>();
+        for ( int i = 24; i >= 0; i-- ) {
+            final VersionRecord record = mock( VersionRecord.class );
+            when( record.id() ).thenReturn( "commit" + i );
+            records.add( record );
+        }
+        headCommitId = "commit24";
+        walks = new ArrayList<Integer>();
+
+        repository = mock( Repository.class );
+        when( repository.getAlias() ).thenReturn( "repo" );
+
+        cache = new RepositoryHistoryCache( 10 ) {
+            @Override
+            protected String getHeadCommitId( final Repository repository ) {
+                return headCommitId;
+            }
+
+            @Override
+            protected void walkHistory( final Repository repository,
+                                        final String headCommitId,
+                                        final HistoryVisitor visitor ) {
+                int visited = 0;
+                for ( VersionRecord record : records ) {
+                    visited++;
+                    if ( !visitor.visit( record ) ) {
+                        break;
+                    }
+                }
+                walks.add( visited );
+            }
+        };
+    }
+
+    @Test
+    public void testFirstPagesAreServedFromWindow() {
+        final List<VersionRecord> firstPage = cache.getHistory( repository,
+                                                                0,
+                                                                5 );
+        assertEquals( 5,
+                      firstPage.size() );
+        assertEquals( "commit24",
+                      firstPage.get( 0 ).id() );
+
+        final List<VersionRecord> secondPage = cache.getHistoryAfter( repository,
+                                                                      "commit20",
+                                                                      5 );
+        assertEquals( 5,
+                      secondPage.size() );
+        assertEquals( "commit19",
+                      secondPage.get( 0 ).id() );
+        assertEquals( "commit15",
+                      secondPage.get( 4 ).id() );
+
+        //The window is read once, stopping one commit after its end
+        assertEquals( 1,
+                      walks.size() );
+        assertEquals( 11,
+                      (int) walks.get( 0 ) );
+    }
+
+    @Test
+    public void testPagesBeyondWindowStopAtTheEndOfThePage() {
+        final List<VersionRecord> page = cache.getHistory( repository,
+                                                           12,
+                                                           17 );
+        assertEquals( 5,
+                      page.size() );
+        assertEquals( "commit12",
+                      page.get( 0 ).id() );
+        assertEquals( "commit8",
+                      page.get( 4 ).id() );
+        assertEquals( 17,
+                      (int) walks.get( 1 ) );
+
+        final List<VersionRecord> pageAfter = cache.getHistoryAfter( repository,
+                                                                     "commit8",
+                                                                     3 );
+        assertEquals( 3,
+                      pageAfter.size() );
+        assertEquals( "commit7",
+                      pageAfter.get( 0 ).id() );
+        assertEquals( "commit5",
+                      pageAfter.get( 2 ).id() );
+        assertEquals( 20,
+                      (int) walks.get( 2 ) );
+
+        final List<VersionRecord> lastPage = cache.getHistory( repository,
+                                                               20,
+                                                               30 );
+        assertEquals( 5,
+                      lastPage.size() );
+        assertEquals( "commit0",
+                      lastPage.get( 4 ).id() );
+
+        assertEquals( 25,
+                      cache.getHistory( repository,
+                                        0,
+                                        -1 ).size() );
+        assertTrue( cache.getHistoryAfter( repository,
+                                           "unknown",
+                                           5 ).isEmpty() );
+    }
+
+    @Test
+    public void testNewHeadReplacesWindow() {
+        cache.getHistory( repository,
+                          0,
+                          5 );
+        cache.getHistory( repository,
+                          0,
+                          5 );
+        assertEquals( 1,
+                      walks.size() );
+
+        //A commit pushed from outside of the workbench is seen as soon as the branch moves
+        final VersionRecord record = mock( VersionRecord.class );
+        when( record.id() ).thenReturn( "commit25" );
+        records.add( 0,
+                     record );
+        headCommitId = "commit25";
+
+        final List<VersionRecord> page = cache.getHistory( repository,
+                                                           0,
+                                                           5 );
+        assertEquals( "commit25",
+                      page.get( 0 ).id() );
+        assertEquals( 2,
+                      walks.size() );
+    }
+
+    @Test
+    public void testVersionUri() {
+        assertEquals( "default://0123abcd@repo/",
+                      RepositoryHistoryCache.getVersionUri( "default://master@repo/",
+                                                            "0123abcd" ) );
+        assertEquals( "default://repo/",
+                      RepositoryHistoryCache.getVersionUri( "default://repo/",
+                                                            "0123abcd" ) );
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.structure.backend.repositories.git;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.net.URI;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.uberfire.java.nio.file.FileSystem;
+import org.uberfire.java.nio.file.Path;
+import org.uberfire.java.nio.fs.jgit.JGitFileSystem;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class GitCommitsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Git git;
+
+    private Path root;
+
+    @Before
+    public void setup() throws Exception {
+        git = Git.init().setDirectory( folder.getRoot() ).call();
+
+        final JGitFileSystem fileSystem = mock( JGitFileSystem.class );
+        when( fileSystem.gitRepo() ).thenReturn( git );
+        root = mock( Path.class );
+        when( root.getFileSystem() ).thenReturn( fileSystem );
+        when( root.toUri() ).thenReturn( URI.create( "default://master@system" ) );
+    }
+
+    @Test
+    public void testHeadCommitIdIsTheBranchTip() throws Exception {
+        assertNull( GitCommits.getHeadCommitId( root ) );
+
+        commit( "first",
+                "a.repository" );
+        final RevCommit second = commit( "second",
+                                         "b.repository" );
+
+        assertEquals( second.getName(),
+                      GitCommits.getHeadCommitId( root ) );
+    }
+
+    @Test
+    public void testOnlyChangeToFile() throws Exception {
+        final RevCommit first = commit( "first",
+                                        "a.repository",
+                                        "b.repository" );
+        final RevCommit second = commit( "second",
+                                         "a.repository" );
+        final RevCommit third = commit( "third",
+                                        "a.repository",
+                                        "b.repository" );
+
+        assertTrue( GitCommits.isOnlyChangeTo( root,
+                                               first.getName(),
+                                               second.getName(),
+                                               "a.repository" ) );
+        //Changes to other files are made by someone else
+        assertFalse( GitCommits.isOnlyChangeTo( root,
+                                                second.getName(),
+                                                third.getName(),
+                                                "a.repository" ) );
+        //As are commits on top of another parent
+        assertFalse( GitCommits.isOnlyChangeTo( root,
+                                                first.getName(),
+                                                third.getName(),
+                                                "a.repository" ) );
+    }
+
+    @Test
+    public void testOtherFileSystemsHaveNoCommits() {
+        final Path path = mock( Path.class );
+        when( path.getFileSystem() ).thenReturn( mock( FileSystem.class ) );
+
+        assertNull( GitCommits.getHeadCommitId( path ) );
+        assertFalse( GitCommits.isOnlyChangeTo( path,
+                                                "parent",
+                                                "commit",
+                                                "a.repository" ) );
+    }
+
+    private RevCommit commit( final String content,
+                              final String... fileNames ) throws Exception {
+        for ( String fileName : fileNames ) {
+            final FileWriter writer = new FileWriter( new File( folder.getRoot(),
+                                                                fileName ) );
+            try {
+                writer.write( content );
+            } finally {
+                writer.close();
+            }
+            git.add().addFilepattern( fileName ).call();
+        }
+        return git.commit().setMessage( content ).call();
+    }
+
+}
@@ -44,6 +44,10 @@ import static org.uberfire.commons.validation.PortablePreconditions.*;
 public class TreeNavigator extends Composite implements Navigator {
 
     private static final String LAZY_LOAD = "Loading...";
+    private static final String LOAD_MORE = "Load more...";
+
+    //Folders are listed a page at a time; further pages are loaded on request
+    private static final int PAGE_SIZE = 100;
 
     @Inject
     private DotResourceTypeDefinition hiddenTypeDef;
@@ -65,7 +69,7 @@ public class TreeNavigator extends Composite implements Navigator {
             @Override
             public void onOpen( final OpenEvent<TreeItem> event ) {
                 if ( needsLoading( event.getTarget() ) && event.getTarget().getUserObject() instanceof Path ) {
-                    loadContent( new TreeNavigatorItemImpl( event.getTarget() ), (Path) event.getTarget().getUserObject() );
+                    loadContent( new TreeNavigatorItemImpl( event.getTarget() ), (Path) event.getTarget().getUserObject(), 0 );
                 }
             }
         } );
@@ -73,8 +77,12 @@ public class TreeNavigator extends Composite implements Navigator {
         tree.addSelectionHandler( new SelectionHandler<TreeItem>() {
             @Override
             public void onSelection( SelectionEvent<TreeItem> event ) {
-                if ( fileActionCommand != null ) {
-                    final Object userObject = event.getSelectedItem().getUserObject();
+                final Object userObject = event.getSelectedItem().getUserObject();
+                if ( userObject instanceof NextPage ) {
+                    event.getSelectedItem().remove();
+                    final NextPage nextPage = (NextPage) userObject;
+                    loadContent( nextPage.parent, nextPage.path, nextPage.startIndex );
+                } else if ( fileActionCommand != null ) {
                     if ( userObject != null && userObject instanceof Path ) {
                         fileActionCommand.execute( (Path) userObject );
                     }
@@ -83,8 +91,9 @@ public class TreeNavigator extends Composite implements Navigator {
         } );
     }
 
-    private void loadContent( final NavigatorItem parent,
-                              final Path path ) {
+    private void loadContent( final TreeNavigatorItemImpl parent,
+                              final Path path,
+                              final int startIndex ) {
         if ( path != null ) {
             navigatorService.call( new RemoteCallback<NavigatorContent>() {
                 @Override
@@ -104,17 +113,22 @@ public class TreeNavigator extends Composite implements Navigator {
                             }
                         }
                     }
+                    if ( response.hasMore() ) {
+                        parent.addNextPage( new NextPage( parent,
+                                                          path,
+                                                          response.getStartIndex() + response.getContent().size() ) );
+                    }
                 }
-            } ).listContent( path );
+            } ).listContent( path, startIndex, PAGE_SIZE );
         }
     }
 
     @Override
     public void loadContent( final Path path ) {
-        final NavigatorItem parent = new TreeNavigatorItemImpl( new TreeItem( TreeItem.Type.FOLDER, path.getFileName() ) );
-        tree.addItem( ( (TreeNavigatorItemImpl) parent ).parent );
+        final TreeNavigatorItemImpl parent = new TreeNavigatorItemImpl( new TreeItem( TreeItem.Type.FOLDER, path.getFileName() ) );
+        tree.addItem( parent.parent );
 
-        loadContent( parent, path );
+        loadContent( parent, path, 0 );
     }
 
     private boolean needsLoading( final TreeItem item ) {
@@ -146,6 +160,11 @@ public class TreeNavigator extends Composite implements Navigator {
             newFile.setUserObject( child );
         }
 
+        private void addNextPage( final NextPage nextPage ) {
+            final TreeItem loadMore = parent.addItem( TreeItem.Type.ITEM, LOAD_MORE );
+            loadMore.setUserObject( nextPage );
+        }
+
         private void checkCleanupLoading() {
             if ( parent.getChild( 0 ) != null && parent.getChild( 0 ).getUserObject() == null ) {
                 parent.getChild( 0 ).remove();
@@ -153,4 +172,20 @@ public class TreeNavigator extends Composite implements Navigator {
         }
 
     }
+
+    private static class NextPage {
+
+        private final TreeNavigatorItemImpl parent;
+        private final Path path;
+        private final int startIndex;
+
+        NextPage( final TreeNavigatorItemImpl parent,
+                  final Path path,
+                  final int startIndex ) {
+            this.parent = parent;
+            this.path = path;
+            this.startIndex = startIndex;
+        }
+
+    }
 }
\ No newline at end of file
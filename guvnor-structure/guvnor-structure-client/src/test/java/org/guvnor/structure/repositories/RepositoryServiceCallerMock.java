@@ -87,6 +87,13 @@ public class RepositoryServiceCallerMock
             return result;
         }
 
+        @Override
+        public List<VersionRecord> getRepositoryHistoryAfter( String alias, String commitId, int pageSize ) {
+            List<VersionRecord> result = repositoryService.getRepositoryHistoryAfter( alias, commitId, pageSize );
+            remoteCallback.callback( result );
+            return result;
+        }
+
         @Override
         public List<VersionRecord> getRepositoryHistoryAll( String alias ) {
             List<VersionRecord> result = repositoryService.getRepositoryHistoryAll( alias );
@@ -17,19 +17,24 @@
 package org.guvnor.server;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.Semaphore;
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
 import javax.inject.Inject;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.maven.cli.MavenCli;
+import org.guvnor.common.services.backend.util.SystemProperties;
 import org.guvnor.common.services.project.builder.model.BuildMessage;
 import org.guvnor.common.services.project.builder.model.BuildResults;
 import org.guvnor.common.services.project.builder.model.IncrementalBuildResults;
 import org.guvnor.common.services.project.builder.service.BuildService;
+import org.guvnor.common.services.project.events.DeleteProjectEvent;
 import org.guvnor.common.services.project.model.Project;
 import org.guvnor.common.services.project.service.DeploymentMode;
 import org.guvnor.common.services.shared.message.Level;
@@ -42,12 +47,30 @@ import org.uberfire.workbench.events.ResourceChange;
 public class BuildServiceImpl
         implements BuildService {
 
+    //MavenCli runs in-process and sets JVM-wide system properties, so builds are serialised unless configured otherwise
+    public static final String MAX_CONCURRENT_BUILDS_PROPERTY_NAME = "org.guvnor.build.max.concurrent";
+
+    private static final int DEFAULT_MAX_CONCURRENT_BUILDS = 1;
+
+    private final Semaphore builds = new Semaphore( getMaxConcurrentBuilds(),
+                                                    true );
+
     @Inject
     private ProjectVisitor projectVisitor;
 
     @Inject
     private Deployer deployer;
 
+    public BuildServiceImpl() {
+    }
+
+    //Constructor for tests
+    BuildServiceImpl( final ProjectVisitor projectVisitor,
+                      final Deployer deployer ) {
+        this.projectVisitor = projectVisitor;
+        this.deployer = deployer;
+    }
+
     @Override
     public BuildResults build( final Project project ) {
         return new BuildResults();
@@ -58,17 +81,57 @@ public class BuildServiceImpl
 
         BuildResults buildResults = new BuildResults();
 
+        final ProjectVisitor.Workspace workspace = projectVisitor.getWorkspace( project );
+
+        //Builds of the same Project are serialised on its Workspace; other Projects build in their own Workspaces
+        workspace.lock();
+        try {
+
+            projectVisitor.visit( project,
+                                  workspace );
+
+            //Maven always runs, even if no file changed, as SNAPSHOT dependencies may have changed since the last build
+            if ( runMaven( workspace,
+                           buildResults ) ) {
+                deployer.deploy( workspace.getTargetFolder() );
+            }
+
+        } catch ( IOException e ) {
+            buildResults.addBuildMessage( reportError( e ) );
+        } finally {
+            workspace.unlock();
+        }
+
+        return buildResults;
+    }
+
+    public void onDeleteProject( @Observes final DeleteProjectEvent event ) {
+        projectVisitor.deleteWorkspace( event.getProject() );
+    }
+
+    //target/ is kept between builds so Maven only recompiles sources that changed since the last build, unless files
+    //were removed: Maven does not remove their output, so target/ is wiped and the Project built from clean
+    private boolean runMaven( final ProjectVisitor.Workspace workspace,
+                              final BuildResults buildResults ) throws IOException {
         try {
+            builds.acquire();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted whilst waiting to build '" + workspace.getRootFolder().getAbsolutePath() + "'." );
+        }
 
-            projectVisitor.visit( project );
+        try {
+            final boolean clean = workspace.isCleanRequired();
+            if ( clean ) {
+                FileUtils.deleteDirectory( workspace.getTargetFolder() );
+            }
 
             ByteArrayOutputStream out = new ByteArrayOutputStream();
             PrintStream printStream = new PrintStream( out );
 
-            MavenCli cli = new MavenCli();
-            int result = cli.doMain( new String[]{ "clean", "install" },
-                                     projectVisitor.getRootFolder().getAbsolutePath(),
-                                     printStream, printStream );
+            int result = executeMaven( clean ? new String[]{ "clean", "install" } : new String[]{ "install" },
+                                       workspace.getRootFolder(),
+                                       printStream );
 
             if ( result != 0 ) {
                 BuildMessage message = new BuildMessage();
@@ -76,22 +139,31 @@ public class BuildServiceImpl
                 message.setText( new String( out.toByteArray() ) );
                 message.setLevel( Level.ERROR );
                 buildResults.addBuildMessage( message );
+                return false;
             }
+            if ( clean ) {
+                workspace.setCleanRequired( false );
+            }
+            return true;
 
-            deployer.deploy( projectVisitor.getTargetFolder() );
-
-        } catch ( IOException e ) {
-            buildResults.addBuildMessage( reportError( e ) );
         } finally {
-
-            try {
-                FileUtils.deleteDirectory( projectVisitor.getGuvnorTempFolder() );
-            } catch ( IOException e ) {
-                buildResults.addBuildMessage( reportError( e ) );
-            }
+            builds.release();
         }
+    }
 
-        return buildResults;
+    protected int executeMaven( final String[] goals,
+                                final File projectFolder,
+                                final PrintStream printStream ) {
+        MavenCli cli = new MavenCli();
+        return cli.doMain( goals,
+                           projectFolder.getAbsolutePath(),
+                           printStream, printStream );
+    }
+
+    static int getMaxConcurrentBuilds() {
+        return SystemProperties.getInt( MAX_CONCURRENT_BUILDS_PROPERTY_NAME,
+                                        DEFAULT_MAX_CONCURRENT_BUILDS,
+                                        1 );
     }
 
     @Override
@@ -20,12 +20,17 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import javax.inject.Inject;
 
 import org.drools.compiler.kproject.xml.PomModel;
 import org.guvnor.common.services.project.model.GAV;
 import org.guvnor.m2repo.backend.server.ExtendedM2RepoService;
 import org.guvnor.m2repo.backend.server.helpers.PomModelResolver;
+import org.guvnor.m2repo.model.ArtifactDeploymentStatus;
 
 public class Deployer {
 
@@ -34,24 +39,45 @@ public class Deployer {
 
     public void deploy( File targetFolder ) throws IOException {
 
+        //JARs are deployed in parallel; wait for all of them before reporting the outcome
+        final Map<GAV, Future<ArtifactDeploymentStatus>> deployments = new LinkedHashMap<GAV, Future<ArtifactDeploymentStatus>>();
+
         for ( File file : getJars( targetFolder ) ) {
 
             BufferedInputStream fileInputStream = new BufferedInputStream( new FileInputStream( file ) );
 
-            fileInputStream.mark( fileInputStream.available() );
+            try {
+                fileInputStream.mark( fileInputStream.available() );
 
-            PomModel pomModel = PomModelResolver.resolveFromJar( fileInputStream );
+                PomModel pomModel = PomModelResolver.resolveFromJar( fileInputStream );
 
-            fileInputStream.reset();
+                fileInputStream.reset();
 
-            extendedM2RepoService.deployJar(
-                    fileInputStream,
-                    new GAV( pomModel.getReleaseId().getGroupId(),
-                             pomModel.getReleaseId().getArtifactId(),
-                             pomModel.getReleaseId().getVersion()
-                    ) );
+                final GAV gav = new GAV( pomModel.getReleaseId().getGroupId(),
+                                         pomModel.getReleaseId().getArtifactId(),
+                                         pomModel.getReleaseId().getVersion() );
+                deployments.put( gav,
+                                 extendedM2RepoService.deployJarAsync( fileInputStream,
+                                                                       gav ) );
+            } finally {
+                fileInputStream.close();
+            }
+        }
 
-            fileInputStream.close();
+        for ( Map.Entry<GAV, Future<ArtifactDeploymentStatus>> deployment : deployments.entrySet() ) {
+            final ArtifactDeploymentStatus status;
+            try {
+                status = deployment.getValue().get();
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new IOException( "Interrupted whilst deploying '" + deployment.getKey() + "'." );
+            } catch ( ExecutionException e ) {
+                throw new IOException( e.getCause() );
+            }
+            //A superseded JAR was replaced by a newer deployment of the same GAV, which is awaited in its own right
+            if ( status != ArtifactDeploymentStatus.DEPLOYED && status != ArtifactDeploymentStatus.SUPERSEDED ) {
+                throw new IOException( "Unable to deploy '" + deployment.getKey() + "'." );
+            }
         }
 
     }
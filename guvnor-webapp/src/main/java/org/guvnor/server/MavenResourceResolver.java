@@ -20,7 +20,6 @@ import org.guvnor.common.services.project.backend.server.ResourceResolver;
 import org.guvnor.common.services.project.model.Project;
 import org.uberfire.backend.server.util.Paths;
 import org.uberfire.backend.vfs.Path;
-import org.uberfire.java.nio.file.Files;
 
 import static org.guvnor.common.services.project.backend.server.ProjectResourcePaths.*;
 
@@ -35,30 +34,11 @@ public class MavenResourceResolver
                 return null;
             }
 
-            //Check if resource is the project root
-            org.uberfire.java.nio.file.Path path = Paths.convert( resource ).normalize();
-
-            //A project root is the folder containing the pom.xml file. This will be the parent of the "src" folder
-            if ( Files.isRegularFile( path ) ) {
-                path = path.getParent();
-            }
-            if ( hasPom( path ) ) {
-                return makeProject( path );
-            }
-            while ( path.getNameCount() > 0 && !path.getFileName().toString().equals( SOURCE_FILENAME ) ) {
-                path = path.getParent();
-            }
-            if ( path.getNameCount() == 0 ) {
-                return null;
-            }
-            path = path.getParent();
-            if ( path.getNameCount() == 0 || path == null ) {
-                return null;
-            }
-            if ( !hasPom( path ) ) {
+            final org.uberfire.java.nio.file.Path projectRoot = resolveProjectRoot( resource );
+            if ( projectRoot == null ) {
                 return null;
             }
-            return makeProject( path );
+            return makeProject( projectRoot );
 
         } catch ( Exception e ) {
             throw ExceptionUtilities.handleException( e );
@@ -3,7 +3,7 @@
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
- * 
+ *
  *      http://www.apache.org/licenses/LICENSE-2.0
  *
  * Unless required by applicable law or agreed to in writing, software
@@ -15,7 +15,12 @@
 
 package org.guvnor.server;
 
+import org.apache.commons.io.FileUtils;
+import org.guvnor.common.services.backend.util.Digests;
 import org.guvnor.common.services.project.model.Project;
+import org.guvnor.structure.backend.repositories.git.GitCommits;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.uberfire.backend.server.util.Paths;
 import org.uberfire.io.IOService;
 import org.uberfire.java.nio.file.DirectoryStream;
@@ -24,95 +29,432 @@ import org.uberfire.java.nio.file.Path;
 
 import javax.inject.Inject;
 import javax.inject.Named;
-import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Maintains a persistent working copy of each Project on the local file system for Maven to build.
+ * <p/>
+ * Each Project has its own Workspace, keyed by its root URI, so builds of different Projects never share a folder.
+ * Synchronising a Workspace only writes files whose git blob id differs from that recorded by the previous
+ * synchronisation and removes files no longer in the Project; unchanged files keep their timestamps so Maven can
+ * reuse the compiled output in target/. The blob ids of a Project in a git file system are read from the tree of
+ * the commit at the tip of its branch, so unchanged files are not read at all; otherwise each file is read once to
+ * hash it and only written if it changed. Removing files marks the Workspace as requiring a clean build, as Maven
+ * does not remove the output of sources that no longer exist.
+ */
 public class ProjectVisitor {
 
+    public static final String WORKSPACE_DIR_PROPERTY_NAME = "org.guvnor.build.workspace.dir";
+
+    private static final String MANIFEST_FILE_NAME = "manifest.properties";
+    private static final String CLEAN_REQUIRED_FILE_NAME = "clean.required";
+    private static final String PROJECT_FOLDER_NAME = "project";
+    private static final String TEMP_FILE_SUFFIX = ".sync";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final Logger logger = LoggerFactory.getLogger(ProjectVisitor.class);
+
     @Inject
     @Named("ioStrategy")
     private IOService ioService;
 
-    private Project project;
-    private File rootFolder;
-    private String buildRoot;
+    private final ConcurrentMap<String, Workspace> workspaces = new ConcurrentHashMap<String, Workspace>();
 
-    public void visit(Project project) throws IOException {
-        this.project = project;
-        this.buildRoot = System.getProperty("java.io.tmpdir") + File.separatorChar + "guvnor" + File.separatorChar + project.getProjectName();
-        Path path = Paths.convert(this.project.getRootPath());
-        makeTempRootDirectory();
-        makeTempDirectory(path);
-        rootFolder = makeTempDirectory(path);
-        visitPaths(ioService.newDirectoryStream(path));
+    public ProjectVisitor() {
     }
 
-    public File getRootFolder() {
-        return rootFolder;
+    //Constructor for tests
+    ProjectVisitor(final IOService ioService) {
+        this.ioService = ioService;
     }
 
-    public File getGuvnorTempFolder() {
-        return new File(System.getProperty("java.io.tmpdir") + File.separatorChar + "guvnor");
+    /**
+     * Returns the Workspace for a Project. Callers should hold the Workspace's lock whilst synchronising or building it.
+     * @param project The Project
+     * @return The Project's Workspace
+     */
+    public Workspace getWorkspace(final Project project) {
+        final String uri = project.getRootPath().toURI();
+        Workspace workspace = workspaces.get(uri);
+        if (workspace == null) {
+            final Workspace newWorkspace = new Workspace(new File(getWorkspacesFolder(),
+                                                                  getWorkspaceName(project.getProjectName(),
+                                                                                   uri)));
+            workspace = workspaces.putIfAbsent(uri, newWorkspace);
+            if (workspace == null) {
+                workspace = newWorkspace;
+            }
+        }
+        return workspace;
     }
 
-    public File getTargetFolder() {
-        return new File(buildRoot + File.separatorChar + "target");
+    /**
+     * Deletes the Workspace of a Project that no longer exists, including any left by an earlier run of the server.
+     * @param project The deleted Project
+     */
+    public void deleteWorkspace(final Project project) {
+        final String uri = project.getRootPath().toURI();
+        final Workspace workspace = workspaces.remove(uri);
+        if (workspace != null) {
+            //Wait for a build in progress to finish with the folder
+            workspace.lock();
+        }
+        try {
+            final File[] folders = getWorkspacesFolder().listFiles();
+            if (folders == null) {
+                return;
+            }
+            //Project names are not needed to find the Workspace, which ends with the root URI's hash
+            final String suffix = getWorkspaceSuffix(uri);
+            for (final File folder : folders) {
+                if (folder.isDirectory() && folder.getName().endsWith(suffix)) {
+                    try {
+                        FileUtils.deleteDirectory(folder);
+                    } catch (IOException e) {
+                        logger.warn("Unable to delete workspace '" + folder.getAbsolutePath() + "'.", e);
+                    }
+                }
+            }
+        } finally {
+            if (workspace != null) {
+                workspace.unlock();
+            }
+        }
     }
 
-    private void visitPaths(final DirectoryStream<Path> directoryStream) throws IOException {
-        for (final org.uberfire.java.nio.file.Path path : directoryStream) {
-            if (Files.isDirectory(path)) {
-                makeTempDirectory(path);
-                visitPaths(Files.newDirectoryStream(path));
-            } else {
-                makeTempFile(path);
+    /**
+     * Brings a Workspace up to date with the Project in the VFS.
+     * @param project The Project
+     * @param workspace The Project's Workspace, whose lock is held by the caller
+     * @return Whether files in the Workspace were unchanged, written or (possibly as well as written) deleted
+     * @throws IOException
+     */
+    public SyncResult visit(final Project project,
+                            final Workspace workspace) throws IOException {
+        return visit(Paths.convert(project.getRootPath()),
+                     workspace);
+    }
+
+    SyncResult visit(final Path root,
+                     final Workspace workspace) throws IOException {
+        workspace.loadManifest();
+
+        final Map<String, String> visited = new HashMap<String, String>();
+        final MessageDigest digest = Digests.newSha1();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+
+        workspace.getRootFolder().mkdirs();
+        final String commitId = getHeadCommitId(root);
+        final Map<String, String> blobIds = commitId == null ? null : getBlobIds(root,
+                                                                                 commitId);
+        final boolean updated;
+        if (blobIds != null) {
+            visited.putAll(blobIds);
+            updated = syncBlobs(root,
+                                blobIds,
+                                workspace,
+                                buffer);
+        } else {
+            updated = visitPaths(root.toUri().getPath(),
+                                 root,
+                                 workspace,
+                                 visited,
+                                 digest,
+                                 buffer);
+        }
+
+        final Set<String> removed = new HashSet<String>(workspace.manifest.keySet());
+        removed.removeAll(visited.keySet());
+        if (!removed.isEmpty()) {
+            //Output compiled from removed sources would otherwise remain in target/. The marker is written before the
+            //manifest forgets the removed files so that the clean build is not lost should the build never happen.
+            workspace.setCleanRequired(true);
+        }
+        for (final String relativePath : removed) {
+            final File file = new File(workspace.getRootFolder(), relativePath);
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Unable to delete '" + file.getAbsolutePath() + "'.");
             }
         }
+
+        workspace.manifest = visited;
+        if (updated || !removed.isEmpty()) {
+            workspace.saveManifest();
+        }
+        if (!removed.isEmpty()) {
+            return SyncResult.REMOVED;
+        }
+        return updated ? SyncResult.UPDATED : SyncResult.UNCHANGED;
     }
 
-    private File makeTempDirectory(Path path) {
-        return makeTempDirectory(getFilePath(path));
+    private boolean visitPaths(final String rootPath,
+                               final Path folder,
+                               final Workspace workspace,
+                               final Map<String, String> visited,
+                               final MessageDigest digest,
+                               final byte[] buffer) throws IOException {
+        boolean changed = false;
+        final DirectoryStream<Path> directoryStream = ioService.newDirectoryStream(folder);
+        try {
+            for (final Path path : directoryStream) {
+                final String relativePath = getRelativePath(rootPath, path);
+                if (isDirectory(path)) {
+                    new File(workspace.getRootFolder(), relativePath).mkdirs();
+                    changed |= visitPaths(rootPath, path, workspace, visited, digest, buffer);
+                } else {
+                    changed |= syncFile(path, relativePath, workspace, visited, digest, buffer);
+                }
+            }
+        } finally {
+            directoryStream.close();
+        }
+        return changed;
+    }
+
+    //Only the blobs whose id differs from the manifest's are read from the repository and written
+    private boolean syncBlobs(final Path root,
+                              final Map<String, String> blobIds,
+                              final Workspace workspace,
+                              final byte[] buffer) throws IOException {
+        boolean changed = false;
+        for (final Map.Entry<String, String> e : blobIds.entrySet()) {
+            final File file = new File(workspace.getRootFolder(), e.getKey());
+            if (e.getValue().equals(workspace.manifest.get(e.getKey())) && file.isFile()) {
+                continue;
+            }
+            file.getParentFile().mkdirs();
+            writeFile(file,
+                      openBlob(root,
+                               e.getValue()),
+                      buffer);
+            changed = true;
+        }
+        return changed;
     }
 
-    private File makeTempDirectory(String filePath) {
-        File tempDirectory = new File(filePath);
-        if (!tempDirectory.isFile()) {
-            tempDirectory.mkdir();
+    //Files are hashed before anything is written, so only changed files are written to disk
+    private boolean syncFile(final Path path,
+                             final String relativePath,
+                             final Workspace workspace,
+                             final Map<String, String> visited,
+                             final MessageDigest digest,
+                             final byte[] buffer) throws IOException {
+        final File file = new File(workspace.getRootFolder(), relativePath);
+
+        digest.reset();
+        digest.update(Digests.blobHeader(size(path)));
+
+        final InputStream input = ioService.newInputStream(path);
+        try {
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, count);
+            }
+        } finally {
+            input.close();
         }
-        return tempDirectory;
+
+        final String objectId = Digests.toHex(digest.digest());
+        visited.put(relativePath, objectId);
+
+        if (objectId.equals(workspace.manifest.get(relativePath)) && file.isFile()) {
+            return false;
+        }
+        writeFile(file,
+                  ioService.newInputStream(path),
+                  buffer);
+        return true;
     }
 
-    private void makeTempRootDirectory() {
-        File tempDirectory = new File(buildRoot);
-        tempDirectory.mkdirs();
+    //The content is written to a temporary file that then replaces the copy, so a failed write leaves no partial file
+    private void writeFile(final File file,
+                           final InputStream input,
+                           final byte[] buffer) throws IOException {
+        final File tempFile = new File(file.getParentFile(), file.getName() + TEMP_FILE_SUFFIX);
+        try {
+            final OutputStream output = new FileOutputStream(tempFile);
+            try {
+                int count;
+                while ((count = input.read(buffer)) != -1) {
+                    output.write(buffer, 0, count);
+                }
+            } finally {
+                output.close();
+            }
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        } finally {
+            input.close();
+        }
+        if ((file.exists() && !file.delete()) || !tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Unable to write '" + file.getAbsolutePath() + "'.");
+        }
     }
 
-    private void makeTempFile(Path path) throws IOException {
+    protected boolean isDirectory(final Path path) {
+        return Files.isDirectory(path);
+    }
 
+    protected String getHeadCommitId(final Path path) {
+        return GitCommits.getHeadCommitId(path);
+    }
 
-        final int BUFFER = 2048;
-        byte data[] = new byte[BUFFER];
+    protected Map<String, String> getBlobIds(final Path root,
+                                             final String commitId) {
+        return GitCommits.getBlobIds(root,
+                                     commitId);
+    }
 
-        BufferedInputStream origin = new BufferedInputStream(ioService.newInputStream(path), BUFFER);
+    protected InputStream openBlob(final Path root,
+                                   final String blobId) {
+        return GitCommits.openBlob(root,
+                                   blobId);
+    }
 
-        String filePath = getFilePath(path);
-        File tempFile = new File(filePath);
-        tempFile.createNewFile();
+    protected long size(final Path path) {
+        return Files.size(path);
+    }
 
-        FileOutputStream output = new FileOutputStream(tempFile);
+    private String getRelativePath(final String rootPath,
+                                   final Path path) {
+        final String filePath = path.toUri().getPath();
+        final String relativePath = filePath.startsWith(rootPath) ? filePath.substring(rootPath.length()) : filePath;
+        return relativePath.startsWith("/") ? relativePath.substring(1) : relativePath;
+    }
 
-        int count;
-        while ((count = origin.read(data, 0, BUFFER)) != -1) {
-            output.write(data, 0, count);
+    static File getWorkspacesFolder() {
+        final String value = System.getProperty(WORKSPACE_DIR_PROPERTY_NAME);
+        if (value != null && !value.trim().isEmpty()) {
+            return new File(value.trim());
         }
+        return new File(System.getProperty("java.io.tmpdir") + File.separatorChar + "guvnor" + File.separatorChar + "workspaces");
+    }
 
-        origin.close();
-        output.close();
+    //Project names need not be unique across repositories and branches, so the root URI's hash disambiguates them
+    static String getWorkspaceName(final String projectName,
+                                   final String uri) {
+        final String safeName = projectName == null ? "project" : projectName.replaceAll("[^A-Za-z0-9._-]", "_");
+        return safeName + getWorkspaceSuffix(uri);
     }
 
-    private String getFilePath(Path path) {
-        return buildRoot + path.toUri().getRawPath();
+    private static String getWorkspaceSuffix(final String uri) {
+        return "-" + Digests.toHex(Digests.newSha1().digest(uri.getBytes(UTF8))).substring(0, 12);
+    }
+
+    /**
+     * The outcome of synchronising a Workspace.
+     */
+    public enum SyncResult {
+        UNCHANGED,
+        UPDATED,
+        REMOVED
+    }
+
+    /**
+     * A Project's working copy and the git blob ids of the files it contains.
+     */
+    public static class Workspace {
+
+        private final File folder;
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private Map<String, String> manifest;
+
+        Workspace(final File folder) {
+            this.folder = folder;
+        }
+
+        public void lock() {
+            lock.lock();
+        }
+
+        public void unlock() {
+            lock.unlock();
+        }
+
+        public File getRootFolder() {
+            return new File(folder, PROJECT_FOLDER_NAME);
+        }
+
+        public File getTargetFolder() {
+            return new File(getRootFolder(), "target");
+        }
+
+        /**
+         * @return true if files have been removed from the Workspace since it was last built from clean
+         */
+        public boolean isCleanRequired() {
+            return new File(folder, CLEAN_REQUIRED_FILE_NAME).isFile();
+        }
+
+        public void setCleanRequired(final boolean cleanRequired) throws IOException {
+            final File file = new File(folder, CLEAN_REQUIRED_FILE_NAME);
+            if (cleanRequired) {
+                folder.mkdirs();
+                if (!file.isFile() && !file.createNewFile()) {
+                    throw new IOException("Unable to create '" + file.getAbsolutePath() + "'.");
+                }
+            } else if (file.exists() && !file.delete()) {
+                throw new IOException("Unable to delete '" + file.getAbsolutePath() + "'.");
+            }
+        }
+
+        //The manifest survives restarts so that the first build after one does not rewrite every file
+        private void loadManifest() {
+            if (manifest != null) {
+                return;
+            }
+            manifest = new HashMap<String, String>();
+            final File file = new File(folder, MANIFEST_FILE_NAME);
+            if (!file.isFile()) {
+                return;
+            }
+            final Properties properties = new Properties();
+            try {
+                final InputStream input = new FileInputStream(file);
+                try {
+                    properties.load(input);
+                } finally {
+                    input.close();
+                }
+            } catch (IOException e) {
+                logger.warn("Unable to read workspace manifest '" + file.getAbsolutePath() + "'. All files will be copied.", e);
+                return;
+            }
+            for (final String name : properties.stringPropertyNames()) {
+                manifest.put(name, properties.getProperty(name));
+            }
+        }
+
+        private void saveManifest() throws IOException {
+            final Properties properties = new Properties();
+            properties.putAll(manifest);
+            final File file = new File(folder, MANIFEST_FILE_NAME);
+            final OutputStream output = new FileOutputStream(file);
+            try {
+                properties.store(output, null);
+            } finally {
+                output.close();
+            }
+        }
     }
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.server;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.guvnor.common.services.project.builder.model.BuildResults;
+import org.guvnor.common.services.project.events.DeleteProjectEvent;
+import org.guvnor.common.services.project.model.Project;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class BuildServiceImplTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ProjectVisitor projectVisitor;
+    private Deployer deployer;
+    private Project project;
+    private ProjectVisitor.Workspace workspace;
+
+    //Goals of each Maven invocation and whether target/ existed when it started
+    private final List<List<String>> goals = new ArrayList<List<String>>();
+    private final List<Boolean> targetExisted = new ArrayList<Boolean>();
+    private int mavenResult = 0;
+
+    private BuildServiceImpl buildService;
+
+    @Before
+    public void setup() throws Exception {
+        projectVisitor = mock( ProjectVisitor.class );
+        deployer = mock( Deployer.class );
+        project = mock( Project.class );
+        workspace = new ProjectVisitor.Workspace( folder.newFolder( "workspace" ) );
+        workspace.getTargetFolder().mkdirs();
+
+        when( projectVisitor.getWorkspace( project ) ).thenReturn( workspace );
+        when( projectVisitor.visit( project,
+                                    workspace ) ).thenReturn( ProjectVisitor.SyncResult.UNCHANGED );
+
+        buildService = new BuildServiceImpl( projectVisitor,
+                                             deployer ) {
+            @Override
+            protected int executeMaven( final String[] mavenGoals,
+                                        final File projectFolder,
+                                        final PrintStream printStream ) {
+                goals.add( Arrays.asList( mavenGoals ) );
+                targetExisted.add( workspace.getTargetFolder().exists() );
+                return mavenResult;
+            }
+        };
+    }
+
+    @Test
+    public void testWorkspaceIsDeletedWithProject() {
+        buildService.onDeleteProject( new DeleteProjectEvent( project ) );
+
+        verify( projectVisitor ).deleteWorkspace( project );
+    }
+
+    @Test
+    public void testMavenRunsWhenNothingChanged() throws Exception {
+        buildService.buildAndDeploy( project );
+        buildService.buildAndDeploy( project );
+
+        assertEquals( Arrays.asList( Arrays.asList( "install" ),
+                                     Arrays.asList( "install" ) ),
+                      goals );
+        verify( deployer,
+                times( 2 ) ).deploy( workspace.getTargetFolder() );
+    }
+
+    @Test
+    public void testRemovalWipesTargetAndBuildsFromClean() throws Exception {
+        assertTrue( new File( workspace.getTargetFolder(),
+                              "Removed.class" ).createNewFile() );
+        workspace.setCleanRequired( true );
+
+        buildService.buildAndDeploy( project );
+
+        assertEquals( Arrays.asList( Arrays.asList( "clean",
+                                                    "install" ) ),
+                      goals );
+        assertEquals( Arrays.asList( false ),
+                      targetExisted );
+        assertFalse( workspace.isCleanRequired() );
+        verify( deployer ).deploy( workspace.getTargetFolder() );
+    }
+
+    @Test
+    public void testFailedCleanBuildIsRetriedFromClean() throws Exception {
+        workspace.setCleanRequired( true );
+        mavenResult = 1;
+
+        final BuildResults results = buildService.buildAndDeploy( project );
+
+        assertEquals( 1,
+                      results.getErrorMessages().size() );
+        assertTrue( workspace.isCleanRequired() );
+        verify( deployer,
+                never() ).deploy( any( File.class ) );
+
+        mavenResult = 0;
+        buildService.buildAndDeploy( project );
+
+        assertEquals( Arrays.asList( "clean",
+                                     "install" ),
+                      goals.get( 1 ) );
+        assertFalse( workspace.isCleanRequired() );
+    }
+
+}
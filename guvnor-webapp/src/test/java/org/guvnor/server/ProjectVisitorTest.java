@@ -0,0 +1,363 @@
+/*
+ * Copyright 2016 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.guvnor.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.guvnor.common.services.project.model.Project;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.uberfire.io.IOService;
+import org.uberfire.java.nio.file.DirectoryStream;
+import org.uberfire.java.nio.file.Path;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class ProjectVisitorTest {
+
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    private static final String ROOT_URI = "default://master@repo/project";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private IOService ioService;
+
+    //Children of each folder, and content of each file, in the VFS
+    private final Map<Path, List<Path>> children = new HashMap<Path, List<Path>>();
+    private final Map<Path, String> contents = new HashMap<Path, String>();
+
+    private Path root;
+    private Path src;
+    private Path source;
+
+    private ProjectVisitor visitor;
+    private ProjectVisitor.Workspace workspace;
+
+    //Blob ids and contents of the commit at the tip of the Project's branch, for Projects in a git file system
+    private String headCommitId = null;
+    private final Map<String, String> blobIds = new HashMap<String, String>();
+    private final Map<String, String> blobs = new HashMap<String, String>();
+    private final List<String> openedBlobs = new ArrayList<String>();
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() throws Exception {
+        ioService = mock( IOService.class );
+
+        root = addFolder( null,
+                          ROOT_URI );
+        addFile( root,
+                 ROOT_URI + "/pom.xml",
+                 "<project/>" );
+        src = addFolder( root,
+                         ROOT_URI + "/src" );
+        source = addFile( src,
+                          ROOT_URI + "/src/A.java",
+                          "class A {}" );
+
+        when( ioService.newDirectoryStream( any( Path.class ) ) ).thenAnswer( new Answer<DirectoryStream<Path>>() {
+            @Override
+            public DirectoryStream<Path> answer( final InvocationOnMock invocation ) throws Throwable {
+                final DirectoryStream<Path> stream = mock( DirectoryStream.class );
+                when( stream.iterator() ).thenReturn( new ArrayList<Path>( children.get( invocation.getArguments()[ 0 ] ) ).iterator() );
+                return stream;
+            }
+        } );
+        when( ioService.newInputStream( any( Path.class ) ) ).thenAnswer( new Answer<InputStream>() {
+            @Override
+            public InputStream answer( final InvocationOnMock invocation ) throws Throwable {
+                return new ByteArrayInputStream( contents.get( invocation.getArguments()[ 0 ] ).getBytes( UTF8 ) );
+            }
+        } );
+
+        visitor = newVisitor();
+        workspace = new ProjectVisitor.Workspace( folder.newFolder( "workspace" ) );
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty( ProjectVisitor.WORKSPACE_DIR_PROPERTY_NAME );
+    }
+
+    @Test
+    public void testOnlyChangedBlobsAreReadFromGit() throws Exception {
+        headCommitId = "c1";
+        addBlob( "pom.xml",
+                 "b1",
+                 "<project/>" );
+        addBlob( "src/A.java",
+                 "b2",
+                 "class A {}" );
+
+        assertEquals( ProjectVisitor.SyncResult.UPDATED,
+                      visitor.visit( root,
+                                     workspace ) );
+        assertEquals( "class A {}",
+                      read( new File( workspace.getRootFolder(),
+                                      "src/A.java" ) ) );
+        assertEquals( 2,
+                      openedBlobs.size() );
+
+        //Unchanged blob ids are neither read nor written
+        final File copy = new File( workspace.getRootFolder(),
+                                    "pom.xml" );
+        assertTrue( copy.setLastModified( 1000 ) );
+        headCommitId = "c2";
+        addBlob( "src/A.java",
+                 "b3",
+                 "class A { int a; }" );
+        assertEquals( ProjectVisitor.SyncResult.UPDATED,
+                      visitor.visit( root,
+                                     workspace ) );
+        assertEquals( "b3",
+                      openedBlobs.get( 2 ) );
+        assertEquals( 3,
+                      openedBlobs.size() );
+        assertEquals( 1000,
+                      copy.lastModified() );
+        assertEquals( "class A { int a; }",
+                      read( new File( workspace.getRootFolder(),
+                                      "src/A.java" ) ) );
+
+        //Files are never read through the VFS
+        verify( ioService,
+                never() ).newInputStream( any( Path.class ) );
+    }
+
+    @Test
+    public void testBlobsRemovedFromGitAreDeleted() throws Exception {
+        headCommitId = "c1";
+        addBlob( "pom.xml",
+                 "b1",
+                 "<project/>" );
+        addBlob( "src/A.java",
+                 "b2",
+                 "class A {}" );
+        visitor.visit( root,
+                       workspace );
+
+        blobIds.remove( "src/A.java" );
+        assertEquals( ProjectVisitor.SyncResult.REMOVED,
+                      visitor.visit( root,
+                                     workspace ) );
+        assertFalse( new File( workspace.getRootFolder(),
+                               "src/A.java" ).exists() );
+        assertTrue( workspace.isCleanRequired() );
+    }
+
+    @Test
+    public void testFilesAreHashedBeforeAnythingIsWritten() throws Exception {
+        //Changed files are read once to hash them and once more to write them
+        visitor.visit( root,
+                       workspace );
+        verify( ioService,
+                times( 2 ) ).newInputStream( source );
+
+        //Unchanged files are only read to hash them
+        visitor.visit( root,
+                       workspace );
+        verify( ioService,
+                times( 3 ) ).newInputStream( source );
+    }
+
+    @Test
+    public void testDeletedProjectsWorkspaceIsRemoved() throws Exception {
+        final File workspaces = folder.newFolder( "workspaces" );
+        System.setProperty( ProjectVisitor.WORKSPACE_DIR_PROPERTY_NAME,
+                            workspaces.getAbsolutePath() );
+        final Project project = mock( Project.class );
+        final org.uberfire.backend.vfs.Path rootPath = mock( org.uberfire.backend.vfs.Path.class );
+        when( rootPath.toURI() ).thenReturn( ROOT_URI );
+        when( project.getRootPath() ).thenReturn( rootPath );
+        when( project.getProjectName() ).thenReturn( "project" );
+
+        final ProjectVisitor.Workspace projectWorkspace = visitor.getWorkspace( project );
+        assertTrue( projectWorkspace.getRootFolder().mkdirs() );
+        //A Workspace left by an earlier run of the server is also found
+        final File other = new File( workspaces,
+                                     ProjectVisitor.getWorkspaceName( "renamed",
+                                                                      ROOT_URI ) );
+        assertTrue( other.mkdirs() );
+        final File unrelated = new File( workspaces,
+                                         ProjectVisitor.getWorkspaceName( "project",
+                                                                          ROOT_URI + "2" ) );
+        assertTrue( unrelated.mkdirs() );
+
+        visitor.deleteWorkspace( project );
+
+        assertFalse( projectWorkspace.getRootFolder().getParentFile().exists() );
+        assertFalse( other.exists() );
+        assertTrue( unrelated.exists() );
+        assertNotSame( projectWorkspace,
+                       visitor.getWorkspace( project ) );
+    }
+
+    @Test
+    public void testFilesAreCopiedAndManifestSaved() throws Exception {
+        assertEquals( ProjectVisitor.SyncResult.UPDATED,
+                      visitor.visit( root,
+                                     workspace ) );
+
+        assertEquals( "class A {}",
+                      read( new File( workspace.getRootFolder(),
+                                      "src/A.java" ) ) );
+        assertTrue( new File( workspace.getRootFolder(),
+                              "pom.xml" ).isFile() );
+        assertTrue( new File( workspace.getRootFolder().getParentFile(),
+                              "manifest.properties" ).isFile() );
+        assertFalse( workspace.isCleanRequired() );
+    }
+
+    @Test
+    public void testUnchangedFilesAreNotRewritten() throws Exception {
+        visitor.visit( root,
+                       workspace );
+        final File copy = new File( workspace.getRootFolder(),
+                                    "src/A.java" );
+        assertTrue( copy.setLastModified( 1000 ) );
+
+        //A new visitor and Workspace simulate a restart, so the manifest saved by the first visit is used
+        final ProjectVisitor.Workspace restarted = new ProjectVisitor.Workspace( workspace.getRootFolder().getParentFile() );
+        assertEquals( ProjectVisitor.SyncResult.UNCHANGED,
+                      newVisitor().visit( root,
+                                          restarted ) );
+        assertEquals( 1000,
+                      copy.lastModified() );
+
+        contents.put( source,
+                      "class A { int a; }" );
+        assertEquals( ProjectVisitor.SyncResult.UPDATED,
+                      visitor.visit( root,
+                                     workspace ) );
+        assertEquals( "class A { int a; }",
+                      read( copy ) );
+    }
+
+    @Test
+    public void testRemovedFilesAreDeletedAndRequireCleanBuild() throws Exception {
+        visitor.visit( root,
+                       workspace );
+
+        children.get( src ).remove( source );
+        assertEquals( ProjectVisitor.SyncResult.REMOVED,
+                      visitor.visit( root,
+                                     workspace ) );
+
+        assertFalse( new File( workspace.getRootFolder(),
+                               "src/A.java" ).exists() );
+        assertTrue( workspace.isCleanRequired() );
+
+        //The requirement survives restarts until a clean build succeeds
+        final ProjectVisitor.Workspace restarted = new ProjectVisitor.Workspace( workspace.getRootFolder().getParentFile() );
+        assertEquals( ProjectVisitor.SyncResult.UNCHANGED,
+                      newVisitor().visit( root,
+                                          restarted ) );
+        assertTrue( restarted.isCleanRequired() );
+
+        restarted.setCleanRequired( false );
+        assertFalse( workspace.isCleanRequired() );
+    }
+
+    private ProjectVisitor newVisitor() {
+        return new ProjectVisitor( ioService ) {
+            @Override
+            protected boolean isDirectory( final Path path ) {
+                return children.containsKey( path );
+            }
+
+            @Override
+            protected long size( final Path path ) {
+                return contents.get( path ).getBytes( UTF8 ).length;
+            }
+
+            @Override
+            protected String getHeadCommitId( final Path path ) {
+                return headCommitId;
+            }
+
+            @Override
+            protected Map<String, String> getBlobIds( final Path root,
+                                                      final String commitId ) {
+                return new HashMap<String, String>( blobIds );
+            }
+
+            @Override
+            protected InputStream openBlob( final Path root,
+                                            final String blobId ) {
+                openedBlobs.add( blobId );
+                return new ByteArrayInputStream( blobs.get( blobId ).getBytes( UTF8 ) );
+            }
+        };
+    }
+
+    private void addBlob( final String relativePath,
+                          final String blobId,
+                          final String content ) {
+        blobIds.put( relativePath,
+                     blobId );
+        blobs.put( blobId,
+                   content );
+    }
+
+    private Path addFolder( final Path parent,
+                            final String uri ) {
+        final Path path = mockPath( uri );
+        children.put( path,
+                      new ArrayList<Path>() );
+        if ( parent != null ) {
+            children.get( parent ).add( path );
+        }
+        return path;
+    }
+
+    private Path addFile( final Path parent,
+                          final String uri,
+                          final String content ) {
+        final Path path = mockPath( uri );
+        contents.put( path,
+                      content );
+        children.get( parent ).add( path );
+        return path;
+    }
+
+    private Path mockPath( final String uri ) {
+        final Path path = mock( Path.class );
+        when( path.toUri() ).thenReturn( URI.create( uri ) );
+        return path;
+    }
+
+    private String read( final File file ) throws Exception {
+        return new String( java.nio.file.Files.readAllBytes( file.toPath() ),
+                           UTF8 );
+    }
+
+}